@@ -0,0 +1,90 @@
+package com.hospital.pharmacy.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with the stored baseline.
+ *
+ * Usage: BaselineComparator result.json baseline.json thresholdPercent [allowMissingBaseline]
+ *
+ * Throughput benchmarks regress when their score drops, time-based modes
+ * (avgt, sample, ss) when it grows. Benchmarks missing from the baseline are
+ * reported but never fail the build. A missing baseline fails it too, unless
+ * allowMissingBaseline is true, so the gate cannot be skipped by accident
+ * when the first baseline is being produced on the machine that will keep it.
+ */
+public class BaselineComparator {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BaselineComparator <result.json> <baseline.json> <thresholdPercent>"
+                    + " [allowMissingBaseline]");
+            System.exit(2);
+        }
+
+        File resultFile = new File(args[0]);
+        File baselineFile = new File(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+        boolean allowMissingBaseline = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        if (!baselineFile.exists()) {
+            if (allowMissingBaseline) {
+                System.out.println("No benchmark baseline at " + baselineFile + ", skipping comparison");
+                return;
+            }
+            System.err.println("No benchmark baseline at " + baselineFile + ". Copy " + resultFile
+                    + " there to accept these numbers, or pass -Djmh.allowMissingBaseline=true");
+            System.exit(1);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(baselineFile));
+        Map<String, JsonNode> results = index(objectMapper.readTree(resultFile));
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.println("NEW      " + entry.getKey());
+                continue;
+            }
+
+            double oldScore = previous.path("primaryMetric").path("score").asDouble();
+            double newScore = entry.getValue().path("primaryMetric").path("score").asDouble();
+            String unit = entry.getValue().path("primaryMetric").path("scoreUnit").asText();
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore * 100;
+            double regression = higherIsBetter ? -change : change;
+
+            String line = String.format("%-8s %s: %.3f -> %.3f %s (%+.1f%%)",
+                    regression > threshold ? "REGRESS" : "OK", entry.getKey(), oldScore, newScore, unit, change);
+            System.out.println(line);
+            if (regression > threshold) {
+                regressions.add(line);
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.err.println(regressions.size() + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> byName = new TreeMap<>();
+        for (JsonNode result : results) {
+            String key = result.path("benchmark").asText() + " [" + result.path("mode").asText() + "]";
+            byName.put(key, result);
+        }
+        return byName;
+    }
+}
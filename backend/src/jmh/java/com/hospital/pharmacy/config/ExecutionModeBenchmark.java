@@ -0,0 +1,111 @@
+package com.hospital.pharmacy.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform against virtual thread mode on a blocking request: a request
+ * thread fans four queries out to a worker pool, each holding one of 20
+ * connections (the admission semaphore) for 2ms of simulated JDBC latency.
+ *
+ * Platform mode has Tomcat's 200 request threads and the timeline's 8 query
+ * threads; virtual mode a thread per request and per query. 400 clients keep
+ * both saturated. Throughput is requests per second, and the sample mode
+ * gives the p99 latency. On a JVM without virtual threads the virtual runs
+ * fail in setup and only the platform ones report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(400)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    private static final int REQUEST_THREADS = 200;
+    private static final int QUERY_THREADS = 8;
+    private static final int CONNECTIONS = 20;
+    private static final int QUERIES_PER_REQUEST = 4;
+    private static final long QUERY_MILLIS = 2;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    private ExecutorService requestExecutor;
+    private ExecutorService queryExecutor;
+    private Semaphore connections;
+
+    @Setup
+    public void setUp() {
+        if ("virtual".equals(mode)) {
+            if (!ExecutionThreads.isVirtualSupported()) {
+                throw new IllegalStateException("Java " + Runtime.version().feature()
+                        + " has no virtual threads; run the benchmarks on Java 21 or later to compare modes");
+            }
+            requestExecutor = ExecutionThreads.newVirtualPerTaskExecutor("http-");
+            queryExecutor = ExecutionThreads.newVirtualPerTaskExecutor("timeline-query-");
+        } else {
+            requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS, platformThreads("http-"));
+            queryExecutor = Executors.newFixedThreadPool(QUERY_THREADS, platformThreads("timeline-query-"));
+        }
+        connections = new Semaphore(CONNECTIONS, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        queryExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int request() throws Exception {
+        return requestExecutor.submit(() -> {
+            CompletableFuture<?>[] queries = new CompletableFuture<?>[QUERIES_PER_REQUEST];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = CompletableFuture.runAsync(this::query, queryExecutor);
+            }
+            CompletableFuture.allOf(queries).join();
+            return queries.length;
+        }).get();
+    }
+
+    private void query() {
+        connections.acquireUninterruptibly();
+        try {
+            Thread.sleep(QUERY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.release();
+        }
+    }
+
+    private static ThreadFactory platformThreads(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.hospital.pharmacy.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request work of JwtRequestFilter that does not touch the database:
+ * the excluded-path check and building granted authorities from the role.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtRequestFilterBenchmark {
+
+    private JwtRequestFilter filter;
+    private MockHttpServletRequest excludedRequest;
+    private MockHttpServletRequest protectedRequest;
+
+    @Setup
+    public void setUp() {
+        filter = new JwtRequestFilter();
+        excludedRequest = new MockHttpServletRequest("POST", "/auth/login");
+        protectedRequest = new MockHttpServletRequest("GET", "/receptionist/billings/BILL-12345");
+    }
+
+    @Benchmark
+    public boolean shouldNotFilterExcludedPath() {
+        return filter.shouldNotFilter(excludedRequest);
+    }
+
+    @Benchmark
+    public boolean shouldNotFilterProtectedPath() {
+        return filter.shouldNotFilter(protectedRequest);
+    }
+
+    @Benchmark
+    public List<SimpleGrantedAuthority> buildSingleRoleAuthorities() {
+        return JwtRequestFilter.buildAuthorities("DOCTOR");
+    }
+
+    @Benchmark
+    public List<SimpleGrantedAuthority> buildMultiRoleAuthorities() {
+        return JwtRequestFilter.buildAuthorities("ADMIN,DOCTOR,PHARMACIST");
+    }
+}
@@ -0,0 +1,132 @@
+package com.hospital.pharmacy.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-JSON serialization of the objects the controllers return as-is.
+ * The ObjectMapper is built the way Spring Boot configures the MVC one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntitySerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Appointment appointment;
+    private Billing billing;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        User doctor = new User();
+        doctor.setId(2L);
+        doctor.setUserId("USR-DOC-01");
+        doctor.setFirstName("Gregory");
+        doctor.setLastName("House");
+        doctor.setEmail("doctor@clinixpro.com");
+        doctor.setPassword("$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmark");
+        doctor.setRole("DOCTOR");
+        doctor.setSpecialization("Diagnostics");
+
+        Patient patient = new Patient();
+        patient.setId(1L);
+        patient.setPatientId("PAT-12345");
+        patient.setFirstName("Alice");
+        patient.setLastName("Mukamana");
+        patient.setDateOfBirth(LocalDate.of(1985, 4, 12));
+        patient.setGender("Female");
+        patient.setEmail("alice@example.com");
+        patient.setPhoneNumber("+250788000111");
+        patient.setBloodGroup("O+");
+        patient.setInsuranceProvider("RSSB");
+        patient.setInsurancePolicyNumber("RSSB-000123");
+        patient.setAssignedDoctor(doctor);
+        patient.setRegistrationDate(LocalDateTime.now().minusYears(2));
+        patient.setStatus("Active");
+
+        appointment = new Appointment();
+        appointment.setId(10L);
+        appointment.setAppointmentId("APT-12345");
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
+        appointment.setStatus("SCHEDULED");
+        appointment.setType("CONSULTATION");
+        appointment.setDuration(30);
+        appointment.setSymptoms("Persistent cough and mild fever");
+        appointment.setCreatedBy(doctor);
+        appointment.setCreatedAt(LocalDateTime.now());
+        appointment.setUpdatedAt(LocalDateTime.now());
+
+        billing = new Billing();
+        billing.setId(20L);
+        billing.setBillNumber("BILL-12345");
+        billing.setPatient(patient);
+        billing.setBillDate(LocalDate.now());
+        billing.setDueDate(LocalDate.now().plusDays(30));
+        billing.setStatus("PARTIALLY_PAID");
+        billing.setPaymentMethod("CASH");
+        billing.setCreatedBy(doctor);
+        billing.setCreatedAt(LocalDateTime.now());
+        billing.setUpdatedAt(LocalDateTime.now());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= 5; i++) {
+            BillingItem item = new BillingItem();
+            item.setId((long) i);
+            item.setItemType(i == 1 ? "CONSULTATION" : "MEDICINE");
+            item.setDescription("Item " + i);
+            item.setQuantity(i);
+            item.setUnitPrice(new BigDecimal("1500.00"));
+            item.setTotalPrice(new BigDecimal("1500.00").multiply(BigDecimal.valueOf(i)));
+            billing.getBillingItems().add(item);
+            total = total.add(item.getTotalPrice());
+        }
+        billing.setTotalAmount(total);
+
+        Payment payment = new Payment();
+        payment.setId(30L);
+        payment.setPaymentDate(LocalDateTime.now());
+        payment.setAmount(new BigDecimal("5000.00"));
+        payment.setPaymentMethod("CASH");
+        payment.setReferenceNumber("PAY-0001");
+        payment.setReceivedBy(doctor);
+        payment.setBilling(billing);
+        billing.getPayments().add(payment);
+        billing.setPaidAmount(payment.getAmount());
+    }
+
+    @Benchmark
+    public String serializeAppointment() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(appointment);
+    }
+
+    @Benchmark
+    public String serializeBilling() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(billing);
+    }
+}
@@ -0,0 +1,180 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.PharmacyApplication;
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Medicine;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository filter queries behind the list screens, against an in-memory H2
+ * seeded with a few thousand rows on top of the usual startup data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryQueryBenchmark {
+
+    private static final int PATIENTS = 2000;
+    private static final int MEDICINES = 500;
+    private static final int APPOINTMENTS = 4000;
+    private static final int BILLINGS = 2000;
+
+    private static final String[] STATUSES = {"Active", "Discharged", "Active", "Active"};
+    private static final String[] CATEGORIES = {"Antibiotics", "Analgesics", "Antivirals", "Cardiology", "Vitamins"};
+    private static final String[] APPOINTMENT_STATUSES = {"SCHEDULED", "COMPLETED", "CANCELLED", "NO_SHOW"};
+    private static final String[] BILLING_STATUSES = {"PENDING", "PAID", "PARTIALLY_PAID"};
+
+    private ConfigurableApplicationContext context;
+    private PatientRepository patientRepository;
+    private MedicineRepository medicineRepository;
+    private AppointmentRepository appointmentRepository;
+    private BillingRepository billingRepository;
+    private Long doctorId;
+
+    @Setup
+    public void setUp() {
+        SpringApplication application = new SpringApplication(PharmacyApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setAdditionalProfiles("test");
+        application.setDefaultProperties(Map.of(
+                "spring.datasource.url", "jdbc:h2:mem:benchmarks;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "logging.level.root", "WARN"));
+        context = application.run();
+
+        patientRepository = context.getBean(PatientRepository.class);
+        medicineRepository = context.getBean(MedicineRepository.class);
+        appointmentRepository = context.getBean(AppointmentRepository.class);
+        billingRepository = context.getBean(BillingRepository.class);
+        seed(context.getBean(UserRepository.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private void seed(UserRepository userRepository) {
+        User doctor = new User();
+        doctor.setUserId("USR-BENCH-DOC");
+        doctor.setFirstName("Bench");
+        doctor.setLastName("Doctor");
+        doctor.setEmail("bench.doctor@clinixpro.com");
+        doctor.setPassword("benchmark");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+        doctorId = doctor.getId();
+
+        List<Patient> patients = new ArrayList<>(PATIENTS);
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = new Patient();
+            patient.setPatientId("PAT-B" + i);
+            patient.setFirstName("First" + i);
+            patient.setLastName(i % 10 == 0 ? "Smith" + i : "Last" + i);
+            patient.setDateOfBirth(LocalDate.of(1950 + i % 60, 1 + i % 12, 1 + i % 28));
+            patient.setGender(i % 2 == 0 ? "Male" : "Female");
+            patient.setPhoneNumber("+25078" + String.format("%07d", i));
+            patient.setStatus(STATUSES[i % STATUSES.length]);
+            patient.setAssignedDoctor(i % 3 == 0 ? doctor : null);
+            patients.add(patient);
+        }
+        patients = patientRepository.saveAll(patients);
+
+        List<Medicine> medicines = new ArrayList<>(MEDICINES);
+        for (int i = 0; i < MEDICINES; i++) {
+            Medicine medicine = new Medicine();
+            medicine.setMedicineId("MED-B" + i);
+            medicine.setName((i % 7 == 0 ? "Paracetamol " : "Compound ") + i);
+            medicine.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            medicine.setManufacturer("Manufacturer " + i % 20);
+            medicine.setExpiryDate(LocalDate.now().plusDays(i));
+            medicine.setStock(1 + i % 300);
+            medicine.setStockStatus(i % 300 < 20 ? "Low" : "Normal");
+            medicine.setPrice(BigDecimal.valueOf(100 + i));
+            medicine.setRequiresPrescription(i % 2 == 0);
+            medicines.add(medicine);
+        }
+        medicineRepository.saveAll(medicines);
+
+        List<Appointment> appointments = new ArrayList<>(APPOINTMENTS);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setAppointmentId("APT-B" + i);
+            appointment.setPatient(patients.get(i % PATIENTS));
+            appointment.setDoctor(doctor);
+            appointment.setAppointmentDateTime(LocalDateTime.now().minusDays(i % 365));
+            appointment.setStatus(APPOINTMENT_STATUSES[i % APPOINTMENT_STATUSES.length]);
+            appointment.setType("REGULAR");
+            appointments.add(appointment);
+        }
+        appointmentRepository.saveAll(appointments);
+
+        List<Billing> billings = new ArrayList<>(BILLINGS);
+        for (int i = 0; i < BILLINGS; i++) {
+            Billing billing = new Billing();
+            billing.setBillNumber("BILL-B" + i);
+            billing.setPatient(patients.get(i % PATIENTS));
+            billing.setBillDate(LocalDate.now().minusDays(i % 365));
+            billing.setTotalAmount(BigDecimal.valueOf(1000 + i));
+            billing.setStatus(BILLING_STATUSES[i % BILLING_STATUSES.length]);
+            billings.add(billing);
+        }
+        billingRepository.saveAll(billings);
+    }
+
+    @Benchmark
+    public List<Patient> patientFilters() {
+        return patientRepository.findByFilters("Active", null, "smith");
+    }
+
+    @Benchmark
+    public List<Patient> patientFiltersByDoctor() {
+        return patientRepository.findByFilters(null, doctorId, null);
+    }
+
+    @Benchmark
+    public List<Medicine> medicineSearch() {
+        return medicineRepository.searchMedicines("paracetamol");
+    }
+
+    @Benchmark
+    public List<Medicine> medicineFilters() {
+        return medicineRepository.findWithFilters("Antibiotics", null, "required");
+    }
+
+    @Benchmark
+    public List<Appointment> appointmentFilters() {
+        return appointmentRepository.findByBasicFilters("SCHEDULED", doctorId, null);
+    }
+
+    @Benchmark
+    public List<Billing> billingFilters() {
+        return billingRepository.findByFilters(null, "PENDING", LocalDate.now().minusDays(30), LocalDate.now());
+    }
+}
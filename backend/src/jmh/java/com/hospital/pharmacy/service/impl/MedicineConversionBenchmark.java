@@ -0,0 +1,68 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.MedicineDTO;
+import com.hospital.pharmacy.model.Company;
+import com.hospital.pharmacy.model.Medicine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MedicineServiceImpl.convertToDTO, applied to every row of the medicine lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedicineConversionBenchmark {
+
+    private MedicineServiceImpl medicineService;
+    private Medicine medicine;
+
+    @Setup
+    public void setUp() {
+        medicineService = new MedicineServiceImpl(null, null);
+
+        Company company = new Company();
+        company.setCompanyId("COMP-001");
+        company.setName("PharmaCorp");
+
+        medicine = new Medicine();
+        medicine.setId(1L);
+        medicine.setMedicineId("MED-001");
+        medicine.setName("Amoxicillin");
+        medicine.setCategory("Antibiotics");
+        medicine.setDescription("Broad-spectrum penicillin antibiotic");
+        medicine.setManufacturer("PharmaCorp");
+        medicine.setBatchNumber("BATCH-2024-001");
+        medicine.setExpiryDate(LocalDate.now().plusYears(1));
+        medicine.setStock(150);
+        medicine.setStockStatus("Normal");
+        medicine.setPrice(new BigDecimal("12.50"));
+        medicine.setRequiresPrescription(true);
+        medicine.setDosageForm("Capsule");
+        medicine.setStrength("500mg");
+        medicine.setInteractions(List.of("Methotrexate", "Warfarin"));
+        medicine.setSideEffects(List.of("Nausea", "Rash", "Diarrhea"));
+        medicine.setCompany(company);
+    }
+
+    @Benchmark
+    public MedicineDTO convertToDTO() {
+        return medicineService.convertToDTO(medicine);
+    }
+}
@@ -0,0 +1,63 @@
+package com.hospital.pharmacy.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts the application's DataSource behind the per-class connection quotas
+ * and, if enabled, the connection admission semaphore.
+ *
+ * Works on whichever DataSource is in use, Spring Boot's own pool or the
+ * primary/replica router. Pool metrics still find the Hikari pools behind
+ * the wrapper.
+ */
+@Configuration
+public class BulkheadConfig {
+
+    // Static, so the post-processor does not pull this configuration and its dependencies in early
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor(ObjectProvider<PriorityBulkheads> bulkheads,
+                                                                    Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof BulkheadDataSource)) {
+                    int permits = 0;
+                    if (environment.getProperty("app.datasource.admission.enabled", Boolean.class, false)) {
+                        permits = environment.getProperty("app.datasource.admission.permits", Integer.class,
+                                environment.getProperty("spring.datasource.hikari.maximum-pool-size",
+                                        Integer.class, 10));
+                    }
+                    return new BulkheadDataSource(dataSource, bulkheads, permits,
+                            environment.getProperty("app.datasource.admission.wait-ms", Long.class, 60000L));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder connectionAdmissionMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof BulkheadDataSource bulkheadDataSource
+                    && bulkheadDataSource.isAdmissionEnabled()) {
+                Gauge.builder("clinixpro.datasource.admission.waiting", bulkheadDataSource,
+                                BulkheadDataSource::getAdmissionWaiting)
+                        .description("Callers queued for a database connection permit")
+                        .register(registry);
+                Gauge.builder("clinixpro.datasource.admission.available", bulkheadDataSource,
+                                BulkheadDataSource::getAdmissionAvailable)
+                        .description("Database connection permits not in use")
+                        .register(registry);
+            }
+        };
+    }
+}
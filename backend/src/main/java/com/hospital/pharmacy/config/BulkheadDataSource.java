@@ -0,0 +1,170 @@
+package com.hospital.pharmacy.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the connections opened for a classified request against its class's
+ * quota, and gives the share back when the connection is closed.
+ *
+ * Wraps the application's DataSource (see BulkheadConfig). Connections
+ * opened outside a request, including while the application starts, are not
+ * counted.
+ *
+ * With admission enabled every connection, classified or not, first takes a
+ * permit from a fair semaphore sized like the pool. Callers beyond the pool
+ * then queue here, in arrival order and for as long as the admission wait,
+ * instead of in the pool where they would fail after its connection timeout;
+ * that matters once requests run on virtual threads and thousands of them can
+ * ask for a connection at once.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    // Looked up on the first classified connection, long after the DataSource is built
+    private final ObjectProvider<PriorityBulkheads> bulkheads;
+
+    // Null when admission is disabled
+    private final Semaphore admission;
+    private final long admissionWaitMs;
+    private final AtomicInteger admissionWaiting = new AtomicInteger();
+
+    public BulkheadDataSource(DataSource targetDataSource, ObjectProvider<PriorityBulkheads> bulkheads) {
+        this(targetDataSource, bulkheads, 0, 0);
+    }
+
+    public BulkheadDataSource(DataSource targetDataSource, ObjectProvider<PriorityBulkheads> bulkheads,
+                              int admissionPermits, long admissionWaitMs) {
+        super(targetDataSource);
+        this.bulkheads = bulkheads;
+        this.admission = admissionPermits > 0 ? new Semaphore(admissionPermits, true) : null;
+        this.admissionWaitMs = admissionWaitMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return open(super::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return open(() -> super.getConnection(username, password));
+    }
+
+    /**
+     * Whether connections go through the admission semaphore
+     * @return true if app.datasource.admission.enabled
+     */
+    public boolean isAdmissionEnabled() {
+        return admission != null;
+    }
+
+    /**
+     * Callers waiting for an admission permit
+     * @return Number of waiting callers
+     */
+    public int getAdmissionWaiting() {
+        return admissionWaiting.get();
+    }
+
+    /**
+     * Admission permits not in use
+     * @return Free permits, 0 when admission is disabled
+     */
+    public int getAdmissionAvailable() {
+        return admission != null ? admission.availablePermits() : 0;
+    }
+
+    private Connection open(ConnectionSource source) throws SQLException {
+        RequestPriority priority = RequestPriority.current();
+        if (priority == null && admission == null) {
+            return source.get();
+        }
+        PriorityBulkheads quota = priority != null ? bulkheads.getObject() : null;
+        if (quota != null) {
+            quota.acquireConnection(priority);
+        }
+        try {
+            admit();
+            try {
+                return counted(source.get(), quota, priority);
+            } catch (SQLException | RuntimeException e) {
+                if (admission != null) {
+                    admission.release();
+                }
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (quota != null) {
+                quota.releaseConnection(priority);
+            }
+            throw e;
+        }
+    }
+
+    private void admit() throws SQLException {
+        if (admission == null) {
+            return;
+        }
+        boolean admitted;
+        admissionWaiting.incrementAndGet();
+        try {
+            admitted = admission.tryAcquire(admissionWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        } finally {
+            admissionWaiting.decrementAndGet();
+        }
+        if (!admitted) {
+            throw new SQLTransientConnectionException(
+                    "No database connection became available within " + admissionWaitMs + "ms");
+        }
+    }
+
+    // Same connection, but its first close also returns the class's share and the admission permit
+    private Connection counted(Connection connection, PriorityBulkheads quota, RequestPriority priority) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName()) && args == null) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        if (quota != null) {
+                            quota.releaseConnection(priority);
+                        }
+                        if (admission != null) {
+                            admission.release();
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
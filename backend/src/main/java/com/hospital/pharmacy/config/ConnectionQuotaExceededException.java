@@ -0,0 +1,14 @@
+package com.hospital.pharmacy.config;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown when a request class has used up its share of database connections
+ * and none was returned within its wait. BulkheadFilter answers it with 429.
+ */
+public class ConnectionQuotaExceededException extends SQLTransientConnectionException {
+
+    public ConnectionQuotaExceededException(RequestPriority priority) {
+        super("Database connection quota of " + priority + " requests is exhausted");
+    }
+}
@@ -0,0 +1,133 @@
+package com.hospital.pharmacy.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether blocking work runs on virtual or platform threads.
+ *
+ * Virtual threads are opt-in (app.threads.virtual, set by the virtual-threads
+ * profile) and only used when the JVM has them, i.e. Java 21 or later. The
+ * application is still built for Java 17, so they are reached by reflection;
+ * on an older JVM the setting logs a warning and everything stays on platform
+ * threads.
+ *
+ * Virtual threads make waiting cheap, not databases bigger: pools that hand
+ * blocking work to them should keep a bound on it, and connections are
+ * rationed by app.datasource.admission.* rather than by the number of threads.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class ExecutionThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionThreads.class);
+
+    @Value("${app.threads.virtual:false}")
+    private boolean virtualRequested;
+
+    private boolean virtual;
+
+    @PostConstruct
+    public void init() {
+        virtual = virtualRequested && isVirtualSupported();
+        if (virtualRequested && !virtual) {
+            logger.warn("Virtual threads requested but Java {} does not support them, using platform threads",
+                    Runtime.version().feature());
+        } else if (virtual) {
+            logger.info("Running request handling and fan-out work on virtual threads");
+        }
+    }
+
+    /**
+     * Whether blocking work runs on virtual threads
+     * @return true if requested and supported by the JVM
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Thread factory for a worker pool
+     * @param namePrefix Prefix of the thread names, e.g. "timeline-query-"
+     * @return Virtual threads in virtual mode, daemon platform threads otherwise
+     */
+    public ThreadFactory threadFactory(String namePrefix) {
+        return virtual ? virtualThreadFactory(namePrefix) : platformThreadFactory(namePrefix);
+    }
+
+    /**
+     * Executor that starts a new thread for every task
+     * @param namePrefix Prefix of the thread names
+     * @return An unbounded per-task executor in virtual mode, or null in platform mode
+     */
+    public ExecutorService newPerTaskExecutor(String namePrefix) {
+        return virtual ? newVirtualPerTaskExecutor(namePrefix) : null;
+    }
+
+    /**
+     * Whether the running JVM has virtual threads
+     * @return true on Java 21 or later
+     */
+    public static boolean isVirtualSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Factory of virtual threads named prefix + sequence number
+     * @param namePrefix Prefix of the thread names
+     * @return The factory
+     * @throws IllegalStateException If the JVM has no virtual threads
+     */
+    public static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Executor that starts a new virtual thread for every task
+     * @param namePrefix Prefix of the thread names
+     * @return The executor
+     * @throws IllegalStateException If the JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = virtualThreadFactory(namePrefix);
+        try {
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.hospital.pharmacy.config;
+
+import io.micrometer.common.KeyValues;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+
+/**
+ * Metrics setup exposed at /actuator/prometheus.
+ *
+ * Spring Boot already times every request (http.server.requests) and binds
+ * the Hikari pools and Caffeine caches; this adds the caller's role to the
+ * request timer so latency can be broken down per role.
+ */
+@Configuration
+@EnableCaching
+public class MetricsConfig {
+
+    private static final String ANONYMOUS_ROLE = "ANONYMOUS";
+
+    @Bean
+    public ServerRequestObservationConvention roleTaggingObservationConvention() {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                // Set by JwtRequestFilter; read when the observation stops, after the chain ran
+                Object role = context.getCarrier().getAttribute("role");
+                return super.getLowCardinalityKeyValues(context)
+                        .and("role", role != null ? role.toString() : ANONYMOUS_ROLE);
+            }
+        };
+    }
+}
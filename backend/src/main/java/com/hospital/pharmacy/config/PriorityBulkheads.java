@@ -0,0 +1,250 @@
+package com.hospital.pharmacy.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-class limits on concurrent requests and database connections.
+ *
+ * Each class has its own compartment, configured under
+ * app.bulkhead.&lt;class&gt;.*: how many of its requests run at once, how many
+ * may wait for a slot and for how long, and how many connections its
+ * requests may hold together. A limit of 0 means unlimited, which is the
+ * default for clinical work, so only the other classes ever wait or get
+ * turned away. The connection limits are shares of the pool: with both
+ * lower classes at their limit, clinical requests still find the rest of it.
+ *
+ * Requests are classified by path first (app.bulkhead.clinical-paths,
+ * app.bulkhead.administrative-paths), then by role: an admin's request is
+ * administrative, anything else standard.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class PriorityBulkheads {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Map<RequestPriority, Compartment> compartments = new EnumMap<>(RequestPriority.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.bulkhead.clinical-paths:/doctor/**}")
+    private List<String> clinicalPaths;
+
+    @Value("${app.bulkhead.administrative-paths:/admin/**}")
+    private List<String> administrativePaths;
+
+    @Value("${app.bulkhead.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    @PostConstruct
+    public void init() {
+        for (RequestPriority priority : RequestPriority.values()) {
+            String prefix = "app.bulkhead." + priority.name().toLowerCase() + ".";
+            Compartment compartment = new Compartment(
+                    environment.getProperty(prefix + "max-concurrent", Integer.class, 0),
+                    environment.getProperty(prefix + "max-queue", Integer.class, 0),
+                    environment.getProperty(prefix + "max-wait-ms", Long.class, 0L),
+                    environment.getProperty(prefix + "db-connections", Integer.class, 0),
+                    environment.getProperty(prefix + "db-wait-ms", Long.class, 5000L));
+            compartments.put(priority, compartment);
+            register(priority, compartment);
+        }
+    }
+
+    /**
+     * Choose the class of a request
+     * @param path Path within the application, e.g. /doctor/beds
+     * @param role Role of the caller, comma-separated if several, or null if anonymous
+     * @return The request's priority class
+     */
+    public RequestPriority classify(String path, String role) {
+        if (matches(clinicalPaths, path)) {
+            return RequestPriority.CLINICAL;
+        }
+        if (matches(administrativePaths, path)) {
+            return RequestPriority.ADMINISTRATIVE;
+        }
+        if (role != null && Arrays.asList(role.split(",")).contains("ADMIN")) {
+            return RequestPriority.ADMINISTRATIVE;
+        }
+        return RequestPriority.STANDARD;
+    }
+
+    /**
+     * Take a request slot, waiting up to the class's max wait if its queue has room
+     * @param priority Class of the request
+     * @return true if admitted; the caller must then call {@link #exit}
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean enter(RequestPriority priority) throws InterruptedException {
+        Compartment compartment = compartments.get(priority);
+        if (compartment.requests != null && !compartment.requests.tryAcquire()) {
+            if (compartment.waiting.incrementAndGet() > compartment.maxQueue) {
+                compartment.waiting.decrementAndGet();
+                compartment.rejectedRequests.increment();
+                return false;
+            }
+            boolean admitted;
+            try {
+                admitted = compartment.requests.tryAcquire(compartment.maxWaitMs, TimeUnit.MILLISECONDS);
+            } finally {
+                compartment.waiting.decrementAndGet();
+            }
+            if (!admitted) {
+                compartment.rejectedRequests.increment();
+                return false;
+            }
+        }
+        compartment.active.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Give back a request slot taken by {@link #enter}
+     * @param priority Class of the request
+     */
+    public void exit(RequestPriority priority) {
+        Compartment compartment = compartments.get(priority);
+        compartment.active.decrementAndGet();
+        if (compartment.requests != null) {
+            compartment.requests.release();
+        }
+    }
+
+    /**
+     * Count a connection against the class's quota, waiting up to its db wait for one to be returned
+     * @param priority Class of the request opening the connection
+     * @throws ConnectionQuotaExceededException If the quota stays exhausted for the whole wait
+     */
+    public void acquireConnection(RequestPriority priority) throws ConnectionQuotaExceededException {
+        Compartment compartment = compartments.get(priority);
+        if (compartment.connections != null) {
+            boolean acquired;
+            try {
+                acquired = compartment.connections.tryAcquire(compartment.dbWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                compartment.rejectedConnections.increment();
+                throw new ConnectionQuotaExceededException(priority);
+            }
+        }
+        compartment.activeConnections.incrementAndGet();
+    }
+
+    /**
+     * Return a connection counted by {@link #acquireConnection}
+     * @param priority Class the connection was counted against
+     */
+    public void releaseConnection(RequestPriority priority) {
+        Compartment compartment = compartments.get(priority);
+        compartment.activeConnections.decrementAndGet();
+        if (compartment.connections != null) {
+            compartment.connections.release();
+        }
+    }
+
+    /**
+     * Seconds a rejected client should wait before retrying
+     * @return Value for the Retry-After header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private boolean matches(List<String> patterns, String path) {
+        return patterns.stream().anyMatch(pattern -> pathMatcher.match(pattern.trim(), path));
+    }
+
+    private void register(RequestPriority priority, Compartment compartment) {
+        String name = priority.name();
+        Gauge.builder("clinixpro.bulkhead.active", compartment.active, AtomicInteger::get)
+                .description("Requests of the class running")
+                .tag("class", name)
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.bulkhead.queued", compartment.waiting, AtomicInteger::get)
+                .description("Requests of the class waiting for a slot")
+                .tag("class", name)
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.bulkhead.saturation", compartment,
+                        c -> saturation(c.active.get(), c.maxConcurrent))
+                .description("Running requests as a share of the class's limit; 0 when unlimited")
+                .tag("class", name)
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.bulkhead.db.active", compartment.activeConnections, AtomicInteger::get)
+                .description("Database connections held by requests of the class")
+                .tag("class", name)
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.bulkhead.db.saturation", compartment,
+                        c -> saturation(c.activeConnections.get(), c.maxConnections))
+                .description("Connections held as a share of the class's quota; 0 when unlimited")
+                .tag("class", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.bulkhead.rejected", compartment.rejectedRequests, LongAdder::sum)
+                .description("Requests turned away with 429")
+                .tag("class", name)
+                .tag("resource", "request")
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.bulkhead.rejected", compartment.rejectedConnections, LongAdder::sum)
+                .description("Requests turned away with 429")
+                .tag("class", name)
+                .tag("resource", "connection")
+                .register(meterRegistry);
+    }
+
+    private static double saturation(int used, int limit) {
+        return limit <= 0 ? 0 : (double) used / limit;
+    }
+
+    private static class Compartment {
+        private final int maxConcurrent;
+        private final int maxQueue;
+        private final long maxWaitMs;
+        private final int maxConnections;
+        private final long dbWaitMs;
+        // Null when unlimited
+        private final Semaphore requests;
+        private final Semaphore connections;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger activeConnections = new AtomicInteger();
+        private final LongAdder rejectedRequests = new LongAdder();
+        private final LongAdder rejectedConnections = new LongAdder();
+
+        private Compartment(int maxConcurrent, int maxQueue, long maxWaitMs, int maxConnections, long dbWaitMs) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueue = maxQueue;
+            this.maxWaitMs = maxWaitMs;
+            this.maxConnections = maxConnections;
+            this.dbWaitMs = dbWaitMs;
+            this.requests = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+            this.connections = maxConnections > 0 ? new Semaphore(maxConnections, true) : null;
+        }
+    }
+}
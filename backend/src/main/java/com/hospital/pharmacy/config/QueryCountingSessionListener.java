@@ -0,0 +1,36 @@
+package com.hospital.pharmacy.config;
+
+import com.hospital.pharmacy.util.RequestQueryStats;
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session listener that feeds RequestQueryStats.
+ *
+ * Registered through hibernate.session.events.auto, so Hibernate creates one
+ * instance per session; a session is only used by one thread at a time.
+ */
+public class QueryCountingSessionListener extends BaseSessionEventListener {
+
+    private long executeStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestQueryStats.recordStatement(System.nanoTime() - executeStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestQueryStats.recordStatement(System.nanoTime() - batchStart);
+    }
+}
@@ -0,0 +1,72 @@
+package com.hospital.pharmacy.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes JDBC connections between the primary pool and the read replica.
+ *
+ * A connection goes to the replica when the current request is a read (GET)
+ * or, outside of any web request, when the surrounding transaction is
+ * read-only. Mutating requests and sessions that wrote recently always use
+ * the primary so callers read their own writes.
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the read-only flag of
+ * the transaction is known by the time a physical connection is fetched.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private static final ThreadLocal<Route> requestRoute = new ThreadLocal<>();
+
+    /**
+     * Set the route chosen for the current web request
+     * @param route Route decided from the HTTP method and session stickiness
+     */
+    public static void setRequestRoute(Route route) {
+        requestRoute.set(route);
+    }
+
+    /**
+     * Clear the route of the current web request
+     */
+    public static void clearRequestRoute() {
+        requestRoute.remove();
+    }
+
+    /**
+     * Route set for the current web request, so work handed to other threads can keep it
+     * @return The request route, or null outside a routed request
+     */
+    public static Route requestRoute() {
+        return requestRoute.get();
+    }
+
+    /**
+     * Route the next connection of the current thread will use
+     * @return PRIMARY or REPLICA
+     */
+    public static Route currentRoute() {
+        Route route = requestRoute.get();
+        if (route != null) {
+            return route;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+}
@@ -0,0 +1,66 @@
+package com.hospital.pharmacy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which sessions wrote to the primary recently.
+ *
+ * Replication lag means a replica may not yet have a row a user just
+ * created. Sessions are keyed by their bearer token and pinned to the
+ * primary for a short window after every mutating request.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReplicaSessionTracker {
+
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    @Value("${app.datasource.replica.sticky-window-ms:5000}")
+    private long stickyWindowMs;
+
+    /**
+     * Record a write made by a session
+     * @param sessionKey Bearer token (or other session key) of the writer
+     */
+    public void recordWrite(String sessionKey) {
+        if (sessionKey == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lastWrites.put(sessionKey, now);
+        if (lastWrites.size() > CLEANUP_THRESHOLD) {
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt > stickyWindowMs);
+        }
+    }
+
+    /**
+     * Check whether a session must still read from the primary
+     * @param sessionKey Bearer token (or other session key) of the reader
+     * @return true if the session wrote within the sticky window
+     */
+    public boolean isPinnedToPrimary(String sessionKey) {
+        if (sessionKey == null) {
+            return false;
+        }
+        Long writtenAt = lastWrites.get(sessionKey);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - writtenAt > stickyWindowMs) {
+            lastWrites.remove(sessionKey, writtenAt);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.hospital.pharmacy.config;
+
+/**
+ * Priority class of a web request, used to keep bulk and administrative
+ * traffic from starving clinical work of request slots and database
+ * connections.
+ *
+ * The class is chosen by BulkheadFilter and kept for the current thread, the
+ * same way ReadWriteRoutingDataSource keeps the request's route. Threads that
+ * do not serve a request (schedulers, report jobs) have no class and are not
+ * limited.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public enum RequestPriority {
+    CLINICAL, STANDARD, ADMINISTRATIVE;
+
+    private static final ThreadLocal<RequestPriority> current = new ThreadLocal<>();
+
+    /**
+     * Set the priority class of the current request
+     * @param priority Class chosen for the request
+     */
+    public static void set(RequestPriority priority) {
+        current.set(priority);
+    }
+
+    /**
+     * Clear the priority class of the current request
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * Priority class of the current request, so work handed to other threads can keep it
+     * @return The class, or null outside a classified request
+     */
+    public static RequestPriority current() {
+        return current.get();
+    }
+}
@@ -0,0 +1,12 @@
+package com.hospital.pharmacy.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (email outbox dispatcher, ...).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -49,6 +49,7 @@ public class SecurityConfig {
                                                 .requestMatchers("/doctor/**").hasRole("DOCTOR")
                                                 .requestMatchers("/pharmacist/**").hasRole("PHARMACIST")
                                                 .requestMatchers("/receptionist/**").hasRole("RECEPTIONIST")
+                                                .requestMatchers("/actuator/prometheus", "/actuator/metrics/**").hasRole("ADMIN")
 
                                                 // Allow OPTIONS requests for CORS
                                                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -0,0 +1,41 @@
+package com.hospital.pharmacy.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs request handling on virtual threads when ExecutionThreads is in
+ * virtual mode: Tomcat's request threads, and the threads that write
+ * streamed responses. In platform mode both keep Spring Boot's defaults.
+ */
+@Configuration
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ExecutionThreads executionThreads;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            ExecutorService executor = executionThreads.newPerTaskExecutor("http-");
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        ExecutorService executor = executionThreads.newPerTaskExecutor("mvc-async-");
+        if (executor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+    }
+}
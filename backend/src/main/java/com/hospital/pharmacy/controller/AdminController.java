@@ -1,36 +1,60 @@
 package com.hospital.pharmacy.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.dto.OccupancyForecastDTO;
 import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.ReportJob;
+import com.hospital.pharmacy.model.StoredFile;
 import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.AppointmentRepository;
 import com.hospital.pharmacy.repository.MedicineRepository;
 import com.hospital.pharmacy.repository.PatientRepository;
 import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.AccountsReceivableService;
+import com.hospital.pharmacy.service.ClaimBatchService;
+import com.hospital.pharmacy.service.ClinicalSearchService;
+import com.hospital.pharmacy.service.DataArchiveService;
+import com.hospital.pharmacy.service.FileStorageService;
+import com.hospital.pharmacy.service.OccupancyAnalyticsService;
+import com.hospital.pharmacy.service.PayerService;
+import com.hospital.pharmacy.service.ReportJobService;
+import com.hospital.pharmacy.service.TokenRevocationService;
 import com.hospital.pharmacy.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import com.hospital.pharmacy.config.AppConfig;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/admin")
@@ -39,12 +63,8 @@ public class AdminController {
 
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
 
-    // Define the upload directory
-    // You might want to make this configurable
-    private final String uploadDir = "./uploads/profileImages/";
-
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private ObjectMapper objectMapper;
 
     @Autowired
     private UserRepository userRepository;
@@ -61,6 +81,36 @@ public class AdminController {
     @Autowired
     private MedicineRepository medicineRepository;
 
+    @Autowired
+    private OccupancyAnalyticsService occupancyAnalyticsService;
+
+    @Autowired
+    private ClinicalSearchService clinicalSearchService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
+    @Autowired
+    private ClaimBatchService claimBatchService;
+
+    @Autowired
+    private PayerService payerService;
+
+    @Autowired
+    private DataArchiveService dataArchiveService;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Value("${app.storage.max-image-bytes:5242880}")
+    private long maxImageBytes;
+
     // Dashboard Statistics
     @GetMapping("/dashboard")
     public ResponseEntity<?> getDashboardStats(Authentication authentication) {
@@ -108,50 +158,19 @@ public class AdminController {
     public ResponseEntity<?> createUser(@RequestBody User newUser) {
         try {
             logger.info("Creating new user with email: {}, role: {}", newUser.getEmail(), newUser.getRole());
-
-            if (userRepository.existsByEmail(newUser.getEmail())) {
-                logger.warn("Email already in use: {}", newUser.getEmail());
-                return ResponseEntity.badRequest()
-                        .body(Map.of("message", "Email already in use"));
-            }
-
-            // Generate a unique userId based on role
-            String userId;
-            switch (newUser.getRole().toUpperCase()) {
-                case "DOCTOR":
-                    userId = "DOC-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                    break;
-                case "PHARMACIST":
-                    userId = "PHM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                    break;
-                case "RECEPTIONIST":
-                    userId = "RCP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                    break;
-                case "ADMIN":
-                    userId = "ADM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                    break;
-                default:
-                    userId = "USR-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-            }
-
-            newUser.setUserId(userId);
-
-            // Before saving, ensure isActive is explicitly set
-            newUser.setActive(true);
-
-            // Hash the password before saving
-            String hashedPassword = passwordEncoder.encode(newUser.getPassword());
-            newUser.setPassword(hashedPassword);
-
-            // Set creation timestamps
-            newUser.setCreatedAt(LocalDateTime.now());
-            newUser.setUpdatedAt(LocalDateTime.now());
-
-            // Save the user
-            User savedUser = userRepository.save(newUser);
+            User savedUser = userService.register(newUser);
             logger.info("User created successfully: {}", savedUser.getUserId());
 
             return ResponseEntity.status(HttpStatus.CREATED).body(savedUser);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Email already in use: {}", newUser.getEmail());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            // The password hashing pool is full
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error creating user", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -181,7 +200,8 @@ public class AdminController {
     @PreAuthorize("hasRole('ADMIN') or #id == authentication.principal.id")
     public ResponseEntity<?> uploadProfileImage(
             @PathVariable Long id,
-            @RequestParam("imageFile") MultipartFile imageFile) {
+            @RequestParam("imageFile") MultipartFile imageFile,
+            HttpServletRequest request) {
         try {
             logger.info("Uploading profile image for user with ID: {}", id);
 
@@ -200,27 +220,11 @@ public class AdminController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Cannot upload empty file"));
             }
 
-            // Create the upload directory if it doesn't exist
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Generate a unique filename to avoid conflicts
-            String originalFilename = imageFile.getOriginalFilename();
-            String fileExtension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            }
-            String uniqueFilename = id + "-" + UUID.randomUUID().toString().substring(0, 8) + fileExtension;
-            Path filePath = uploadPath.resolve(uniqueFilename);
-
-            // Save the file to the upload directory
-            Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            // Construct the URL to access the image
-            // Assuming the 'uploads' directory is served statically
-            String imageUrl = "/uploads/profileImages/" + uniqueFilename;
+            // Content-addressed, so re-uploading the same picture stores nothing new
+            StoredFile stored = fileStorageService.store(
+                    imageFile.getInputStream(), FileStorageService.IMAGE_TYPES, maxImageBytes);
+            String imageUrl = request.getContextPath() + "/files/" + stored.getHash();
+            String thumbnailUrl = imageUrl + "/thumbnails/" + fileStorageService.getThumbnailSizes().get(0);
 
             // Update user's profileImage field in the database
             return userRepository.findById(id)
@@ -228,11 +232,13 @@ public class AdminController {
                         user.setProfileImage(imageUrl);
                         userRepository.save(user);
                         logger.info("Profile image path updated for user {}: {}", id, imageUrl);
-                        return ResponseEntity.ok()
-                                .body(Map.of("message", "Profile image uploaded successfully", "imageUrl", imageUrl));
+                        return ResponseEntity.ok().body(Map.of("message", "Profile image uploaded successfully",
+                                "imageUrl", imageUrl, "thumbnailUrl", thumbnailUrl));
                     })
                     .orElse(ResponseEntity.notFound().build());
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (IOException e) {
             logger.error("Error saving profile image file for user {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -266,6 +272,8 @@ public class AdminController {
                             // Soft delete by setting isActive to false
                             user.setActive(false);
                             userRepository.save(user);
+                            // Otherwise their tokens keep working until they expire
+                            tokenRevocationService.revokeAllTokens(user.getEmail());
                             logger.info("User deactivated successfully: {}", user.getUserId());
                             return ResponseEntity.ok().body(Map.of("message", "User deactivated successfully"));
                         } catch (Exception e) {
@@ -375,4 +383,334 @@ public class AdminController {
                     .body(Map.of("message", "Error updating patient: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // Occupancy analytics - times are epoch milliseconds, ward is optional
+    @GetMapping("/analytics/occupancy")
+    public ResponseEntity<?> getOccupancyTrend(
+            @RequestParam long from,
+            @RequestParam long to,
+            @RequestParam(required = false) String ward) {
+        if (to <= from) {
+            return ResponseEntity.badRequest().body(Map.of("message", "'to' must be after 'from'"));
+        }
+        return ResponseEntity.ok(occupancyAnalyticsService.getOccupancyTrend(ward, from, to));
+    }
+
+    @GetMapping("/analytics/length-of-stay")
+    public ResponseEntity<?> getLengthOfStay(
+            @RequestParam long from,
+            @RequestParam long to,
+            @RequestParam(required = false) String ward) {
+        if (to <= from) {
+            return ResponseEntity.badRequest().body(Map.of("message", "'to' must be after 'from'"));
+        }
+        return ResponseEntity.ok(occupancyAnalyticsService.getLengthOfStay(ward, from, to));
+    }
+
+    // Forecast from the same hour of the week over the history range
+    @GetMapping("/analytics/occupancy/forecast")
+    public ResponseEntity<?> getOccupancyForecast(
+            @RequestParam long from,
+            @RequestParam long to,
+            @RequestParam(required = false) String ward,
+            @RequestParam(defaultValue = "24") int horizonHours) {
+        if (to <= from) {
+            return ResponseEntity.badRequest().body(Map.of("message", "'to' must be after 'from'"));
+        }
+        if (horizonHours < 1 || horizonHours > 24 * 31) {
+            return ResponseEntity.badRequest().body(Map.of("message", "horizonHours must be between 1 and 744"));
+        }
+        List<OccupancyForecastDTO> forecast =
+                occupancyAnalyticsService.forecastOccupancy(ward, from, to, horizonHours);
+        OccupancyForecastDTO peak = forecast.stream()
+                .max(Comparator.comparingDouble(OccupancyForecastDTO::getExpectedOccupancy))
+                .orElse(null);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("forecast", forecast);
+        response.put("peakHour", peak);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/search/clinical/stats")
+    public ResponseEntity<?> getClinicalSearchStats() {
+        return ResponseEntity.ok(clinicalSearchService.getStats());
+    }
+
+    // Rebuild after bulk imports or a synonym list change
+    @PostMapping("/search/clinical/rebuild")
+    public ResponseEntity<?> rebuildClinicalSearch() {
+        try {
+            clinicalSearchService.rebuild();
+            return ResponseEntity.ok(clinicalSearchService.getStats());
+        } catch (RuntimeException e) {
+            logger.error("Clinical search rebuild failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Rebuild failed: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/billing/receivables/aging")
+    public ResponseEntity<?> getReceivablesAging() {
+        try {
+            return ResponseEntity.ok(accountsReceivableService.getAgingSummary());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/billing/receivables/top-overdue")
+    public ResponseEntity<?> getTopOverduePatients(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 500"));
+        }
+        try {
+            return ResponseEntity.ok(accountsReceivableService.getTopOverdue(limit));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/billing/receivables/patients/{id}")
+    public ResponseEntity<?> getPatientReceivable(@PathVariable Long id) {
+        try {
+            return accountsReceivableService.getPatientBalance(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.ok(Map.of("id", id, "outstanding", BigDecimal.ZERO)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // CSV of patients to send payment reminders to, streamed as it is written
+    @GetMapping("/billing/receivables/dunning")
+    public ResponseEntity<StreamingResponseBody> exportDunningList(
+            @RequestParam(defaultValue = "30") int minDaysOverdue,
+            @RequestParam(defaultValue = "0") BigDecimal minAmount) {
+        if (minDaysOverdue < 1) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(message("minDaysOverdue must be at least 1"));
+        }
+        // Fail fast with 503 rather than inside the stream
+        try {
+            accountsReceivableService.getAgingSummary();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.APPLICATION_JSON)
+                    .body(message(e.getMessage()));
+        }
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            int written = accountsReceivableService.writeDunningExport(minDaysOverdue, minAmount, writer);
+            logger.info("Dunning export wrote {} patients", written);
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"dunning-" + LocalDate.now() + ".csv\"")
+                .body(body);
+    }
+
+    // Spring MVC only streams a body declared as StreamingResponseBody, so errors of such endpoints are streamed too
+    private StreamingResponseBody message(String message) {
+        return out -> out.write(objectMapper.writeValueAsBytes(Map.of("message", message)));
+    }
+
+    // Re-ages and reconciles now instead of waiting for the nightly rebuild
+    @PostMapping("/billing/receivables/rebuild")
+    public ResponseEntity<?> rebuildReceivables() {
+        try {
+            accountsReceivableService.reload();
+            return ResponseEntity.ok(accountsReceivableService.getAgingSummary());
+        } catch (RuntimeException e) {
+            logger.error("Accounts receivable rebuild failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Rebuild failed: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/claims/payers")
+    public ResponseEntity<?> getPayers() {
+        return ResponseEntity.ok(payerService.getPayers());
+    }
+
+    // Builds in the background; poll the batch until it is COMPLETED
+    @PostMapping("/claims/batches")
+    public ResponseEntity<?> startClaimBatch(
+            @RequestParam String payer,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(claimBatchService.startBuild(payer, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/claims/batches")
+    public ResponseEntity<?> getClaimBatches(
+            @RequestParam(required = false) String payer,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 500"));
+        }
+        return ResponseEntity.ok(claimBatchService.getBatches(payer, limit));
+    }
+
+    @GetMapping("/claims/batches/{id}")
+    public ResponseEntity<?> getClaimBatch(@PathVariable Long id) {
+        return claimBatchService.getBatch(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/claims/batches/{id}/resume")
+    public ResponseEntity<?> resumeClaimBatch(@PathVariable Long id) {
+        try {
+            return claimBatchService.resume(id)
+                    .<ResponseEntity<?>>map(batch -> ResponseEntity.status(HttpStatus.ACCEPTED).body(batch))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/claims/batches/{id}/file")
+    public ResponseEntity<?> downloadClaimBatch(@PathVariable Long id) {
+        try {
+            Optional<Path> file = claimBatchService.getBatchFile(id);
+            if (file.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "plain", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + file.get().getFileName() + "\"")
+                    .body(new FileSystemResource(file.get()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/claims/batches/{id}/submitted")
+    public ResponseEntity<?> markClaimBatchSubmitted(@PathVariable Long id) {
+        try {
+            return claimBatchService.markSubmitted(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/claims/bills/{billId}")
+    public ResponseEntity<?> getClaimForBill(@PathVariable Long billId) {
+        return claimBatchService.getClaimForBill(billId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/claims/bills/{billId}/status")
+    public ResponseEntity<?> updateClaimStatus(@PathVariable Long billId, @RequestBody Map<String, String> payload) {
+        try {
+            return claimBatchService.updateClaimStatus(billId, payload.get("status"), payload.get("note"))
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Any report type, including DUNNING with minDaysOverdue and minAmount; poll the job until it is COMPLETED
+    @PostMapping("/reports/jobs")
+    public ResponseEntity<?> submitReportJob(@RequestParam String type,
+                                             @RequestParam(required = false) String minDaysOverdue,
+                                             @RequestParam(required = false) String minAmount,
+                                             Authentication authentication) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("minDaysOverdue", minDaysOverdue);
+        parameters.put("minAmount", minAmount);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(reportJobService.submit(type, parameters, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reports/jobs")
+    public ResponseEntity<?> getReportJobs(
+            @RequestParam(required = false) String requestedBy,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 500"));
+        }
+        return ResponseEntity.ok(reportJobService.getJobs(requestedBy, limit));
+    }
+
+    @GetMapping("/reports/jobs/{id}")
+    public ResponseEntity<?> getReportJob(@PathVariable Long id) {
+        return reportJobService.getJob(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/reports/jobs/{id}/file")
+    public ResponseEntity<?> downloadReportJob(@PathVariable Long id) {
+        try {
+            Optional<Path> file = reportJobService.getJobFile(id);
+            if (file.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String contentType = reportJobService.getJob(id).map(ReportJob::getContentType).orElseThrow();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(contentType))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + file.get().getFileName() + "\"")
+                    .body(new FileSystemResource(file.get()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/archive/partitions")
+    public ResponseEntity<?> getArchivedPartitions() {
+        return ResponseEntity.ok(dataArchiveService.getPartitions());
+    }
+
+    // month is yyyy-MM
+    @PostMapping("/archive/{table}/{month}")
+    public ResponseEntity<?> archiveMonth(@PathVariable String table, @PathVariable String month) {
+        try {
+            return ResponseEntity.ok(dataArchiveService.archiveMonth(table, YearMonth.parse(month)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/archive/{table}/{month}/restore")
+    public ResponseEntity<?> restoreMonth(@PathVariable String table, @PathVariable String month) {
+        try {
+            return dataArchiveService.restoreMonth(table, YearMonth.parse(month))
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Runs the nightly retention job now
+    @PostMapping("/archive/retention")
+    public ResponseEntity<?> applyArchiveRetention() {
+        return ResponseEntity.ok(Map.of("archived", dataArchiveService.applyRetention()));
+    }
+}
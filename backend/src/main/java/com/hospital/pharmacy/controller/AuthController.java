@@ -1,24 +1,32 @@
 package com.hospital.pharmacy.controller;
 
+import com.hospital.pharmacy.filter.RateLimitFilter;
 import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.UserRepository;
 
+import com.hospital.pharmacy.service.PasswordHashingService;
 import com.hospital.pharmacy.service.PasswordResetService;
+import com.hospital.pharmacy.service.RateLimitService;
+import com.hospital.pharmacy.service.TokenRevocationService;
+import com.hospital.pharmacy.service.UserService;
 import com.hospital.pharmacy.util.JwtUtil;
 
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
@@ -32,47 +40,87 @@ public class AuthController {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private PasswordEncoder passwordEncoder; // Added
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private PasswordResetService resetService;
 
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private UserService userService;
+
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> credentials) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody Map<String, String> credentials,
+                                                      HttpServletRequest request) {
         String email = credentials.get("email");
         String password = credentials.get("password");
 
         logger.info("Login attempt for email: {}", email);
+        // Before the BCrypt check, so guessing one account's password stays slow; counted per address too,
+        // so failed attempts from elsewhere cannot lock the account's owner out
+        long waitMs = rateLimitService.tryAcquire("/auth/login", RateLimitService.KEY_ACCOUNT,
+                loginKey(email, request.getRemoteAddr()));
+        if (waitMs > 0) {
+            logger.warn("Too many login attempts for email: {}", email);
+            return CompletableFuture.completedFuture(
+                    tooManyRequests(waitMs, "Too many login attempts, try again later"));
+        }
         Optional<User> userOptional = userRepository.findByEmail(email);
 
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-
-            // ✅ Password check using BCrypt
-            if (!passwordEncoder.matches(password, user.getPassword())) {
-                logger.warn("Invalid password for email: {}", email);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("message", "Invalid email or password"));
-            }
-
-            String token = jwtUtil.generateToken(user);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
-            response.put("user", Map.of(
-                "id", user.getId(),
-                "userId", user.getUserId(),
-                "firstName", user.getFirstName(),
-                "lastName", user.getLastName(),
-                "email", user.getEmail(),
-                "role", user.getRole()
-            ));
-
-            logger.info("User with email {} logged in successfully", email);
-            return ResponseEntity.ok(response);
+        if (userOptional.isEmpty()) {
+            logger.warn("No user found with email: {}", email);
+            return CompletableFuture.completedFuture(invalidCredentials());
         }
+        User user = userOptional.get();
+
+        // ✅ Password check using BCrypt, on the hashing pool; the request thread is free meanwhile
+        return passwordHashingService.matchesAsync(password, user.getPassword())
+                .<ResponseEntity<?>>thenApply(matched -> {
+                    if (!matched) {
+                        logger.warn("Invalid password for email: {}", email);
+                        return invalidCredentials();
+                    }
+                    if (passwordHashingService.needsRehash(user.getPassword())) {
+                        passwordHashingService.rehashAsync(user.getId(), password, user.getPassword());
+                    }
+                    return loggedIn(user);
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof IllegalStateException) {
+                        logger.warn("Login for email {} refused: {}", email, cause.getMessage());
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, "1")
+                                .body(Map.of("message", cause.getMessage()));
+                    }
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                });
+    }
+
+    private ResponseEntity<?> loggedIn(User user) {
+        String token = jwtUtil.generateToken(user);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", token);
+        response.put("user", Map.of(
+            "id", user.getId(),
+            "userId", user.getUserId(),
+            "firstName", user.getFirstName(),
+            "lastName", user.getLastName(),
+            "email", user.getEmail(),
+            "role", user.getRole()
+        ));
+
+        logger.info("User with email {} logged in successfully", user.getEmail());
+        return ResponseEntity.ok(response);
+    }
 
-        logger.warn("No user found with email: {}", email);
+    private ResponseEntity<?> invalidCredentials() {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("message", "Invalid email or password"));
     }
@@ -88,7 +136,7 @@ public class AuthController {
             String token = authHeader.substring(7);
             String email = jwtUtil.extractUsername(token);
 
-            if (email != null) {
+            if (email != null && !isRevoked(token)) {
                 Optional<User> userOptional = userRepository.findByEmail(email);
                 if (userOptional.isPresent() && jwtUtil.validateToken(token, userOptional.get())) {
                     User user = userOptional.get();
@@ -117,39 +165,19 @@ public class AuthController {
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody User user) {
-        if (userRepository.existsByEmail(user.getEmail())) {
+        try {
+            User savedUser = userService.register(user);
+            logger.info("User registered successfully: {}", savedUser.getEmail());
+            return ResponseEntity.ok(Map.of("message", "User registered successfully"));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("message", "Email already in use"));
-        }
-
-        String userId;
-        switch (user.getRole().toUpperCase()) {
-            case "DOCTOR":
-                userId = "DOC-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                break;
-            case "PHARMACIST":
-                userId = "PHM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                break;
-            case "RECEPTIONIST":
-                userId = "RCP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                break;
-            case "ADMIN":
-                userId = "ADM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                break;
-            default:
-                userId = "USR-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            // The password hashing pool is full
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         }
-
-        user.setUserId(userId);
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        user.setIsActive(true);
-        user.setCreatedAt(LocalDateTime.now());
-        user.setUpdatedAt(LocalDateTime.now());
-
-        User savedUser = userRepository.save(user);
-        logger.info("User registered successfully: {}", savedUser.getEmail());
-
-        return ResponseEntity.ok(Map.of("message", "User registered successfully"));
     }
 
     @PostMapping("/create-admin")
@@ -165,7 +193,7 @@ public class AuthController {
         admin.setFirstName("Admin");
         admin.setLastName("User");
         admin.setEmail("admin@clinixpro.com");
-        admin.setPassword(passwordEncoder.encode("password"));
+        admin.setPassword(passwordHashingService.encode("password"));
         admin.setRole("ADMIN");
         admin.setIsActive(true);
         admin.setCreatedAt(LocalDateTime.now());
@@ -177,6 +205,27 @@ public class AuthController {
         return ResponseEntity.ok(Map.of("message", "Admin user created successfully"));
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader,
+                                    @RequestParam(defaultValue = "false") boolean everywhere) {
+        try {
+            // Only reached with a valid, unrevoked token
+            Claims claims = jwtUtil.extractAllClaims(authHeader.substring(7));
+            if (everywhere || claims.getId() == null) {
+                // Tokens issued before jti was added can only go with all the others
+                tokenRevocationService.revokeAllTokens(claims.getSubject());
+            } else {
+                tokenRevocationService.revokeToken(claims.getSubject(), claims.getId(), claims.getExpiration());
+            }
+            logger.info("User logged out{}: {}", everywhere ? " everywhere" : "", claims.getSubject());
+            return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
+        } catch (Exception e) {
+            logger.error("Logout error: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Failed to log out"));
+        }
+    }
+
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String authHeader) {
         try {
@@ -188,7 +237,7 @@ public class AuthController {
             String token = authHeader.substring(7);
             String email = jwtUtil.extractUsername(token);
 
-            if (email != null) {
+            if (email != null && !isRevoked(token)) {
                 Optional<User> userOptional = userRepository.findByEmail(email);
                 if (userOptional.isPresent() && jwtUtil.validateToken(token, userOptional.get())) {
                     return ResponseEntity.ok(Map.of("valid", true));
@@ -206,6 +255,11 @@ public class AuthController {
 
     @PostMapping("/forgot-password")
     public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> payload) {
+        long waitMs = rateLimitService.tryAcquire("/auth/forgot-password", RateLimitService.KEY_ACCOUNT,
+                accountKey(payload.get("email")));
+        if (waitMs > 0) {
+            return tooManyRequests(waitMs, "A reset link was requested recently, try again later");
+        }
         try {
             resetService.sendResetLink(payload.get("email"));
             return ResponseEntity.ok(Map.of("message", "Reset link sent to your email"));
@@ -230,5 +284,24 @@ public class AuthController {
                     .body(Map.of("message", "Failed to reset password"));
         }
     }
-}
 
+    private boolean isRevoked(String token) {
+        Claims claims = jwtUtil.extractAllClaims(token);
+        return tokenRevocationService.isRevoked(claims.getSubject(), claims.getId(), JwtUtil.issuedAt(claims));
+    }
+
+    private String accountKey(String email) {
+        return email != null ? email.trim().toLowerCase() : null;
+    }
+
+    private String loginKey(String email, String remoteAddr) {
+        String account = accountKey(email);
+        return account != null ? account + "|" + remoteAddr : null;
+    }
+
+    private ResponseEntity<?> tooManyRequests(long waitMs, String message) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimitFilter.retryAfterSeconds(waitMs)))
+                .body(Map.of("message", message));
+    }
+}
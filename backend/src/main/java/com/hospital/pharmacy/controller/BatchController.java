@@ -0,0 +1,53 @@
+package com.hospital.pharmacy.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.dto.BatchRequestDTO;
+import com.hospital.pharmacy.service.BatchRequestService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+/**
+ * Runs several GET requests in one round trip, e.g. everything a dashboard
+ * loads when it opens.
+ *
+ * Each sub-request is authorized as the caller, just as if it had been sent
+ * on its own, so a forbidden item gets 403 without failing the others. The
+ * response is newline-delimited JSON, one line per sub-request
+ * ({"id", "status", "contentType", "body"}) in the order they finish.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping(BatchRequestService.BATCH_PATH)
+public class BatchController {
+
+    @Autowired
+    private BatchRequestService batchRequestService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostMapping
+    public ResponseEntity<StreamingResponseBody> execute(@RequestBody BatchRequestDTO batch,
+                                                         HttpServletRequest request) {
+        try {
+            StreamingResponseBody body = batchRequestService.execute(batch.getRequests(), request);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            // Spring MVC only streams a body declared as StreamingResponseBody, so the error is streamed too
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> out.write(objectMapper.writeValueAsBytes(Map.of("message", e.getMessage()))));
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.hospital.pharmacy.controller;
 import com.hospital.pharmacy.model.Patient;
 import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.*;
+import com.hospital.pharmacy.service.RequestCoalescingService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -36,11 +38,22 @@ public class DataController {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private RequestCoalescingService requestCoalescingService;
+
     /**
      * Provides all basic statistics needed for the dashboard
      */
     @GetMapping("/dashboard-stats")
     public ResponseEntity<?> getDashboardStats() {
+        // Everyone opening a dashboard at shift change shares one run of these counts
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(requestCoalescingService.getJson("/data/dashboard-stats", Map.of(), null,
+                        this::buildDashboardStats));
+    }
+
+    private Map<String, Object> buildDashboardStats() {
         Map<String, Object> stats = new HashMap<>();
 
         // Users
@@ -77,7 +90,7 @@ public class DataController {
         stats.put("monthlySurgeries", 38); // Static data for now, could be from database
         stats.put("patientSatisfaction", "4.7/5"); // Static data for now, could be from database
 
-        return ResponseEntity.ok(stats);
+        return stats;
     }
 
     /**
@@ -2,13 +2,21 @@ package com.hospital.pharmacy.controller;
 
 import com.hospital.pharmacy.model.*;
 import com.hospital.pharmacy.repository.*;
+import com.hospital.pharmacy.service.BedBoardService;
+import com.hospital.pharmacy.service.BedService;
+import com.hospital.pharmacy.service.ClinicalSearchService;
+import com.hospital.pharmacy.service.PatientTimelineService;
+import com.hospital.pharmacy.service.RoomDirectoryService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -17,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Logger;
 
@@ -46,6 +55,21 @@ public class DoctorController {
     @Autowired
     private RoomRepository roomRepository;
 
+    @Autowired
+    private BedService bedService;
+
+    @Autowired
+    private RoomDirectoryService roomDirectoryService;
+
+    @Autowired
+    private BedBoardService bedBoardService;
+
+    @Autowired
+    private PatientTimelineService patientTimelineService;
+
+    @Autowired
+    private ClinicalSearchService clinicalSearchService;
+
     private static final Logger logger = Logger.getLogger(DoctorController.class.getName());
 
     // Doctor Dashboard Statistics
@@ -120,6 +144,65 @@ public class DoctorController {
         }
     }
 
+    // Patient's appointments, admissions, prescriptions, records and bills, newest first
+    @GetMapping("/patients/{id}/timeline")
+    public ResponseEntity<?> getPatientTimeline(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(required = false) Set<String> types) {
+
+        if (!patientRepository.existsById(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Patient not found"));
+        }
+        if (types != null && !PatientTimelineService.EVENT_TYPES.containsAll(types)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Event types must be among " + PatientTimelineService.EVENT_TYPES));
+        }
+
+        try {
+            return ResponseEntity.ok(patientTimelineService.getTimeline(id, cursor, limit, types));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.severe("Error retrieving timeline of patient " + id + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error retrieving timeline: " + e.getMessage()));
+        }
+    }
+
+    // Ranked search over record and prescription text, e.g. every diagnosis mentioning a condition this year
+    @GetMapping("/search/clinical")
+    public ResponseEntity<?> searchClinicalText(
+            @RequestParam String q,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Long doctorId,
+            @RequestParam(defaultValue = "false") boolean mine,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication authentication) {
+
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Search text is required"));
+        }
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 100"));
+        }
+        if (mine) {
+            doctorId = ((User) authentication.getPrincipal()).getId();
+        }
+
+        try {
+            return ResponseEntity.ok(clinicalSearchService.search(q, type, doctorId, from, to, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
     // Get doctor's appointments
     @GetMapping("/appointments")
     public ResponseEntity<?> getDoctorAppointments(
@@ -448,16 +531,13 @@ public class DoctorController {
         User doctor = (User) authentication.getPrincipal();
 
         try {
-            List<Bed> beds;
-
-            // Use the custom filter query if any parameters are provided
-            if (ward != null || status != null || search != null) {
-                beds = bedRepository.findByFilters(ward, status, search);
-            } else {
-                // Otherwise get all beds
-                beds = bedRepository.findAll();
+            // Ward and status filters are answered from the in-memory bed board;
+            // only free-text search still needs the database
+            if (search == null || search.trim().isEmpty()) {
+                return ResponseEntity.ok(bedBoardService.getBeds(ward, status));
             }
 
+            List<Bed> beds = bedRepository.findByFilters(ward, status, search);
             return ResponseEntity.ok(beds);
         } catch (Exception e) {
             e.printStackTrace();
@@ -466,6 +546,63 @@ public class DoctorController {
         }
     }
 
+    // Bed counts per ward and status
+    @GetMapping("/beds/board")
+    public ResponseEntity<?> getBedBoard() {
+        return ResponseEntity.ok(bedBoardService.getCounts());
+    }
+
+    // Live bed changes as server-sent events
+    @GetMapping(value = "/beds/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBedChanges() {
+        return bedBoardService.subscribe();
+    }
+
+    // Admit patient to the first free bed in a ward, optionally of a given room type
+    @PostMapping("/beds/admit")
+    public ResponseEntity<?> admitPatient(
+            @RequestBody Map<String, String> payload,
+            Authentication authentication) {
+
+        User doctor = (User) authentication.getPrincipal();
+
+        String ward = payload.get("ward");
+        String patientId = payload.get("patientId");
+        if (ward == null || ward.isEmpty() || patientId == null || patientId.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Ward and patient ID are required"));
+        }
+
+        Patient patient = patientRepository.findByPatientId(patientId).orElse(null);
+        if (patient == null) {
+            try {
+                patient = patientRepository.findById(Long.parseLong(patientId)).orElse(null);
+            } catch (NumberFormatException e) {
+                // Not a numeric ID either
+            }
+        }
+        if (patient == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Patient not found"));
+        }
+
+        String diagnosis = payload.get("diagnosis");
+        if (diagnosis == null || diagnosis.isEmpty()) {
+            diagnosis = "Under evaluation";
+        }
+
+        try {
+            Bed bed = bedService.admitToFreeBed(ward, payload.get("type"), patient.getId(), doctor, diagnosis);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "bedId", bed.getBedId(),
+                    "message", "Patient assigned to bed " + bed.getBedId()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     // Update bed status
     @PutMapping("/beds/{bedId}/status")
     public ResponseEntity<?> updateBedStatus(
@@ -486,8 +623,7 @@ public class DoctorController {
             return ResponseEntity.notFound().build();
         }
 
-        bed.setStatus(status);
-        bedRepository.save(bed);
+        bedService.updateStatus(bedId, status);
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -529,21 +665,17 @@ public class DoctorController {
                     .body(Map.of("message", "Patient not found"));
         }
 
-        // Update the bed
-        bed.setStatus("Occupied");
-        bed.setPatient(patient);
-        bed.setDoctor(doctor);
-        bed.setAdmissionDate(LocalDate.now().toString());
-
-        // Set diagnosis if provided
         String diagnosis = payload.get("diagnosis");
-        if (diagnosis != null && !diagnosis.isEmpty()) {
-            bed.setDiagnosis(diagnosis);
-        } else {
-            bed.setDiagnosis("Under evaluation");
+        if (diagnosis == null || diagnosis.isEmpty()) {
+            diagnosis = "Under evaluation";
         }
 
-        bedRepository.save(bed);
+        try {
+            bedService.assignPatient(bedId, patient.getId(), doctor, diagnosis);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", e.getMessage()));
+        }
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -569,13 +701,7 @@ public class DoctorController {
                     .body(Map.of("message", "Bed is not occupied"));
         }
 
-        // Update the bed
-        bed.setStatus("Available");
-        bed.setPatient(null);
-        bed.setAdmissionDate(null);
-        bed.setDiagnosis(null);
-
-        bedRepository.save(bed);
+        bedService.dischargePatient(bedId);
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -595,7 +721,7 @@ public class DoctorController {
         if (search != null && !search.trim().isEmpty()) {
             rooms = roomRepository.findByNameContainingIgnoreCaseOrNumberContainingIgnoreCase(search, search);
         } else if (ward != null && !ward.trim().isEmpty()) {
-            rooms = roomRepository.findByWard(ward);
+            rooms = roomDirectoryService.findByWard(ward);
         } else if (type != null && !type.trim().isEmpty()) {
             rooms = roomRepository.findByType(type);
         } else if (status != null && !status.trim().isEmpty()) {
@@ -607,28 +733,16 @@ public class DoctorController {
         return ResponseEntity.ok(rooms);
     }
 
+    // Capacity, occupancy and free beds per ward
+    @GetMapping("/wards/summary")
+    public ResponseEntity<?> getWardSummary() {
+        return ResponseEntity.ok(roomDirectoryService.getWardSummaries());
+    }
+
     @GetMapping("/rooms/{roomId}")
     public ResponseEntity<?> getRoomById(@PathVariable String roomId) {
-        // Normalize roomId format
-        String normalizedRoomId = roomId;
-        if (!roomId.startsWith("RM-")) {
-            // If it doesn't have the prefix, add it
-            normalizedRoomId = "RM-" + roomId;
-        }
-
-        // Try to find room by roomId
-        Optional<Room> roomOptional = roomRepository.findByRoomId(normalizedRoomId);
-
-        // If not found by roomId, try to find by room number
-        if (!roomOptional.isPresent() && !roomId.startsWith("RM-")) {
-            // Treat roomId as the room number
-            List<Room> rooms = roomRepository.findAll();
-            for (Room room : rooms) {
-                if (room.getNumber().equals(roomId)) {
-                    return ResponseEntity.ok(room);
-                }
-            }
-        }
+        // Accepts either the RM- room ID or the bare room number
+        Optional<Room> roomOptional = roomDirectoryService.findRoom(roomId);
 
         if (roomOptional.isPresent()) {
             return ResponseEntity.ok(roomOptional.get());
@@ -652,7 +766,6 @@ public class DoctorController {
             room.setRoomId(roomId);
 
             // Set initial values
-            room.setOccupancy(0);
             if (room.getStatus() == null) {
                 room.setStatus("Available");
             }
@@ -662,7 +775,7 @@ public class DoctorController {
                 room.setFeatures(new ArrayList<>());
             }
 
-            Room savedRoom = roomRepository.save(room);
+            Room savedRoom = roomDirectoryService.create(room);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedRoom);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -672,60 +785,10 @@ public class DoctorController {
 
     @PutMapping("/rooms/{roomId}")
     public ResponseEntity<?> updateRoom(@PathVariable String roomId, @RequestBody Room roomDetails) {
-        // Normalize roomId format
-        String normalizedRoomId = roomId;
-        if (!roomId.startsWith("RM-")) {
-            // If it doesn't have the prefix, add it
-            normalizedRoomId = "RM-" + roomId;
-        }
-
-        // First try with the normalized ID
-        Optional<Room> roomOptional = roomRepository.findByRoomId(normalizedRoomId);
-
-        // If not found and roomId doesn't have prefix, try to find by room number
-        if (!roomOptional.isPresent() && !roomId.startsWith("RM-")) {
-            List<Room> rooms = roomRepository.findAll();
-            for (Room room : rooms) {
-                if (room.getNumber().equals(roomId)) {
-                    // Update the found room
-                    if (roomDetails.getName() != null)
-                        room.setName(roomDetails.getName());
-                    if (roomDetails.getWard() != null)
-                        room.setWard(roomDetails.getWard());
-                    if (roomDetails.getType() != null)
-                        room.setType(roomDetails.getType());
-                    if (roomDetails.getCapacity() > 0)
-                        room.setCapacity(roomDetails.getCapacity());
-                    if (roomDetails.getNotes() != null)
-                        room.setNotes(roomDetails.getNotes());
-                    if (roomDetails.getFeatures() != null)
-                        room.setFeatures(roomDetails.getFeatures());
-
-                    Room updatedRoom = roomRepository.save(room);
-                    return ResponseEntity.ok(updatedRoom);
-                }
-            }
-        }
+        Optional<Room> updatedRoom = roomDirectoryService.update(roomId, roomDetails);
 
-        if (roomOptional.isPresent()) {
-            Room room = roomOptional.get();
-
-            // Update fields
-            if (roomDetails.getName() != null)
-                room.setName(roomDetails.getName());
-            if (roomDetails.getWard() != null)
-                room.setWard(roomDetails.getWard());
-            if (roomDetails.getType() != null)
-                room.setType(roomDetails.getType());
-            if (roomDetails.getCapacity() > 0)
-                room.setCapacity(roomDetails.getCapacity());
-            if (roomDetails.getNotes() != null)
-                room.setNotes(roomDetails.getNotes());
-            if (roomDetails.getFeatures() != null)
-                room.setFeatures(roomDetails.getFeatures());
-
-            Room updatedRoom = roomRepository.save(room);
-            return ResponseEntity.ok(updatedRoom);
+        if (updatedRoom.isPresent()) {
+            return ResponseEntity.ok(updatedRoom.get());
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Room not found"));
@@ -741,34 +804,10 @@ public class DoctorController {
                     .body(Map.of("message", "Status is required"));
         }
 
-        // Normalize roomId format
-        String normalizedRoomId = roomId;
-        if (!roomId.startsWith("RM-")) {
-            // If it doesn't have the prefix, add it
-            normalizedRoomId = "RM-" + roomId;
-        }
-
-        // First try with the normalized ID
-        Optional<Room> roomOptional = roomRepository.findByRoomId(normalizedRoomId);
-
-        // If not found and roomId doesn't have prefix, try to find by room number
-        if (!roomOptional.isPresent() && !roomId.startsWith("RM-")) {
-            List<Room> rooms = roomRepository.findAll();
-            for (Room room : rooms) {
-                if (room.getNumber().equals(roomId)) {
-                    room.setStatus(status);
-                    Room updatedRoom = roomRepository.save(room);
-                    return ResponseEntity.ok(updatedRoom);
-                }
-            }
-        }
+        Optional<Room> updatedRoom = roomDirectoryService.updateStatus(roomId, status);
 
-        if (roomOptional.isPresent()) {
-            Room room = roomOptional.get();
-            room.setStatus(status);
-
-            Room updatedRoom = roomRepository.save(room);
-            return ResponseEntity.ok(updatedRoom);
+        if (updatedRoom.isPresent()) {
+            return ResponseEntity.ok(updatedRoom.get());
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Room not found"));
@@ -777,33 +816,14 @@ public class DoctorController {
 
     @DeleteMapping("/rooms/{roomId}")
     public ResponseEntity<?> deleteRoom(@PathVariable String roomId) {
-        // Normalize roomId format
-        String normalizedRoomId = roomId;
-        if (!roomId.startsWith("RM-")) {
-            // If it doesn't have the prefix, add it
-            normalizedRoomId = "RM-" + roomId;
-        }
-
-        // First try with the normalized ID
-        Optional<Room> roomOptional = roomRepository.findByRoomId(normalizedRoomId);
-
-        // If not found and roomId doesn't have prefix, try to find by room number
-        if (!roomOptional.isPresent() && !roomId.startsWith("RM-")) {
-            List<Room> rooms = roomRepository.findAll();
-            for (Room room : rooms) {
-                if (room.getNumber().equals(roomId)) {
-                    roomRepository.delete(room);
-                    return ResponseEntity.ok(Map.of("message", "Room deleted successfully"));
-                }
-            }
-        }
+        Optional<Room> roomOptional = roomDirectoryService.findRoom(roomId);
 
         if (roomOptional.isPresent()) {
-            roomRepository.delete(roomOptional.get());
+            roomDirectoryService.delete(roomOptional.get());
             return ResponseEntity.ok(Map.of("message", "Room deleted successfully"));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Room not found"));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.hospital.pharmacy.controller;
+
+import com.hospital.pharmacy.model.StoredFile;
+import com.hospital.pharmacy.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Content-addressed file downloads and document uploads.
+ *
+ * Files may be patient documents, so they are only served to authenticated
+ * users. A file's URL contains the hash of its content, so responses are
+ * cached for a year as immutable, by the browser only, and the hash doubles
+ * as a strong ETag. Single byte ranges are honoured. Content is sent with
+ * Tomcat's sendfile when the connector offers it, and with
+ * FileChannel.transferTo otherwise, so it never passes through the heap.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/files")
+public class FileController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileController.class);
+
+    private static final String CACHE_FOREVER = "private, max-age=31536000, immutable";
+
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.storage.max-document-bytes:52428800}")
+    private long maxDocumentBytes;
+
+    // Store a document such as a medical record attachment
+    @PostMapping
+    public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Cannot upload empty file"));
+        }
+        try {
+            StoredFile stored = fileStorageService.store(
+                    file.getInputStream(), FileStorageService.DOCUMENT_TYPES, maxDocumentBytes);
+            return ResponseEntity.status(HttpStatus.CREATED).body(describe(stored, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("Error storing uploaded file", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error storing file: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{hash}")
+    public ResponseEntity<?> downloadFile(@PathVariable String hash,
+                                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<StoredFile> file = findFile(hash);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StoredFile stored = file.get();
+        return send(fileStorageService.getPath(stored), stored.getContentType(), stored.getHash(), request, response);
+    }
+
+    @GetMapping("/{hash}/thumbnails/{size}")
+    public ResponseEntity<?> downloadThumbnail(@PathVariable String hash, @PathVariable int size,
+                                               HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!fileStorageService.getThumbnailSizes().contains(size)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Thumbnail size must be one of " + fileStorageService.getThumbnailSizes()));
+        }
+        Optional<StoredFile> file = findFile(hash);
+        if (file.isEmpty() || !FileStorageService.IMAGE_TYPES.contains(file.get().getContentType())) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<Path> thumbnail = fileStorageService.getThumbnail(file.get(), size);
+        if (thumbnail.isEmpty()) {
+            // Being generated; clients retry or fall back to the original
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", "Thumbnail is not ready yet"));
+        }
+        return send(thumbnail.get(), "image/png", hash + "-" + size, request, response);
+    }
+
+    private Map<String, Object> describe(StoredFile stored, HttpServletRequest request) {
+        String url = request.getContextPath() + "/files/" + stored.getHash();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("hash", stored.getHash());
+        body.put("size", stored.getSize());
+        body.put("contentType", stored.getContentType());
+        body.put("url", url);
+        if (FileStorageService.IMAGE_TYPES.contains(stored.getContentType())) {
+            Map<Integer, String> thumbnails = new LinkedHashMap<>();
+            for (int size : fileStorageService.getThumbnailSizes()) {
+                thumbnails.put(size, url + "/thumbnails/" + size);
+            }
+            body.put("thumbnails", thumbnails);
+        }
+        return body;
+    }
+
+    private Optional<StoredFile> findFile(String hash) {
+        if (!hash.matches("[0-9a-f]{64}")) {
+            return Optional.empty();
+        }
+        return fileStorageService.find(hash);
+    }
+
+    // Writes the response itself; a null return tells Spring MVC the response is complete
+    private ResponseEntity<?> send(Path path, String contentType, String tag, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        if (!Files.exists(path)) {
+            logger.error("Stored content missing on disk: {}", path);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Stored content is missing"));
+        }
+        String etag = "\"" + tag + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_FOREVER);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return null;
+        }
+
+        long length = Files.size(path);
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // Several ranges are answered with the whole file, which the spec allows
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start > end) {
+                        throw new IllegalArgumentException("Range starts past the end of the content");
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file from the kernel once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+        return null;
+    }
+}
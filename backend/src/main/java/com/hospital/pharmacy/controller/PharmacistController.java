@@ -6,25 +6,36 @@ import com.hospital.pharmacy.dto.MedicineDTO;
 import com.hospital.pharmacy.model.Company;
 import com.hospital.pharmacy.model.Distributor;
 import com.hospital.pharmacy.model.Medicine;
+import com.hospital.pharmacy.model.Patient;
 import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.ReportJob;
 import com.hospital.pharmacy.repository.CompanyRepository;
 import com.hospital.pharmacy.repository.DistributorRepository;
 import com.hospital.pharmacy.repository.MedicineRepository;
 import com.hospital.pharmacy.repository.PrescriptionRepository;
 import com.hospital.pharmacy.service.CompanyService;
 import com.hospital.pharmacy.service.DistributorService;
+import com.hospital.pharmacy.service.EmailService;
 import com.hospital.pharmacy.service.MedicineService;
+import com.hospital.pharmacy.service.ReportJobService;
+import com.hospital.pharmacy.service.RequestCoalescingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 @RestController
@@ -55,6 +66,15 @@ public class PharmacistController {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private RequestCoalescingService requestCoalescingService;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private EmailService emailService;
+
     // Pharmacist Dashboard Statistics
     @GetMapping("/dashboard")
     public ResponseEntity<?> getPharmacistDashboard(Authentication authentication) {
@@ -214,12 +234,16 @@ public class PharmacistController {
     // Get inventory summary
     @GetMapping("/inventory")
     public ResponseEntity<?> getInventorySummary() {
-        Map<String, Object> inventory = new HashMap<>();
-        inventory.put("totalMedicines", medicineRepository.count());
-        inventory.put("lowStockCount", medicineService.getLowStatusMedicines().size());
-        inventory.put("expiredCount", medicineService.getExpiredMedicines().size());
-        inventory.put("categories", medicineService.getAllCategories());
-        return ResponseEntity.ok(inventory);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(requestCoalescingService.getJson("/pharmacist/inventory", Map.of(), null, () -> {
+                    Map<String, Object> inventory = new HashMap<>();
+                    inventory.put("totalMedicines", medicineRepository.count());
+                    inventory.put("lowStockCount", medicineService.getLowStatusMedicines().size());
+                    inventory.put("expiredCount", medicineService.getExpiredMedicines().size());
+                    inventory.put("categories", medicineService.getAllCategories());
+                    return inventory;
+                }));
     }
 
     // Get reports
@@ -228,7 +252,72 @@ public class PharmacistController {
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate) {
-        
+        // Any other type gets the full report; the dates do not change it yet
+        String reportType = "inventory".equals(type) || "prescriptions".equals(type) ? type : "all";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(requestCoalescingService.getJson("/pharmacist/reports", Map.of("type", reportType), null,
+                        () -> buildReports(reportType)));
+    }
+
+    // Builds in the background on the report pool; poll the job until it is COMPLETED, then download its file
+    @PostMapping("/reports/jobs")
+    public ResponseEntity<?> submitReportJob(@RequestParam(defaultValue = "all") String type,
+                                             Authentication authentication) {
+        if (!ReportJobService.PHARMACY_REPORTS.contains(type.trim().toUpperCase())) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Report type must be one of " + ReportJobService.PHARMACY_REPORTS));
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(reportJobService.submit(type, Map.of(), authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reports/jobs")
+    public ResponseEntity<?> getReportJobs(@RequestParam(defaultValue = "20") int limit,
+                                           Authentication authentication) {
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 100"));
+        }
+        return ResponseEntity.ok(reportJobService.getJobs(authentication.getName(), limit));
+    }
+
+    @GetMapping("/reports/jobs/{id}")
+    public ResponseEntity<?> getReportJob(@PathVariable Long id) {
+        return pharmacyReportJob(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/reports/jobs/{id}/file")
+    public ResponseEntity<?> downloadReportJob(@PathVariable Long id) {
+        Optional<ReportJob> job = pharmacyReportJob(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            Path file = reportJobService.getJobFile(id).orElseThrow();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(job.get().getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                    .body(new FileSystemResource(file));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Jobs of other report types are not a pharmacist's to see
+    private Optional<ReportJob> pharmacyReportJob(Long id) {
+        return reportJobService.getJob(id)
+                .filter(job -> ReportJobService.PHARMACY_REPORTS.contains(job.getReportType()));
+    }
+
+    private Map<String, Object> buildReports(String type) {
         Map<String, Object> reports = new HashMap<>();
         
         if ("inventory".equals(type)) {
@@ -249,7 +338,7 @@ public class PharmacistController {
             ));
         }
         
-        return ResponseEntity.ok(reports);
+        return reports;
     }
 
     // Get orders (placeholder - can be expanded later)
@@ -283,6 +372,7 @@ public class PharmacistController {
 
     // Fill a prescription
     @PutMapping("/prescriptions/{id}/fill")
+    @Transactional
     public ResponseEntity<?> fillPrescription(@PathVariable Long id) {
         return prescriptionRepository.findById(id)
                 .map(prescription -> {
@@ -292,7 +382,14 @@ public class PharmacistController {
                     }
 
                     prescription.setStatus("COMPLETED");
-                    return ResponseEntity.ok(prescriptionRepository.save(prescription));
+                    Prescription saved = prescriptionRepository.save(prescription);
+
+                    Patient patient = saved.getPatient();
+                    if (patient != null && patient.getEmail() != null && !patient.getEmail().isBlank()) {
+                        emailService.sendPrescriptionReadyNotification(patient.getEmail(),
+                                patient.getFirstName() + " " + patient.getLastName(), saved.getPrescriptionId());
+                    }
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
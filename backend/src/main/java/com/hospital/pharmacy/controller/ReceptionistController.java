@@ -1,23 +1,35 @@
 package com.hospital.pharmacy.controller;
 
+import com.hospital.pharmacy.dto.BillingRequestDTO;
+import com.hospital.pharmacy.dto.PaymentRequestDTO;
+import com.hospital.pharmacy.dto.PaymentResultDTO;
 import com.hospital.pharmacy.model.*;
 import com.hospital.pharmacy.repository.*;
+import com.hospital.pharmacy.service.BillingService;
+import com.hospital.pharmacy.service.EmailService;
+import com.hospital.pharmacy.service.PaymentService;
+import com.hospital.pharmacy.service.RequestCoalescingService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -25,6 +37,8 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasRole('RECEPTIONIST')")
 public class ReceptionistController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReceptionistController.class);
+
     @Autowired
     private UserRepository userRepository;
 
@@ -37,6 +51,18 @@ public class ReceptionistController {
     @Autowired
     private BillingRepository billingRepository;
 
+    @Autowired
+    private BillingService billingService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RequestCoalescingService requestCoalescingService;
+
     // Receptionist Dashboard Statistics
     @GetMapping("/dashboard")
     public ResponseEntity<?> getReceptionistDashboard(Authentication authentication) {
@@ -66,7 +92,7 @@ public class ReceptionistController {
             patients = patientRepository.findByFilters(status, null, search);
         } catch (Exception e) {
             // If it fails, fall back to the native query
-            System.out.println("JPA query failed, falling back to native query: " + e.getMessage());
+            logger.warn("JPA query failed, falling back to native query: {}", e.getMessage());
             patients = patientRepository.findByFiltersNative(status, null, search);
         }
 
@@ -109,9 +135,9 @@ public class ReceptionistController {
             @RequestBody Patient updatedPatient) {
 
         try {
-            System.out.println("Updating patient with ID: " + id);
-            System.out.println("Updated patient data: " + updatedPatient);
-            System.out.println("Assigned doctor in request: " + updatedPatient.getAssignedDoctor());
+            logger.debug("Updating patient with ID: {}", id);
+            logger.debug("Updated patient data: {}", updatedPatient);
+            logger.debug("Assigned doctor in request: {}", updatedPatient.getAssignedDoctor());
 
             return patientRepository.findById(id)
                     .map(patient -> {
@@ -140,16 +166,14 @@ public class ReceptionistController {
                         // Handle doctor assignment specifically
                         if (updatedPatient.getAssignedDoctor() != null
                                 && updatedPatient.getAssignedDoctor().getId() != null) {
-                            System.out.println(
-                                    "Looking up doctor with ID: " + updatedPatient.getAssignedDoctor().getId());
+                            logger.debug("Looking up doctor with ID: {}", updatedPatient.getAssignedDoctor().getId());
                             userRepository.findById(updatedPatient.getAssignedDoctor().getId())
                                     .ifPresent(doctor -> {
-                                        System.out.println(
-                                                "Found doctor: " + doctor.getFirstName() + " " + doctor.getLastName());
+                                        logger.debug("Found doctor: {} {}", doctor.getFirstName(), doctor.getLastName());
                                         patient.setAssignedDoctor(doctor);
                                     });
                         } else {
-                            System.out.println("No doctor assigned, setting to null");
+                            logger.debug("No doctor assigned, setting to null");
                             patient.setAssignedDoctor(null);
                         }
 
@@ -158,12 +182,12 @@ public class ReceptionistController {
                         patient.setCurrentMedications(updatedPatient.getCurrentMedications());
 
                         Patient savedPatient = patientRepository.save(patient);
-                        System.out.println("Successfully updated patient: " + savedPatient.getPatientId());
+                        logger.debug("Successfully updated patient: {}", savedPatient.getPatientId());
                         return ResponseEntity.ok(savedPatient);
                     })
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error updating patient", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error updating patient: " + e.getMessage()));
         }
@@ -172,12 +196,15 @@ public class ReceptionistController {
     // Get available doctors
     @GetMapping("/doctors")
     public ResponseEntity<?> getAvailableDoctors() {
-        List<User> doctors = userRepository.findByFilters("DOCTOR", true, null);
-        return ResponseEntity.ok(doctors);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(requestCoalescingService.getJson("/receptionist/doctors", Map.of(), null,
+                        () -> userRepository.findByFilters("DOCTOR", true, null)));
     }
 
     // Schedule an appointment
     @PostMapping("/appointments")
+    @Transactional
     public ResponseEntity<?> scheduleAppointment(
             @RequestBody Map<String, Object> appointmentRequest,
             Authentication authentication) {
@@ -215,9 +242,18 @@ public class ReceptionistController {
 
             Appointment savedAppointment = appointmentRepository.save(appointment);
 
+            if (patient.getEmail() != null && !patient.getEmail().isBlank()) {
+                emailService.sendAppointmentConfirmation(patient.getEmail(),
+                        patient.getFirstName() + " " + patient.getLastName(),
+                        savedAppointment.getAppointmentDateTime().toString(),
+                        doctor.getFirstName() + " " + doctor.getLastName());
+            }
+
             return ResponseEntity.status(HttpStatus.CREATED).body(savedAppointment);
         } catch (Exception e) {
-            e.printStackTrace();
+            // Answered rather than rethrown, so roll back whatever was written
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            logger.error("Failed to schedule appointment", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Failed to schedule appointment: " + e.getMessage()));
         }
@@ -244,7 +280,7 @@ public class ReceptionistController {
         try {
             // If no date parameters are provided, skip date parsing
             if ((startDate == null || startDate.isEmpty()) && (endDate == null || endDate.isEmpty())) {
-                System.out.println("No date parameters provided, fetching with basic filters only");
+                logger.debug("No date parameters provided, fetching with basic filters only");
                 List<Appointment> appointments = appointmentRepository.findByBasicFilters(status, doctorId, patientId);
                 return ResponseEntity.ok(appointments);
             }
@@ -313,7 +349,7 @@ public class ReceptionistController {
                     .collect(Collectors.toList());
             return ResponseEntity.ok(filteredAppointments);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error retrieving appointments", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error retrieving appointments: " + e.getMessage()));
         }
@@ -411,9 +447,9 @@ public class ReceptionistController {
         }
 
         try {
-            System.out.println("Updating patient with patientId: " + patientId);
-            System.out.println("Updated patient data: " + updatedPatient);
-            System.out.println("Assigned doctor in request: " + updatedPatient.getAssignedDoctor());
+            logger.debug("Updating patient with patientId: {}", patientId);
+            logger.debug("Updated patient data: {}", updatedPatient);
+            logger.debug("Assigned doctor in request: {}", updatedPatient.getAssignedDoctor());
 
             return patientRepository.findByPatientId(patientId)
                     .map(patient -> {
@@ -442,16 +478,14 @@ public class ReceptionistController {
                         // Handle doctor assignment specifically
                         if (updatedPatient.getAssignedDoctor() != null
                                 && updatedPatient.getAssignedDoctor().getId() != null) {
-                            System.out.println(
-                                    "Looking up doctor with ID: " + updatedPatient.getAssignedDoctor().getId());
+                            logger.debug("Looking up doctor with ID: {}", updatedPatient.getAssignedDoctor().getId());
                             userRepository.findById(updatedPatient.getAssignedDoctor().getId())
                                     .ifPresent(doctor -> {
-                                        System.out.println(
-                                                "Found doctor: " + doctor.getFirstName() + " " + doctor.getLastName());
+                                        logger.debug("Found doctor: {} {}", doctor.getFirstName(), doctor.getLastName());
                                         patient.setAssignedDoctor(doctor);
                                     });
                         } else {
-                            System.out.println("No doctor assigned, setting to null");
+                            logger.debug("No doctor assigned, setting to null");
                             patient.setAssignedDoctor(null);
                         }
 
@@ -460,12 +494,12 @@ public class ReceptionistController {
                         patient.setCurrentMedications(updatedPatient.getCurrentMedications());
 
                         Patient savedPatient = patientRepository.save(patient);
-                        System.out.println("Successfully updated patient: " + savedPatient.getPatientId());
+                        logger.debug("Successfully updated patient: {}", savedPatient.getPatientId());
                         return ResponseEntity.ok(savedPatient);
                     })
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error updating patient", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error updating patient: " + e.getMessage()));
         }
@@ -493,7 +527,7 @@ public class ReceptionistController {
             LocalDateTime startDateTime = localDate.atStartOfDay();
             LocalDateTime endDateTime = localDate.atTime(23, 59, 59);
 
-            System.out.println("Searching for appointments between " + startDateTime + " and " + endDateTime);
+            logger.debug("Searching for appointments between {} and {}", startDateTime, endDateTime);
 
             // Get appointments for this doctor on this date
             List<Appointment> appointments = appointmentRepository.findByDoctorAndDateRange(
@@ -501,7 +535,7 @@ public class ReceptionistController {
 
             return ResponseEntity.ok(appointments);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Invalid date format: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", "Invalid date format. Use ISO format (yyyy-MM-dd)"));
         }
@@ -529,7 +563,7 @@ public class ReceptionistController {
                     })
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error updating appointment status", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error updating appointment status: " + e.getMessage()));
         }
@@ -554,16 +588,16 @@ public class ReceptionistController {
                     .map(appointment -> ResponseEntity.ok(appointment))
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error retrieving appointment", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error retrieving appointment: " + e.getMessage()));
         }
     }
 
-    // Create a new billing
+    // Create a new billing; totals are computed from the items
     @PostMapping("/billings")
     public ResponseEntity<?> createBilling(
-            @RequestBody Map<String, Object> billingRequest,
+            @RequestBody BillingRequestDTO billingRequest,
             HttpServletRequest request) {
 
         User receptionist = (User) request.getAttribute("user");
@@ -575,76 +609,12 @@ public class ReceptionistController {
         }
 
         try {
-            // Extract data from request
-            Long patientId = Long.valueOf(billingRequest.get("patientId").toString());
-            String appointmentId = billingRequest.get("appointmentId") != null
-                    ? billingRequest.get("appointmentId").toString()
-                    : null;
-            String description = (String) billingRequest.get("description");
-            String paymentMethod = (String) billingRequest.get("paymentMethod");
-            String status = (String) billingRequest.get("status");
-            BigDecimal totalAmount = new BigDecimal(billingRequest.get("totalAmount").toString());
-
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> itemsData = (List<Map<String, Object>>) billingRequest.get("items");
-
-            // Look up patient
-            Patient patient = patientRepository.findById(patientId)
-                    .orElseThrow(() -> new RuntimeException("Patient not found"));
-
-            // Create billing
-            Billing billing = new Billing();
-            billing.setBillNumber("BILL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-            billing.setPatient(patient);
-            billing.setBillDate(LocalDate.now());
-            billing.setDueDate(LocalDate.now().plusDays(30)); // Set due date to 30 days from now
-            billing.setTotalAmount(totalAmount);
-            billing.setStatus(status != null ? status : "PENDING");
-            billing.setPaymentMethod(paymentMethod);
-            billing.setNotes(description);
-            billing.setCreatedBy(receptionist);
-
-            // Add billing items
-            List<BillingItem> billingItems = new ArrayList<>();
-            for (Map<String, Object> itemData : itemsData) {
-                String itemDescription = (String) itemData.get("description");
-                BigDecimal amount = new BigDecimal(itemData.get("amount").toString());
-
-                BillingItem item = new BillingItem();
-                item.setItemType("CONSULTATION"); // Default type
-                item.setDescription(itemDescription);
-                item.setQuantity(1);
-                item.setUnitPrice(amount);
-                item.setTotalPrice(amount);
-                billingItems.add(item);
-            }
-
-            billing.setBillingItems(billingItems);
-
-            // If this is a payment for an appointment, try to link it
-            if (appointmentId != null && !appointmentId.isEmpty()) {
-                try {
-                    Long aptId = Long.valueOf(appointmentId);
-                    appointmentRepository.findById(aptId).ifPresent(appointment -> {
-                        // Update appointment status to indicate payment was processed
-                        if (appointment.getStatus().equals("COMPLETED")) {
-                            appointment.setStatus("BILLED");
-                            appointmentRepository.save(appointment);
-                        }
-                    });
-                } catch (NumberFormatException e) {
-                    // Invalid appointment ID format, just log and continue
-                    System.out.println("Invalid appointment ID format: " + appointmentId);
-                }
-            }
-
-            // Save the billing entity
-            Billing savedBilling = billingRepository.save(billing);
-
+            Billing savedBilling = billingService.createBilling(billingRequest, receptionist);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedBilling);
-
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Failed to create billing", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Failed to create billing: " + e.getMessage()));
         }
@@ -685,7 +655,7 @@ public class ReceptionistController {
 
             return ResponseEntity.ok(billings);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error retrieving billings", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error retrieving billings: " + e.getMessage()));
         }
@@ -710,7 +680,7 @@ public class ReceptionistController {
                     .map(billing -> ResponseEntity.ok(billing))
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error retrieving billing", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error retrieving billing: " + e.getMessage()));
         }
@@ -738,17 +708,18 @@ public class ReceptionistController {
             }
             return ResponseEntity.ok(billing);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error retrieving billing", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error retrieving billing: " + e.getMessage()));
         }
     }
 
-    // Update billing payment status
+    // Record a payment; retries with the same Idempotency-Key are answered without paying twice
     @PutMapping("/billings/{id}/payment")
     public ResponseEntity<?> processBillingPayment(
             @PathVariable Long id,
-            @RequestBody Map<String, Object> paymentRequest,
+            @RequestBody PaymentRequestDTO paymentRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletRequest request) {
 
         User receptionist = (User) request.getAttribute("user");
@@ -759,53 +730,18 @@ public class ReceptionistController {
                     .body(Map.of("message", "Access denied"));
         }
 
-        try {
-            return billingRepository.findById(id)
-                    .map(billing -> {
-                        // Extract payment information
-                        String paymentMethod = (String) paymentRequest.get("paymentMethod");
-                        BigDecimal paymentAmount = new BigDecimal(paymentRequest.get("amount").toString());
-                        String notes = (String) paymentRequest.get("notes");
-                        String referenceNumber = (String) paymentRequest.get("referenceNumber");
-
-                        // Create a new payment record
-                        Payment payment = new Payment();
-                        payment.setPaymentDate(LocalDateTime.now());
-                        payment.setAmount(paymentAmount);
-                        payment.setPaymentMethod(paymentMethod);
-                        payment.setNotes(notes);
-                        payment.setReferenceNumber(referenceNumber);
-                        payment.setReceivedBy(receptionist);
-
-                        // Add payment to billing
-                        billing.getPayments().add(payment);
-
-                        // Update paid amount
-                        billing.setPaidAmount(billing.getPaidAmount().add(paymentAmount));
-
-                        // Update status based on paid amount
-                        if (billing.getPaidAmount().compareTo(billing.getTotalAmount()) >= 0) {
-                            billing.setStatus("PAID");
-                        } else if (billing.getPaidAmount().compareTo(BigDecimal.ZERO) > 0) {
-                            billing.setStatus("PARTIALLY_PAID");
-                        }
-
-                        Billing updatedBilling = billingRepository.save(billing);
-                        return ResponseEntity.ok(updatedBilling);
-                    })
-                    .orElse(ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("message", "Error processing payment: " + e.getMessage()));
+        if (idempotencyKey != null) {
+            paymentRequest.setIdempotencyKey(idempotencyKey);
         }
+        return paymentResponse(() -> paymentService.recordPayment(id, paymentRequest, receptionist));
     }
 
     // Process payment for billing by bill number
     @PutMapping("/billings/by-number/{billNumber}/payment")
     public ResponseEntity<?> processBillingPaymentByBillNumber(
             @PathVariable String billNumber,
-            @RequestBody Map<String, Object> paymentRequest,
+            @RequestBody PaymentRequestDTO paymentRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletRequest request) {
 
         User receptionist = (User) request.getAttribute("user");
@@ -816,44 +752,26 @@ public class ReceptionistController {
                     .body(Map.of("message", "Access denied"));
         }
 
-        try {
-            Billing billing = billingRepository.findByBillNumber(billNumber);
-            if (billing == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            // Extract payment information
-            String paymentMethod = (String) paymentRequest.get("paymentMethod");
-            BigDecimal paymentAmount = new BigDecimal(paymentRequest.get("amount").toString());
-            String notes = (String) paymentRequest.get("notes");
-            String referenceNumber = (String) paymentRequest.get("referenceNumber");
-
-            // Create a new payment record
-            Payment payment = new Payment();
-            payment.setPaymentDate(LocalDateTime.now());
-            payment.setAmount(paymentAmount);
-            payment.setPaymentMethod(paymentMethod);
-            payment.setNotes(notes);
-            payment.setReferenceNumber(referenceNumber);
-            payment.setReceivedBy(receptionist);
-
-            // Add payment to billing
-            billing.getPayments().add(payment);
-
-            // Update paid amount
-            billing.setPaidAmount(billing.getPaidAmount().add(paymentAmount));
-
-            // Update status based on paid amount
-            if (billing.getPaidAmount().compareTo(billing.getTotalAmount()) >= 0) {
-                billing.setStatus("PAID");
-            } else if (billing.getPaidAmount().compareTo(BigDecimal.ZERO) > 0) {
-                billing.setStatus("PARTIALLY_PAID");
-            }
+        if (idempotencyKey != null) {
+            paymentRequest.setIdempotencyKey(idempotencyKey);
+        }
+        return paymentResponse(
+                () -> paymentService.recordPaymentByBillNumber(billNumber, paymentRequest, receptionist));
+    }
 
-            Billing updatedBilling = billingRepository.save(billing);
-            return ResponseEntity.ok(updatedBilling);
+    private ResponseEntity<?> paymentResponse(Supplier<Optional<PaymentResultDTO>> payment) {
+        try {
+            return payment.get()
+                    .<ResponseEntity<?>>map(result -> ResponseEntity.ok()
+                            .header("Idempotent-Replayed", String.valueOf(result.isReplayed()))
+                            .body(result.getBilling()))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error processing payment", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Error processing payment: " + e.getMessage()));
         }
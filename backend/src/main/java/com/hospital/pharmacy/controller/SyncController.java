@@ -0,0 +1,75 @@
+package com.hospital.pharmacy.controller;
+
+import com.hospital.pharmacy.service.SyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Change feed for clients that keep a local copy of lists.
+ *
+ * The first call, without since, returns every row of the requested types;
+ * each later call passes the returned watermark and gets only rows created,
+ * changed or deleted after it. While hasMore is true the client calls again
+ * at once. Changes are applied before deletes.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/sync")
+public class SyncController {
+
+    // Roles that may read each type, as on the role endpoints that list them
+    private static final Map<String, Set<String>> READERS = Map.of(
+            "appointments", Set.of("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_RECEPTIONIST"),
+            "billings", Set.of("ROLE_ADMIN", "ROLE_RECEPTIONIST"),
+            "prescriptions", Set.of("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_PHARMACIST"),
+            "beds", Set.of("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_RECEPTIONIST"),
+            "rooms", Set.of("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_RECEPTIONIST"));
+
+    @Autowired
+    private SyncService syncService;
+
+    @GetMapping
+    public ResponseEntity<?> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam List<String> types,
+            @RequestParam(defaultValue = "500") int limit,
+            Authentication authentication) {
+        if (limit < 1 || limit > 2000) {
+            return ResponseEntity.badRequest().body(Map.of("message", "limit must be between 1 and 2000"));
+        }
+        Set<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        Set<String> requested = new LinkedHashSet<>(types);
+        for (String type : requested) {
+            Set<String> readers = READERS.get(type);
+            if (readers == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Unknown sync type: " + type));
+            }
+            if (readers.stream().noneMatch(roles::contains)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Not allowed to sync " + type));
+            }
+        }
+        try {
+            return ResponseEntity.ok(syncService.getChanges(since, requested, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            // Tombstones this old are gone; the client drops its copy and starts over
+            return ResponseEntity.status(HttpStatus.GONE).body(Map.of("message", e.getMessage()));
+        }
+    }
+}
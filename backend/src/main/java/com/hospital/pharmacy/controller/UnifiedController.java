@@ -48,6 +48,9 @@ public class UnifiedController {
     @Autowired
     private BillingRepository billingRepository;
 
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
     @Autowired
     private UserService userService;
 
@@ -433,6 +436,7 @@ public class UnifiedController {
     public ResponseEntity<Billing> createBill(@RequestBody Billing bill) {
         try {
             Billing savedBill = billingRepository.save(bill);
+            accountsReceivableService.publish(savedBill);
             return ResponseEntity.ok(savedBill);
         } catch (Exception e) {
             logger.error("Error creating bill: {}", e.getMessage(), e);
@@ -446,6 +450,7 @@ public class UnifiedController {
             if (billingRepository.existsById(id)) {
                 bill.setId(id);
                 Billing updatedBill = billingRepository.save(bill);
+                accountsReceivableService.publish(updatedBill);
                 return ResponseEntity.ok(updatedBill);
             }
             return ResponseEntity.notFound().build();
@@ -460,6 +465,7 @@ public class UnifiedController {
         try {
             if (billingRepository.existsById(id)) {
                 billingRepository.deleteById(id);
+                accountsReceivableService.remove(id);
                 return ResponseEntity.ok().build();
             }
             return ResponseEntity.notFound().build();
@@ -0,0 +1,25 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Outstanding balances across all patients, by aging bucket as of a day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgingSummaryDTO {
+    private LocalDate asOf;
+    private Map<String, BigDecimal> buckets;
+    private Map<String, Integer> bills;
+    private BigDecimal totalOutstanding;
+    private BigDecimal totalOverdue;
+    private int patientsWithBalance;
+    private int patientsOverdue;
+}
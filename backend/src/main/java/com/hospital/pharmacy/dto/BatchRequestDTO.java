@@ -0,0 +1,28 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several read requests sent in one round trip, e.g. everything a dashboard
+ * loads on open. Each result is returned with the id of its request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRequestDTO {
+    private List<Item> requests = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String id; // echoed on the result, unique within the batch
+        private String method; // GET only; may be left out
+        private String path; // as called directly, with any query string, e.g. /receptionist/appointments?date=2024-05-01
+    }
+}
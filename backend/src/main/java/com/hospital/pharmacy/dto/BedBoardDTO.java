@@ -0,0 +1,49 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Snapshot of one bed as held by the bed board. Serializes with the same
+ * field names as the Bed entity so the beds page can read either.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BedBoardDTO {
+    private Long id;
+    private String bedId;
+    private String wardName;
+    private String roomNumber;
+    private String roomType;
+    private String bedNumber;
+    private String status;
+    private String admissionDate;
+    private String diagnosis;
+    private PatientSummary patient;
+    private DoctorSummary doctor;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PatientSummary {
+        private Long id;
+        private String patientId;
+        private String firstName;
+        private String lastName;
+        private LocalDate dateOfBirth;
+        private String gender;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DoctorSummary {
+        private Long id;
+        private String firstName;
+        private String lastName;
+    }
+}
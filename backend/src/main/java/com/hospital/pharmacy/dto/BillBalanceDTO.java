@@ -0,0 +1,26 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The parts of a bill that accounts receivable needs; dueDate falls back
+ * to the bill date for bills without one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillBalanceDTO {
+    private Long id;
+    private Long patientId;
+    private LocalDate dueDate;
+    private BigDecimal totalAmount;
+    private BigDecimal paidAmount;
+    private String status;
+    private LocalDateTime updatedAt;
+}
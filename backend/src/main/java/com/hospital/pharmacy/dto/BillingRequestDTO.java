@@ -0,0 +1,42 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A receptionist's new bill. Amounts are per line; the subtotal, tax and
+ * total are always computed by the server, so a client-sent totalAmount
+ * is ignored.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillingRequestDTO {
+    private Long patientId;
+    private Long appointmentId;
+    private String description;
+    private String paymentMethod;
+    private String status;
+    // Bill-level discount taken off the subtotal before tax
+    private BigDecimal discount;
+    private List<Item> items = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String itemType;
+        private String description;
+        private Integer quantity;
+        private BigDecimal unitPrice;
+        // Older clients send a single line amount instead of a unit price
+        private BigDecimal amount;
+        private BigDecimal discount;
+        private String notes;
+    }
+}
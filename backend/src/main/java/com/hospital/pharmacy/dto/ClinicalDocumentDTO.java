@@ -0,0 +1,21 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClinicalDocumentDTO {
+    private String type; // MEDICAL_RECORD, PRESCRIPTION
+    private Long id;
+    private String reference; // Custom ID like MR-12345
+    private Long patientId;
+    private Long doctorId;
+    private LocalDate date;
+    private String primaryText; // Diagnosis, weighted higher when ranking
+    private String secondaryText;
+}
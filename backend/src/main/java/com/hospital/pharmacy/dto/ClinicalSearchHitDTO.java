@@ -0,0 +1,20 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClinicalSearchHitDTO {
+    private String type; // MEDICAL_RECORD, PRESCRIPTION
+    private Long id;
+    private String reference;
+    private Long patientId;
+    private Long doctorId;
+    private LocalDate date;
+    private double score;
+}
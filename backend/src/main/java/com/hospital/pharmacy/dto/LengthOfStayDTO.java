@@ -0,0 +1,14 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LengthOfStayDTO {
+    private String ward;
+    private long discharges;
+    private double averageHours;
+}
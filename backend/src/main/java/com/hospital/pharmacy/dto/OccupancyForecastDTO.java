@@ -0,0 +1,14 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyForecastDTO {
+    private long hourStart; // epoch milliseconds
+    private double expectedOccupancy;
+    private double expectedPeak;
+}
@@ -0,0 +1,17 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyPointDTO {
+    private long hourStart; // epoch milliseconds
+    private String ward;
+    private double averageOccupancy;
+    private int peakOccupancy;
+    private int admissions;
+    private int discharges;
+}
@@ -0,0 +1,32 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * One patient's outstanding balance by aging bucket, with the contact
+ * details a dunning letter needs.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientBalanceDTO {
+    private Long id;
+    private String patientId;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String phoneNumber;
+    private String address;
+    private BigDecimal outstanding;
+    private BigDecimal overdue;
+    private Map<String, BigDecimal> buckets;
+    private int openBills;
+    private LocalDate oldestDueDate;
+    private long daysOverdue;
+}
@@ -0,0 +1,23 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A payment taken against a bill. The idempotency key is required and
+ * identifies one payment attempt: sending the same key again returns the
+ * first result instead of recording a second payment.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentRequestDTO {
+    private BigDecimal amount;
+    private String paymentMethod;
+    private String referenceNumber;
+    private String notes;
+    private String idempotencyKey;
+}
@@ -0,0 +1,20 @@
+package com.hospital.pharmacy.dto;
+
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of recording a payment; replayed is true when the idempotency
+ * key had already been used and nothing new was recorded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentResultDTO {
+    private Billing billing;
+    private Payment payment;
+    private boolean replayed;
+}
@@ -0,0 +1,18 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncPageDTO {
+    private Map<String, List<?>> changes; // created or changed rows by type, oldest change first
+    private Map<String, List<Long>> deleted; // ids by type
+    private String watermark; // pass as since on the next call
+    private boolean hasMore; // call again straight away with the new watermark
+}
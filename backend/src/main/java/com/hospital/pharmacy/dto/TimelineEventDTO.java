@@ -0,0 +1,55 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelineEventDTO {
+    private String type; // APPOINTMENT, PRESCRIPTION, MEDICAL_RECORD, BILL, ADMISSION
+    private Long id;
+    private String reference; // Custom ID like APT-12345
+    private LocalDateTime occurredAt;
+    private String title;
+    private String status;
+    private String summary;
+    private String doctorName;
+    private BigDecimal amount;
+
+    // Used by the timeline constructor expressions for timestamped sources
+    public TimelineEventDTO(String type, Long id, String reference, LocalDateTime occurredAt,
+                            String title, String status, String summary,
+                            String doctorFirstName, String doctorLastName) {
+        this(type, id, reference, occurredAt, title, status, summary,
+                fullName(doctorFirstName, doctorLastName), (BigDecimal) null);
+    }
+
+    // Used by the timeline constructor expressions for date-only sources
+    public TimelineEventDTO(String type, Long id, String reference, LocalDate occurredOn,
+                            String title, String status, String summary,
+                            String doctorFirstName, String doctorLastName) {
+        this(type, id, reference, occurredOn.atStartOfDay(), title, status, summary,
+                fullName(doctorFirstName, doctorLastName), (BigDecimal) null);
+    }
+
+    // Used by the timeline constructor expression for bills
+    public TimelineEventDTO(String type, Long id, String reference, LocalDate occurredOn,
+                            String status, String summary, BigDecimal amount,
+                            String createdByFirstName, String createdByLastName) {
+        this(type, id, reference, occurredOn.atStartOfDay(), "Bill " + reference, status, summary,
+                fullName(createdByFirstName, createdByLastName), amount);
+    }
+
+    private static String fullName(String firstName, String lastName) {
+        if (firstName == null && lastName == null) {
+            return null;
+        }
+        return ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+    }
+}
@@ -0,0 +1,15 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelinePageDTO {
+    private List<TimelineEventDTO> events;
+    private String nextCursor; // null on the last page
+}
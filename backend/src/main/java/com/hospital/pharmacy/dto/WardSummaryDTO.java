@@ -0,0 +1,25 @@
+package com.hospital.pharmacy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WardSummaryDTO {
+    private String ward;
+    private long rooms;
+    private long capacity;
+    private long occupancy;
+    private long freeBeds;
+
+    // Used by the RoomRepository.summarizeWards constructor expression
+    public WardSummaryDTO(String ward, Long rooms, Long capacity, Long occupancy) {
+        this.ward = ward;
+        this.rooms = rooms;
+        this.capacity = capacity != null ? capacity : 0;
+        this.occupancy = occupancy != null ? occupancy : 0;
+        this.freeBeds = Math.max(0, this.capacity - this.occupancy);
+    }
+}
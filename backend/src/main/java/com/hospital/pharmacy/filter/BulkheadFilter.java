@@ -0,0 +1,135 @@
+package com.hospital.pharmacy.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.config.ConnectionQuotaExceededException;
+import com.hospital.pharmacy.config.PriorityBulkheads;
+import com.hospital.pharmacy.config.RequestPriority;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits each request into the bulkhead of its priority class.
+ *
+ * Runs after Spring Security, so the caller's role is known and requests
+ * that fail authentication never take a slot. A request that finds its class
+ * full waits briefly if the class's queue has room, otherwise it gets 429
+ * with Retry-After; so does a request whose class runs out of database
+ * connections, as long as nothing was written yet. A streamed response keeps
+ * its slot until the stream completes.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadFilter.class);
+
+    @Autowired
+    private PriorityBulkheads bulkheads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        Object role = request.getAttribute("role");
+        RequestPriority priority = bulkheads.classify(request.getServletPath(), role != null ? role.toString() : null);
+        boolean admitted;
+        try {
+            admitted = bulkheads.enter(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            logger.debug("Rejected {} request {} {}", priority, request.getMethod(), request.getRequestURI());
+            reject(response, "Too many " + priority.name().toLowerCase() + " requests, try again shortly");
+            return;
+        }
+
+        AtomicBoolean exited = new AtomicBoolean();
+        Runnable exit = () -> {
+            if (exited.compareAndSet(false, true)) {
+                bulkheads.exit(priority);
+            }
+        };
+        RequestPriority.set(priority);
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            ConnectionQuotaExceededException quotaExceeded = quotaExceeded(e);
+            if (quotaExceeded == null || response.isCommitted()) {
+                throw e;
+            }
+            reject(response, quotaExceeded.getMessage());
+        } finally {
+            RequestPriority.clear();
+            if (isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        exit.run();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        exit.run();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        exit.run();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                exit.run();
+            }
+        }
+    }
+
+    private ConnectionQuotaExceededException quotaExceeded(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionQuotaExceededException quotaExceeded) {
+                return quotaExceeded;
+            }
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, String message) throws IOException {
+        response.resetBuffer();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(bulkheads.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(Map.of("message", message)));
+    }
+}
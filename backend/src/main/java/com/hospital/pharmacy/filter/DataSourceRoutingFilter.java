@@ -0,0 +1,68 @@
+package com.hospital.pharmacy.filter;
+
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource.Route;
+import com.hospital.pharmacy.config.ReplicaSessionTracker;
+import com.hospital.pharmacy.service.BatchRequestService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Chooses the datasource route for each request before security and
+ * controllers touch the database. GET requests read from the replica unless
+ * the session wrote recently; every other method uses the primary and marks
+ * the session as a recent writer. A batch is a POST but only carries GETs, so
+ * it is routed as a read.
+ *
+ * The mark is set before the write runs, so a read sent as soon as the write's
+ * response arrives already finds the session pinned, and is set again once the
+ * request returns so the window counts from the end of the write.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class DataSourceRoutingFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private ReplicaSessionTracker sessionTracker;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String sessionKey = request.getHeader("Authorization");
+        boolean readRequest = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())
+                || ("POST".equals(request.getMethod())
+                && BatchRequestService.BATCH_PATH.equals(request.getServletPath()));
+
+        boolean writeRequest = !readRequest && !"OPTIONS".equals(request.getMethod());
+
+        if (readRequest && !sessionTracker.isPinnedToPrimary(sessionKey)) {
+            ReadWriteRoutingDataSource.setRequestRoute(Route.REPLICA);
+        } else {
+            ReadWriteRoutingDataSource.setRequestRoute(Route.PRIMARY);
+        }
+        if (writeRequest) {
+            sessionTracker.recordWrite(sessionKey);
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.clearRequestRoute();
+            if (writeRequest) {
+                sessionTracker.recordWrite(sessionKey);
+            }
+        }
+    }
+}
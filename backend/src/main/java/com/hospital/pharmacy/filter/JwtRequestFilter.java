@@ -2,7 +2,9 @@ package com.hospital.pharmacy.filter;
 
 import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.TokenRevocationService;
 import com.hospital.pharmacy.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -29,6 +33,11 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
+
     private final List<String> excludedPaths = Arrays.asList(
             "/auth/login",
             "/auth/register",
@@ -51,13 +60,21 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
+            Claims claims;
             try {
-                username = jwtUtil.extractUsername(jwt);
+                claims = jwtUtil.extractAllClaims(jwt);
+                username = claims.getSubject();
             } catch (Exception e) {
                 logger.error("Error extracting username from token", e);
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
             }
+            // In memory, so a logged out or deactivated user is turned away before any query
+            if (tokenRevocationService.isRevoked(username, claims.getId(), JwtUtil.issuedAt(claims))) {
+                logger.warn("Revoked token presented for user: " + username);
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
         }
         
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
@@ -71,9 +88,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                     request.setAttribute("role", user.getRole());
 
                     // Create authorities
-                    List<SimpleGrantedAuthority> authorities = Arrays.stream(user.getRole().split(","))
-                            .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                            .collect(Collectors.toList());
+                    List<SimpleGrantedAuthority> authorities = buildAuthorities(user.getRole());
 
                     // Create authentication token
                     UsernamePasswordAuthenticationToken authToken =
@@ -82,6 +97,9 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
                     // Set authentication in SecurityContext
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    // Kept on the request so async dispatches of streamed responses, which this filter skips,
+                    // are still authenticated
+                    securityContextRepository.saveContext(SecurityContextHolder.getContext(), request, response);
                 } else {
                     logger.warn("Token validation failed for user: " + username);
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -97,6 +115,12 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         chain.doFilter(request, response);
     }
 
+    static List<SimpleGrantedAuthority> buildAuthorities(String role) {
+        return Arrays.stream(role.split(","))
+                .map(r -> new SimpleGrantedAuthority("ROLE_" + r))
+                .collect(Collectors.toList());
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
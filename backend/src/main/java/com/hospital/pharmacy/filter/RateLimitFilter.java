@@ -0,0 +1,95 @@
+package com.hospital.pharmacy.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.service.RateLimitService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Refuses requests over their rate limit with 429 and Retry-After.
+ *
+ * Runs after Spring Security, so an authenticated caller is counted per user,
+ * and before the bulkheads, so a refused request never takes a slot. The
+ * client's address is the connection's; behind a reverse proxy set
+ * server.forward-headers-strategy so it is the original client's. Limits per
+ * account (the email a login or reset is for, and for a login the address it
+ * comes from) are checked by AuthController once it has read the body.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 100)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String path = request.getServletPath();
+        long waitMs = rateLimitService.tryAcquire(path, RateLimitService.KEY_IP, request.getRemoteAddr());
+        if (waitMs == 0 && request.getAttribute("user") instanceof User user && user.getId() != null) {
+            waitMs = rateLimitService.tryAcquire(path, RateLimitService.KEY_USER, user.getId().toString());
+        }
+        if (waitMs > 0) {
+            logger.debug("Rate limited {} {} from {}", request.getMethod(), request.getRequestURI(),
+                    request.getRemoteAddr());
+            reject(response, waitMs);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Write a 429 response
+     * @param response Response to write
+     * @param waitMs Milliseconds until the client may try again
+     * @throws IOException If the response cannot be written
+     */
+    public void reject(HttpServletResponse response, long waitMs) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(waitMs)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(
+                Map.of("message", "Too many requests, try again later")));
+    }
+
+    /**
+     * Seconds to put in Retry-After
+     * @param waitMs Milliseconds until the client may try again
+     * @return The wait rounded up to whole seconds, at least 1
+     */
+    public static long retryAfterSeconds(long waitMs) {
+        return Math.max(1, (waitMs + 999) / 1000);
+    }
+}
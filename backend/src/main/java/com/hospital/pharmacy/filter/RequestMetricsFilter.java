@@ -0,0 +1,163 @@
+package com.hospital.pharmacy.filter;
+
+import com.hospital.pharmacy.util.RequestQueryStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.Ordered;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how many SQL statements each endpoint runs and how long they take.
+ *
+ * Counts include the JWT user lookup and any lazy loading done while the
+ * response is serialized. With app.metrics.query-count-header=true, set by
+ * the dev profile, the count is also returned in an X-Query-Count header,
+ * which buffers the response body so the header can still be set. Responses
+ * that are streamed, answered asynchronously or written by the handler
+ * itself (files, SSE, NDJSON, downloads) are never buffered and carry no
+ * header, nor are paths listed in app.metrics.unbuffered-paths.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    // Return types Spring MVC answers asynchronously or streams
+    private static final List<Class<?>> STREAMING_TYPES = List.of(Callable.class, CompletionStage.class,
+            DeferredResult.class, WebAsyncTask.class, ResponseBodyEmitter.class, StreamingResponseBody.class,
+            Resource.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private ObjectProvider<HandlerMapping> handlerMapping;
+
+    @Value("${app.metrics.query-count-header:false}")
+    private boolean queryCountHeader;
+
+    @Value("${app.metrics.unbuffered-paths:/files/**}")
+    private List<String> unbufferedPaths;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Map<Method, Boolean> streamingHandlers = new ConcurrentHashMap<>();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        RequestQueryStats.reset();
+
+        if (!queryCountHeader || streams(request)) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                record(request);
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            record(request);
+            wrapper.setHeader(QUERY_COUNT_HEADER, String.valueOf(RequestQueryStats.statementCount()));
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private boolean streams(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (unbufferedPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern.trim(), path))) {
+            return true;
+        }
+        HandlerExecutionChain handler;
+        try {
+            handler = handlerMapping.getObject().getHandler(request);
+        } catch (Exception e) {
+            // Left to the dispatcher to fail the same way; nothing is buffered for it
+            return true;
+        }
+        if (handler == null || !(handler.getHandler() instanceof HandlerMethod method)) {
+            return false;
+        }
+        return streamingHandlers.computeIfAbsent(method.getMethod(), m -> isStreaming(method));
+    }
+
+    private static boolean isStreaming(HandlerMethod method) {
+        for (MethodParameter parameter : method.getMethodParameters()) {
+            if (ServletResponse.class.isAssignableFrom(parameter.getParameterType())) {
+                // Writes the response itself
+                return true;
+            }
+        }
+        MethodParameter returnType = method.getReturnType();
+        Class<?> type = returnType.getParameterType();
+        if (HttpEntity.class.isAssignableFrom(type)) {
+            type = ResolvableType.forMethodParameter(returnType).getGeneric(0).resolve(Object.class);
+        }
+        Class<?> bodyType = type;
+        return STREAMING_TYPES.stream().anyMatch(streaming -> streaming.isAssignableFrom(bodyType));
+    }
+
+    private void record(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : UNKNOWN_URI;
+
+        DistributionSummary.builder("clinixpro.http.sql.statements")
+                .description("SQL statements executed per request")
+                .tag("uri", uri)
+                .tag("method", request.getMethod())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(RequestQueryStats.statementCount());
+
+        Timer.builder("clinixpro.http.sql.time")
+                .description("Time spent executing SQL per request")
+                .tag("uri", uri)
+                .tag("method", request.getMethod())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(RequestQueryStats.statementNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,60 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stay of a patient in a bed, kept after discharge.
+ * Ward and room are copied from the bed so history survives bed moves and deletes.
+ */
+@Entity
+@Table(name = "admissions", indexes = {
+        @Index(name = "idx_admissions_bed_open", columnList = "bedId, dischargedAt"),
+        @Index(name = "idx_admissions_admitted", columnList = "admittedAt"),
+        @Index(name = "idx_admissions_discharged", columnList = "dischargedAt"),
+        @Index(name = "idx_admissions_patient_time", columnList = "patient_id, admittedAt, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Admission {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String bedId;
+
+    @Column(nullable = false)
+    private String wardName;
+
+    private String roomNumber;
+
+    // Deleting a patient or doctor keeps the stay for occupancy history
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id")
+    @OnDelete(action = OnDeleteAction.SET_NULL)
+    private Patient patient;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id")
+    @OnDelete(action = OnDeleteAction.SET_NULL)
+    private User doctor;
+
+    private String diagnosis;
+
+    @Column(nullable = false)
+    private LocalDateTime admittedAt;
+
+    private LocalDateTime dischargedAt;
+
+    // Set on discharge
+    private Long stayMinutes;
+}
@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.SyncTombstoneListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -10,7 +11,12 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "appointments")
+@EntityListeners(SyncTombstoneListener.class)
+@Table(name = "appointments", indexes = {
+        @Index(name = "idx_appointments_patient_time", columnList = "patient_id, appointmentdatetime, id"),
+        @Index(name = "idx_appointments_date_time", columnList = "appointmentdatetime"),
+        @Index(name = "idx_appointments_updated_at", columnList = "updatedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
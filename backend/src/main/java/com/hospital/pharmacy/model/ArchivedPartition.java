@@ -0,0 +1,46 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "archived_partitions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_archived_partitions_table_month", columnNames = {"tableName", "monthStart"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String tableName; // appointments, billings
+
+    @Column(nullable = false)
+    private LocalDate monthStart; // first day of the month
+
+    @Column(nullable = false)
+    private String status; // ARCHIVED, RESTORED
+
+    private Long rowCount; // all tables in the file, e.g. bills with their items and payments
+
+    @Column(nullable = false)
+    private String fileName; // relative to the archive directory
+
+    private Long fileSize;
+
+    @Column(length = 64)
+    private String sha256;
+
+    private LocalDateTime archivedAt;
+
+    private LocalDateTime restoredAt;
+}
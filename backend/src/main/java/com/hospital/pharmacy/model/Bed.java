@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.SyncTombstoneListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,7 +9,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "beds")
+@EntityListeners(SyncTombstoneListener.class)
+@Table(name = "beds", indexes = {
+        @Index(name = "idx_beds_room_status", columnList = "roomNumber, status"),
+        @Index(name = "idx_beds_updated_at", columnList = "updatedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.SyncTombstoneListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -14,7 +15,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "billings")
+@EntityListeners(SyncTombstoneListener.class)
+@Table(name = "billings", indexes = {
+        @Index(name = "idx_billings_patient_date", columnList = "patient_id, billDate, id"),
+        @Index(name = "idx_billings_updated_at", columnList = "updatedAt, id"),
+        @Index(name = "idx_billings_bill_date", columnList = "billDate")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -58,8 +64,8 @@ public class Billing {
     @JoinColumn(name = "bill_id")
     private List<BillingItem> billingItems = new ArrayList<>();
 
-    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "bill_id")
+    @OneToMany(mappedBy = "billing", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("paymentDate, id")
     private List<Payment> payments = new ArrayList<>();
 
     @ManyToOne
@@ -0,0 +1,77 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "claim_batches", indexes = {
+        @Index(name = "idx_claim_batches_payer_status", columnList = "payer_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaimBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true, nullable = false)
+    private String batchNumber; // CLB-<payer code>-<yyyyMMddHHmmss>
+
+    @ManyToOne
+    @JoinColumn(name = "payer_id", nullable = false)
+    private Payer payer;
+
+    @Column(nullable = false)
+    private LocalDate fromDate; // bill dates, inclusive
+
+    @Column(nullable = false)
+    private LocalDate toDate;
+
+    @Column(nullable = false)
+    private String status; // BUILDING, COMPLETED, FAILED, SUBMITTED
+
+    private Integer claimCount = 0;
+
+    private Integer lineCount = 0;
+
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    // Keyset cursor and file length as of the last committed page; a resumed build continues from here
+    private String lastPolicyNumber = "";
+
+    private Long lastBillingId = 0L;
+
+    private Long fileLength = 0L;
+
+    private String fileName;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+
+    private LocalDateTime submittedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
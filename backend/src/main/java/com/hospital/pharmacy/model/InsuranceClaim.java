@@ -0,0 +1,63 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Ids rather than associations: claims are inserted in bulk by the batch builder
+@Entity
+@Table(name = "insurance_claims", indexes = {
+        @Index(name = "idx_insurance_claims_batch", columnList = "batch_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InsuranceClaim {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // One claim per bill
+    @Column(name = "bill_id", unique = true, nullable = false)
+    private Long billingId;
+
+    @Column(name = "batch_id", nullable = false)
+    private Long batchId;
+
+    @Column(name = "payer_id", nullable = false)
+    private Long payerId;
+
+    @Column(name = "patient_id", nullable = false)
+    private Long patientId;
+
+    private String policyNumber;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private String status; // QUEUED, SUBMITTED, ACCEPTED, REJECTED, PAID
+
+    @Column(length = 1000)
+    private String note; // payer's remark, e.g. a rejection reason
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
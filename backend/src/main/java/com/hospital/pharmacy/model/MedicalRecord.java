@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.ClinicalSearchIndexListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -13,7 +14,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "medical_records")
+@EntityListeners(ClinicalSearchIndexListener.class)
+@Table(name = "medical_records", indexes = {
+        @Index(name = "idx_medical_records_patient_date", columnList = "patient_id, recordDate, id"),
+        @Index(name = "idx_medical_records_updated", columnList = "updatedAt")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -7,15 +8,20 @@ import jakarta.validation.constraints.Past;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Entity
-@Table(name = "patients")
+@Table(name = "patients", indexes = {
+        @Index(name = "idx_patients_payer_policy", columnList = "payer_id, insurancePolicyNumber")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -73,6 +79,14 @@ public class Patient {
 
     private String insuranceProvider;
 
+    // Normalized insuranceProvider; linked in the background by PayerService
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "payer_id")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Payer payer;
+
     private String insurancePolicyNumber;
 
     private String insuranceExpiryDate;
@@ -99,6 +113,14 @@ public class Patient {
     @Column(name = "medication")
     private List<String> currentMedications = new ArrayList<>();
 
+    public void setInsuranceProvider(String insuranceProvider) {
+        // A different provider needs a new payer link
+        if (!Objects.equals(this.insuranceProvider, insuranceProvider)) {
+            payer = null;
+        }
+        this.insuranceProvider = insuranceProvider;
+    }
+
     @PrePersist
     protected void onCreate() {
         registrationDate = LocalDateTime.now();
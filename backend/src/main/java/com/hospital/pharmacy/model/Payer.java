@@ -0,0 +1,34 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "payers")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Payer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Normalized provider name, e.g. "Blue Cross, Inc." and "BLUECROSS" are both BLUECROSS
+    @Column(unique = true, nullable = false, length = 100)
+    private String code;
+
+    @Column(nullable = false)
+    private String name; // as first entered
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
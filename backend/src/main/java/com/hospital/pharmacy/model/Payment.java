@@ -1,17 +1,22 @@
 package com.hospital.pharmacy.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payments_idempotency_key", columnNames = "idempotencyKey")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,6 +26,18 @@ public class Payment {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Payments are immutable once recorded; the bill's paidAmount is their sum
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bill_id", updatable = false)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Billing billing;
+
+    // Client-chosen key; a retry with the same key records nothing new
+    @Column(length = 100, updatable = false)
+    private String idempotencyKey;
+
     @NotNull
     private LocalDateTime paymentDate;
 
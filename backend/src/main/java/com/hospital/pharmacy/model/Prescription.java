@@ -1,5 +1,7 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.ClinicalSearchIndexListener;
+import com.hospital.pharmacy.service.SyncTombstoneListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -13,7 +15,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "prescriptions")
+@EntityListeners({ClinicalSearchIndexListener.class, SyncTombstoneListener.class})
+@Table(name = "prescriptions", indexes = {
+        @Index(name = "idx_prescriptions_patient_date", columnList = "patient_id, prescriptionDate, id"),
+        @Index(name = "idx_prescriptions_updated", columnList = "updatedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,35 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Tokens one node took from a rate limit bucket, so the other nodes charge them too
+@Entity
+@Table(name = "rate_limit_hits", indexes = {
+        @Index(name = "idx_rate_limit_hits_created", columnList = "createdAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitHit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String nodeId; // Random per process
+
+    @Column(nullable = false, length = 320)
+    private String bucketKey; // policy|key, e.g. login-ip|10.0.0.7
+
+    @Column(nullable = false)
+    private Integer tokens;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,58 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "report_jobs", indexes = {
+        @Index(name = "idx_report_jobs_lookup", columnList = "reportType, parameters, dataWatermark, status"),
+        @Index(name = "idx_report_jobs_requested_by", columnList = "requestedBy, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String reportType; // INVENTORY, PRESCRIPTIONS, ALL, DUNNING
+
+    @Column(nullable = false, length = 500)
+    private String parameters = ""; // normalized name=value pairs joined by &
+
+    // Row counts and last change times of the tables the report reads, when it was requested
+    @Column(nullable = false, length = 500)
+    private String dataWatermark;
+
+    @Column(nullable = false)
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+
+    private String requestedBy; // email of the user who first asked for it
+
+    private String fileName;
+
+    private String contentType;
+
+    private Long fileLength;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -1,5 +1,6 @@
 package com.hospital.pharmacy.model;
 
+import com.hospital.pharmacy.service.SyncTombstoneListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,7 +10,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "rooms")
+@EntityListeners(SyncTombstoneListener.class)
+@Table(name = "rooms", indexes = {
+        @Index(name = "idx_rooms_number", columnList = "number"),
+        @Index(name = "idx_rooms_ward", columnList = "ward, number"),
+        @Index(name = "idx_rooms_updated_at", columnList = "updatedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,7 +42,8 @@ public class Room {
     @Column(nullable = false)
     private int capacity;
 
-    @Column(nullable = false)
+    // Maintained by BedServiceImpl through RoomRepository.adjustOccupancy; never written on merge
+    @Column(nullable = false, updatable = false)
     private int occupancy;
 
     @Column(nullable = false)
@@ -0,0 +1,37 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A logged out token, or all tokens issued to a user up to a point; every node keeps these in memory
+@Entity
+@Table(name = "token_revocations", indexes = {
+        @Index(name = "idx_token_revocations_expires", columnList = "expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 320)
+    private String subject; // Email the tokens were issued to
+
+    @Column(length = 64)
+    private String tokenId; // jti of the one token revoked, null for all of the subject's tokens
+
+    private LocalDateTime issuedUpTo; // Millisecond; the subject's tokens issued up to and including it are revoked
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt; // Every token revoked has expired by then
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,49 @@
+package com.hospital.pharmacy.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occupancy of one ward during one hour, rolled up from admissions.
+ * Hours in which a ward had no patients have no row.
+ */
+@Entity
+@Table(name = "ward_occupancy_hourly", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ward_occupancy_hour", columnNames = { "hourStart", "wardName" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WardOccupancyHourly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(nullable = false)
+    private String wardName;
+
+    // Sum over patients of minutes spent in the ward this hour; divided by 60 gives average occupancy
+    @Column(nullable = false)
+    private long occupiedMinutes;
+
+    @Column(nullable = false)
+    private int peakOccupancy;
+
+    @Column(nullable = false)
+    private int admissions;
+
+    @Column(nullable = false)
+    private int discharges;
+
+    // Total length of the stays that ended this hour
+    @Column(nullable = false)
+    private long dischargedStayMinutes;
+}
@@ -0,0 +1,40 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.dto.TimelineEventDTO;
+import com.hospital.pharmacy.model.Admission;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AdmissionRepository extends JpaRepository<Admission, Long> {
+
+    // The current stay in a bed, if any
+    Optional<Admission> findFirstByBedIdAndDischargedAtIsNullOrderByAdmittedAtDesc(String bedId);
+
+    boolean existsByBedIdAndDischargedAtIsNull(String bedId);
+
+    // Stays that overlap [from, to)
+    @Query("SELECT a FROM Admission a WHERE a.admittedAt < :to " +
+            "AND (a.dischargedAt IS NULL OR a.dischargedAt >= :from)")
+    List<Admission> findOverlapping(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT MIN(a.admittedAt) FROM Admission a")
+    LocalDateTime findEarliestAdmission();
+
+    // One keyset page of a patient's timeline, newest first
+    @Query("SELECT new com.hospital.pharmacy.dto.TimelineEventDTO('ADMISSION', a.id, a.bedId, a.admittedAt, " +
+            "a.wardName, CASE WHEN a.dischargedAt IS NULL THEN 'ADMITTED' ELSE 'DISCHARGED' END, " +
+            "a.diagnosis, d.firstName, d.lastName) " +
+            "FROM Admission a LEFT JOIN a.doctor d WHERE a.patient.id = :patientId AND " +
+            "(a.admittedAt < :before OR (a.admittedAt = :before AND a.id < :beforeId)) " +
+            "ORDER BY a.admittedAt DESC, a.id DESC")
+    List<TimelineEventDTO> findTimelinePage(@Param("patientId") Long patientId,
+            @Param("before") LocalDateTime before, @Param("beforeId") Long beforeId, Pageable pageable);
+}
@@ -1,9 +1,12 @@
 package com.hospital.pharmacy.repository;
 
+import com.hospital.pharmacy.dto.TimelineEventDTO;
 import com.hospital.pharmacy.model.Appointment;
 import com.hospital.pharmacy.model.Patient;
 import com.hospital.pharmacy.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -100,4 +103,18 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     List<Patient> findDistinctPatientsByDoctorIdAndSearch(@Param("doctorId") Long doctorId,
             @Param("search") String search);
 
-}
\ No newline at end of file
+    // One keyset page of a patient's timeline, newest first
+    @Query("SELECT new com.hospital.pharmacy.dto.TimelineEventDTO('APPOINTMENT', a.id, a.appointmentId, " +
+            "a.appointmentDateTime, a.type, a.status, a.symptoms, d.firstName, d.lastName) " +
+            "FROM Appointment a LEFT JOIN a.doctor d WHERE a.patient.id = :patientId AND " +
+            "(a.appointmentDateTime < :before OR (a.appointmentDateTime = :before AND a.id < :beforeId)) " +
+            "ORDER BY a.appointmentDateTime DESC, a.id DESC")
+    List<TimelineEventDTO> findTimelinePage(@Param("patientId") Long patientId,
+            @Param("before") LocalDateTime before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Marks a completed appointment of the patient as billed; returns 0 if it is not one
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = 'BILLED', a.updatedAt = :now " +
+            "WHERE a.id = :id AND a.patient.id = :patientId AND a.status = 'COMPLETED'")
+    int markBilled(@Param("id") Long id, @Param("patientId") Long patientId, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,17 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.ArchivedPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArchivedPartitionRepository extends JpaRepository<ArchivedPartition, Long> {
+
+    Optional<ArchivedPartition> findByTableNameAndMonthStart(String tableName, LocalDate monthStart);
+
+    List<ArchivedPartition> findAllByOrderByTableNameAscMonthStartAsc();
+}
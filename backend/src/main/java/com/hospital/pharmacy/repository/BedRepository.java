@@ -3,11 +3,14 @@ package com.hospital.pharmacy.repository;
 import com.hospital.pharmacy.model.Bed;
 import com.hospital.pharmacy.model.Patient;
 import com.hospital.pharmacy.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -34,17 +37,48 @@ public interface BedRepository extends JpaRepository<Bed, Long> {
         // Count beds by ward name
         long countByWardName(String wardName);
 
-        // Custom query to find beds with filtering
-        @Query("SELECT b FROM Bed b WHERE " +
+        // Count beds in a room with a given status
+        long countByRoomNumberAndStatus(String roomNumber, String status);
+
+        // Custom query to find beds with filtering; the outer join keeps beds without a patient
+        @Query("SELECT b FROM Bed b LEFT JOIN b.patient p WHERE " +
                         "(:ward IS NULL OR b.wardName = :ward) AND " +
                         "(:status IS NULL OR b.status = :status) AND " +
                         "(:search IS NULL OR b.bedId LIKE %:search% OR " +
                         "b.roomNumber LIKE %:search% OR " +
-                        "(b.patient IS NOT NULL AND " +
-                        "(b.patient.firstName LIKE %:search% OR " +
-                        "b.patient.lastName LIKE %:search% OR " +
-                        "b.patient.patientId LIKE %:search%)))")
+                        "p.firstName LIKE %:search% OR " +
+                        "p.lastName LIKE %:search% OR " +
+                        "p.patientId LIKE %:search%)")
         List<Bed> findByFilters(@Param("ward") String ward,
                         @Param("status") String status,
                         @Param("search") String search);
-}
\ No newline at end of file
+
+        // All beds with their patient and doctor, for rebuilding the bed board
+        @EntityGraph(attributePaths = { "patient", "patient.assignedDoctor", "doctor" })
+        @Query("SELECT b FROM Bed b ORDER BY b.id")
+        List<Bed> findAllForBoard();
+
+        // Beds changed since the given time, for syncing the bed board across nodes
+        @EntityGraph(attributePaths = { "patient", "patient.assignedDoctor", "doctor" })
+        @Query("SELECT b FROM Bed b WHERE b.updatedAt > :since ORDER BY b.updatedAt")
+        List<Bed> findChangedSince(@Param("since") LocalDateTime since);
+
+        // Claims a bed only if it is still free; returns 0 when another admission won the race
+        @Modifying(clearAutomatically = true, flushAutomatically = true)
+        @Query("UPDATE Bed b SET b.status = 'Occupied', b.patient = :patient, b.doctor = :doctor, " +
+                        "b.admissionDate = :admissionDate, b.diagnosis = :diagnosis, b.updatedAt = :now " +
+                        "WHERE b.bedId = :bedId AND b.status = 'Available'")
+        int claimBed(@Param("bedId") String bedId,
+                        @Param("patient") Patient patient,
+                        @Param("doctor") User doctor,
+                        @Param("admissionDate") String admissionDate,
+                        @Param("diagnosis") String diagnosis,
+                        @Param("now") LocalDateTime now);
+
+        // Frees a bed only if it is still occupied; returns 0 when it was already released
+        @Modifying(clearAutomatically = true, flushAutomatically = true)
+        @Query("UPDATE Bed b SET b.status = 'Available', b.patient = NULL, b.doctor = NULL, " +
+                        "b.admissionDate = NULL, b.diagnosis = NULL, b.updatedAt = :now " +
+                        "WHERE b.bedId = :bedId AND b.status = 'Occupied'")
+        int releaseBed(@Param("bedId") String bedId, @Param("now") LocalDateTime now);
+}
@@ -1,13 +1,20 @@
 package com.hospital.pharmacy.repository;
 
+import com.hospital.pharmacy.dto.BillBalanceDTO;
+import com.hospital.pharmacy.dto.TimelineEventDTO;
 import com.hospital.pharmacy.model.Billing;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BillingRepository extends JpaRepository<Billing, Long> {
@@ -15,6 +22,15 @@ public interface BillingRepository extends JpaRepository<Billing, Long> {
         // Find billing by billNumber
         Billing findByBillNumber(String billNumber);
 
+        // Bill row locked for the rest of the transaction, so payments on it are applied one at a time
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT b FROM Billing b WHERE b.id = :id")
+        Optional<Billing> findByIdForUpdate(@Param("id") Long id);
+
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT b FROM Billing b WHERE b.billNumber = :billNumber")
+        Optional<Billing> findByBillNumberForUpdate(@Param("billNumber") String billNumber);
+
         // Find billings by patient ID
         List<Billing> findByPatientId(Long patientId);
 
@@ -35,4 +51,26 @@ public interface BillingRepository extends JpaRepository<Billing, Long> {
                         @Param("status") String status,
                         @Param("startDate") LocalDate startDate,
                         @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+        // One keyset page of a patient's timeline, newest first
+        @Query("SELECT new com.hospital.pharmacy.dto.TimelineEventDTO('BILL', b.id, b.billNumber, " +
+                        "b.billDate, b.status, b.notes, b.totalAmount, u.firstName, u.lastName) " +
+                        "FROM Billing b LEFT JOIN b.createdBy u WHERE b.patient.id = :patientId AND " +
+                        "(b.billDate < :before OR (b.billDate = :before AND b.id < :beforeId)) " +
+                        "ORDER BY b.billDate DESC, b.id DESC")
+        List<TimelineEventDTO> findTimelinePage(@Param("patientId") Long patientId,
+                        @Param("before") LocalDate before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+        // One page of unpaid bills by ID, for loading accounts receivable
+        @Query("SELECT new com.hospital.pharmacy.dto.BillBalanceDTO(b.id, b.patient.id, " +
+                        "COALESCE(b.dueDate, b.billDate), b.totalAmount, b.paidAmount, b.status, b.updatedAt) " +
+                        "FROM Billing b WHERE b.status IN ('PENDING', 'PARTIALLY_PAID') AND b.id > :afterId " +
+                        "ORDER BY b.id")
+        List<BillBalanceDTO> findOpenBalancesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+        // Bills changed since the given time in any status, for syncing accounts receivable across nodes
+        @Query("SELECT new com.hospital.pharmacy.dto.BillBalanceDTO(b.id, b.patient.id, " +
+                        "COALESCE(b.dueDate, b.billDate), b.totalAmount, b.paidAmount, b.status, b.updatedAt) " +
+                        "FROM Billing b WHERE b.updatedAt > :since ORDER BY b.updatedAt")
+        List<BillBalanceDTO> findBalancesUpdatedSince(@Param("since") LocalDateTime since);
+}
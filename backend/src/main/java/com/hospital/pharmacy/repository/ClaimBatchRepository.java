@@ -0,0 +1,22 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.ClaimBatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ClaimBatchRepository extends JpaRepository<ClaimBatch, Long> {
+
+    List<ClaimBatch> findByStatus(String status);
+
+    boolean existsByPayerIdAndStatus(Long payerId, String status);
+
+    // Newest first; payerCode null for all payers
+    @Query("SELECT b FROM ClaimBatch b WHERE :payerCode IS NULL OR b.payer.code = :payerCode ORDER BY b.id DESC")
+    List<ClaimBatch> findRecent(@Param("payerCode") String payerCode, Pageable pageable);
+}
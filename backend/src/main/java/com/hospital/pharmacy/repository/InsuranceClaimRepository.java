@@ -0,0 +1,25 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.InsuranceClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InsuranceClaimRepository extends JpaRepository<InsuranceClaim, Long> {
+
+    Optional<InsuranceClaim> findByBillingId(Long billingId);
+
+    List<InsuranceClaim> findByBatchId(Long batchId);
+
+    @Modifying
+    @Query("UPDATE InsuranceClaim c SET c.status = 'SUBMITTED', c.updatedAt = :now " +
+            "WHERE c.batchId = :batchId AND c.status = 'QUEUED'")
+    int markSubmitted(@Param("batchId") Long batchId, @Param("now") LocalDateTime now);
+}
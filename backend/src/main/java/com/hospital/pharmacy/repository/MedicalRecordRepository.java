@@ -1,12 +1,16 @@
 package com.hospital.pharmacy.repository;
 
+import com.hospital.pharmacy.dto.ClinicalDocumentDTO;
+import com.hospital.pharmacy.dto.TimelineEventDTO;
 import com.hospital.pharmacy.model.MedicalRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +32,27 @@ public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, Lo
     Long countRecordsByDate(@Param("date") LocalDate date);
     
     List<MedicalRecord> findByPatientIdOrderByRecordDateDesc(Long patientId);
-} 
\ No newline at end of file
+
+    // One keyset page of a patient's timeline, newest first
+    @Query("SELECT new com.hospital.pharmacy.dto.TimelineEventDTO('MEDICAL_RECORD', mr.id, mr.recordId, " +
+            "mr.recordDate, mr.diagnosis, 'RECORDED', mr.chiefComplaint, d.firstName, d.lastName) " +
+            "FROM MedicalRecord mr LEFT JOIN mr.doctor d WHERE mr.patient.id = :patientId AND " +
+            "(mr.recordDate < :before OR (mr.recordDate = :before AND mr.id < :beforeId)) " +
+            "ORDER BY mr.recordDate DESC, mr.id DESC")
+    List<TimelineEventDTO> findTimelinePage(@Param("patientId") Long patientId,
+            @Param("before") LocalDate before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Clinical search index feed, in id order for keyset paging
+    @Query("SELECT new com.hospital.pharmacy.dto.ClinicalDocumentDTO('MEDICAL_RECORD', mr.id, mr.recordId, " +
+            "mr.patient.id, mr.doctor.id, mr.recordDate, mr.diagnosis, mr.chiefComplaint) " +
+            "FROM MedicalRecord mr WHERE mr.id > :afterId ORDER BY mr.id")
+    List<ClinicalDocumentDTO> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.hospital.pharmacy.dto.ClinicalDocumentDTO('MEDICAL_RECORD', mr.id, mr.recordId, " +
+            "mr.patient.id, mr.doctor.id, mr.recordDate, mr.diagnosis, mr.chiefComplaint) " +
+            "FROM MedicalRecord mr WHERE mr.updatedAt > :since")
+    List<ClinicalDocumentDTO> findSearchDocumentsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT mr.id FROM MedicalRecord mr WHERE mr.id > :afterId ORDER BY mr.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -1,8 +1,10 @@
 package com.hospital.pharmacy.repository;
 
 import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Payer;
 import com.hospital.pharmacy.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -45,9 +47,19 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
                         @Param("doctorId") Long doctorId,
                         @Param("searchTerm") String searchTerm);
 
-        @Query("SELECT p FROM Patient p WHERE " +
-                        "p.insuranceProvider LIKE CONCAT('%', :provider, '%')")
-        List<Patient> findByInsuranceProvider(@Param("provider") String provider);
+        // Exact match on the indexed payer code; see PayerService.toCode
+        @Query("SELECT p FROM Patient p WHERE p.payer.code = :code")
+        List<Patient> findByPayerCode(@Param("code") String code);
+
+        // Providers of patients not yet linked to a payer
+        @Query("SELECT DISTINCT p.insuranceProvider FROM Patient p " +
+                        "WHERE p.payer IS NULL AND p.insuranceProvider IS NOT NULL")
+        List<String> findUnlinkedInsuranceProviders();
+
+        @Modifying
+        @Query("UPDATE Patient p SET p.payer = :payer " +
+                        "WHERE p.payer IS NULL AND p.insuranceProvider = :provider")
+        int linkPayer(@Param("payer") Payer payer, @Param("provider") String provider);
 
         @Query("SELECT COUNT(p) FROM Patient p")
         long countTotalPatients();
@@ -0,0 +1,16 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.Payer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PayerRepository extends JpaRepository<Payer, Long> {
+
+    Optional<Payer> findByCode(String code);
+
+    List<Payer> findAllByOrderByCodeAsc();
+}
@@ -0,0 +1,20 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.Payment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@Repository
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+
+    @Query("SELECT p FROM Payment p JOIN FETCH p.billing WHERE p.idempotencyKey = :key")
+    Optional<Payment> findByIdempotencyKey(@Param("key") String key);
+
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.billing.id = :billingId")
+    BigDecimal sumAmountByBillingId(@Param("billingId") Long billingId);
+}
@@ -1,14 +1,18 @@
 package com.hospital.pharmacy.repository;
 
+import com.hospital.pharmacy.dto.ClinicalDocumentDTO;
+import com.hospital.pharmacy.dto.TimelineEventDTO;
 import com.hospital.pharmacy.model.Patient;
 import com.hospital.pharmacy.model.Prescription;
 import com.hospital.pharmacy.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +31,9 @@ public interface PrescriptionRepository extends JpaRepository<Prescription, Long
 
     List<Prescription> findByStatus(String status);
 
+    // Keyset page by id, for reports that stream every prescription in a status
+    List<Prescription> findByStatusAndIdGreaterThanOrderByIdAsc(String status, Long afterId, Pageable pageable);
+
     // Count prescriptions by status
     long countByStatus(String status);
 
@@ -48,4 +55,29 @@ public interface PrescriptionRepository extends JpaRepository<Prescription, Long
 
     @Query("SELECT COUNT(p) FROM Prescription p WHERE p.patient.id = :patientId")
     long countByPatient(@Param("patientId") Long patientId);
-}
\ No newline at end of file
+
+    // One keyset page of a patient's timeline, newest first
+    @Query("SELECT new com.hospital.pharmacy.dto.TimelineEventDTO('PRESCRIPTION', p.id, p.prescriptionId, " +
+            "p.prescriptionDate, p.medication, p.status, p.diagnosis, d.firstName, d.lastName) " +
+            "FROM Prescription p LEFT JOIN p.doctor d WHERE p.patient.id = :patientId AND " +
+            "(p.prescriptionDate < :before OR (p.prescriptionDate = :before AND p.id < :beforeId)) " +
+            "ORDER BY p.prescriptionDate DESC, p.id DESC")
+    List<TimelineEventDTO> findTimelinePage(@Param("patientId") Long patientId,
+            @Param("before") LocalDate before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Clinical search index feed, in id order for keyset paging
+    @Query("SELECT new com.hospital.pharmacy.dto.ClinicalDocumentDTO('PRESCRIPTION', p.id, p.prescriptionId, " +
+            "p.patient.id, p.doctor.id, p.prescriptionDate, p.diagnosis, " +
+            "CONCAT(COALESCE(p.notes, ''), ' ', COALESCE(p.instructions, ''))) " +
+            "FROM Prescription p WHERE p.id > :afterId ORDER BY p.id")
+    List<ClinicalDocumentDTO> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.hospital.pharmacy.dto.ClinicalDocumentDTO('PRESCRIPTION', p.id, p.prescriptionId, " +
+            "p.patient.id, p.doctor.id, p.prescriptionDate, p.diagnosis, " +
+            "CONCAT(COALESCE(p.notes, ''), ' ', COALESCE(p.instructions, ''))) " +
+            "FROM Prescription p WHERE p.updatedAt > :since")
+    List<ClinicalDocumentDTO> findSearchDocumentsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT p.id FROM Prescription p WHERE p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
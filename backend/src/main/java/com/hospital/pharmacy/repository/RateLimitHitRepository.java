@@ -0,0 +1,26 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.RateLimitHit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RateLimitHitRepository extends JpaRepository<RateLimitHit, Long> {
+
+    // Hits of the other nodes after the last one seen
+    List<RateLimitHit> findByIdGreaterThanAndNodeIdNotOrderByIdAsc(Long afterId, String nodeId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(h.id), 0) FROM RateLimitHit h")
+    Long findMaxId();
+
+    @Modifying
+    @Query("DELETE FROM RateLimitHit h WHERE h.createdAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,29 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.ReportJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReportJobRepository extends JpaRepository<ReportJob, Long> {
+
+    // A job for the same report over the same data, queued, running or done
+    Optional<ReportJob> findFirstByReportTypeAndParametersAndDataWatermarkAndStatusInOrderByIdDesc(
+            String reportType, String parameters, String dataWatermark, Collection<String> statuses);
+
+    List<ReportJob> findByStatusIn(Collection<String> statuses);
+
+    // Newest first; requestedBy null for every user
+    @Query("SELECT j FROM ReportJob j WHERE :requestedBy IS NULL OR j.requestedBy = :requestedBy ORDER BY j.id DESC")
+    List<ReportJob> findRecent(@Param("requestedBy") String requestedBy, Pageable pageable);
+
+    List<ReportJob> findByCreatedAtBeforeAndStatusIn(LocalDateTime before, Collection<String> statuses);
+}
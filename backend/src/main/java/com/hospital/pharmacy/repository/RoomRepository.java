@@ -1,18 +1,29 @@
 package com.hospital.pharmacy.repository;
 
+import com.hospital.pharmacy.dto.WardSummaryDTO;
 import com.hospital.pharmacy.model.Room;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoomRepository extends JpaRepository<Room, Long> {
+    @EntityGraph(attributePaths = "features")
     Optional<Room> findByRoomId(String roomId);
 
     // Optional<Room> findByRoomId(Long id);
 
+    @EntityGraph(attributePaths = "features")
+    Optional<Room> findFirstByNumber(String number);
+
+    @EntityGraph(attributePaths = "features")
     List<Room> findByWard(String ward);
 
     List<Room> findByType(String type);
@@ -22,4 +33,15 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
     boolean existsByNumber(String number);
 
     List<Room> findByNameContainingIgnoreCaseOrNumberContainingIgnoreCase(String name, String number);
-}
\ No newline at end of file
+
+    // Relative update so concurrent admissions never lose a count; numbers repeat across wards
+    @Modifying
+    @Query("UPDATE Room r SET r.occupancy = CASE WHEN r.occupancy + :delta < 0 THEN 0 " +
+            "ELSE r.occupancy + :delta END, r.updatedAt = :now WHERE r.ward = :ward AND r.number = :number")
+    int adjustOccupancy(@Param("ward") String ward, @Param("number") String number, @Param("delta") int delta,
+                        @Param("now") LocalDateTime now);
+
+    @Query("SELECT new com.hospital.pharmacy.dto.WardSummaryDTO(r.ward, COUNT(r), SUM(r.capacity), SUM(r.occupancy)) " +
+            "FROM Room r GROUP BY r.ward ORDER BY r.ward")
+    List<WardSummaryDTO> summarizeWards();
+}
@@ -0,0 +1,13 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findByHash(String hash);
+}
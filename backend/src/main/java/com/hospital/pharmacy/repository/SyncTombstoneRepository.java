@@ -0,0 +1,26 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.SyncTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SyncTombstoneRepository extends JpaRepository<SyncTombstone, Long> {
+
+    // Keyset page on (deletedAt, id); uses idx_sync_tombstones_type_deleted
+    @Query("SELECT t FROM SyncTombstone t WHERE t.entityType = :type AND " +
+            "(t.deletedAt > :at OR (t.deletedAt = :at AND t.id > :id)) ORDER BY t.deletedAt, t.id")
+    List<SyncTombstone> findPage(@Param("type") String type, @Param("at") LocalDateTime at, @Param("id") Long id,
+                                 Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM SyncTombstone t WHERE t.deletedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
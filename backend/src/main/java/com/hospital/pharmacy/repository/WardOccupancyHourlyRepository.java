@@ -0,0 +1,28 @@
+package com.hospital.pharmacy.repository;
+
+import com.hospital.pharmacy.model.WardOccupancyHourly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WardOccupancyHourlyRepository extends JpaRepository<WardOccupancyHourly, Long> {
+
+    List<WardOccupancyHourly> findByHourStartGreaterThanEqualAndHourStartLessThanOrderByHourStart(
+            LocalDateTime from, LocalDateTime to);
+
+    List<WardOccupancyHourly> findByWardNameAndHourStartGreaterThanEqualAndHourStartLessThanOrderByHourStart(
+            String wardName, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT MAX(o.hourStart) FROM WardOccupancyHourly o")
+    LocalDateTime findLatestHour();
+
+    @Modifying
+    @Query("DELETE FROM WardOccupancyHourly o WHERE o.hourStart >= :from AND o.hourStart < :to")
+    int deleteHours(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,77 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.AgingSummaryDTO;
+import com.hospital.pharmacy.dto.PatientBalanceDTO;
+import com.hospital.pharmacy.model.Billing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface for accounts receivable.
+ * Keeps every patient's outstanding balance in memory, split into aging
+ * buckets by days past the due date, and updates it as bills are created
+ * and paid.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface AccountsReceivableService {
+
+    /** Aging buckets by days past due, oldest last */
+    List<String> BUCKETS = List.of("CURRENT", "1-30", "31-60", "61-90", "90+");
+
+    /**
+     * Get outstanding totals per aging bucket
+     * @return Totals across all patients
+     * @throws IllegalStateException if the balances are not loaded yet
+     */
+    AgingSummaryDTO getAgingSummary();
+
+    /**
+     * Get the patients owing the most past-due money
+     * @param limit Maximum number of patients
+     * @return Patients ordered by overdue amount, largest first
+     * @throws IllegalStateException if the balances are not loaded yet
+     */
+    List<PatientBalanceDTO> getTopOverdue(int limit);
+
+    /**
+     * Get one patient's outstanding balance
+     * @param patientId Patient database ID
+     * @return Optional containing the balance, empty if nothing is owed
+     * @throws IllegalStateException if the balances are not loaded yet
+     */
+    Optional<PatientBalanceDTO> getPatientBalance(Long patientId);
+
+    /**
+     * Write a CSV of patients to send payment reminders to, largest overdue amount first
+     * @param minDaysOverdue Only count amounts at least this many days past due
+     * @param minAmount Only include patients owing at least this much in those buckets
+     * @param out Destination; not closed
+     * @return Number of patients written
+     * @throws IllegalStateException if the balances are not loaded yet
+     */
+    int writeDunningExport(int minDaysOverdue, BigDecimal minAmount, Writer out) throws IOException;
+
+    /**
+     * Apply a bill's new balance once the current transaction commits
+     * @param billing Bill as saved
+     */
+    void publish(Billing billing);
+
+    /**
+     * Drop a bill once the current transaction commits
+     * @param billingId Bill database ID
+     */
+    void remove(Long billingId);
+
+    /**
+     * Rebuild all balances from the billings table and re-age them as of today
+     */
+    void reload();
+}
@@ -0,0 +1,31 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Admission;
+import com.hospital.pharmacy.model.Bed;
+
+import java.util.Optional;
+
+/**
+ * Service interface for admission history.
+ * Records a stay when a patient is assigned to a bed and closes it on discharge.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface AdmissionService {
+
+    /**
+     * Open a stay for the patient now in the bed
+     * @param bed Occupied bed with its patient, doctor and diagnosis
+     * @return Recorded admission
+     */
+    Admission recordAdmission(Bed bed);
+
+    /**
+     * Close the open stay in a bed, if there is one
+     * @param bedId Bed ID
+     * @return Optional containing the closed admission
+     */
+    Optional<Admission> recordDischarge(String bedId);
+}
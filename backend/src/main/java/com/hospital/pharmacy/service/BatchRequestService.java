@@ -0,0 +1,33 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.BatchRequestDTO;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+
+/**
+ * Service interface for batched read requests.
+ * Runs several GET requests of the API side by side for one caller and
+ * streams each result back as soon as it is ready.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface BatchRequestService {
+
+    /**
+     * Path of the batch endpoint, below the context path
+     */
+    String BATCH_PATH = "/batch";
+
+    /**
+     * Start every sub-request and stream their results as they complete
+     * @param items Sub-requests, run as the caller of the batch
+     * @param request The batch request, whose caller and headers the sub-requests share
+     * @return One JSON line per sub-request, in completion order
+     * @throws IllegalArgumentException if the batch is empty, too large or has an invalid item
+     */
+    StreamingResponseBody execute(List<BatchRequestDTO.Item> items, HttpServletRequest request);
+}
@@ -0,0 +1,72 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.BedBoardDTO;
+import com.hospital.pharmacy.model.Bed;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service interface for the live bed board.
+ * Holds every bed in memory, indexed by ward, status and room type, and
+ * keeps it in step with the beds table on this node and on other nodes.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface BedBoardService {
+
+    /**
+     * Get beds from the board with optional filters
+     * @param ward Ward filter, may be null
+     * @param status Status filter, may be null
+     * @return Matching beds ordered by ID
+     */
+    List<BedBoardDTO> getBeds(String ward, String status);
+
+    /**
+     * Find the first free bed in a ward
+     * @param ward Ward name
+     * @param roomType Room type (e.g., ICU), or null for any type
+     * @return Optional containing a free bed if there is one
+     */
+    Optional<BedBoardDTO> findFirstFree(String ward, String roomType);
+
+    /**
+     * Count beds per ward and status
+     * @return Ward name to status to bed count
+     */
+    Map<String, Map<String, Integer>> getCounts();
+
+    /**
+     * Publish a changed bed once the current transaction commits
+     * @param bed Bed as saved
+     */
+    void publish(Bed bed);
+
+    /**
+     * Re-read a bed from the database and update the board now
+     * @param bedId Bed ID
+     */
+    void refresh(String bedId);
+
+    /**
+     * Remove a bed from the board once the current transaction commits
+     * @param bedId Bed ID
+     */
+    void remove(String bedId);
+
+    /**
+     * Subscribe to bed changes as server-sent events
+     * @return Emitter receiving a "bed" event per change and "bed-removed" per deletion
+     */
+    SseEmitter subscribe();
+
+    /**
+     * Rebuild the board from the beds table
+     */
+    void reload();
+}
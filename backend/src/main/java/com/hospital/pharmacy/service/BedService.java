@@ -1,6 +1,7 @@
 package com.hospital.pharmacy.service;
 
 import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.User;
 import java.util.List;
 import java.util.Optional;
 
@@ -68,6 +69,27 @@ public interface BedService {
      */
     Bed assignPatient(String bedId, Long patientId);
 
+    /**
+     * Admit patient to bed under a doctor
+     * @param bedId Bed ID
+     * @param patientId Patient ID
+     * @param doctor Attending doctor, may be null
+     * @param diagnosis Admission diagnosis, may be null
+     * @return Updated bed
+     */
+    Bed assignPatient(String bedId, Long patientId, User doctor, String diagnosis);
+
+    /**
+     * Admit patient to the first free bed in a ward
+     * @param ward Ward name
+     * @param roomType Room type (e.g., ICU), or null for any type
+     * @param patientId Patient ID
+     * @param doctor Attending doctor, may be null
+     * @param diagnosis Admission diagnosis, may be null
+     * @return Assigned bed
+     */
+    Bed admitToFreeBed(String ward, String roomType, Long patientId, User doctor, String diagnosis);
+
     /**
      * Discharge patient from bed
      * @param bedId Bed ID
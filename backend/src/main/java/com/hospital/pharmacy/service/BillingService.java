@@ -0,0 +1,26 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.BillingRequestDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.User;
+
+/**
+ * Service interface for creating bills.
+ * Totals, discounts and tax are computed from the bill's lines on the server.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface BillingService {
+
+    /**
+     * Create a bill with its items and mark the billed appointment, in one transaction
+     * @param request Bill lines and details
+     * @param createdBy Receptionist creating the bill
+     * @return Saved bill with its items
+     * @throws IllegalArgumentException if the patient is unknown, a line is invalid, or the appointment is
+     *         not a completed, unbilled appointment of the patient
+     */
+    Billing createBilling(BillingRequestDTO request, User createdBy);
+}
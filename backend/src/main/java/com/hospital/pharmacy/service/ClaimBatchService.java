@@ -0,0 +1,98 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.ClaimBatch;
+import com.hospital.pharmacy.model.InsuranceClaim;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface for insurance claim batches.
+ * A batch takes every unclaimed bill of one payer's patients in a date range,
+ * ordered by policy number, and writes it to a pipe-delimited claim file:
+ * <pre>
+ * HDR|batchNumber|payerCode|payerName|fromDate|toDate|createdAt
+ * CLM|billNumber|billDate|policyNumber|patientId|lastName|firstName|dateOfBirth|amount
+ * LIN|billNumber|line|itemType|description|quantity|unitPrice|totalPrice
+ * TRL|claims|lines|totalAmount
+ * </pre>
+ * Bills are read, written and recorded as claims a page at a time, so a batch
+ * of any size is built in constant memory and an interrupted build resumes
+ * from its last committed page.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface ClaimBatchService {
+
+    /**
+     * Start building a batch in the background
+     * @param payerCode Payer code
+     * @param fromDate First bill date, inclusive
+     * @param toDate Last bill date, inclusive
+     * @return The new batch, in status BUILDING
+     * @throws IllegalArgumentException If the payer is unknown or the dates are invalid
+     * @throws IllegalStateException If a batch for the payer is already building
+     */
+    ClaimBatch startBuild(String payerCode, LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Resume a failed batch from its last committed page
+     * @param batchId Batch ID
+     * @return The batch, back in status BUILDING, or empty if not found
+     * @throws IllegalStateException If the batch has not failed
+     */
+    Optional<ClaimBatch> resume(Long batchId);
+
+    /**
+     * Find a batch by ID
+     * @param batchId Batch ID
+     * @return The batch, if found
+     */
+    Optional<ClaimBatch> getBatch(Long batchId);
+
+    /**
+     * Most recent batches
+     * @param payerCode Payer code, or null for all payers
+     * @param limit Maximum number of batches
+     * @return Batches, newest first
+     */
+    List<ClaimBatch> getBatches(String payerCode, int limit);
+
+    /**
+     * Location of a built batch's claim file
+     * @param batchId Batch ID
+     * @return Path of the file, or empty if the batch is not found
+     * @throws IllegalStateException If the batch is not built yet
+     */
+    Optional<Path> getBatchFile(Long batchId);
+
+    /**
+     * Record that a built batch was sent to the payer; its claims become SUBMITTED
+     * @param batchId Batch ID
+     * @return The batch, or empty if not found
+     * @throws IllegalStateException If the batch is not COMPLETED
+     */
+    Optional<ClaimBatch> markSubmitted(Long batchId);
+
+    /**
+     * Find the claim for a bill
+     * @param billingId Bill ID
+     * @return The claim, if the bill has been batched
+     */
+    Optional<InsuranceClaim> getClaimForBill(Long billingId);
+
+    /**
+     * Record the payer's response to a claim
+     * @param billingId Bill ID
+     * @param status ACCEPTED, REJECTED or PAID
+     * @param note Payer's remark, optional
+     * @return The claim, or empty if the bill has not been batched
+     * @throws IllegalArgumentException If the status is not valid
+     * @throws IllegalStateException If the claim has not been submitted
+     */
+    Optional<InsuranceClaim> updateClaimStatus(Long billingId, String status, String note);
+}
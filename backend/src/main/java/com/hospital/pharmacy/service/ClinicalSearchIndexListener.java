@@ -0,0 +1,57 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.ClinicalDocumentDTO;
+import com.hospital.pharmacy.model.MedicalRecord;
+import com.hospital.pharmacy.model.Prescription;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that keeps the clinical search index in step with
+ * medical record and prescription writes. Rows written outside JPA are
+ * picked up by the index's periodic sync instead.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class ClinicalSearchIndexListener {
+
+    // Lazy: the listener is created while the EntityManagerFactory the service depends on is still starting
+    @Autowired
+    @Lazy
+    private ClinicalSearchService clinicalSearchService;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        if (entity instanceof MedicalRecord record) {
+            clinicalSearchService.indexAfterCommit(new ClinicalDocumentDTO("MEDICAL_RECORD", record.getId(),
+                    record.getRecordId(), record.getPatient().getId(), record.getDoctor().getId(),
+                    record.getRecordDate(), record.getDiagnosis(), record.getChiefComplaint()));
+        } else if (entity instanceof Prescription prescription) {
+            clinicalSearchService.indexAfterCommit(new ClinicalDocumentDTO("PRESCRIPTION", prescription.getId(),
+                    prescription.getPrescriptionId(), prescription.getPatient().getId(),
+                    prescription.getDoctor().getId(), prescription.getPrescriptionDate(),
+                    prescription.getDiagnosis(), join(prescription.getNotes(), prescription.getInstructions())));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof MedicalRecord record) {
+            clinicalSearchService.removeAfterCommit("MEDICAL_RECORD", record.getId());
+        } else if (entity instanceof Prescription prescription) {
+            clinicalSearchService.removeAfterCommit("PRESCRIPTION", prescription.getId());
+        }
+    }
+
+    private String join(String notes, String instructions) {
+        return (notes != null ? notes : "") + " " + (instructions != null ? instructions : "");
+    }
+}
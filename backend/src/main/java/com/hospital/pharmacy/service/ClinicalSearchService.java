@@ -0,0 +1,55 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.ClinicalDocumentDTO;
+import com.hospital.pharmacy.dto.ClinicalSearchHitDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service interface for full-text search over medical record and
+ * prescription text (diagnosis, chief complaint, notes, instructions).
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface ClinicalSearchService {
+
+    /**
+     * Ranked search; every query term (or one of its synonyms) must match
+     * @param query Free text such as "high blood pressure"
+     * @param type MEDICAL_RECORD, PRESCRIPTION, or null for both
+     * @param doctorId Only documents by this doctor, or null
+     * @param from Earliest record or prescription date (inclusive), or null
+     * @param to Latest record or prescription date (inclusive), or null
+     * @param limit Maximum number of hits
+     * @return Hits, best match first
+     */
+    List<ClinicalSearchHitDTO> search(String query, String type, Long doctorId, LocalDate from, LocalDate to, int limit);
+
+    /**
+     * Index or re-index a document once the current transaction commits
+     * @param document Document text and filter fields
+     */
+    void indexAfterCommit(ClinicalDocumentDTO document);
+
+    /**
+     * Drop a document from the index once the current transaction commits
+     * @param type MEDICAL_RECORD or PRESCRIPTION
+     * @param id Database ID
+     */
+    void removeAfterCommit(String type, Long id);
+
+    /**
+     * Rebuild the whole index from the database
+     */
+    void rebuild();
+
+    /**
+     * Index size and sync state
+     * @return Live documents per type, term count and last sync time
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,61 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.ArchivedPartition;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service interface for archiving old appointments and bills by month.
+ * A month's closed rows are written to a compressed file on local disk and
+ * removed from the live tables, so day-to-day queries only see the retention
+ * window; an archived month can be restored on demand. The tables themselves
+ * are not partitioned and their schema is still managed by Hibernate, so this
+ * is archival only, with no database partitioning or migrations behind it.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface DataArchiveService {
+
+    Set<String> TABLES = Set.of("appointments", "billings");
+
+    /**
+     * Archive the closed rows of one month. Bills are closed when PAID or
+     * CANCELLED, are kept live while an insurance claim refers to them and are
+     * archived with their items and payments; appointments
+     * are closed when no longer SCHEDULED and are kept live while a
+     * prescription or medical record refers to them
+     * @param table One of TABLES
+     * @param month Month to archive
+     * @return The archived partition
+     * @throws IllegalArgumentException If the table is unknown or the month is not over
+     * @throws IllegalStateException If the month is already archived or has nothing to archive
+     */
+    ArchivedPartition archiveMonth(String table, YearMonth month);
+
+    /**
+     * Put an archived month back into the live tables. Restored months are
+     * left alone by the retention job until archived again by hand
+     * @param table One of TABLES
+     * @param month Month to restore
+     * @return The partition, now RESTORED, or empty if the month was never archived
+     * @throws IllegalStateException If the month is not archived or its file is damaged
+     */
+    Optional<ArchivedPartition> restoreMonth(String table, YearMonth month);
+
+    /**
+     * All archived and restored months
+     * @return Partitions by table and month
+     */
+    List<ArchivedPartition> getPartitions();
+
+    /**
+     * Archive every month older than the retention period that is not archived yet
+     * @return Number of months archived
+     */
+    int applyRetention();
+}
@@ -0,0 +1,65 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.EmailOutbox;
+import com.hospital.pharmacy.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background delivery of the email outbox.
+ *
+ * Polls for due mails and keeps sending full batches until the backlog is
+ * drained. Only active with spring.mail.enabled=true; otherwise mails stay
+ * queued until delivery is switched on.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+@ConditionalOnProperty(name = "spring.mail.enabled", havingValue = "true")
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    private final AtomicLong pending = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("clinixpro.mail.outbox.pending", pending);
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        try {
+            int claimed;
+            do {
+                claimed = outboxService.dispatchBatch();
+            } while (claimed == batchSize);
+            pending.set(outboxRepository.countByStatus(EmailOutbox.PENDING));
+        } catch (Exception e) {
+            logger.error("Email outbox dispatch failed: {}", e.getMessage(), e);
+        }
+    }
+}
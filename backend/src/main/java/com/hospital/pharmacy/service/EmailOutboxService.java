@@ -0,0 +1,31 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.EmailOutbox;
+
+/**
+ * Service interface for the transactional email outbox.
+ * Mails are stored with the change that triggers them and delivered later
+ * in batches by a background dispatcher.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface EmailOutboxService {
+
+    /**
+     * Queue a mail, joining the caller's transaction if there is one
+     * @param mailType Kind of mail (PASSWORD_RESET, WELCOME, ...)
+     * @param recipient Recipient email address
+     * @param subject Mail subject
+     * @param body Plain text body
+     * @return Stored outbox entry
+     */
+    EmailOutbox enqueue(String mailType, String recipient, String subject, String body);
+
+    /**
+     * Claim one batch of due mails and send them over a single SMTP connection
+     * @return Number of mails claimed; 0 when nothing was due
+     */
+    int dispatchBatch();
+}
@@ -0,0 +1,65 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.StoredFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service interface for content-addressed file storage.
+ * Files are named by the SHA-256 of their content, so identical uploads are
+ * stored once and a stored file never changes.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface FileStorageService {
+
+    Set<String> IMAGE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/webp");
+
+    Set<String> DOCUMENT_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/webp", "application/pdf");
+
+    /**
+     * Stream content to storage, hashing it on the way
+     * @param content Upload stream, closed when done
+     * @param allowedTypes Content types accepted, checked against the sniffed type
+     * @param maxBytes Size limit; the upload is abandoned as soon as it is passed
+     * @return The stored file, existing or new
+     * @throws IOException If the content cannot be read or written
+     * @throws IllegalArgumentException If the content is empty, too large or of a type not allowed
+     */
+    StoredFile store(InputStream content, Set<String> allowedTypes, long maxBytes) throws IOException;
+
+    /**
+     * Find a stored file by content hash
+     * @param hash SHA-256, lower-case hex
+     * @return The file, if stored
+     */
+    Optional<StoredFile> find(String hash);
+
+    /**
+     * Location of a stored file's content on disk
+     * @param file Stored file
+     * @return Path of the content
+     */
+    Path getPath(StoredFile file);
+
+    /**
+     * Location of an image thumbnail; a missing one is queued for generation
+     * @param file Stored image
+     * @param size Thumbnail box size, one of getThumbnailSizes()
+     * @return Path of the PNG thumbnail, or empty if it is not ready
+     */
+    Optional<Path> getThumbnail(StoredFile file, int size);
+
+    /**
+     * Thumbnail box sizes generated for every image
+     * @return Sizes in pixels, ascending
+     */
+    List<Integer> getThumbnailSizes();
+}
@@ -0,0 +1,348 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.util.JwtUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-JVM load driver replaying a mixed role workload against the running app.
+ *
+ * Runs once the application is ready (after SyntheticDataGenerator when both
+ * are enabled). Each virtual user picks a role by weight, then an endpoint from
+ * that role's script with random ids drawn from the data in the database, and
+ * calls it over HTTP with a JWT of a real user of that role. At the end p50,
+ * p90 and p99 latencies per endpoint are logged and optionally written to a
+ * CSV report.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+@ConditionalOnProperty(name = "app.loadtest.enabled", havingValue = "true")
+public class LoadTestDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestDriver.class);
+
+    private static final int TOKENS_PER_ROLE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${app.loadtest.concurrency:32}")
+    private int concurrency;
+
+    @Value("${app.loadtest.duration-seconds:60}")
+    private int durationSeconds;
+
+    @Value("${app.loadtest.warmup-seconds:10}")
+    private int warmupSeconds;
+
+    @Value("${app.loadtest.report-file:}")
+    private String reportFile;
+
+    @Value("${app.loadtest.exit-on-completion:false}")
+    private boolean exitOnCompletion;
+
+    private final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+
+    private IdRange patientIds;
+    private IdRange billingIds;
+    private IdRange doctorIds;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void run() {
+        String baseUrl = "http://localhost:" + environment.getProperty("local.server.port", "8080")
+                + environment.getProperty("server.servlet.context-path", "");
+
+        patientIds = idRange("patients");
+        billingIds = idRange("billings");
+        doctorIds = new IdRange(jdbcTemplate.queryForList("SELECT id FROM users WHERE role = 'DOCTOR'", Long.class));
+
+        List<RoleScript> scripts = scripts();
+        Map<String, List<String>> tokens = new TreeMap<>();
+        for (RoleScript script : scripts) {
+            tokens.put(script.role, userRepository.findByRole(script.role).stream()
+                    .limit(TOKENS_PER_ROLE)
+                    .map(jwtUtil::generateToken)
+                    .collect(Collectors.toList()));
+        }
+        scripts.removeIf(script -> tokens.get(script.role).isEmpty());
+        if (scripts.isEmpty()) {
+            logger.warn("No users to drive load with, skipping load test");
+            return;
+        }
+
+        logger.info("Starting load test against {}: {} virtual users for {} s after {} s warmup",
+                baseUrl, concurrency, durationSeconds, warmupSeconds);
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService virtualUsers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            SplittableRandom random = new SplittableRandom(i);
+            virtualUsers.submit(() -> drive(client, baseUrl, scripts, tokens, random, warmupEnd, end));
+        }
+        virtualUsers.shutdown();
+        try {
+            virtualUsers.awaitTermination(warmupSeconds + durationSeconds + 60L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        report();
+
+        if (exitOnCompletion) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void drive(HttpClient client, String baseUrl, List<RoleScript> scripts, Map<String, List<String>> tokens,
+                       SplittableRandom random, long warmupEnd, long end) {
+        while (System.nanoTime() < end) {
+            RoleScript script = pick(scripts, random);
+            Step step = pick(script.steps, random);
+            List<String> roleTokens = tokens.get(script.role);
+            String token = roleTokens.get(random.nextInt(roleTokens.size()));
+
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + step.path.apply(random)))
+                    .header("Authorization", "Bearer " + token)
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+
+            long started = System.nanoTime();
+            boolean success;
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                success = response.statusCode() < 400;
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long elapsed = System.nanoTime() - started;
+
+            if (started >= warmupEnd) {
+                recorders.computeIfAbsent(step.name, name -> new LatencyRecorder()).record(elapsed, success);
+            }
+        }
+    }
+
+    /**
+     * Weighted endpoint mix per role, roughly what each desk does during a shift
+     */
+    private List<RoleScript> scripts() {
+        List<RoleScript> scripts = new ArrayList<>();
+
+        scripts.add(new RoleScript("RECEPTIONIST", 40, List.of(
+                new Step("GET /receptionist/patients/{id}", 30, r -> "/receptionist/patients/" + patientIds.pick(r)),
+                new Step("GET /receptionist/appointments?doctorId&dates", 20, r -> {
+                    LocalDate from = LocalDate.now().minusDays(r.nextInt(60));
+                    return "/receptionist/appointments?doctorId=" + doctorIds.pick(r)
+                            + "&startDate=" + from.atStartOfDay() + "&endDate=" + from.plusDays(7).atStartOfDay();
+                }),
+                new Step("GET /receptionist/billings?patientId", 20,
+                        r -> "/receptionist/billings?patientId=" + patientIds.pick(r)),
+                new Step("GET /receptionist/billings/{id}", 15, r -> "/receptionist/billings/" + billingIds.pick(r)),
+                new Step("GET /receptionist/patients?search", 10,
+                        r -> "/receptionist/patients?search=" + SyntheticDataGenerator.PREFIX + "P" + r.nextInt(1000)),
+                new Step("GET /receptionist/dashboard", 5, r -> "/receptionist/dashboard"))));
+
+        scripts.add(new RoleScript("DOCTOR", 35, List.of(
+                new Step("GET /doctor/appointments/today", 30, r -> "/doctor/appointments/today"),
+                new Step("GET /doctor/dashboard", 20, r -> "/doctor/dashboard"),
+                new Step("GET /doctor/appointments?status", 20, r -> "/doctor/appointments?status=SCHEDULED"),
+                new Step("GET /doctor/patients?search", 15, r -> "/doctor/patients?search=Mu"),
+                new Step("GET /doctor/prescriptions?status", 15, r -> "/doctor/prescriptions?status=ACTIVE"))));
+
+        scripts.add(new RoleScript("PHARMACIST", 20, List.of(
+                new Step("GET /pharmacist/medicines/search", 40,
+                        r -> "/pharmacist/medicines/search?keyword=Medicine%20" + r.nextInt(100)),
+                new Step("GET /pharmacist/medicines?category", 20, r -> "/pharmacist/medicines?category=Antibiotics"),
+                new Step("GET /pharmacist/medicines/low-stock", 15, r -> "/pharmacist/medicines/low-stock"),
+                new Step("GET /pharmacist/dashboard", 15, r -> "/pharmacist/dashboard"),
+                new Step("GET /pharmacist/prescriptions", 10, r -> "/pharmacist/prescriptions"))));
+
+        scripts.add(new RoleScript("ADMIN", 5, List.of(
+                new Step("GET /data/dashboard-stats", 50, r -> "/data/dashboard-stats"),
+                new Step("GET /admin/dashboard", 50, r -> "/admin/dashboard"))));
+
+        return scripts;
+    }
+
+    private void report() {
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoint,requests,errors,p50_ms,p90_ms,p99_ms,max_ms,throughput_rps");
+
+        logger.info(String.format("%-50s %9s %7s %9s %9s %9s %9s %8s",
+                "endpoint", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "req/s"));
+        new TreeMap<>(recorders).forEach((endpoint, recorder) -> {
+            long[] samples = recorder.snapshot();
+            double throughput = samples.length / (double) durationSeconds;
+            logger.info(String.format("%-50s %9d %7d %9.1f %9.1f %9.1f %9.1f %8.1f", endpoint, samples.length,
+                    recorder.errors(), percentile(samples, 50), percentile(samples, 90), percentile(samples, 99),
+                    percentile(samples, 100), throughput));
+            lines.add(String.format("\"%s\",%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f", endpoint, samples.length,
+                    recorder.errors(), percentile(samples, 50), percentile(samples, 90), percentile(samples, 99),
+                    percentile(samples, 100), throughput));
+        });
+
+        if (!reportFile.isBlank()) {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Path.of(reportFile)))) {
+                lines.forEach(writer::println);
+                logger.info("Load test report written to {}", reportFile);
+            } catch (IOException e) {
+                logger.error("Failed to write load test report: {}", e.getMessage());
+            }
+        }
+    }
+
+    private IdRange idRange(String table) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS low, MAX(id) AS high FROM " + table);
+        Number low = (Number) bounds.get("low");
+        Number high = (Number) bounds.get("high");
+        return low == null ? new IdRange(List.of(0L)) : new IdRange(low.longValue(), high.longValue());
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static <T extends Weighted> T pick(List<T> options, SplittableRandom random) {
+        int total = options.stream().mapToInt(Weighted::weight).sum();
+        int roll = random.nextInt(total);
+        for (T option : options) {
+            roll -= option.weight();
+            if (roll < 0) {
+                return option;
+            }
+        }
+        return options.get(options.size() - 1);
+    }
+
+    private interface Weighted {
+        int weight();
+    }
+
+    private record RoleScript(String role, int weight, List<Step> steps) implements Weighted {
+    }
+
+    private record Step(String name, int weight, Function<SplittableRandom, String> path) implements Weighted {
+    }
+
+    /**
+     * Ids to draw request parameters from: either a contiguous range or an explicit list
+     */
+    private static final class IdRange {
+        private final long low;
+        private final long high;
+        private final List<Long> ids;
+
+        IdRange(long low, long high) {
+            this.low = low;
+            this.high = high;
+            this.ids = null;
+        }
+
+        IdRange(List<Long> ids) {
+            this.low = 0;
+            this.high = 0;
+            this.ids = ids.isEmpty() ? List.of(0L) : ids;
+        }
+
+        long pick(SplittableRandom random) {
+            if (ids != null) {
+                return ids.get(random.nextInt(ids.size()));
+            }
+            return random.nextLong(low, high + 1);
+        }
+    }
+
+    /**
+     * Collects raw latency samples of one endpoint; a run produces at most a few
+     * million samples, so keeping them all gives exact percentiles
+     */
+    private static final class LatencyRecorder {
+        private long[] samples = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void record(long nanos, boolean success) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized long[] snapshot() {
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+    }
+}
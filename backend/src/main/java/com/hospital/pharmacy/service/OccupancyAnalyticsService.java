@@ -0,0 +1,61 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.LengthOfStayDTO;
+import com.hospital.pharmacy.dto.OccupancyForecastDTO;
+import com.hospital.pharmacy.dto.OccupancyPointDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service interface for ward occupancy analytics.
+ * Answers from the hourly ward_occupancy_hourly rollup rather than the admissions table.
+ * Times are epoch milliseconds.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface OccupancyAnalyticsService {
+
+    /**
+     * Hourly occupancy over a range
+     * @param ward Ward name, or null for all wards combined
+     * @param from Range start (inclusive)
+     * @param to Range end (exclusive)
+     * @return One point per hour with patients, oldest first
+     */
+    List<OccupancyPointDTO> getOccupancyTrend(String ward, long from, long to);
+
+    /**
+     * Average length of the stays that ended in a range
+     * @param ward Ward name, or null for all wards
+     * @param from Range start (inclusive)
+     * @param to Range end (exclusive)
+     * @return Discharge count and average stay in hours
+     */
+    LengthOfStayDTO getLengthOfStay(String ward, long from, long to);
+
+    /**
+     * Forecast occupancy for the coming hours from the same hour of the week in a history range
+     * @param ward Ward name, or null for all wards combined
+     * @param from History start (inclusive)
+     * @param to History end (exclusive)
+     * @param horizonHours Number of hours to forecast from the current hour
+     * @return One forecast per hour
+     */
+    List<OccupancyForecastDTO> forecastOccupancy(String ward, long from, long to, int horizonHours);
+
+    /**
+     * Recompute the hourly rollup from the last rolled-up hour, or the earliest hour marked changed, to now
+     * @return Number of hourly rows written
+     */
+    int rollup();
+
+    /**
+     * Note that admissions changed from a point in time on, once the current transaction commits, so the
+     * next rollup on this node rewrites the hours from there
+     * @param changedFrom Earliest time whose occupancy the change affects, e.g. a backfilled admission's start
+     */
+    void markChanged(LocalDateTime changedFrom);
+}
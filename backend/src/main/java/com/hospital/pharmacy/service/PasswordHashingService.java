@@ -0,0 +1,53 @@
+package com.hospital.pharmacy.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface for hashing and checking passwords off the request
+ * threads. BCrypt is deliberately slow, so the work runs on a pool of its own
+ * sized to the CPUs, and is refused outright when too much of it is queued.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface PasswordHashingService {
+
+    /**
+     * Hash a password on the hashing pool
+     * @param rawPassword Password as entered
+     * @return The hash; fails with IllegalStateException if the pool's queue is full
+     */
+    CompletableFuture<String> encodeAsync(String rawPassword);
+
+    /**
+     * Check a password against its hash on the hashing pool
+     * @param rawPassword Password as entered
+     * @param encodedPassword Stored hash
+     * @return Whether they match; fails with IllegalStateException if the pool's queue is full
+     */
+    CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword);
+
+    /**
+     * Hash a password on the hashing pool and wait for it
+     * @param rawPassword Password as entered
+     * @return The hash
+     * @throws IllegalStateException If the pool's queue is full
+     */
+    String encode(String rawPassword);
+
+    /**
+     * Whether a stored hash was made with a lower cost than the configured one
+     * @param encodedPassword Stored hash
+     * @return true if it should be replaced at the next successful login
+     */
+    boolean needsRehash(String encodedPassword);
+
+    /**
+     * Replace a user's hash after a successful login, in the background
+     * @param userId Id of the user
+     * @param rawPassword Password just verified
+     * @param encodedPassword Hash it was verified against; left alone if it changed meanwhile
+     */
+    void rehashAsync(Long userId, String rawPassword, String encodedPassword);
+}
@@ -5,10 +5,8 @@ import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.PasswordResetTokenRepository;
 import com.hospital.pharmacy.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -26,15 +24,19 @@ public class PasswordResetService {
     private PasswordResetTokenRepository tokenRepository;
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailService emailService;
 
 
 
 //    private PasswordResetService resetService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Transactional
     public void sendResetLink(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
@@ -50,13 +52,8 @@ public class PasswordResetService {
 
         String resetUrl = "http://localhost:3000/login/resetPassword?token=" + token;
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(user.getEmail());
-        message.setFrom("izabayonadine08@gmail.com");
-        message.setSubject("Reset Password Request");
-        message.setText("Click this link to reset your password: " + resetUrl);
-
-        mailSender.send(message);
+        // Queued in the outbox with the token; delivered by the background dispatcher
+        emailService.sendPasswordResetEmail(user.getEmail(), resetUrl);
     }
 
     public void resetPassword(String token, String newPassword) {
@@ -73,10 +70,13 @@ public class PasswordResetService {
 
         User user = resetToken.getUser();
         logger.info("this is the email from: "+user.getEmail());
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
         userRepository.save(user);
 
         resetToken.setUsed(true);
         tokenRepository.save(resetToken); // mark token as used
+
+        // Whoever knew the old password is logged out too
+        tokenRevocationService.revokeAllTokens(user.getEmail());
     }
 }
@@ -0,0 +1,32 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.TimelinePageDTO;
+
+import java.util.Set;
+
+/**
+ * Service interface for a patient's clinical timeline.
+ * Merges appointments, admissions, prescriptions, medical records and bills
+ * into one stream, newest first.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface PatientTimelineService {
+
+    /**
+     * Event types the timeline can contain
+     */
+    Set<String> EVENT_TYPES = Set.of("APPOINTMENT", "ADMISSION", "PRESCRIPTION", "MEDICAL_RECORD", "BILL");
+
+    /**
+     * One page of a patient's timeline
+     * @param patientId Patient database ID
+     * @param cursor nextCursor of the previous page, or null for the newest events
+     * @param limit Page size, capped at the configured maximum
+     * @param types Event types to include, or null for all
+     * @return Events newest first and the cursor of the next page, null on the last page
+     */
+    TimelinePageDTO getTimeline(Long patientId, String cursor, int limit, Set<String> types);
+}
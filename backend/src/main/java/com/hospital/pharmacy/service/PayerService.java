@@ -0,0 +1,52 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Payer;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface for the insurance payer reference table.
+ * Patients keep the provider name as entered; each distinct name is mapped
+ * to a payer by its normalized code so claims can be grouped on an index.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface PayerService {
+
+    /**
+     * Normalize a provider name: letters and digits only, upper case, with a
+     * trailing company suffix (INC, LLC, LTD, CORP, CO) dropped
+     * @param name Provider name as entered
+     * @return Payer code, or empty if the name has no letters or digits
+     */
+    String toCode(String name);
+
+    /**
+     * Find or create the payer for a provider name
+     * @param name Provider name as entered
+     * @return The payer, or empty for a blank name
+     */
+    Optional<Payer> resolve(String name);
+
+    /**
+     * Find a payer by code
+     * @param code Payer code
+     * @return The payer, if known
+     */
+    Optional<Payer> findByCode(String code);
+
+    /**
+     * All payers, by code
+     * @return Payers
+     */
+    List<Payer> getPayers();
+
+    /**
+     * Link patients whose provider changed or was never linked to their payer
+     * @return Number of patients linked
+     */
+    int linkPatients();
+}
@@ -0,0 +1,40 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.PaymentRequestDTO;
+import com.hospital.pharmacy.dto.PaymentResultDTO;
+import com.hospital.pharmacy.model.User;
+
+import java.util.Optional;
+
+/**
+ * Service interface for taking payments against bills.
+ * Each payment is an immutable row keyed by the client's idempotency key,
+ * and the bill's paid amount and status are derived from those rows.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface PaymentService {
+
+    /**
+     * Record a payment, or return the earlier result if its idempotency key was already used
+     * @param billingId Bill database ID
+     * @param request Payment details and idempotency key
+     * @param receivedBy Cashier taking the payment
+     * @return Optional containing the outcome, empty if the bill does not exist
+     * @throws IllegalArgumentException if the key is missing, or the payment is invalid or exceeds the balance due
+     * @throws IllegalStateException if the key was already used for a different payment
+     */
+    Optional<PaymentResultDTO> recordPayment(Long billingId, PaymentRequestDTO request, User receivedBy);
+
+    /**
+     * Record a payment against a bill found by its number
+     * @param billNumber Bill number, e.g. BILL-1A2B3C4D
+     * @param request Payment details and idempotency key
+     * @param receivedBy Cashier taking the payment
+     * @return Optional containing the outcome, empty if the bill does not exist
+     */
+    Optional<PaymentResultDTO> recordPaymentByBillNumber(String billNumber, PaymentRequestDTO request,
+                                                         User receivedBy);
+}
@@ -0,0 +1,39 @@
+package com.hospital.pharmacy.service;
+
+/**
+ * Service interface for rate limiting requests with token buckets.
+ *
+ * Each policy covers a set of paths and counts requests per key of one
+ * kind: the client's IP address, the authenticated user, or the account a
+ * public endpoint is asked about (e.g. the email a reset is for, or the
+ * email and address a login comes from).
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface RateLimitService {
+
+    String KEY_IP = "ip";
+    String KEY_USER = "user";
+    String KEY_ACCOUNT = "account";
+
+    /**
+     * Take a token from the bucket of every policy that covers the path and counts this kind of key
+     * @param path Path within the application, e.g. /auth/login
+     * @param keyType KEY_IP, KEY_USER or KEY_ACCOUNT
+     * @param key The IP address, user id or account; null takes nothing
+     * @return 0 if allowed, otherwise the milliseconds until the refusing bucket has a token again
+     */
+    long tryAcquire(String path, String keyType, String key);
+
+    /**
+     * Publish the tokens this node took since the last call and charge the ones the other nodes took
+     */
+    void syncShared();
+
+    /**
+     * Delete shared hits older than the retention period
+     */
+    void purgeShared();
+}
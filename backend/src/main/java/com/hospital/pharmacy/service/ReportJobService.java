@@ -0,0 +1,74 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.ReportJob;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service interface for reports built in the background.
+ * A submitted report runs on a small pool of its own and is written to a file
+ * under the storage root, to be polled and downloaded by job ID. A report
+ * asked for again with the same parameters while the data it reads has not
+ * changed gets the existing job instead of a new run.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface ReportJobService {
+
+    /**
+     * Reports a pharmacist may run: the sections of GET /pharmacist/reports, as JSON
+     */
+    Set<String> PHARMACY_REPORTS = Set.of("INVENTORY", "PRESCRIPTIONS", "ALL");
+
+    /**
+     * Every report type; DUNNING is the receivables reminder list as CSV
+     * (parameters minDaysOverdue and minAmount)
+     */
+    Set<String> REPORT_TYPES = Set.of("INVENTORY", "PRESCRIPTIONS", "ALL", "DUNNING");
+
+    /**
+     * Queue a report, or find the job that already has it for the current data
+     * @param reportType One of REPORT_TYPES, case-insensitive
+     * @param parameters Report parameters; blank values are ignored
+     * @param requestedBy Email of the requesting user
+     * @return The new job in status QUEUED, or an existing job for the same report and data
+     * @throws IllegalArgumentException If the type or a parameter is invalid
+     * @throws IllegalStateException If the report queue is full
+     */
+    ReportJob submit(String reportType, Map<String, String> parameters, String requestedBy);
+
+    /**
+     * Find a job by ID
+     * @param jobId Job ID
+     * @return The job, if found
+     */
+    Optional<ReportJob> getJob(Long jobId);
+
+    /**
+     * Most recent jobs
+     * @param requestedBy Email of the requesting user, or null for all users
+     * @param limit Maximum number of jobs
+     * @return Jobs, newest first
+     */
+    List<ReportJob> getJobs(String requestedBy, int limit);
+
+    /**
+     * Location of a finished job's file
+     * @param jobId Job ID
+     * @return Path of the file, or empty if the job is not found
+     * @throws IllegalStateException If the job has not completed or its file is gone
+     */
+    Optional<Path> getJobFile(Long jobId);
+
+    /**
+     * Delete jobs older than the retention period, with their files
+     * @return Number of jobs deleted
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,27 @@
+package com.hospital.pharmacy.service;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Service interface for sharing expensive read results between identical
+ * requests. While one request computes a result, identical requests that
+ * arrive meanwhile wait for it instead of running the same queries again.
+ * Requests routed to the primary database are never shared.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface RequestCoalescingService {
+
+    /**
+     * Result of a read as JSON, computed once for all identical requests in flight
+     * @param endpoint Endpoint the result belongs to, also the metrics tag
+     * @param params Parameters that change the result, already normalized; blank values are ignored
+     * @param scope Role or other caller scope when the result depends on it, otherwise null
+     * @param computation Builds the result; runs on the thread of the first request
+     * @return The result serialized as JSON, shared with the other requests
+     */
+    byte[] getJson(String endpoint, Map<String, String> params, String scope, Supplier<?> computation);
+}
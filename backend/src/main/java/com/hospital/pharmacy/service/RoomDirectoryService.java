@@ -0,0 +1,78 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.WardSummaryDTO;
+import com.hospital.pharmacy.model.Room;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface for room lookup and ward occupancy.
+ * Lookups are served from an in-memory cache that is invalidated on every write.
+ * Every lookup returns its own copy of the room, so changing it affects no other
+ * caller; changes are stored through update and updateStatus.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface RoomDirectoryService {
+
+    /**
+     * Find a room by room ID (e.g., RM-101) or by room number (e.g., 101)
+     * @param roomIdOrNumber Room ID or room number
+     * @return Optional containing room if found
+     */
+    Optional<Room> findRoom(String roomIdOrNumber);
+
+    /**
+     * Get all rooms in a ward
+     * @param ward Ward name
+     * @return List of rooms in the ward
+     */
+    List<Room> findByWard(String ward);
+
+    /**
+     * Create a room, counting any beds already occupied in it
+     * @param room Room to create
+     * @return Saved room
+     */
+    Room create(Room room);
+
+    /**
+     * Apply the non-null fields of changes (name, ward, type, capacity above 0, notes, features) to a room.
+     * Occupancy is left alone; it is only maintained through adjustOccupancy.
+     * @param roomIdOrNumber Room ID or room number
+     * @param changes Fields to change
+     * @return Optional containing the updated room if found
+     */
+    Optional<Room> update(String roomIdOrNumber, Room changes);
+
+    /**
+     * Change a room's status
+     * @param roomIdOrNumber Room ID or room number
+     * @param status New status
+     * @return Optional containing the updated room if found
+     */
+    Optional<Room> updateStatus(String roomIdOrNumber, String status);
+
+    /**
+     * Delete a room
+     * @param room Room to delete
+     */
+    void delete(Room room);
+
+    /**
+     * Add to or subtract from a room's occupancy
+     * @param ward Ward the room is in
+     * @param roomNumber Room number, unique within the ward
+     * @param delta Change in occupied beds
+     */
+    void adjustOccupancy(String ward, String roomNumber, int delta);
+
+    /**
+     * Get capacity, occupancy and free beds for every ward
+     * @return One summary per ward
+     */
+    List<WardSummaryDTO> getWardSummaries();
+}
@@ -0,0 +1,38 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.SyncPageDTO;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service interface for the incremental change feed behind GET /sync.
+ * A watermark holds, per type, the (updatedAt, id) of the last row and the
+ * (deletedAt, id) of the last tombstone a client has seen, so each call
+ * returns only what changed since.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface SyncService {
+
+    List<String> TYPES = List.of("appointments", "billings", "prescriptions", "beds", "rooms");
+
+    /**
+     * Rows created, changed or deleted since a watermark
+     * @param watermark Watermark from the previous call, or null to start with every row
+     * @param types Types to return, from TYPES; other types keep their place in the watermark
+     * @param limit Maximum rows and tombstones per type
+     * @return Changes and the watermark to continue from
+     * @throws IllegalArgumentException If the watermark or a type is invalid
+     * @throws IllegalStateException If the watermark is older than the tombstones kept; the client must start over
+     */
+    SyncPageDTO getChanges(String watermark, Set<String> types, int limit);
+
+    /**
+     * Drop tombstones older than the retention period
+     * @return Number of tombstones removed
+     */
+    int purgeTombstones();
+}
@@ -0,0 +1,55 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.Room;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * JPA entity listener that leaves a tombstone for every synced row deleted
+ * through JPA. The tombstone is written with JDBC on the same connection,
+ * so it commits or rolls back with the delete.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class SyncTombstoneListener {
+
+    public static final String INSERT_TOMBSTONE =
+            "INSERT INTO sync_tombstones (entityType, entityId, deletedAt) VALUES (?, ?, ?)";
+
+    // Lazy: the listener is created while the EntityManagerFactory is still starting
+    @Autowired
+    @Lazy
+    private JdbcTemplate jdbcTemplate;
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Appointment appointment) {
+            record("appointments", appointment.getId());
+        } else if (entity instanceof Billing billing) {
+            record("billings", billing.getId());
+        } else if (entity instanceof Prescription prescription) {
+            record("prescriptions", prescription.getId());
+        } else if (entity instanceof Bed bed) {
+            record("beds", bed.getId());
+        } else if (entity instanceof Room room) {
+            record("rooms", room.getId());
+        }
+    }
+
+    private void record(String type, Long id) {
+        jdbcTemplate.update(INSERT_TOMBSTONE, type, id, Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
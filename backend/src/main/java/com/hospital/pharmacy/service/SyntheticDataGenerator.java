@@ -0,0 +1,453 @@
+package com.hospital.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates a large synthetic dataset for load testing.
+ *
+ * Volumes scale with app.seed.synthetic.scale: 1.0 means 1M patients, 10M
+ * appointments, 5M billings and 50k medicines. Rows are written with batched
+ * JDBC inserts from a pool of worker threads, each table in fixed-size chunks
+ * with explicit ids so foreign keys can be computed instead of looked up.
+ *
+ * Distributions are skewed the way real traffic is: a few doctors carry most
+ * of the patients, appointment volume peaks in winter and drops at weekends,
+ * and medicine usage follows a Zipf curve. Generation is deterministic for a
+ * given seed and is skipped when synthetic rows already exist.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+@ConditionalOnProperty(name = "app.seed.synthetic.enabled", havingValue = "true")
+public class SyntheticDataGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    public static final String PREFIX = "SYN-";
+    public static final String EMAIL_DOMAIN = "@synthetic.clinixpro.test";
+    public static final String PASSWORD = "Synthetic123!";
+
+    private static final long BASE_PATIENTS = 1_000_000L;
+    private static final long BASE_APPOINTMENTS = 10_000_000L;
+    private static final long BASE_BILLINGS = 5_000_000L;
+    private static final long BASE_MEDICINES = 50_000L;
+    private static final int CHUNK_SIZE = 50_000;
+    private static final double PRESCRIPTION_RATE = 0.2;
+
+    private static final String[] FIRST_NAMES = {"Jean", "Marie", "Eric", "Aline", "Patrick", "Diane", "Emmanuel",
+            "Claudine", "Olivier", "Grace", "Samuel", "Ange", "David", "Esther", "Kevin", "Sandrine"};
+    private static final String[] LAST_NAMES = {"Mugisha", "Uwase", "Habimana", "Mukamana", "Niyonzima", "Ingabire",
+            "Nshimiyimana", "Uwimana", "Hakizimana", "Mutoni", "Bizimana", "Umutoni", "Ndayisaba", "Iradukunda"};
+    private static final String[] SPECIALIZATIONS = {"General Medicine", "Pediatrics", "Cardiology", "Gynecology",
+            "Orthopedics", "Dermatology", "Neurology", "Internal Medicine"};
+    private static final String[] CATEGORIES = {"Antibiotics", "Analgesics", "Antivirals", "Antimalarials",
+            "Cardiovascular", "Antidiabetics", "Vitamins", "Respiratory", "Gastrointestinal", "Dermatological"};
+    private static final String[] DOSAGE_FORMS = {"Tablet", "Capsule", "Syrup", "Injection", "Cream"};
+    private static final String[] BLOOD_GROUPS = {"O+", "A+", "B+", "AB+", "O-", "A-", "B-", "AB-"};
+    private static final String[] INSURERS = {"RSSB", "MMI", "Radiant", "Britam", "Sanlam", "None"};
+    private static final String[] STAFF_ROLES = {"RECEPTIONIST", "PHARMACIST", "ADMIN"};
+    private static final String[] APPOINTMENT_TYPES = {"REGULAR", "REGULAR", "FOLLOW_UP", "CONSULTATION", "EMERGENCY"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.seed.synthetic.scale:0.01}")
+    private double scale;
+
+    @Value("${app.seed.synthetic.threads:0}")
+    private int threads;
+
+    @Value("${app.seed.synthetic.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.seed.synthetic.random-seed:42}")
+    private long randomSeed;
+
+    private long patients;
+    private long appointments;
+    private long billings;
+    private int medicines;
+    private int doctors;
+    private int staffPerRole;
+
+    private long userBase;
+    private long patientBase;
+    private long appointmentBase;
+    private long billingBase;
+    private long medicineBase;
+
+    private double[] medicinePopularity;
+    private LocalDate today;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void generate() {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM patients WHERE patientid LIKE '" + PREFIX + "%'", Integer.class);
+        if (existing != null && existing > 0) {
+            logger.info("Synthetic data already present, skipping generation");
+            return;
+        }
+
+        patients = Math.max(100, Math.round(BASE_PATIENTS * scale));
+        appointments = Math.max(1000, Math.round(BASE_APPOINTMENTS * scale));
+        billings = Math.max(500, Math.round(BASE_BILLINGS * scale));
+        medicines = (int) Math.max(100, Math.round(BASE_MEDICINES * scale));
+        doctors = (int) Math.max(10, patients / 500);
+        staffPerRole = Math.max(2, doctors / 5);
+        today = LocalDate.now();
+        medicinePopularity = zipfCumulative(medicines, 1.1);
+
+        userBase = nextId("users");
+        medicineBase = nextId("medicines");
+        patientBase = nextId("patients");
+        appointmentBase = nextId("appointments");
+        billingBase = nextId("billings");
+
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        logger.info("Generating synthetic data at scale {}: {} patients, {} appointments, {} billings, {} medicines, "
+                + "{} doctors on {} threads", scale, patients, appointments, billings, medicines, doctors, workers);
+
+        long started = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            runPhase(executor, "users", doctors + 3L * staffPerRole, this::insertUsers);
+            runPhase(executor, "medicines", medicines, this::insertMedicines);
+            runPhase(executor, "patients", patients, this::insertPatients);
+            runPhase(executor, "appointments", appointments, this::insertAppointments);
+            runPhase(executor, "billings", billings, this::insertBillings);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        restartIdentity("users", userBase + doctors + 3L * staffPerRole);
+        restartIdentity("medicines", medicineBase + medicines);
+        restartIdentity("patients", patientBase + patients);
+        restartIdentity("appointments", appointmentBase + appointments);
+        restartIdentity("billings", billingBase + billings);
+
+        logger.info("Synthetic data generated in {} s", (System.currentTimeMillis() - started) / 1000);
+    }
+
+    /**
+     * Split a table into chunks and insert them in parallel
+     */
+    private void runPhase(ExecutorService executor, String table, long rows, ChunkWriter writer) {
+        long started = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        for (long from = 0; from < rows; from += CHUNK_SIZE) {
+            long start = from;
+            long end = Math.min(rows, from + CHUNK_SIZE);
+            SplittableRandom random = new SplittableRandom(randomSeed * 31 + table.hashCode() * 17L + start);
+            futures.add(executor.submit(() -> {
+                writer.write(start, end, random);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to generate synthetic " + table, e);
+            }
+        }
+        logger.info("Inserted {} {} in {} ms", rows, table, System.currentTimeMillis() - started);
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(long start, long end, SplittableRandom random);
+    }
+
+    private void insertUsers(long start, long end, SplittableRandom random) {
+        String sql = "INSERT INTO users (id, userId, firstName, lastName, email, password, role, phoneNumber, "
+                + "gender, specialization, isactive, createdAt, updatedAt) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        // One hash for every synthetic user, BCrypt per row would dominate generation time
+        String password = new BCryptPasswordEncoder().encode(PASSWORD);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(batchSize);
+
+        for (long i = start; i < end; i++) {
+            String role;
+            long roleIndex;
+            if (i < doctors) {
+                role = "DOCTOR";
+                roleIndex = i;
+            } else {
+                long staffIndex = i - doctors;
+                role = STAFF_ROLES[(int) (staffIndex / staffPerRole)];
+                roleIndex = staffIndex % staffPerRole;
+            }
+            String email = role.toLowerCase() + roleIndex + EMAIL_DOMAIN;
+            rows.add(new Object[] {userBase + i, PREFIX + "U" + i, pick(FIRST_NAMES, random), pick(LAST_NAMES, random),
+                    email, password, role, "+25078" + String.format("%07d", i),
+                    random.nextBoolean() ? "Male" : "Female",
+                    "DOCTOR".equals(role) ? pick(SPECIALIZATIONS, random) : "", true, now, now});
+            flushIfFull(rows, sql);
+        }
+        flush(rows, sql);
+    }
+
+    private void insertMedicines(long start, long end, SplittableRandom random) {
+        String sql = "INSERT INTO medicines (id, medicineId, name, category, description, manufacturer, batchNumber, "
+                + "expiryDate, stock, stockStatus, price, requiresPrescription, dosageForm, strength) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(batchSize);
+
+        for (long i = start; i < end; i++) {
+            // Popular medicines (low index) are stocked deeper
+            int stock = 1 + (int) (5000 / (1 + i / 50)) + random.nextInt(100);
+            String category = CATEGORIES[(int) (i % CATEGORIES.length)];
+            rows.add(new Object[] {medicineBase + i, PREFIX + "M" + i, medicineName(i), category,
+                    category + " medicine " + i, "Manufacturer " + (i % 200), "BATCH-" + (i % 1000),
+                    Date.valueOf(today.plusDays(random.nextInt(-60, 1095))), stock,
+                    stock < 20 ? "Low" : stock < 100 ? "Normal" : "High", medicinePrice(i), i % 3 != 0,
+                    pick(DOSAGE_FORMS, random), (50 * (1 + i % 20)) + "mg"});
+            flushIfFull(rows, sql);
+        }
+        flush(rows, sql);
+    }
+
+    private void insertPatients(long start, long end, SplittableRandom random) {
+        String sql = "INSERT INTO patients (id, patientid, firstname, lastname, dateofbirth, gender, email, phonenumber, "
+                + "bloodGroup, insuranceProvider, insurancePolicyNumber, assigned_doctor_id, registrationDate, status) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(batchSize);
+
+        for (long i = start; i < end; i++) {
+            String insurer = pick(INSURERS, random);
+            rows.add(new Object[] {patientBase + i, PREFIX + "P" + i, pick(FIRST_NAMES, random),
+                    pick(LAST_NAMES, random), Date.valueOf(today.minusDays(365L + random.nextInt(365 * 90))),
+                    random.nextBoolean() ? "Male" : "Female", "patient" + i + EMAIL_DOMAIN,
+                    "+25072" + String.format("%07d", i % 10_000_000), pick(BLOOD_GROUPS, random), insurer,
+                    "None".equals(insurer) ? "" : insurer.toUpperCase() + "-" + i, doctorId(random),
+                    Timestamp.valueOf(today.minusDays(random.nextInt(365 * 5)).atTime(9, 0)),
+                    random.nextInt(20) == 0 ? "Discharged" : "Active"});
+            flushIfFull(rows, sql);
+        }
+        flush(rows, sql);
+    }
+
+    private void insertAppointments(long start, long end, SplittableRandom random) {
+        String sql = "INSERT INTO appointments (id, appointmentId, patient_id, doctor_id, appointmentdatetime, status, "
+                + "type, duration, symptoms, createdAt, updatedAt) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String prescriptionSql = "INSERT INTO prescriptions (prescriptionId, patient_id, doctor_id, appointmentid, "
+                + "prescriptionDate, expiryDate, status, medication, dosage, frequency, duration, createdAt, updatedAt) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        List<Object[]> prescriptions = new ArrayList<>();
+
+        for (long i = start; i < end; i++) {
+            LocalDateTime dateTime = seasonalDate(random).atTime(8 + random.nextInt(10), random.nextInt(4) * 15);
+            boolean past = dateTime.toLocalDate().isBefore(today);
+            String status = past ? (random.nextInt(10) < 8 ? "COMPLETED" : random.nextBoolean() ? "CANCELLED" : "NO_SHOW")
+                    : "SCHEDULED";
+            long appointmentId = appointmentBase + i;
+            long patientId = patientId(random);
+            long doctorId = doctorId(random);
+            Timestamp created = Timestamp.valueOf(dateTime.minusDays(random.nextInt(1, 30)));
+
+            rows.add(new Object[] {appointmentId, PREFIX + "A" + i, patientId, doctorId, Timestamp.valueOf(dateTime),
+                    status, pick(APPOINTMENT_TYPES, random), 15 * (1 + random.nextInt(4)), "Synthetic visit", created,
+                    created});
+
+            if ("COMPLETED".equals(status) && random.nextDouble() < PRESCRIPTION_RATE / 0.8) {
+                LocalDate prescribed = dateTime.toLocalDate();
+                prescriptions.add(new Object[] {PREFIX + "RX" + i, patientId, doctorId, appointmentId,
+                        Date.valueOf(prescribed), Date.valueOf(prescribed.plusDays(30)),
+                        prescribed.isAfter(today.minusDays(30)) ? "ACTIVE" : "COMPLETED",
+                        medicineName(popularMedicine(random)), "1 tablet", "Twice daily", "7 days", created, created});
+            }
+
+            if (rows.size() >= batchSize) {
+                flush(rows, sql);
+                flush(prescriptions, prescriptionSql);
+            }
+        }
+        flush(rows, sql);
+        flush(prescriptions, prescriptionSql);
+    }
+
+    private void insertBillings(long start, long end, SplittableRandom random) {
+        String sql = "INSERT INTO billings (id, billNumber, patient_id, billDate, dueDate, totalAmount, paidAmount, "
+                + "discount, tax, status, paymentMethod, createdAt, updatedAt) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String itemSql = "INSERT INTO billing_items (itemType, description, quantity, unitPrice, totalPrice, discount, "
+                + "bill_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String paymentSql = "INSERT INTO payments (bill_id, idempotencyKey, paymentDate, amount, paymentMethod) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        List<Object[]> items = new ArrayList<>();
+        List<Object[]> payments = new ArrayList<>();
+
+        for (long i = start; i < end; i++) {
+            long billingId = billingBase + i;
+            LocalDate billDate = seasonalDate(random);
+
+            BigDecimal consultation = BigDecimal.valueOf(5000);
+            BigDecimal total = consultation;
+            items.add(new Object[] {"CONSULTATION", "Consultation", 1, consultation, consultation, BigDecimal.ZERO,
+                    billingId});
+            int medicineLines = random.nextInt(4);
+            for (int line = 0; line < medicineLines; line++) {
+                int medicine = popularMedicine(random);
+                int quantity = 1 + random.nextInt(3);
+                BigDecimal unitPrice = medicinePrice(medicine);
+                BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
+                items.add(new Object[] {"MEDICINE", medicineName(medicine), quantity, unitPrice, lineTotal,
+                        BigDecimal.ZERO, billingId});
+                total = total.add(lineTotal);
+            }
+
+            int roll = random.nextInt(100);
+            String status = roll < 60 ? "PAID" : roll < 85 ? "PENDING" : roll < 97 ? "PARTIALLY_PAID" : "CANCELLED";
+            BigDecimal paid = "PAID".equals(status) ? total
+                    : "PARTIALLY_PAID".equals(status) ? total.divide(BigDecimal.valueOf(2)) : BigDecimal.ZERO;
+            String paymentMethod = random.nextInt(3) == 0 ? "INSURANCE" : "CASH";
+            Timestamp created = Timestamp.valueOf(billDate.atTime(10, 0));
+
+            rows.add(new Object[] {billingId, PREFIX + "B" + i, patientId(random), Date.valueOf(billDate),
+                    Date.valueOf(billDate.plusDays(30)), total, paid, BigDecimal.ZERO, BigDecimal.ZERO, status,
+                    paymentMethod, created, created});
+            // The paid amount is the sum of the bill's payments, so every paid bill needs its payment row
+            if (paid.signum() > 0) {
+                payments.add(new Object[] {billingId, PREFIX + "P" + i,
+                        Timestamp.valueOf(billDate.plusDays(random.nextInt(30)).atTime(11, 0)), paid, paymentMethod});
+            }
+
+            if (rows.size() >= batchSize) {
+                flush(rows, sql);
+                flush(items, itemSql);
+                flush(payments, paymentSql);
+            }
+        }
+        flush(rows, sql);
+        flush(items, itemSql);
+        flush(payments, paymentSql);
+    }
+
+    private void flushIfFull(List<Object[]> rows, String sql) {
+        if (rows.size() >= batchSize) {
+            flush(rows, sql);
+        }
+    }
+
+    private void flush(List<Object[]> rows, String sql) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    private long nextId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    private void restartIdentity(String table, long next) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+        } catch (Exception e) {
+            logger.warn("Could not restart identity of {} at {}: {}", table, next, e.getMessage());
+        }
+    }
+
+    /**
+     * Doctor load is heavily skewed: the first doctors get most patients and visits
+     */
+    private long doctorId(SplittableRandom random) {
+        return userBase + (long) (doctors * Math.pow(random.nextDouble(), 2.5));
+    }
+
+    /**
+     * Frequent visitors: a minority of patients account for most appointments and bills
+     */
+    private long patientId(SplittableRandom random) {
+        return patientBase + (long) (patients * Math.pow(random.nextDouble(), 1.5));
+    }
+
+    private int popularMedicine(SplittableRandom random) {
+        return sample(medicinePopularity, random.nextDouble());
+    }
+
+    /**
+     * Day within the last two years (plus a month of bookings ahead), weighted
+     * towards the winter peak and away from weekends
+     */
+    private LocalDate seasonalDate(SplittableRandom random) {
+        while (true) {
+            LocalDate date = today.minusDays(730).plusDays(random.nextInt(760));
+            double weight = 1 + 0.35 * Math.cos(2 * Math.PI * (date.getDayOfYear() - 20) / 365.25);
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                weight *= 0.3;
+            }
+            if (random.nextDouble() * 1.35 < weight) {
+                return date;
+            }
+        }
+    }
+
+    private static String medicineName(long index) {
+        return "Synthetic Medicine " + index;
+    }
+
+    private static BigDecimal medicinePrice(long index) {
+        return BigDecimal.valueOf(200 + (index * 7919) % 20000);
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static double[] zipfCumulative(int size, double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,52 @@
+package com.hospital.pharmacy.service;
+
+import java.util.Date;
+
+/**
+ * Service interface for revoking JWTs before they expire.
+ *
+ * A single token is revoked by its id (the jti claim), e.g. at logout; all
+ * of a user's tokens are revoked by a watermark, e.g. when the account is
+ * deactivated. Revocations are stored in the token_revocations table and
+ * held in memory by every node, so checking a request is a lookup rather
+ * than a query.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public interface TokenRevocationService {
+
+    /**
+     * Check a token against the revocations this node knows of
+     * @param subject The token's subject (the user's email)
+     * @param tokenId The token's jti, or null for tokens issued without one
+     * @param issuedAt When the token was issued, to the millisecond where the token says
+     * @return true if the token was revoked
+     */
+    boolean isRevoked(String subject, String tokenId, Date issuedAt);
+
+    /**
+     * Revoke one token
+     * @param subject The token's subject
+     * @param tokenId The token's jti
+     * @param expiresAt The token's exp, after which the revocation is dropped
+     */
+    void revokeToken(String subject, String tokenId, Date expiresAt);
+
+    /**
+     * Revoke every token issued to a user so far; within a transaction, also those issued until it commits
+     * @param subject The user's email
+     */
+    void revokeAllTokens(String subject);
+
+    /**
+     * Pick up the revocations other nodes made since the last call
+     */
+    void syncRevocations();
+
+    /**
+     * Delete expired revocations and reload the rest, which also shrinks the in-memory denylist
+     */
+    void rebuild();
+}
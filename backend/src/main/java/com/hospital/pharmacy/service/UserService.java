@@ -37,6 +37,16 @@ public interface UserService {
      */
     User save(User user);
     
+    /**
+     * Create an account: assign its userId by role, hash its password and queue the welcome email,
+     * all in one transaction
+     * @param user New user with a plain text password
+     * @return Saved user
+     * @throws IllegalArgumentException if the email is already in use
+     * @throws IllegalStateException if the password hashing pool is full
+     */
+    User register(User user);
+    
     /**
      * Update existing user
      * @param id User ID to update
@@ -0,0 +1,445 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.AgingSummaryDTO;
+import com.hospital.pharmacy.dto.BillBalanceDTO;
+import com.hospital.pharmacy.dto.PatientBalanceDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.service.AccountsReceivableService;
+import com.hospital.pharmacy.util.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of AccountsReceivableService interface.
+ *
+ * Each unpaid bill contributes its outstanding amount, in cents, to one
+ * aging bucket of its patient and of the global totals. Patients with
+ * past-due money are kept in a set ordered by that amount, so the top
+ * debtors are read off its head. Buckets are fixed as of the day of the
+ * last rebuild; the nightly rebuild re-ages every bill and also repairs
+ * drift from deletions or missed updates. Changes made on other nodes are
+ * picked up by polling billings.updatedAt.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class AccountsReceivableServiceImpl implements AccountsReceivableService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountsReceivableServiceImpl.class);
+
+    private static final Set<String> OPEN_STATUSES = Set.of("PENDING", "PARTIALLY_PAID");
+    private static final int[] BUCKET_START_DAYS = {Integer.MIN_VALUE, 1, 31, 61, 91};
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int PATIENT_BATCH_SIZE = 500;
+    private static final long SYNC_OVERLAP_SECONDS = 10;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, OpenBill> bills = new HashMap<>();
+    private final Map<Long, Balance> balances = new HashMap<>();
+    private final TreeSet<Balance> overdueRanking = new TreeSet<>(
+            Comparator.comparingLong(Balance::overdue).reversed().thenComparingLong(balance -> balance.patientId));
+    private final long[] bucketTotals = new long[BUCKETS.size()];
+    private final int[] bucketBills = new int[BUCKETS.size()];
+
+    private LocalDate asOf = LocalDate.now();
+    private volatile boolean loaded;
+    private volatile LocalDateTime lastSeenUpdate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.warn("Accounts receivable could not be loaded, retrying on next sync: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void reload() {
+        LocalDateTime started = LocalDateTime.now();
+        List<BillBalanceDTO> open = new ArrayList<>();
+        long afterId = 0;
+        List<BillBalanceDTO> page;
+        do {
+            page = billingRepository.findOpenBalancesAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            open.addAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            bills.clear();
+            balances.clear();
+            overdueRanking.clear();
+            Arrays.fill(bucketTotals, 0);
+            Arrays.fill(bucketBills, 0);
+            asOf = started.toLocalDate();
+            for (BillBalanceDTO bill : open) {
+                apply(bill);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lastSeenUpdate = started;
+        loaded = true;
+        logger.info("Accounts receivable loaded {} open bills for {} patients as of {}",
+                bills.size(), balances.size(), asOf);
+    }
+
+    @Scheduled(fixedDelayString = "${app.billing.receivables.sync-interval-ms:10000}",
+            initialDelayString = "${app.billing.receivables.sync-interval-ms:10000}")
+    public void syncChanges() {
+        if (!loaded) {
+            reload();
+            return;
+        }
+        List<BillBalanceDTO> changed = billingRepository.findBalancesUpdatedSince(
+                lastSeenUpdate.minusSeconds(SYNC_OVERLAP_SECONDS));
+        if (changed.isEmpty()) {
+            return;
+        }
+        LocalDateTime newest = lastSeenUpdate;
+        lock.writeLock().lock();
+        try {
+            for (BillBalanceDTO bill : changed) {
+                apply(bill);
+                if (bill.getUpdatedAt().isAfter(newest)) {
+                    newest = bill.getUpdatedAt();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastSeenUpdate = newest;
+        logger.debug("Accounts receivable picked up {} changed bills", changed.size());
+    }
+
+    // Re-ages every bill for the new day and reconciles with the database
+    @Scheduled(cron = "${app.billing.receivables.rebuild-cron:0 5 0 * * *}")
+    public void nightlyRebuild() {
+        reload();
+    }
+
+    @Override
+    public AgingSummaryDTO getAgingSummary() {
+        checkLoaded();
+        lock.readLock().lock();
+        try {
+            Map<String, BigDecimal> totals = new LinkedHashMap<>();
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            long outstanding = 0;
+            for (int i = 0; i < BUCKETS.size(); i++) {
+                totals.put(BUCKETS.get(i), fromMinor(bucketTotals[i]));
+                counts.put(BUCKETS.get(i), bucketBills[i]);
+                outstanding += bucketTotals[i];
+            }
+            return new AgingSummaryDTO(asOf, totals, counts, fromMinor(outstanding),
+                    fromMinor(outstanding - bucketTotals[0]), balances.size(), overdueRanking.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PatientBalanceDTO> getTopOverdue(int limit) {
+        checkLoaded();
+        List<PatientBalanceDTO> top = new ArrayList<>(Math.min(limit, 1000));
+        lock.readLock().lock();
+        try {
+            for (Balance balance : overdueRanking) {
+                if (top.size() >= limit) {
+                    break;
+                }
+                top.add(snapshot(balance));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        fillContactDetails(top);
+        return top;
+    }
+
+    @Override
+    public Optional<PatientBalanceDTO> getPatientBalance(Long patientId) {
+        checkLoaded();
+        PatientBalanceDTO balance;
+        lock.readLock().lock();
+        try {
+            Balance found = balances.get(patientId);
+            if (found == null) {
+                return Optional.empty();
+            }
+            balance = snapshot(found);
+        } finally {
+            lock.readLock().unlock();
+        }
+        fillContactDetails(List.of(balance));
+        return Optional.of(balance);
+    }
+
+    @Override
+    public int writeDunningExport(int minDaysOverdue, BigDecimal minAmount, Writer out) throws IOException {
+        checkLoaded();
+        int fromBucket = bucketFor(Math.max(1, minDaysOverdue));
+        long minimum = Math.max(1, toMinor(minAmount));
+        List<PatientBalanceDTO> due = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Balance balance : overdueRanking) {
+                long owed = 0;
+                for (int i = fromBucket; i < BUCKETS.size(); i++) {
+                    owed += balance.buckets[i];
+                }
+                if (owed >= minimum) {
+                    due.add(snapshot(balance));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        out.write("patientId,firstName,lastName,email,phoneNumber,address,outstanding,overdue,"
+                + String.join(",", BUCKETS) + ",oldestDueDate,daysOverdue\n");
+        for (int start = 0; start < due.size(); start += PATIENT_BATCH_SIZE) {
+            List<PatientBalanceDTO> batch = due.subList(start, Math.min(due.size(), start + PATIENT_BATCH_SIZE));
+            fillContactDetails(batch);
+            StringBuilder rows = new StringBuilder();
+            for (PatientBalanceDTO row : batch) {
+                rows.append(csv(row.getPatientId())).append(',')
+                        .append(csv(row.getFirstName())).append(',')
+                        .append(csv(row.getLastName())).append(',')
+                        .append(csv(row.getEmail())).append(',')
+                        .append(csv(row.getPhoneNumber())).append(',')
+                        .append(csv(row.getAddress())).append(',')
+                        .append(row.getOutstanding().toPlainString()).append(',')
+                        .append(row.getOverdue().toPlainString());
+                for (BigDecimal amount : row.getBuckets().values()) {
+                    rows.append(',').append(amount.toPlainString());
+                }
+                rows.append(',').append(row.getOldestDueDate()).append(',').append(row.getDaysOverdue()).append('\n');
+            }
+            out.write(rows.toString());
+        }
+        out.flush();
+        return due.size();
+    }
+
+    @Override
+    public void publish(Billing billing) {
+        BillBalanceDTO bill = new BillBalanceDTO(billing.getId(), billing.getPatient().getId(),
+                billing.getDueDate() != null ? billing.getDueDate() : billing.getBillDate(),
+                billing.getTotalAmount(), billing.getPaidAmount(), billing.getStatus(), billing.getUpdatedAt());
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                apply(bill);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void remove(Long billingId) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                evict(billingId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Caller holds the write lock
+    private void apply(BillBalanceDTO bill) {
+        evict(bill.getId());
+        long outstanding = toMinor(bill.getTotalAmount()) - toMinor(bill.getPaidAmount());
+        if (!OPEN_STATUSES.contains(bill.getStatus()) || outstanding <= 0) {
+            return;
+        }
+        int bucket = bucketFor(ChronoUnit.DAYS.between(bill.getDueDate(), asOf));
+        OpenBill entry = new OpenBill(bill.getPatientId(), bill.getDueDate(), bucket, outstanding);
+        bills.put(bill.getId(), entry);
+        bucketTotals[bucket] += outstanding;
+        bucketBills[bucket]++;
+
+        Balance balance = balances.computeIfAbsent(entry.patientId, Balance::new);
+        overdueRanking.remove(balance);
+        balance.add(entry, 1);
+        if (balance.overdue() > 0) {
+            overdueRanking.add(balance);
+        }
+    }
+
+    // Caller holds the write lock
+    private void evict(Long billingId) {
+        OpenBill entry = bills.remove(billingId);
+        if (entry == null) {
+            return;
+        }
+        bucketTotals[entry.bucket] -= entry.outstanding;
+        bucketBills[entry.bucket]--;
+
+        Balance balance = balances.get(entry.patientId);
+        overdueRanking.remove(balance);
+        balance.add(entry, -1);
+        if (balance.openBills == 0) {
+            balances.remove(entry.patientId);
+        } else if (balance.overdue() > 0) {
+            overdueRanking.add(balance);
+        }
+    }
+
+    // Caller holds the read lock
+    private PatientBalanceDTO snapshot(Balance balance) {
+        Map<String, BigDecimal> buckets = new LinkedHashMap<>();
+        long outstanding = 0;
+        for (int i = 0; i < BUCKETS.size(); i++) {
+            buckets.put(BUCKETS.get(i), fromMinor(balance.buckets[i]));
+            outstanding += balance.buckets[i];
+        }
+        LocalDate oldest = balance.dueDates.firstKey();
+        PatientBalanceDTO dto = new PatientBalanceDTO();
+        dto.setId(balance.patientId);
+        dto.setOutstanding(fromMinor(outstanding));
+        dto.setOverdue(fromMinor(balance.overdue()));
+        dto.setBuckets(buckets);
+        dto.setOpenBills(balance.openBills);
+        dto.setOldestDueDate(oldest);
+        dto.setDaysOverdue(Math.max(0, ChronoUnit.DAYS.between(oldest, asOf)));
+        return dto;
+    }
+
+    private void fillContactDetails(List<PatientBalanceDTO> rows) {
+        Map<Long, Patient> patients = patientRepository.findAllById(
+                        rows.stream().map(PatientBalanceDTO::getId).toList()).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        for (PatientBalanceDTO row : rows) {
+            Patient patient = patients.get(row.getId());
+            if (patient != null) {
+                row.setPatientId(patient.getPatientId());
+                row.setFirstName(patient.getFirstName());
+                row.setLastName(patient.getLastName());
+                row.setEmail(patient.getEmail());
+                row.setPhoneNumber(patient.getPhoneNumber());
+                row.setAddress(patient.getAddress());
+            }
+        }
+    }
+
+    private void checkLoaded() {
+        if (!loaded) {
+            throw new IllegalStateException("Accounts receivable is still loading");
+        }
+    }
+
+    private static int bucketFor(long daysPastDue) {
+        int bucket = 0;
+        while (bucket + 1 < BUCKET_START_DAYS.length && daysPastDue >= BUCKET_START_DAYS[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static class OpenBill {
+        private final long patientId;
+        private final LocalDate dueDate;
+        private final int bucket;
+        private final long outstanding;
+
+        private OpenBill(long patientId, LocalDate dueDate, int bucket, long outstanding) {
+            this.patientId = patientId;
+            this.dueDate = dueDate;
+            this.bucket = bucket;
+            this.outstanding = outstanding;
+        }
+    }
+
+    private static class Balance {
+        private final long patientId;
+        private final long[] buckets = new long[BUCKETS.size()];
+        // Due date -> open bills due that day, for the oldest debt
+        private final TreeMap<LocalDate, Integer> dueDates = new TreeMap<>();
+        private int openBills;
+
+        private Balance(long patientId) {
+            this.patientId = patientId;
+        }
+
+        private long overdue() {
+            long overdue = 0;
+            for (int i = 1; i < buckets.length; i++) {
+                overdue += buckets[i];
+            }
+            return overdue;
+        }
+
+        private void add(OpenBill bill, int sign) {
+            buckets[bill.bucket] += sign * bill.outstanding;
+            openBills += sign;
+            dueDates.merge(bill.dueDate, sign, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+}
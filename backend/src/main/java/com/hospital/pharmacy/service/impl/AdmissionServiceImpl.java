@@ -0,0 +1,116 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.Admission;
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.repository.AdmissionRepository;
+import com.hospital.pharmacy.repository.BedRepository;
+import com.hospital.pharmacy.service.AdmissionService;
+import com.hospital.pharmacy.service.OccupancyAnalyticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Implementation of AdmissionService interface.
+ * Called by BedServiceImpl inside the transaction that fills or frees the bed.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class AdmissionServiceImpl implements AdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionServiceImpl.class);
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    @Autowired
+    private BedRepository bedRepository;
+
+    @Autowired
+    private OccupancyAnalyticsService occupancyAnalyticsService;
+
+    @Override
+    @Transactional
+    public Admission recordAdmission(Bed bed) {
+        // A bed holds one stay at a time; close anything left open
+        recordDischarge(bed.getBedId());
+        Admission admission = newAdmission(bed, LocalDateTime.now());
+        logger.debug("Recording admission to bed {}", bed.getBedId());
+        occupancyAnalyticsService.markChanged(admission.getAdmittedAt());
+        return admissionRepository.save(admission);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Admission> recordDischarge(String bedId) {
+        Optional<Admission> open = admissionRepository.findFirstByBedIdAndDischargedAtIsNullOrderByAdmittedAtDesc(bedId);
+        open.ifPresent(admission -> {
+            LocalDateTime now = LocalDateTime.now();
+            admission.setDischargedAt(now);
+            admission.setStayMinutes(Duration.between(admission.getAdmittedAt(), now).toMinutes());
+            admissionRepository.save(admission);
+            occupancyAnalyticsService.markChanged(now);
+            logger.debug("Recording discharge from bed {}", bedId);
+        });
+        return open;
+    }
+
+    // Beds occupied before admission history existed get an open stay from their admission date
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOpenAdmissions() {
+        try {
+            int created = 0;
+            for (Bed bed : bedRepository.findByStatus("Occupied")) {
+                if (bed.getPatient() == null || admissionRepository.existsByBedIdAndDischargedAtIsNull(bed.getBedId())) {
+                    continue;
+                }
+                Admission admission = admissionRepository.save(newAdmission(bed,
+                        parseAdmissionDate(bed.getAdmissionDate())));
+                // Most likely in hours already rolled up
+                occupancyAnalyticsService.markChanged(admission.getAdmittedAt());
+                created++;
+            }
+            if (created > 0) {
+                logger.info("Backfilled {} open admissions from occupied beds", created);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not backfill admissions: {}", e.getMessage());
+        }
+    }
+
+    private Admission newAdmission(Bed bed, LocalDateTime admittedAt) {
+        Admission admission = new Admission();
+        admission.setBedId(bed.getBedId());
+        admission.setWardName(bed.getWardName());
+        admission.setRoomNumber(bed.getRoomNumber());
+        admission.setPatient(bed.getPatient());
+        admission.setDoctor(bed.getDoctor());
+        admission.setDiagnosis(bed.getDiagnosis());
+        admission.setAdmittedAt(admittedAt);
+        return admission;
+    }
+
+    private LocalDateTime parseAdmissionDate(String admissionDate) {
+        if (admissionDate != null) {
+            try {
+                return LocalDate.parse(admissionDate).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                // Free-text date from older clients
+            }
+        }
+        return LocalDateTime.now();
+    }
+}
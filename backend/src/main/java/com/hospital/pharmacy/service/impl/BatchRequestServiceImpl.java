@@ -0,0 +1,987 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.config.ExecutionThreads;
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.config.RequestPriority;
+import com.hospital.pharmacy.dto.BatchRequestDTO;
+import com.hospital.pharmacy.filter.BulkheadFilter;
+import com.hospital.pharmacy.filter.RateLimitFilter;
+import com.hospital.pharmacy.filter.RequestMetricsFilter;
+import com.hospital.pharmacy.service.BatchRequestService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.MappingMatch;
+import jakarta.servlet.http.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of BatchRequestService interface.
+ *
+ * Each sub-request is dispatched in-process through the metrics, security,
+ * rate limit and bulkhead filters and the DispatcherServlet, so it is
+ * recorded, authorized, charged and handled exactly as if it had been
+ * called on its own, and one over a limit gets its own 429. The caller's
+ * SecurityContext is handed to the chain through the request attribute
+ * Spring Security loads it from, so the JWT is checked and the user looked
+ * up once per batch.
+ * Sub-requests run on a bounded pool, each in its own read-only transaction
+ * that is always rolled back (a JDBC connection cannot be shared between
+ * threads, and GET handlers are not meant to write). Responses are buffered
+ * and written out as one JSON line each, in the order they finish.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class BatchRequestServiceImpl implements BatchRequestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRequestServiceImpl.class);
+
+    // Headers of the batch request that do not describe its sub-requests
+    private static final Set<String> DROPPED_HEADERS =
+            Set.of("authorization", "content-type", "content-length", "transfer-encoding");
+
+    // Set by JwtRequestFilter on the batch request; some handlers read the caller from them
+    private static final List<String> CALLER_ATTRIBUTES = List.of("user", "role");
+
+    @Autowired
+    private DispatcherServlet dispatcherServlet;
+
+    @Autowired
+    @Qualifier("springSecurityFilterChain")
+    private Filter securityFilterChain;
+
+    @Autowired
+    private RequestMetricsFilter requestMetricsFilter;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private BulkheadFilter bulkheadFilter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ExecutionThreads executionThreads;
+
+    @Value("${app.batch.max-requests:20}")
+    private int maxRequests;
+
+    @Value("${app.batch.threads:8}")
+    private int threads;
+
+    @Value("${app.batch.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.batch.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private List<Filter> filters;
+
+    @PostConstruct
+    public void init() {
+        // A full queue rejects the sub-request with 503 rather than running it on the request thread
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                executionThreads.threadFactory("batch-request-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        // In the order the container runs them for a request of its own
+        filters = List.of(requestMetricsFilter, securityFilterChain, rateLimitFilter, bulkheadFilter);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public StreamingResponseBody execute(List<BatchRequestDTO.Item> items, HttpServletRequest request) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("A batch needs at least one request");
+        }
+        if (items.size() > maxRequests) {
+            throw new IllegalArgumentException("A batch can hold at most " + maxRequests + " requests");
+        }
+        Map<String, String> targets = new LinkedHashMap<>();
+        for (BatchRequestDTO.Item item : items) {
+            String id = item.getId();
+            if (id == null || id.isBlank()) {
+                throw new IllegalArgumentException("Every batch request needs an id");
+            }
+            if (targets.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate batch request id: " + id);
+            }
+            if (item.getMethod() != null && !"GET".equalsIgnoreCase(item.getMethod())) {
+                throw new IllegalArgumentException("Only GET requests can be batched: " + id);
+            }
+            String target = target(item.getPath(), request.getContextPath());
+            if (target == null) {
+                throw new IllegalArgumentException("Invalid path for batch request " + id);
+            }
+            targets.put(id, target);
+        }
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        // Sub-requests keep the batch's route, so a session pinned to the primary still reads its own writes
+        ReadWriteRoutingDataSource.Route route = ReadWriteRoutingDataSource.requestRoute();
+        // and its priority class, so their transactions' connections count against the batch's quota
+        RequestPriority priority = RequestPriority.current();
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        Map<String, Future<?>> running = new HashMap<>();
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            String id = target.getKey();
+            SubRequest subRequest = new SubRequest(request, target.getValue(), securityContext);
+            try {
+                running.put(id, executor.submit(() -> results.add(dispatch(id, subRequest, route, priority))));
+            } catch (RejectedExecutionException e) {
+                results.add(error(id, HttpStatus.SERVICE_UNAVAILABLE, "Too many batched requests in progress"));
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        return out -> {
+            Set<String> pending = new HashSet<>(targets.keySet());
+            try {
+                while (!pending.isEmpty()) {
+                    Result result = results.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (result == null) {
+                        break;
+                    }
+                    pending.remove(result.id());
+                    write(out, result);
+                }
+                for (String id : pending) {
+                    logger.warn("Batched request {} ({}) timed out after {} ms", id, targets.get(id), timeoutMs);
+                    write(out, error(id, HttpStatus.GATEWAY_TIMEOUT, "Request timed out"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Nothing is left to read the results once the stream ends
+                for (String id : pending) {
+                    Future<?> future = running.get(id);
+                    if (future != null) {
+                        future.cancel(true);
+                    }
+                }
+            }
+        };
+    }
+
+    private Result dispatch(String id, SubRequest request, ReadWriteRoutingDataSource.Route route,
+                            RequestPriority priority) {
+        SubResponse response = new SubResponse();
+        if (route != null) {
+            ReadWriteRoutingDataSource.setRequestRoute(route);
+        }
+        if (priority != null) {
+            RequestPriority.set(priority);
+        }
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                // Rolled back rather than committed, so a handler that caught an exception
+                // from a participating transaction does not fail the commit
+                status.setRollbackOnly();
+                try {
+                    chain(0).doFilter(request, response);
+                } catch (IOException | ServletException e) {
+                    throw new DispatchException(e);
+                }
+            });
+            return new Result(id, response.getStatus(), response.getContentType(),
+                    response.getCharacterEncoding(), response.body());
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && cause.getCause() != cause) {
+                cause = cause.getCause();
+            }
+            logger.error("Batched request {} ({}) failed", id, request.getRequestURI(), e);
+            return error(id, HttpStatus.INTERNAL_SERVER_ERROR, "Request failed: " + cause.getMessage());
+        } finally {
+            ReadWriteRoutingDataSource.clearRequestRoute();
+            RequestPriority.clear();
+        }
+    }
+
+    // The filters from the given one on, then the DispatcherServlet
+    private FilterChain chain(int index) {
+        if (index == filters.size()) {
+            return dispatcherServlet::service;
+        }
+        return (request, response) -> filters.get(index).doFilter(request, response, chain(index + 1));
+    }
+
+    // Relative to the context path, which may be included; null if the path cannot be batched
+    private String target(String path, String contextPath) {
+        if (path == null || !path.startsWith("/") || path.startsWith("//")) {
+            return null;
+        }
+        if (!contextPath.isEmpty() && path.startsWith(contextPath + "/")) {
+            path = path.substring(contextPath.length());
+        }
+        String pathOnly = path.split("\\?", 2)[0];
+        // No batches of batches
+        if (pathOnly.equals(BATCH_PATH) || pathOnly.startsWith(BATCH_PATH + "/")) {
+            return null;
+        }
+        return path;
+    }
+
+    private Result error(String id, HttpStatus status, String message) {
+        try {
+            return new Result(id, status.value(), MediaType.APPLICATION_JSON_VALUE, StandardCharsets.UTF_8.name(),
+                    objectMapper.writeValueAsBytes(Map.of("message", message)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // {"id":..,"status":..,"contentType":..,"body":..} on one line; JSON bodies are inlined as is,
+    // text as a string and anything else Base64-encoded
+    private void write(OutputStream out, Result result) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.writeStartObject();
+        json.writeStringField("id", result.id());
+        json.writeNumberField("status", result.status());
+        json.writeStringField("contentType", result.contentType());
+        json.writeFieldName("body");
+        MediaType type = result.contentType() != null ? MediaType.parseMediaType(result.contentType()) : null;
+        if (result.body().length == 0) {
+            json.writeNull();
+        } else if (type != null && (type.isCompatibleWith(MediaType.APPLICATION_JSON)
+                || "json".equals(type.getSubtypeSuffix()))) {
+            json.writeRawValue(new String(result.body(), StandardCharsets.UTF_8));
+        } else if (type != null && "text".equals(type.getType())) {
+            json.writeString(new String(result.body(), Charset.forName(result.charset())));
+        } else {
+            json.writeBinary(result.body());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+        json.close();
+        out.flush();
+    }
+
+    private record Result(String id, int status, String contentType, String charset, byte[] body) {
+    }
+
+    private static class DispatchException extends RuntimeException {
+        private DispatchException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * A GET of the API made on behalf of the batch caller. Everything the
+     * handlers read is copied from the batch request up front, so a
+     * sub-request never touches it from a worker thread.
+     */
+    private static class SubRequest extends HttpServletRequestWrapper {
+
+        private static final HttpServletMapping DEFAULT_MAPPING = new HttpServletMapping() {
+            @Override
+            public String getMatchValue() {
+                return "";
+            }
+
+            @Override
+            public String getPattern() {
+                return "/";
+            }
+
+            @Override
+            public String getServletName() {
+                return "dispatcherServlet";
+            }
+
+            @Override
+            public MappingMatch getMappingMatch() {
+                return MappingMatch.DEFAULT;
+            }
+        };
+
+        private final String contextPath;
+        private final String path;
+        private final String queryString;
+        private final Map<String, String[]> parameters = new LinkedHashMap<>();
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final String scheme;
+        private final String serverName;
+        private final int serverPort;
+        private final boolean secure;
+        private final String remoteAddr;
+        private final List<Locale> locales;
+        private final Cookie[] cookies;
+
+        private SubRequest(HttpServletRequest batch, String target, SecurityContext securityContext) {
+            super(batch);
+            int query = target.indexOf('?');
+            this.path = query < 0 ? target : target.substring(0, query);
+            this.queryString = query < 0 || query == target.length() - 1 ? null : target.substring(query + 1);
+            this.contextPath = batch.getContextPath();
+            this.scheme = batch.getScheme();
+            this.serverName = batch.getServerName();
+            this.serverPort = batch.getServerPort();
+            this.secure = batch.isSecure();
+            this.remoteAddr = batch.getRemoteAddr();
+            this.locales = Collections.list(batch.getLocales());
+            this.cookies = batch.getCookies();
+            for (String name : Collections.list(batch.getHeaderNames())) {
+                if (!DROPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    headers.put(name, Collections.list(batch.getHeaders(name)));
+                }
+            }
+            if (queryString != null) {
+                Map<String, List<String>> values = new LinkedHashMap<>();
+                for (String pair : queryString.split("&")) {
+                    if (pair.isEmpty()) {
+                        continue;
+                    }
+                    String[] parts = pair.split("=", 2);
+                    values.computeIfAbsent(URLDecoder.decode(parts[0], StandardCharsets.UTF_8), key -> new ArrayList<>())
+                            .add(parts.length > 1 ? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "");
+                }
+                values.forEach((name, value) -> parameters.put(name, value.toArray(new String[0])));
+            }
+            // Loaded by the security filter chain in place of the JWT the sub-request does not carry
+            attributes.put(RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME, securityContext);
+            for (String name : CALLER_ATTRIBUTES) {
+                Object value = batch.getAttribute(name);
+                if (value != null) {
+                    attributes.put(name, value);
+                }
+            }
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public DispatcherType getDispatcherType() {
+            return DispatcherType.REQUEST;
+        }
+
+        @Override
+        public HttpServletMapping getHttpServletMapping() {
+            return DEFAULT_MAPPING;
+        }
+
+        @Override
+        public String getContextPath() {
+            return contextPath;
+        }
+
+        @Override
+        public String getServletPath() {
+            return UriUtils.decode(path, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getPathInfo() {
+            return null;
+        }
+
+        @Override
+        public String getPathTranslated() {
+            return null;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return contextPath + path;
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            return new StringBuffer(scheme).append("://").append(serverName).append(':').append(serverPort)
+                    .append(getRequestURI());
+        }
+
+        @Override
+        public String getQueryString() {
+            return queryString;
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values != null ? values[0] : null;
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return Collections.enumeration(headers.getOrDefault(name, List.of()));
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(headers.keySet());
+        }
+
+        @Override
+        public int getIntHeader(String name) {
+            String value = getHeader(name);
+            return value != null ? Integer.parseInt(value) : -1;
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            String value = getHeader(name);
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid date header " + name + ": " + value);
+            }
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            if (value == null) {
+                attributes.remove(name);
+            } else {
+                attributes.put(name, value);
+            }
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+
+        @Override
+        public String getScheme() {
+            return scheme;
+        }
+
+        @Override
+        public String getServerName() {
+            return serverName;
+        }
+
+        @Override
+        public int getServerPort() {
+            return serverPort;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return secure;
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return remoteAddr;
+        }
+
+        @Override
+        public Locale getLocale() {
+            return locales.isEmpty() ? Locale.getDefault() : locales.get(0);
+        }
+
+        @Override
+        public Enumeration<Locale> getLocales() {
+            return Collections.enumeration(locales);
+        }
+
+        @Override
+        public Cookie[] getCookies() {
+            return cookies;
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return StandardCharsets.UTF_8.name();
+        }
+
+        @Override
+        public void setCharacterEncoding(String encoding) {
+        }
+
+        @Override
+        public String getContentType() {
+            return null;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return true;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new IllegalStateException("Batched requests have no body");
+                }
+
+                @Override
+                public int read() {
+                    return -1;
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new StringReader(""));
+        }
+
+        @Override
+        public Collection<Part> getParts() {
+            return List.of();
+        }
+
+        @Override
+        public Part getPart(String name) {
+            return null;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (create) {
+                throw new IllegalStateException("Batched requests have no session");
+            }
+            return null;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return false;
+        }
+
+        @Override
+        public boolean isAsyncSupported() {
+            return false;
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            return false;
+        }
+
+        @Override
+        public jakarta.servlet.AsyncContext startAsync() {
+            throw new IllegalStateException("Streaming endpoints cannot be batched");
+        }
+
+        @Override
+        public jakarta.servlet.AsyncContext startAsync(jakarta.servlet.ServletRequest request,
+                                                       jakarta.servlet.ServletResponse response) {
+            throw new IllegalStateException("Streaming endpoints cannot be batched");
+        }
+    }
+
+    /**
+     * Buffers a sub-request's status, headers and body; nothing reaches the batch response
+     */
+    private static class SubResponse implements HttpServletResponse {
+
+        private static final ObjectMapper MESSAGE_WRITER = new ObjectMapper();
+
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int status = HttpServletResponse.SC_OK;
+        private String contentType;
+        private String characterEncoding;
+        private Locale locale = Locale.getDefault();
+        private boolean committed;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        private byte[] body() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return body.toByteArray();
+        }
+
+        @Override
+        public void setStatus(int status) {
+            if (!committed) {
+                this.status = status;
+            }
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            HttpStatus resolved = HttpStatus.resolve(status);
+            sendError(status, resolved != null ? resolved.getReasonPhrase() : null);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            if (committed) {
+                throw new IllegalStateException("Response already committed");
+            }
+            this.status = status;
+            body.reset();
+            contentType = MediaType.APPLICATION_JSON_VALUE;
+            body.write(MESSAGE_WRITER.writeValueAsBytes(
+                    Collections.singletonMap("message", message != null ? message : "Error " + status)));
+            committed = true;
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            status = HttpServletResponse.SC_FOUND;
+            setHeader("Location", location);
+            committed = true;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (value == null) {
+                headers.remove(name);
+            } else {
+                headers.put(name, new ArrayList<>(List.of(value)));
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (value != null) {
+                headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            addHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            setHeader(name, formatDate(date));
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            addHeader(name, formatDate(date));
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            return new ArrayList<>(headers.getOrDefault(name, List.of()));
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return new ArrayList<>(headers.keySet());
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+        }
+
+        @Override
+        public String encodeURL(String url) {
+            return url;
+        }
+
+        @Override
+        public String encodeRedirectURL(String url) {
+            return url;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+            if (contentType != null) {
+                try {
+                    Charset charset = MediaType.parseMediaType(contentType).getCharset();
+                    if (charset != null) {
+                        characterEncoding = charset.name();
+                    }
+                } catch (RuntimeException e) {
+                    // Kept as given; only the charset is read from it
+                }
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setCharacterEncoding(String characterEncoding) {
+            this.characterEncoding = characterEncoding;
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return characterEncoding != null ? characterEncoding : StandardCharsets.UTF_8.name();
+        }
+
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            this.locale = locale;
+        }
+
+        @Override
+        public Locale getLocale() {
+            return locale;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        throw new IllegalStateException("Batched responses are buffered");
+                    }
+
+                    @Override
+                    public void write(int b) {
+                        body.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) {
+                        body.write(bytes, offset, length);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+        }
+
+        @Override
+        public int getBufferSize() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+            committed = true;
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (committed) {
+                throw new IllegalStateException("Response already committed");
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+            body.reset();
+        }
+
+        @Override
+        public void reset() {
+            resetBuffer();
+            headers.clear();
+            status = HttpServletResponse.SC_OK;
+            contentType = null;
+            characterEncoding = null;
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        @Override
+        public void setTrailerFields(java.util.function.Supplier<Map<String, String>> supplier) {
+        }
+
+        private static String formatDate(long date) {
+            return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(date), ZoneOffset.UTC));
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.config.ExecutionThreads;
+import com.hospital.pharmacy.dto.BedBoardDTO;
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Room;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.BedRepository;
+import com.hospital.pharmacy.repository.RoomRepository;
+import com.hospital.pharmacy.service.BedBoardService;
+import com.hospital.pharmacy.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Implementation of BedBoardService interface.
+ *
+ * Every bed gets a slot number; per ward, per status and per ward and room
+ * type there is a BitSet of slots, so filters are bitwise ANDs and the first
+ * free bed is a single nextSetBit. The board is only a read model: beds are
+ * claimed with a conditional UPDATE in BedServiceImpl, and the board is
+ * rebuilt at startup, fed by local commits, and polled for rows changed by
+ * other nodes, with a periodic full resync to pick up deletions. Changes are
+ * pushed to SSE subscribers from a single broadcast thread; a subscriber whose
+ * send fails is dropped, and if the thread falls behind by more than
+ * app.beds.board.broadcast-queue-capacity changes all streams are closed so
+ * clients reconnect and reload.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class BedBoardServiceImpl implements BedBoardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BedBoardServiceImpl.class);
+
+    private static final String AVAILABLE = "Available";
+
+    // Re-read this far back on each poll so rows committed late or replicated late are not skipped
+    private static final long SYNC_OVERLAP_SECONDS = 10;
+
+    @Autowired
+    private BedRepository bedRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Value("${app.beds.board.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${app.beds.board.broadcast-queue-capacity:1000}")
+    private int broadcastQueueCapacity;
+
+    @Autowired
+    private ExecutionThreads executionThreads;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotByBedId = new HashMap<>();
+    private final List<BedBoardDTO> slots = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet used = new BitSet();
+    private final Map<String, BitSet> byWard = new HashMap<>();
+    private final Map<String, BitSet> byStatus = new HashMap<>();
+    private final Map<String, BitSet> freeByWard = new HashMap<>();
+    private final Map<String, BitSet> freeByWardAndType = new HashMap<>();
+
+    private final Map<String, String> roomTypes = new ConcurrentHashMap<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    private ThreadPoolExecutor broadcastExecutor;
+
+    private volatile boolean loaded;
+    private volatile LocalDateTime lastSeenUpdate;
+
+    @PostConstruct
+    public void init() {
+        // One thread keeps events in commit order; a send blocks at most for the connector's write timeout
+        broadcastExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(broadcastQueueCapacity),
+                executionThreads.threadFactory("bed-board-broadcast-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        broadcastExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcastExecutor.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Served from the database until a later sync succeeds
+            logger.warn("Bed board could not be loaded, retrying on next sync: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void reload() {
+        LocalDateTime started = LocalDateTime.now();
+        roomTypes.clear();
+        for (Room room : roomRepository.findAll()) {
+            roomTypes.put(room.getNumber(), room.getType() != null ? room.getType() : "");
+        }
+
+        List<Bed> beds = bedRepository.findAllForBoard();
+        List<BedBoardDTO> entries = new ArrayList<>(beds.size());
+        Set<String> seen = new HashSet<>();
+        LocalDateTime newest = started;
+        for (Bed bed : beds) {
+            entries.add(toEntry(bed));
+            seen.add(bed.getBedId());
+            if (bed.getUpdatedAt() != null && bed.getUpdatedAt().isAfter(newest)) {
+                newest = bed.getUpdatedAt();
+            }
+        }
+
+        List<BedBoardDTO> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (BedBoardDTO entry : entries) {
+                if (apply(entry)) {
+                    changed.add(entry);
+                }
+            }
+            for (String bedId : new ArrayList<>(slotByBedId.keySet())) {
+                if (!seen.contains(bedId)) {
+                    evict(bedId);
+                    removed.add(bedId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lastSeenUpdate = newest;
+        loaded = true;
+        logger.info("Bed board loaded {} beds ({} changed, {} removed)", beds.size(), changed.size(), removed.size());
+        broadcast(changed, removed);
+    }
+
+    @Scheduled(fixedDelayString = "${app.beds.board.sync-interval-ms:5000}",
+            initialDelayString = "${app.beds.board.sync-interval-ms:5000}")
+    public void syncChanges() {
+        if (!loaded) {
+            reload();
+            return;
+        }
+        List<Bed> beds = bedRepository.findChangedSince(lastSeenUpdate.minusSeconds(SYNC_OVERLAP_SECONDS));
+        if (beds.isEmpty()) {
+            return;
+        }
+
+        List<BedBoardDTO> entries = new ArrayList<>(beds.size());
+        LocalDateTime newest = lastSeenUpdate;
+        for (Bed bed : beds) {
+            entries.add(toEntry(bed));
+            if (bed.getUpdatedAt().isAfter(newest)) {
+                newest = bed.getUpdatedAt();
+            }
+        }
+
+        List<BedBoardDTO> changed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (BedBoardDTO entry : entries) {
+                if (apply(entry)) {
+                    changed.add(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lastSeenUpdate = newest;
+        if (!changed.isEmpty()) {
+            logger.debug("Bed board picked up {} changed beds", changed.size());
+            broadcast(changed, List.of());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.beds.board.full-sync-interval-ms:300000}",
+            initialDelayString = "${app.beds.board.full-sync-interval-ms:300000}")
+    public void fullSync() {
+        if (loaded) {
+            reload();
+        }
+    }
+
+    @Override
+    public List<BedBoardDTO> getBeds(String ward, String status) {
+        if (!loaded) {
+            return bedRepository.findByFilters(emptyToNull(ward), emptyToNull(status), null).stream()
+                    .map(this::toEntry)
+                    .toList();
+        }
+        List<BedBoardDTO> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) used.clone();
+            if (ward != null && !ward.isEmpty()) {
+                matches.and(byWard.getOrDefault(ward, new BitSet()));
+            }
+            if (status != null && !status.isEmpty()) {
+                matches.and(byStatus.getOrDefault(status, new BitSet()));
+            }
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                result.add(slots.get(slot));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparing(BedBoardDTO::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    @Override
+    public Optional<BedBoardDTO> findFirstFree(String ward, String roomType) {
+        if (!loaded) {
+            // An empty board is not a full ward
+            return bedRepository.findByFilters(ward, "Available", null).stream()
+                    .sorted(Comparator.comparing(Bed::getId))
+                    .map(this::toEntry)
+                    .filter(entry -> roomType == null || roomType.equals(entry.getRoomType()))
+                    .findFirst();
+        }
+        lock.readLock().lock();
+        try {
+            BitSet free = roomType == null
+                    ? freeByWard.get(ward)
+                    : freeByWardAndType.get(typeKey(ward, roomType));
+            if (free == null) {
+                return Optional.empty();
+            }
+            int slot = free.nextSetBit(0);
+            return slot >= 0 ? Optional.of(slots.get(slot)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Integer>> getCounts() {
+        Map<String, Map<String, Integer>> counts = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            byWard.forEach((ward, wardBits) -> {
+                Map<String, Integer> perStatus = new TreeMap<>();
+                byStatus.forEach((status, statusBits) -> {
+                    BitSet both = (BitSet) wardBits.clone();
+                    both.and(statusBits);
+                    if (!both.isEmpty()) {
+                        perStatus.put(status, both.cardinality());
+                    }
+                });
+                if (!perStatus.isEmpty()) {
+                    counts.put(ward, perStatus);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    @Override
+    public void publish(Bed bed) {
+        BedBoardDTO entry = toEntry(bed);
+        AfterCommit.run(() -> {
+            boolean changed;
+            lock.writeLock().lock();
+            try {
+                changed = apply(entry);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (changed) {
+                broadcast(List.of(entry), List.of());
+            }
+        });
+    }
+
+    @Override
+    public void refresh(String bedId) {
+        Bed bed = bedRepository.findByBedId(bedId);
+        BedBoardDTO entry = bed != null ? toEntry(bed) : null;
+        boolean changed;
+        lock.writeLock().lock();
+        try {
+            changed = entry != null ? apply(entry) : evict(bedId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed) {
+            broadcast(entry != null ? List.of(entry) : List.of(), entry != null ? List.of() : List.of(bedId));
+        }
+    }
+
+    @Override
+    public void remove(String bedId) {
+        AfterCommit.run(() -> {
+            boolean removed;
+            lock.writeLock().lock();
+            try {
+                removed = evict(bedId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (removed) {
+                broadcast(List.of(), List.of(bedId));
+            }
+        });
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        return emitter;
+    }
+
+    // Caller holds the write lock. Returns false when the board already had this exact entry.
+    private boolean apply(BedBoardDTO entry) {
+        Integer slot = slotByBedId.get(entry.getBedId());
+        if (slot != null) {
+            BedBoardDTO previous = slots.get(slot);
+            if (previous.equals(entry)) {
+                return false;
+            }
+            unindex(slot, previous);
+        } else {
+            slot = freeSlots.isEmpty() ? slots.size() : freeSlots.pop();
+            if (slot == slots.size()) {
+                slots.add(null);
+            }
+            slotByBedId.put(entry.getBedId(), slot);
+        }
+        slots.set(slot, entry);
+        index(slot, entry);
+        return true;
+    }
+
+    // Caller holds the write lock
+    private boolean evict(String bedId) {
+        Integer slot = slotByBedId.remove(bedId);
+        if (slot == null) {
+            return false;
+        }
+        unindex(slot, slots.get(slot));
+        slots.set(slot, null);
+        freeSlots.push(slot);
+        return true;
+    }
+
+    private void index(int slot, BedBoardDTO entry) {
+        used.set(slot);
+        byWard.computeIfAbsent(entry.getWardName(), k -> new BitSet()).set(slot);
+        byStatus.computeIfAbsent(entry.getStatus(), k -> new BitSet()).set(slot);
+        if (AVAILABLE.equals(entry.getStatus())) {
+            freeByWard.computeIfAbsent(entry.getWardName(), k -> new BitSet()).set(slot);
+            freeByWardAndType.computeIfAbsent(typeKey(entry.getWardName(), entry.getRoomType()), k -> new BitSet())
+                    .set(slot);
+        }
+    }
+
+    private void unindex(int slot, BedBoardDTO entry) {
+        used.clear(slot);
+        clearBit(byWard, entry.getWardName(), slot);
+        clearBit(byStatus, entry.getStatus(), slot);
+        clearBit(freeByWard, entry.getWardName(), slot);
+        clearBit(freeByWardAndType, typeKey(entry.getWardName(), entry.getRoomType()), slot);
+    }
+
+    private void clearBit(Map<String, BitSet> bitmaps, String key, int slot) {
+        BitSet bits = bitmaps.get(key);
+        if (bits != null) {
+            bits.clear(slot);
+        }
+    }
+
+    private String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private String typeKey(String ward, String roomType) {
+        return ward + "|" + (roomType != null ? roomType : "");
+    }
+
+    private BedBoardDTO toEntry(Bed bed) {
+        BedBoardDTO entry = new BedBoardDTO();
+        entry.setId(bed.getId());
+        entry.setBedId(bed.getBedId());
+        entry.setWardName(bed.getWardName());
+        entry.setRoomNumber(bed.getRoomNumber());
+        entry.setRoomType(roomType(bed.getRoomNumber()));
+        entry.setBedNumber(bed.getBedNumber());
+        entry.setStatus(bed.getStatus());
+        entry.setAdmissionDate(bed.getAdmissionDate());
+        entry.setDiagnosis(bed.getDiagnosis());
+
+        Patient patient = bed.getPatient();
+        if (patient != null) {
+            entry.setPatient(new BedBoardDTO.PatientSummary(patient.getId(), patient.getPatientId(),
+                    patient.getFirstName(), patient.getLastName(), patient.getDateOfBirth(), patient.getGender()));
+        }
+        User doctor = bed.getDoctor();
+        if (doctor != null) {
+            entry.setDoctor(new BedBoardDTO.DoctorSummary(doctor.getId(), doctor.getFirstName(), doctor.getLastName()));
+        }
+        return entry;
+    }
+
+    private String roomType(String roomNumber) {
+        if (roomNumber == null) {
+            return null;
+        }
+        // Not computeIfAbsent: the query would run holding the map's bin lock
+        String type = roomTypes.get(roomNumber);
+        if (type == null) {
+            type = roomRepository.findFirstByNumber(roomNumber).map(Room::getType).orElse("");
+            roomTypes.putIfAbsent(roomNumber, type);
+        }
+        return type.isEmpty() ? null : type;
+    }
+
+    // Sends on the broadcast thread, so a slow subscriber never holds up the request that changed the bed
+    private void broadcast(List<BedBoardDTO> changed, List<String> removed) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            broadcastExecutor.execute(() -> send(changed, removed));
+        } catch (RejectedExecutionException e) {
+            // Subscribers would miss this change; end their streams so they reconnect and reload the board.
+            // Completed on the broadcast thread too: a send stuck on a slow client holds the emitter's lock
+            List<SseEmitter> dropped = new ArrayList<>(subscribers);
+            subscribers.removeAll(dropped);
+            broadcastExecutor.getQueue().clear();
+            logger.warn("Bed board broadcast queue full, closing {} streams", dropped.size());
+            try {
+                broadcastExecutor.execute(() -> dropped.forEach(this::completeQuietly));
+            } catch (RejectedExecutionException again) {
+                logger.debug("Bed board streams left to time out");
+            }
+        }
+    }
+
+    private void send(List<BedBoardDTO> changed, List<String> removed) {
+        for (SseEmitter emitter : subscribers) {
+            try {
+                for (BedBoardDTO entry : changed) {
+                    emitter.send(SseEmitter.event().name("bed").data(entry));
+                }
+                for (String bedId : removed) {
+                    emitter.send(SseEmitter.event().name("bed-removed").data(bedId));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Failed or timed out writing: the client is gone or too slow to keep
+                logger.debug("Dropping bed board subscriber: {}", e.getMessage());
+                subscribers.remove(emitter);
+                completeQuietly(emitter);
+            }
+        }
+    }
+
+    private void completeQuietly(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (RuntimeException e) {
+            logger.debug("Bed board stream already closed: {}", e.getMessage());
+        }
+    }
+}
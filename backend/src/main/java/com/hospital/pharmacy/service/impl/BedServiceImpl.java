@@ -1,21 +1,32 @@
 package com.hospital.pharmacy.service.impl;
 
+import com.hospital.pharmacy.dto.BedBoardDTO;
 import com.hospital.pharmacy.model.Bed;
 import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.BedRepository;
 import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.service.AdmissionService;
+import com.hospital.pharmacy.service.BedBoardService;
 import com.hospital.pharmacy.service.BedService;
+import com.hospital.pharmacy.service.RoomDirectoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Implementation of BedService interface.
  * Provides concrete implementation for bed management operations.
+ * Every change that fills or frees a bed is mirrored into its room's occupancy
+ * and recorded as the start or end of an admission.
  *
  * @author Leandre
  * @version 1.0.0
@@ -26,12 +37,23 @@ public class BedServiceImpl implements BedService {
 
     private static final Logger logger = LoggerFactory.getLogger(BedServiceImpl.class);
 
+    private static final int MAX_ADMIT_ATTEMPTS = 5;
+
     @Autowired
     private BedRepository bedRepository;
 
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private RoomDirectoryService roomDirectoryService;
+
+    @Autowired
+    private BedBoardService bedBoardService;
+
+    @Autowired
+    private AdmissionService admissionService;
+
     @Override
     public List<Bed> findByFilters(String ward, String status, String search) {
         logger.debug("Finding beds with filters - ward: {}, status: {}, search: {}", ward, status, search);
@@ -52,18 +74,32 @@ public class BedServiceImpl implements BedService {
     }
 
     @Override
+    @Transactional
     public Bed save(Bed bed) {
         logger.debug("Saving new bed: {}", bed.getBedId());
-        return bedRepository.save(bed);
+        Bed saved = bedRepository.save(bed);
+        if (isOccupied(saved)) {
+            roomDirectoryService.adjustOccupancy(saved.getWardName(), saved.getRoomNumber(), 1);
+            if (saved.getPatient() != null) {
+                admissionService.recordAdmission(saved);
+            }
+        }
+        bedBoardService.publish(saved);
+        return saved;
     }
 
     @Override
+    @Transactional
     public Bed update(Long id, Bed updatedBed) {
         logger.debug("Updating bed with ID: {}", id);
         Optional<Bed> existingBed = bedRepository.findById(id);
         
         if (existingBed.isPresent()) {
             Bed bed = existingBed.get();
+            String previousRoom = bed.getRoomNumber();
+            String previousWard = bed.getWardName();
+            Long previousPatientId = bed.getPatient() != null ? bed.getPatient().getId() : null;
+            boolean wasOccupied = isOccupied(bed);
             bed.setWardName(updatedBed.getWardName());
             bed.setRoomNumber(updatedBed.getRoomNumber());
             bed.setBedNumber(updatedBed.getBedNumber());
@@ -73,67 +109,150 @@ public class BedServiceImpl implements BedService {
             bed.setAdmissionDate(updatedBed.getAdmissionDate());
             bed.setDiagnosis(updatedBed.getDiagnosis());
             
-            return bedRepository.save(bed);
+            Bed saved = bedRepository.save(bed);
+            if (wasOccupied) {
+                roomDirectoryService.adjustOccupancy(previousWard, previousRoom, -1);
+            }
+            if (isOccupied(saved)) {
+                roomDirectoryService.adjustOccupancy(saved.getWardName(), saved.getRoomNumber(), 1);
+            }
+
+            // A new patient or a move to another ward ends the current stay
+            Long patientId = saved.getPatient() != null ? saved.getPatient().getId() : null;
+            boolean sameStay = wasOccupied && isOccupied(saved)
+                    && Objects.equals(previousPatientId, patientId)
+                    && Objects.equals(previousWard, saved.getWardName());
+            if (wasOccupied && !sameStay) {
+                admissionService.recordDischarge(saved.getBedId());
+            }
+            if (isOccupied(saved) && !sameStay && patientId != null) {
+                admissionService.recordAdmission(saved);
+            }
+            bedBoardService.publish(saved);
+            return saved;
         } else {
             throw new RuntimeException("Bed not found with ID: " + id);
         }
     }
 
     @Override
+    @Transactional
     public Bed updateStatus(String bedId, String status) {
         logger.debug("Updating bed status - bedId: {}, status: {}", bedId, status);
         Bed bed = bedRepository.findByBedId(bedId);
         
         if (bed != null) {
+            boolean wasOccupied = isOccupied(bed);
             bed.setStatus(status);
-            return bedRepository.save(bed);
+            Bed saved = bedRepository.save(bed);
+            if (wasOccupied != isOccupied(saved)) {
+                roomDirectoryService.adjustOccupancy(saved.getWardName(), saved.getRoomNumber(), wasOccupied ? -1 : 1);
+                if (wasOccupied) {
+                    admissionService.recordDischarge(bedId);
+                } else if (saved.getPatient() != null) {
+                    admissionService.recordAdmission(saved);
+                }
+            }
+            bedBoardService.publish(saved);
+            return saved;
         } else {
             throw new RuntimeException("Bed not found with ID: " + bedId);
         }
     }
 
     @Override
+    @Transactional
     public Bed assignPatient(String bedId, Long patientId) {
+        return assignPatient(bedId, patientId, null, null);
+    }
+
+    @Override
+    @Transactional
+    public Bed assignPatient(String bedId, Long patientId, User doctor, String diagnosis) {
         logger.debug("Assigning patient {} to bed {}", patientId, bedId);
         Bed bed = bedRepository.findByBedId(bedId);
         Optional<Patient> patientOptional = patientRepository.findById(patientId);
         
         if (bed != null && patientOptional.isPresent()) {
-            Patient patient = patientOptional.get();
-            
-            if ("Available".equals(bed.getStatus())) {
-                bed.setPatient(patient);
-                bed.setStatus("Occupied");
-                return bedRepository.save(bed);
-            } else {
+            // Conditional update: of two admissions racing for the same bed only one matches
+            int claimed = bedRepository.claimBed(bedId, patientOptional.get(), doctor,
+                    LocalDate.now().toString(), diagnosis, LocalDateTime.now());
+            if (claimed == 0) {
                 throw new RuntimeException("Bed is not available for assignment");
             }
+            Bed saved = bedRepository.findByBedId(bedId);
+            roomDirectoryService.adjustOccupancy(saved.getWardName(), saved.getRoomNumber(), 1);
+            admissionService.recordAdmission(saved);
+            bedBoardService.publish(saved);
+            return saved;
         } else {
             throw new RuntimeException("Bed or patient not found");
         }
     }
 
     @Override
+    @Transactional
+    public Bed admitToFreeBed(String ward, String roomType, Long patientId, User doctor, String diagnosis) {
+        logger.debug("Admitting patient {} to a free {} bed in {}", patientId, roomType, ward);
+        for (int attempt = 0; attempt < MAX_ADMIT_ATTEMPTS; attempt++) {
+            Optional<BedBoardDTO> candidate = bedBoardService.findFirstFree(ward, roomType);
+            if (candidate.isEmpty()) {
+                break;
+            }
+            try {
+                return assignPatient(candidate.get().getBedId(), patientId, doctor, diagnosis);
+            } catch (RuntimeException e) {
+                Bed current = bedRepository.findByBedId(candidate.get().getBedId());
+                if (current != null && "Available".equals(current.getStatus())) {
+                    throw e;
+                }
+                // Someone else took the bed first; correct the board and try the next one
+                bedBoardService.refresh(candidate.get().getBedId());
+            }
+        }
+        throw new RuntimeException("No free bed in ward " + ward);
+    }
+
+    @Override
+    @Transactional
     public Bed dischargePatient(String bedId) {
         logger.debug("Discharging patient from bed: {}", bedId);
         Bed bed = bedRepository.findByBedId(bedId);
         
         if (bed != null) {
+            if (bedRepository.releaseBed(bedId, LocalDateTime.now()) > 0) {
+                Bed saved = bedRepository.findByBedId(bedId);
+                roomDirectoryService.adjustOccupancy(saved.getWardName(), saved.getRoomNumber(), -1);
+                admissionService.recordDischarge(bedId);
+                bedBoardService.publish(saved);
+                return saved;
+            }
+            // Not occupied: clear it without touching occupancy
             bed.setPatient(null);
             bed.setStatus("Available");
             bed.setDoctor(null);
             bed.setAdmissionDate(null);
             bed.setDiagnosis(null);
-            return bedRepository.save(bed);
+            Bed saved = bedRepository.save(bed);
+            bedBoardService.publish(saved);
+            return saved;
         } else {
             throw new RuntimeException("Bed not found with ID: " + bedId);
         }
     }
 
     @Override
+    @Transactional
     public void delete(Long id) {
         logger.debug("Deleting bed with ID: {}", id);
-        bedRepository.deleteById(id);
+        bedRepository.findById(id).ifPresent(bed -> {
+            bedRepository.delete(bed);
+            if (isOccupied(bed)) {
+                roomDirectoryService.adjustOccupancy(bed.getWardName(), bed.getRoomNumber(), -1);
+                admissionService.recordDischarge(bed.getBedId());
+            }
+            bedBoardService.remove(bed.getBedId());
+        });
     }
 
     @Override
@@ -159,4 +278,8 @@ public class BedServiceImpl implements BedService {
         logger.debug("Finding occupied beds");
         return bedRepository.findByStatus("Occupied");
     }
-} 
\ No newline at end of file
+
+    private boolean isOccupied(Bed bed) {
+        return "Occupied".equals(bed.getStatus());
+    }
+}
@@ -0,0 +1,221 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.BillingRequestDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.BillingItem;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.service.AccountsReceivableService;
+import com.hospital.pharmacy.service.BillingService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Implementation of BillingService interface.
+ *
+ * Line amounts are converted to long minor units (cents) once and all
+ * arithmetic is exact integer math; tax is rounded half up once, on the
+ * discounted subtotal. The bill is inserted through JPA, its items in a
+ * single JDBC batch, and the appointment is marked billed with one
+ * conditional update, all in one transaction.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class BillingServiceImpl implements BillingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BillingServiceImpl.class);
+
+    private static final Set<String> ITEM_TYPES = Set.of("CONSULTATION", "MEDICINE", "LAB_TEST", "PROCEDURE");
+
+    private static final int MINOR_DIGITS = 2;
+    private static final long BASIS_POINTS = 10_000;
+
+    private static final String INSERT_ITEM = "INSERT INTO billing_items (itemType, description, quantity, "
+            + "unitPrice, totalPrice, discount, notes, bill_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.billing.tax-rate-percent:0}")
+    private BigDecimal taxRatePercent;
+
+    @Value("${app.billing.due-days:30}")
+    private int dueDays;
+
+    @Override
+    @Transactional
+    public Billing createBilling(BillingRequestDTO request, User createdBy) {
+        if (request.getPatientId() == null) {
+            throw new IllegalArgumentException("Patient is required");
+        }
+        List<BillingRequestDTO.Item> lines = request.getItems();
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("A bill needs at least one item");
+        }
+        // Paid and partially paid are reached by recording payments, never set on creation
+        if (!isBlank(request.getStatus()) && !"PENDING".equalsIgnoreCase(request.getStatus().trim())) {
+            throw new IllegalArgumentException("A new bill is PENDING until payments are recorded");
+        }
+
+        // Everything is validated and priced before the first write
+        List<BillingItem> items = new ArrayList<>(lines.size());
+        long subtotal = 0;
+        long discount;
+        long tax;
+        long total;
+        try {
+            for (int i = 0; i < lines.size(); i++) {
+                BillingItem item = price(lines.get(i), "Item " + (i + 1));
+                subtotal = Math.addExact(subtotal, toMinor(item.getTotalPrice(), "Item total"));
+                items.add(item);
+            }
+            discount = toMinor(request.getDiscount(), "Discount");
+            if (discount < 0 || discount >= subtotal) {
+                throw new IllegalArgumentException("Discount must be at least zero and less than the subtotal");
+            }
+            long taxable = subtotal - discount;
+            // Half up on a non-negative amount
+            tax = (Math.multiplyExact(taxable, taxBasisPoints()) + BASIS_POINTS / 2) / BASIS_POINTS;
+            total = Math.addExact(taxable, tax);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Bill amounts are too large");
+        }
+
+        Patient patient = patientRepository.findById(request.getPatientId())
+                .orElseThrow(() -> new IllegalArgumentException("Patient not found"));
+        // Claimed first, so an appointment is billed once and never by another patient's bill
+        if (request.getAppointmentId() != null
+                && appointmentRepository.markBilled(request.getAppointmentId(), patient.getId(),
+                        LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Appointment is not a completed, unbilled appointment of this patient");
+        }
+
+        Billing billing = new Billing();
+        billing.setBillNumber("BILL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        billing.setPatient(patient);
+        billing.setBillDate(LocalDate.now());
+        billing.setDueDate(LocalDate.now().plusDays(dueDays));
+        billing.setTotalAmount(fromMinor(total));
+        billing.setDiscount(fromMinor(discount));
+        billing.setTax(fromMinor(tax));
+        billing.setStatus("PENDING");
+        billing.setPaymentMethod(request.getPaymentMethod());
+        billing.setNotes(request.getDescription());
+        billing.setCreatedBy(createdBy);
+        // Identity key, so this inserts immediately
+        billingRepository.save(billing);
+        // The items are written below with JDBC; keep Hibernate from tracking the collection
+        entityManager.detach(billing);
+
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (BillingItem item : items) {
+            rows.add(new Object[] {item.getItemType(), item.getDescription(), item.getQuantity(),
+                    item.getUnitPrice(), item.getTotalPrice(), item.getDiscount(), item.getNotes(), billing.getId()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITEM, rows);
+        billing.setBillingItems(items);
+        accountsReceivableService.publish(billing);
+        return billing;
+    }
+
+    private BillingItem price(BillingRequestDTO.Item line, String label) {
+        if (isBlank(line.getDescription())) {
+            throw new IllegalArgumentException(label + ": description is required");
+        }
+        String itemType = isBlank(line.getItemType()) ? "CONSULTATION" : line.getItemType().trim().toUpperCase();
+        if (!ITEM_TYPES.contains(itemType)) {
+            throw new IllegalArgumentException(label + ": type must be one of " + ITEM_TYPES);
+        }
+        int quantity = line.getQuantity() == null ? 1 : line.getQuantity();
+        if (quantity <= 0) {
+            throw new IllegalArgumentException(label + ": quantity must be positive");
+        }
+        BigDecimal unitPrice = line.getUnitPrice() != null ? line.getUnitPrice() : line.getAmount();
+        long unit = toMinor(unitPrice, label + " price");
+        if (unit <= 0) {
+            throw new IllegalArgumentException(label + ": price must be positive");
+        }
+        long gross = Math.multiplyExact(unit, quantity);
+        long discount = toMinor(line.getDiscount(), label + " discount");
+        if (discount < 0 || discount >= gross) {
+            throw new IllegalArgumentException(label + ": discount must be at least zero and less than the line amount");
+        }
+
+        BillingItem item = new BillingItem();
+        item.setItemType(itemType);
+        item.setDescription(line.getDescription().trim());
+        item.setQuantity(quantity);
+        item.setUnitPrice(fromMinor(unit));
+        item.setTotalPrice(fromMinor(gross - discount));
+        item.setDiscount(fromMinor(discount));
+        item.setNotes(line.getNotes());
+        return item;
+    }
+
+    private long taxBasisPoints() {
+        return taxRatePercent.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    // Amounts with more than two decimals are rejected rather than silently rounded
+    private static long toMinor(BigDecimal amount, String label) {
+        if (amount == null) {
+            return 0;
+        }
+        BigDecimal scaled;
+        try {
+            scaled = amount.setScale(MINOR_DIGITS, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(label + " must have at most " + MINOR_DIGITS + " decimal places");
+        }
+        try {
+            return scaled.movePointRight(MINOR_DIGITS).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(label + " is too large");
+        }
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, MINOR_DIGITS);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
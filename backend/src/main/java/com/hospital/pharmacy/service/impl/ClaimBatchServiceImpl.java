@@ -0,0 +1,375 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.ClaimBatch;
+import com.hospital.pharmacy.model.InsuranceClaim;
+import com.hospital.pharmacy.model.Payer;
+import com.hospital.pharmacy.repository.ClaimBatchRepository;
+import com.hospital.pharmacy.repository.InsuranceClaimRepository;
+import com.hospital.pharmacy.service.ClaimBatchService;
+import com.hospital.pharmacy.service.PayerService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds claim batches one page of bills per transaction. Each page is
+ * appended to the claim file and flushed to disk before the transaction that
+ * records its claims and the new file length commits, so after a crash the
+ * file is cut back to the committed length and the build carries on from the
+ * keyset cursor. Bills that already have a claim are never picked up again.
+ */
+@Service
+public class ClaimBatchServiceImpl implements ClaimBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClaimBatchServiceImpl.class);
+
+    private static final DateTimeFormatter BATCH_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    private static final Set<String> RESPONSE_STATUSES = Set.of("ACCEPTED", "REJECTED", "PAID");
+
+    // Keyset page over (policy number, bill id); uses idx_patients_payer_policy and idx_billings_patient_date
+    private static final String SELECT_PAGE = "SELECT b.id, b.billNumber, b.billDate, b.totalAmount, p.id AS patient_ref, "
+            + "p.patientId, p.firstName, p.lastName, p.dateOfBirth, p.insurancePolicyNumber "
+            + "FROM patients p JOIN billings b ON b.patient_id = p.id "
+            + "WHERE p.payer_id = ? AND p.insurancePolicyNumber IS NOT NULL AND p.insurancePolicyNumber <> '' "
+            + "AND b.billDate BETWEEN ? AND ? AND b.status <> 'CANCELLED' "
+            + "AND (p.insurancePolicyNumber > ? OR (p.insurancePolicyNumber = ? AND b.id > ?)) "
+            + "AND NOT EXISTS (SELECT 1 FROM insurance_claims c WHERE c.bill_id = b.id) "
+            + "ORDER BY p.insurancePolicyNumber, b.id LIMIT ?";
+
+    private static final String SELECT_ITEMS = "SELECT bill_id, itemType, description, quantity, unitPrice, totalPrice "
+            + "FROM billing_items WHERE bill_id IN (:ids) ORDER BY bill_id, id";
+
+    private static final String INSERT_CLAIM = "INSERT INTO insurance_claims (bill_id, batch_id, payer_id, patient_id, "
+            + "policyNumber, amount, status, createdAt, updatedAt) VALUES (?, ?, ?, ?, ?, ?, 'QUEUED', ?, ?)";
+
+    @Autowired
+    private ClaimBatchRepository claimBatchRepository;
+
+    @Autowired
+    private InsuranceClaimRepository insuranceClaimRepository;
+
+    @Autowired
+    private PayerService payerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.claims.dir:${app.storage.root:./storage}/claims}")
+    private String dir;
+
+    @Value("${app.claims.page-size:500}")
+    private int pageSize;
+
+    private Path batchDir;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService builder;
+
+    private record ClaimRow(Long billingId, String billNumber, LocalDate billDate, BigDecimal amount, Long patientId,
+                            String patientCode, String firstName, String lastName, LocalDate dateOfBirth,
+                            String policyNumber) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        batchDir = Files.createDirectories(Paths.get(dir).toAbsolutePath().normalize());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // One build at a time; builds are I/O bound and queue behind each other
+        builder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "claims-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    // Picks up builds interrupted by a restart
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            payerService.linkPatients();
+            for (ClaimBatch batch : claimBatchRepository.findByStatus("BUILDING")) {
+                logger.info("Resuming claim batch {} at {} claims", batch.getBatchNumber(), batch.getClaimCount());
+                builder.execute(() -> build(batch.getId()));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to resume claim batches", e);
+        }
+    }
+
+    @Override
+    public ClaimBatch startBuild(String payerCode, LocalDate fromDate, LocalDate toDate) {
+        if (fromDate == null || toDate == null || fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("A date range with from on or before to is required");
+        }
+        // Patients added or edited since the last scheduled link belong in this batch too
+        payerService.linkPatients();
+        Payer payer = payerService.findByCode(payerCode)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown payer: " + payerCode));
+        if (claimBatchRepository.existsByPayerIdAndStatus(payer.getId(), "BUILDING")) {
+            throw new IllegalStateException("A claim batch for " + payer.getCode() + " is already building");
+        }
+
+        ClaimBatch batch = new ClaimBatch();
+        batch.setBatchNumber("CLB-" + payer.getCode() + "-" + LocalDateTime.now().format(BATCH_TIMESTAMP));
+        batch.setPayer(payer);
+        batch.setFromDate(fromDate);
+        batch.setToDate(toDate);
+        batch.setStatus("BUILDING");
+        batch.setFileName(batch.getBatchNumber() + ".txt");
+        ClaimBatch saved = claimBatchRepository.save(batch);
+        builder.execute(() -> build(saved.getId()));
+        logger.info("Started claim batch {} for {} to {}", saved.getBatchNumber(), fromDate, toDate);
+        return saved;
+    }
+
+    @Override
+    public Optional<ClaimBatch> resume(Long batchId) {
+        Optional<ClaimBatch> resumed = transactionTemplate.execute(status -> claimBatchRepository.findById(batchId)
+                .map(batch -> {
+                    if (!"FAILED".equals(batch.getStatus())) {
+                        throw new IllegalStateException("Only a failed batch can be resumed");
+                    }
+                    batch.setStatus("BUILDING");
+                    batch.setErrorMessage(null);
+                    return batch;
+                }));
+        resumed.ifPresent(batch -> builder.execute(() -> build(batch.getId())));
+        return resumed;
+    }
+
+    @Override
+    public Optional<ClaimBatch> getBatch(Long batchId) {
+        return claimBatchRepository.findById(batchId);
+    }
+
+    @Override
+    public List<ClaimBatch> getBatches(String payerCode, int limit) {
+        return claimBatchRepository.findRecent(payerCode, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public Optional<Path> getBatchFile(Long batchId) {
+        return claimBatchRepository.findById(batchId).map(batch -> {
+            if (!"COMPLETED".equals(batch.getStatus()) && !"SUBMITTED".equals(batch.getStatus())) {
+                throw new IllegalStateException("Batch " + batch.getBatchNumber() + " is " + batch.getStatus());
+            }
+            return batchDir.resolve(batch.getFileName());
+        });
+    }
+
+    @Override
+    @Transactional
+    public Optional<ClaimBatch> markSubmitted(Long batchId) {
+        return claimBatchRepository.findById(batchId).map(batch -> {
+            if (!"COMPLETED".equals(batch.getStatus())) {
+                throw new IllegalStateException("Batch " + batch.getBatchNumber() + " is " + batch.getStatus());
+            }
+            LocalDateTime now = LocalDateTime.now();
+            batch.setStatus("SUBMITTED");
+            batch.setSubmittedAt(now);
+            insuranceClaimRepository.markSubmitted(batchId, now);
+            return batch;
+        });
+    }
+
+    @Override
+    public Optional<InsuranceClaim> getClaimForBill(Long billingId) {
+        return insuranceClaimRepository.findByBillingId(billingId);
+    }
+
+    @Override
+    @Transactional
+    public Optional<InsuranceClaim> updateClaimStatus(Long billingId, String status, String note) {
+        if (status == null || !RESPONSE_STATUSES.contains(status.toUpperCase())) {
+            throw new IllegalArgumentException("Status must be one of " + RESPONSE_STATUSES);
+        }
+        return insuranceClaimRepository.findByBillingId(billingId).map(claim -> {
+            if ("QUEUED".equals(claim.getStatus())) {
+                throw new IllegalStateException("Claim has not been submitted yet");
+            }
+            if ("PAID".equals(claim.getStatus())) {
+                throw new IllegalStateException("Claim is already paid");
+            }
+            claim.setStatus(status.toUpperCase());
+            claim.setNote(note);
+            return claim;
+        });
+    }
+
+    private void build(Long batchId) {
+        try {
+            while (Boolean.TRUE.equals(transactionTemplate.execute(status -> buildStep(batchId)))) {
+                // next page
+            }
+        } catch (RuntimeException e) {
+            if (builder.isShutdown()) {
+                // Left BUILDING; the next start resumes it
+                logger.info("Claim batch {} interrupted by shutdown", batchId);
+                return;
+            }
+            logger.error("Claim batch {} failed", batchId, e);
+            String message = String.valueOf(e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> claimBatchRepository.findById(batchId)
+                    .ifPresent(batch -> {
+                        batch.setStatus("FAILED");
+                        batch.setErrorMessage(message.length() > 1000 ? message.substring(0, 1000) : message);
+                    }));
+        }
+    }
+
+    // Writes and records one page; false once the batch is finished
+    private boolean buildStep(Long batchId) {
+        ClaimBatch batch = claimBatchRepository.findById(batchId).orElse(null);
+        if (batch == null || !"BUILDING".equals(batch.getStatus())) {
+            return false;
+        }
+        Path file = batchDir.resolve(batch.getFileName());
+        Payer payer = batch.getPayer();
+
+        if (batch.getFileLength() == 0) {
+            String header = line("HDR", batch.getBatchNumber(), payer.getCode(), payer.getName(),
+                    batch.getFromDate(), batch.getToDate(), batch.getCreatedAt().truncatedTo(ChronoUnit.SECONDS));
+            batch.setFileLength(append(file, 0, header));
+            return true;
+        }
+
+        List<ClaimRow> page = jdbcTemplate.query(SELECT_PAGE, (rs, rowNum) -> new ClaimRow(
+                        rs.getLong("id"), rs.getString("billNumber"), rs.getObject("billDate", LocalDate.class),
+                        rs.getBigDecimal("totalAmount"), rs.getLong("patient_ref"), rs.getString("patientId"),
+                        rs.getString("firstName"), rs.getString("lastName"),
+                        rs.getObject("dateOfBirth", LocalDate.class), rs.getString("insurancePolicyNumber")),
+                payer.getId(), Date.valueOf(batch.getFromDate()), Date.valueOf(batch.getToDate()),
+                batch.getLastPolicyNumber(), batch.getLastPolicyNumber(), batch.getLastBillingId(), pageSize);
+
+        if (page.isEmpty()) {
+            String trailer = line("TRL", batch.getClaimCount(), batch.getLineCount(), money(batch.getTotalAmount()));
+            batch.setFileLength(append(file, batch.getFileLength(), trailer));
+            batch.setStatus("COMPLETED");
+            batch.setCompletedAt(LocalDateTime.now());
+            logger.info("Claim batch {} completed with {} claims", batch.getBatchNumber(), batch.getClaimCount());
+            return false;
+        }
+
+        Map<Long, StringBuilder> itemLines = new HashMap<>();
+        Map<Long, Integer> itemCounts = new HashMap<>();
+        Map<Long, String> billNumbers = new HashMap<>();
+        page.forEach(row -> billNumbers.put(row.billingId(), row.billNumber()));
+        namedParameterJdbcTemplate.query(SELECT_ITEMS, Map.of("ids", billNumbers.keySet()), rs -> {
+            long billingId = rs.getLong("bill_id");
+            int number = itemCounts.merge(billingId, 1, Integer::sum);
+            itemLines.computeIfAbsent(billingId, id -> new StringBuilder()).append(line("LIN",
+                    billNumbers.get(billingId), number, rs.getString("itemType"), rs.getString("description"),
+                    rs.getInt("quantity"), money(rs.getBigDecimal("unitPrice")),
+                    money(rs.getBigDecimal("totalPrice"))));
+        });
+
+        StringBuilder text = new StringBuilder();
+        List<Object[]> claims = new ArrayList<>(page.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        BigDecimal total = batch.getTotalAmount();
+        for (ClaimRow row : page) {
+            text.append(line("CLM", row.billNumber(), row.billDate(), row.policyNumber(), row.patientCode(),
+                    row.lastName(), row.firstName(), row.dateOfBirth(), money(row.amount())));
+            text.append(itemLines.getOrDefault(row.billingId(), new StringBuilder()));
+            claims.add(new Object[]{row.billingId(), batchId, payer.getId(), row.patientId(), row.policyNumber(),
+                    row.amount(), now, now});
+            total = total.add(row.amount());
+        }
+
+        long length = append(file, batch.getFileLength(), text.toString());
+        jdbcTemplate.batchUpdate(INSERT_CLAIM, claims);
+
+        ClaimRow last = page.get(page.size() - 1);
+        batch.setLastPolicyNumber(last.policyNumber());
+        batch.setLastBillingId(last.billingId());
+        batch.setClaimCount(batch.getClaimCount() + page.size());
+        batch.setLineCount(batch.getLineCount() + itemCounts.values().stream().mapToInt(Integer::intValue).sum());
+        batch.setTotalAmount(total);
+        batch.setFileLength(length);
+        return true;
+    }
+
+    // Writes text at the committed length, dropping anything left by a page that did not commit
+    private long append(Path file, long position, String text) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < position) {
+                throw new IllegalStateException("Claim file " + file.getFileName() + " is shorter than recorded");
+            }
+            channel.truncate(position);
+            channel.position(position);
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(text);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // On disk before the page's claims commit
+            channel.force(false);
+            return channel.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String line(String recordType, Object... fields) {
+        StringBuilder line = new StringBuilder(recordType);
+        for (Object field : fields) {
+            line.append('|');
+            if (field != null) {
+                line.append(field.toString().replaceAll("[|\\r\\n]", " "));
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private String money(BigDecimal amount) {
+        return amount == null ? "" : amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+}
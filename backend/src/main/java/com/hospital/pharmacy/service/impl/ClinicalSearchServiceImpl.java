@@ -0,0 +1,763 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.ClinicalDocumentDTO;
+import com.hospital.pharmacy.dto.ClinicalSearchHitDTO;
+import com.hospital.pharmacy.repository.MedicalRecordRepository;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.service.ClinicalSearchService;
+import com.hospital.pharmacy.util.AfterCommit;
+import com.hospital.pharmacy.util.ClinicalTextAnalyzer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Implementation of ClinicalSearchService interface.
+ *
+ * An in-process inverted index: every document gets a slot, and every term
+ * a postings list of (slot, term frequency) in slot order. Queries
+ * intersect the postings of their terms, shortest list first with
+ * galloping seeks, filter on the per-slot doctor, date and type columns,
+ * and rank with BM25 (diagnosis text counts double). Updates append a new
+ * slot and retire the old one; snapshots leave retired slots out, and
+ * memory is compacted once a quarter of the slots are retired.
+ *
+ * The index is saved to local disk and reloaded at startup, then caught
+ * up from the database: rows above the highest indexed ID plus rows
+ * updated since the last sync. Local writes arrive through
+ * ClinicalSearchIndexListener after commit; a periodic count check finds
+ * rows deleted outside JPA or on other nodes.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class ClinicalSearchServiceImpl implements ClinicalSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClinicalSearchServiceImpl.class);
+
+    private static final List<String> TYPES = List.of("MEDICAL_RECORD", "PRESCRIPTION");
+
+    private static final int SNAPSHOT_MAGIC = 0x43534958; // "CSIX"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "clinical-search.idx";
+
+    // Re-read this far back on each poll so rows committed late or replicated late are not skipped
+    private static final long SYNC_OVERLAP_SECONDS = 10;
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private ClinicalTextAnalyzer analyzer;
+
+    @Value("${app.search.clinical.index-dir:}")
+    private String indexDir;
+
+    @Value("${app.search.clinical.batch-size:1000}")
+    private int batchSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+    private volatile LocalDateTime syncedUntil;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            // Searches are refused until a later sync manages to load the index
+            logger.warn("Clinical search index could not be loaded, retrying on next sync: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public List<ClinicalSearchHitDTO> search(String query, String type, Long doctorId,
+                                             LocalDate from, LocalDate to, int limit) {
+        if (!loaded) {
+            throw new IllegalStateException("Clinical search index is still loading");
+        }
+        int typeFilter = type == null ? -1 : typeIndex(type);
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(analyzer.analyze(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms, typeFilter, doctorId, fromDay, toDay, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void indexAfterCommit(ClinicalDocumentDTO document) {
+        AfterCommit.run(() -> apply(List.of(document)));
+    }
+
+    @Override
+    public void removeAfterCommit(String type, Long id) {
+        int typeIndex = typeIndex(type);
+        AfterCommit.run(() -> {
+            if (!loaded) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                index.remove(typeIndex, id);
+                dirty = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void rebuild() {
+        LocalDateTime started = LocalDateTime.now();
+        Index fresh = new Index();
+        for (int type = 0; type < TYPES.size(); type++) {
+            long after = 0;
+            List<ClinicalDocumentDTO> page;
+            do {
+                page = fetchAfter(type, after);
+                for (ClinicalDocumentDTO document : page) {
+                    fresh.add(document, typeIndex(document.getType()), analyze(document));
+                    after = document.getId();
+                }
+            } while (page.size() == batchSize);
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Commits that raced the rebuild are caught by the next sync's overlap
+        syncedUntil = started;
+        loaded = true;
+        dirty = true;
+        logger.info("Clinical search index rebuilt: {} documents, {} terms",
+                fresh.liveCount(), fresh.postings.size());
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int type = 0; type < TYPES.size(); type++) {
+                stats.put(TYPES.get(type), index.liveByType[type]);
+            }
+            stats.put("terms", index.postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("loaded", loaded);
+        stats.put("syncedUntil", syncedUntil);
+        return stats;
+    }
+
+    /**
+     * Pick up rows written on other nodes or outside JPA
+     */
+    @Scheduled(fixedDelayString = "${app.search.clinical.sync-interval-ms:10000}",
+            initialDelayString = "${app.search.clinical.sync-interval-ms:10000}")
+    public void sync() {
+        try {
+            if (!loaded) {
+                load();
+                return;
+            }
+            LocalDateTime started = LocalDateTime.now();
+            for (int type = 0; type < TYPES.size(); type++) {
+                long after;
+                lock.readLock().lock();
+                try {
+                    after = index.maxIds[type];
+                } finally {
+                    lock.readLock().unlock();
+                }
+                List<ClinicalDocumentDTO> page;
+                do {
+                    page = fetchAfter(type, after);
+                    apply(page);
+                    if (!page.isEmpty()) {
+                        after = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == batchSize);
+
+                LocalDateTime since = syncedUntil.minusSeconds(SYNC_OVERLAP_SECONDS);
+                apply(type == 0 ? medicalRecordRepository.findSearchDocumentsUpdatedSince(since)
+                        : prescriptionRepository.findSearchDocumentsUpdatedSince(since));
+            }
+            syncedUntil = started;
+        } catch (RuntimeException e) {
+            logger.warn("Clinical search index sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drop documents whose rows were deleted without going through JPA
+     */
+    @Scheduled(fixedDelayString = "${app.search.clinical.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.search.clinical.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            for (int type = 0; type < TYPES.size(); type++) {
+                long rows = type == 0 ? medicalRecordRepository.count() : prescriptionRepository.count();
+                int indexed;
+                lock.readLock().lock();
+                try {
+                    indexed = index.liveByType[type];
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (rows == indexed) {
+                    continue;
+                }
+
+                BitSet present = new BitSet();
+                long after = 0;
+                List<Long> ids;
+                do {
+                    ids = type == 0 ? medicalRecordRepository.findIdsAfter(after, PageRequest.of(0, batchSize * 10))
+                            : prescriptionRepository.findIdsAfter(after, PageRequest.of(0, batchSize * 10));
+                    for (Long id : ids) {
+                        present.set(Math.toIntExact(id));
+                        after = id;
+                    }
+                } while (ids.size() == batchSize * 10);
+
+                lock.writeLock().lock();
+                try {
+                    int removed = index.retainIds(type, present);
+                    if (removed > 0) {
+                        dirty = true;
+                        logger.info("Clinical search index dropped {} deleted {} documents", removed, TYPES.get(type));
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Clinical search index reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write the index to local disk so a restart does not rebuild it from the database
+     */
+    @Scheduled(fixedDelayString = "${app.search.clinical.snapshot-interval-ms:600000}",
+            initialDelayString = "${app.search.clinical.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        Path file = snapshotFile();
+        if (file == null || !loaded || !dirty) {
+            return;
+        }
+        dirty = false;
+        lock.writeLock().lock();
+        try {
+            // Retired slots are skipped when writing; compact memory only once they pile up
+            if (index.retiredCount() > index.slotCount / 4) {
+                index.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), SNAPSHOT_FILE, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(analyzer.fingerprint());
+                out.writeUTF(syncedUntil.toString());
+                index.write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Clinical search index saved to {}", file);
+        } catch (IOException e) {
+            dirty = true;
+            logger.warn("Clinical search index could not be saved to {}: {}", file, e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private void load() {
+        Path file = snapshotFile();
+        if (file != null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == SNAPSHOT_MAGIC && in.readInt() == SNAPSHOT_VERSION
+                        && in.readUTF().equals(analyzer.fingerprint())) {
+                    LocalDateTime savedUntil = LocalDateTime.parse(in.readUTF());
+                    Index restored = Index.read(in);
+                    lock.writeLock().lock();
+                    try {
+                        index = restored;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    syncedUntil = savedUntil;
+                    loaded = true;
+                    logger.info("Clinical search index loaded from {}: {} documents", file, restored.liveCount());
+                    sync();
+                    reconcile();
+                    return;
+                }
+                logger.info("Clinical search index at {} was built with other rules, rebuilding", file);
+            } catch (NoSuchFileException e) {
+                // First start on this node
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Clinical search index at {} is unreadable, rebuilding: {}", file, e.getMessage());
+            }
+        }
+        rebuild();
+    }
+
+    private void apply(List<ClinicalDocumentDTO> documents) {
+        if (!loaded || documents.isEmpty()) {
+            return;
+        }
+        List<Map<String, Integer>> analyzed = new ArrayList<>(documents.size());
+        for (ClinicalDocumentDTO document : documents) {
+            analyzed.add(analyze(document));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                ClinicalDocumentDTO document = documents.get(i);
+                index.add(document, typeIndex(document.getType()), analyzed.get(i));
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Term frequencies, diagnosis terms counted twice
+    private Map<String, Integer> analyze(ClinicalDocumentDTO document) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : analyzer.analyze(document.getPrimaryText())) {
+            frequencies.merge(term, 2, Integer::sum);
+        }
+        for (String term : analyzer.analyze(document.getSecondaryText())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private List<ClinicalDocumentDTO> fetchAfter(int type, long after) {
+        return type == 0 ? medicalRecordRepository.findSearchDocumentsAfter(after, PageRequest.of(0, batchSize))
+                : prescriptionRepository.findSearchDocumentsAfter(after, PageRequest.of(0, batchSize));
+    }
+
+    private Path snapshotFile() {
+        return indexDir == null || indexDir.isBlank() ? null : Paths.get(indexDir, SNAPSHOT_FILE);
+    }
+
+    private static int typeIndex(String type) {
+        int index = TYPES.indexOf(type);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown document type: " + type);
+        }
+        return index;
+    }
+
+    private static final class Postings {
+        private int[] slots;
+        private byte[] frequencies;
+        private int size;
+
+        private Postings(int capacity) {
+            slots = new int[capacity];
+            frequencies = new byte[capacity];
+        }
+
+        private void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = (byte) Math.min(frequency, 255);
+            size++;
+        }
+
+        private int frequency(int position) {
+            return frequencies[position] & 0xFF;
+        }
+
+        // First position at or after from whose slot is >= target, doubling the step before a binary search
+        private int seek(int from, int target) {
+            if (from >= size || slots[from] >= target) {
+                return from;
+            }
+            int low = from;
+            int step = 1;
+            int high = from + 1;
+            while (high < size && slots[high] < target) {
+                low = high;
+                step <<= 1;
+                high = from + step;
+            }
+            int found = Arrays.binarySearch(slots, low + 1, Math.min(high, size), target);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+
+    private static final class Index {
+        private int slotCount;
+        private byte[] types = new byte[1024];
+        private long[] ids = new long[1024];
+        private String[] references = new String[1024];
+        private long[] patientIds = new long[1024];
+        private long[] doctorIds = new long[1024];
+        private int[] days = new int[1024];
+        private int[] lengths = new int[1024];
+        private BitSet live = new BitSet();
+        private long liveLength;
+        private final int[] liveByType = new int[TYPES.size()];
+        private final long[] maxIds = new long[TYPES.size()];
+        private final List<Map<Long, Integer>> slotById = List.of(new HashMap<>(), new HashMap<>());
+        private Map<String, Postings> postings = new HashMap<>();
+
+        private int liveCount() {
+            return Arrays.stream(liveByType).sum();
+        }
+
+        private int retiredCount() {
+            return slotCount - liveCount();
+        }
+
+        private void add(ClinicalDocumentDTO document, int type, Map<String, Integer> frequencies) {
+            remove(type, document.getId());
+            if (slotCount == ids.length) {
+                grow(slotCount * 2);
+            }
+            int slot = slotCount++;
+            int length = 0;
+            for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), k -> new Postings(4)).add(slot, term.getValue());
+                length += term.getValue();
+            }
+            types[slot] = (byte) type;
+            ids[slot] = document.getId();
+            references[slot] = document.getReference();
+            patientIds[slot] = document.getPatientId() != null ? document.getPatientId() : 0;
+            doctorIds[slot] = document.getDoctorId() != null ? document.getDoctorId() : 0;
+            days[slot] = document.getDate() != null ? (int) document.getDate().toEpochDay() : Integer.MIN_VALUE;
+            lengths[slot] = length;
+            live.set(slot);
+            liveLength += length;
+            liveByType[type]++;
+            maxIds[type] = Math.max(maxIds[type], document.getId());
+            slotById.get(type).put(document.getId(), slot);
+        }
+
+        private void remove(int type, long id) {
+            Integer slot = slotById.get(type).remove(id);
+            if (slot != null) {
+                live.clear(slot);
+                liveLength -= lengths[slot];
+                liveByType[type]--;
+            }
+        }
+
+        private int retainIds(int type, BitSet present) {
+            List<Long> missing = new ArrayList<>();
+            for (Long id : slotById.get(type).keySet()) {
+                if (!present.get(Math.toIntExact(id))) {
+                    missing.add(id);
+                }
+            }
+            missing.forEach(id -> remove(type, id));
+            return missing.size();
+        }
+
+        private List<ClinicalSearchHitDTO> search(List<String> terms, int typeFilter, Long doctorId,
+                                                  int fromDay, int toDay, int limit) {
+            List<Postings> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            int documents = Math.max(1, liveCount());
+            double averageLength = Math.max(1.0, (double) liveLength / documents);
+            double[] idf = new double[lists.size()];
+            for (int t = 0; t < lists.size(); t++) {
+                int df = Math.min(lists.get(t).size, documents);
+                idf[t] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+            }
+
+            // Lowest score on top, so the heap keeps the best hits
+            PriorityQueue<double[]> best = new PriorityQueue<>(Comparator.comparingDouble(hit -> hit[0]));
+            int[] positions = new int[lists.size()];
+            Postings shortest = lists.get(0);
+            candidates:
+            for (int p = 0; p < shortest.size; p++) {
+                int slot = shortest.slots[p];
+                if (!live.get(slot) || (typeFilter >= 0 && types[slot] != typeFilter)
+                        || (doctorId != null && doctorIds[slot] != doctorId)
+                        || days[slot] < fromDay || days[slot] > toDay) {
+                    continue;
+                }
+                double norm = K1 * (1 - B + B * lengths[slot] / averageLength);
+                double tf = shortest.frequency(p);
+                double score = idf[0] * tf * (K1 + 1) / (tf + norm);
+                for (int t = 1; t < lists.size(); t++) {
+                    Postings list = lists.get(t);
+                    positions[t] = list.seek(positions[t], slot);
+                    if (positions[t] >= list.size) {
+                        break candidates;
+                    }
+                    if (list.slots[positions[t]] != slot) {
+                        continue candidates;
+                    }
+                    tf = list.frequency(positions[t]);
+                    score += idf[t] * tf * (K1 + 1) / (tf + norm);
+                }
+                if (best.size() < limit) {
+                    best.add(new double[] {score, slot});
+                } else if (score > best.peek()[0]) {
+                    best.poll();
+                    best.add(new double[] {score, slot});
+                }
+            }
+
+            List<ClinicalSearchHitDTO> hits = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                double[] hit = best.poll();
+                int slot = (int) hit[1];
+                hits.add(new ClinicalSearchHitDTO(TYPES.get(types[slot]), ids[slot], references[slot],
+                        patientIds[slot] != 0 ? patientIds[slot] : null, doctorIds[slot] != 0 ? doctorIds[slot] : null,
+                        days[slot] != Integer.MIN_VALUE ? LocalDate.ofEpochDay(days[slot]) : null,
+                        Math.round(hit[0] * 1000) / 1000.0));
+            }
+            hits.sort(Comparator.comparingDouble(ClinicalSearchHitDTO::getScore).reversed()
+                    .thenComparing(ClinicalSearchHitDTO::getDate, Comparator.nullsLast(Comparator.reverseOrder())));
+            return hits;
+        }
+
+        // Renumber live slots densely; relative order is kept, so postings stay sorted
+        private void compact() {
+            int liveSlots = live.cardinality();
+            if (liveSlots == slotCount) {
+                return;
+            }
+            int[] remap = new int[slotCount];
+            int next = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                remap[slot] = live.get(slot) ? next++ : -1;
+            }
+            for (int slot = 0; slot < slotCount; slot++) {
+                int target = remap[slot];
+                if (target >= 0 && target != slot) {
+                    types[target] = types[slot];
+                    ids[target] = ids[slot];
+                    references[target] = references[slot];
+                    patientIds[target] = patientIds[slot];
+                    doctorIds[target] = doctorIds[slot];
+                    days[target] = days[slot];
+                    lengths[target] = lengths[slot];
+                }
+            }
+            Arrays.fill(references, liveSlots, slotCount, null);
+            slotCount = liveSlots;
+            live = new BitSet();
+            live.set(0, liveSlots);
+
+            Map<String, Postings> kept = new HashMap<>();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                Postings old = entry.getValue();
+                Postings list = new Postings(Math.max(4, old.size));
+                for (int p = 0; p < old.size; p++) {
+                    int target = remap[old.slots[p]];
+                    if (target >= 0) {
+                        list.add(target, old.frequency(p));
+                    }
+                }
+                if (list.size > 0) {
+                    kept.put(entry.getKey(), list);
+                }
+            }
+            postings = kept;
+            for (Map<Long, Integer> slots : slotById) {
+                slots.replaceAll((id, slot) -> remap[slot]);
+            }
+        }
+
+        private void grow(int capacity) {
+            types = Arrays.copyOf(types, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            references = Arrays.copyOf(references, capacity);
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            doctorIds = Arrays.copyOf(doctorIds, capacity);
+            days = Arrays.copyOf(days, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        // Only live slots are written, renumbered densely like compact()
+        private void write(DataOutputStream out) throws IOException {
+            int[] remap = new int[slotCount];
+            int next = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                remap[slot] = live.get(slot) ? next++ : -1;
+            }
+            out.writeInt(next);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (remap[slot] < 0) {
+                    continue;
+                }
+                out.writeByte(types[slot]);
+                out.writeLong(ids[slot]);
+                out.writeUTF(references[slot] != null ? references[slot] : "");
+                out.writeLong(patientIds[slot]);
+                out.writeLong(doctorIds[slot]);
+                out.writeInt(days[slot]);
+                out.writeInt(lengths[slot]);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                Postings list = entry.getValue();
+                int size = 0;
+                for (int p = 0; p < list.size; p++) {
+                    size += remap[list.slots[p]] >= 0 ? 1 : 0;
+                }
+                out.writeUTF(entry.getKey());
+                writeVarInt(out, size);
+                int previous = 0;
+                for (int p = 0; p < list.size; p++) {
+                    int slot = remap[list.slots[p]];
+                    if (slot >= 0) {
+                        writeVarInt(out, slot - previous);
+                        previous = slot;
+                        out.writeByte(list.frequencies[p]);
+                    }
+                }
+            }
+        }
+
+        private static Index read(DataInputStream in) throws IOException {
+            Index index = new Index();
+            int slots = in.readInt();
+            index.grow(Math.max(1024, slots));
+            for (int slot = 0; slot < slots; slot++) {
+                int type = in.readByte();
+                long id = in.readLong();
+                String reference = in.readUTF();
+                index.types[slot] = (byte) type;
+                index.ids[slot] = id;
+                index.references[slot] = reference.isEmpty() ? null : reference;
+                index.patientIds[slot] = in.readLong();
+                index.doctorIds[slot] = in.readLong();
+                index.days[slot] = in.readInt();
+                index.lengths[slot] = in.readInt();
+                index.liveLength += index.lengths[slot];
+                index.liveByType[type]++;
+                index.maxIds[type] = Math.max(index.maxIds[type], id);
+                index.slotById.get(type).put(id, slot);
+            }
+            index.slotCount = slots;
+            index.live.set(0, slots);
+
+            int terms = in.readInt();
+            for (int t = 0; t < terms; t++) {
+                String term = in.readUTF();
+                int size = readVarInt(in);
+                Postings list = new Postings(Math.max(4, size));
+                int slot = 0;
+                for (int p = 0; p < size; p++) {
+                    slot += readVarInt(in);
+                    list.add(slot, in.readByte() & 0xFF);
+                }
+                if (size > 0) {
+                    index.postings.put(term, list);
+                }
+            }
+            return index;
+        }
+
+        private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarInt(DataInputStream in) throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.readByte() & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
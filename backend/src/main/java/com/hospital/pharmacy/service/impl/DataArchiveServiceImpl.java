@@ -0,0 +1,474 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.model.ArchivedPartition;
+import com.hospital.pharmacy.repository.ArchivedPartitionRepository;
+import com.hospital.pharmacy.service.DataArchiveService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves a month of closed rows into a gzipped JSON-lines file. Each table in
+ * the file starts with a header line naming its columns and JDBC types,
+ * followed by one array per row, parents before children so a restore can
+ * insert in file order. The live rows are locked, written out and deleted in
+ * one transaction, and the delete must remove exactly the rows written.
+ */
+@Service
+public class DataArchiveServiceImpl implements DataArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataArchiveServiceImpl.class);
+
+    private static final int RESTORE_BATCH_SIZE = 500;
+
+    private record Section(String table, String where) {
+    }
+
+    // Every where clause takes the month's start and end, in that order; the first section is the parent
+    private record Group(String dateColumn, boolean timestamp, List<Section> sections) {
+    }
+
+    // A claim keeps its bill live: claim batches and receivables look the bill up by id
+    private static final String CLOSED_BILLS = "billDate >= ? AND billDate < ? AND status IN ('PAID', 'CANCELLED') "
+            + "AND NOT EXISTS (SELECT 1 FROM insurance_claims c WHERE c.bill_id = billings.id)";
+
+    private static final String CLOSED_APPOINTMENTS = "appointmentDateTime >= ? AND appointmentDateTime < ? "
+            + "AND status <> 'SCHEDULED' "
+            + "AND NOT EXISTS (SELECT 1 FROM prescriptions p WHERE p.appointmentid = appointments.id) "
+            + "AND NOT EXISTS (SELECT 1 FROM medical_records r WHERE r.appointment_id = appointments.id)";
+
+    private static final Map<String, Group> GROUPS = Map.of(
+            "billings", new Group("billDate", false, List.of(
+                    new Section("billings", CLOSED_BILLS),
+                    new Section("billing_items", "bill_id IN (SELECT id FROM billings WHERE " + CLOSED_BILLS + ")"),
+                    new Section("payments", "bill_id IN (SELECT id FROM billings WHERE " + CLOSED_BILLS + ")"))),
+            "appointments", new Group("appointmentDateTime", true, List.of(
+                    new Section("appointments", CLOSED_APPOINTMENTS))));
+
+    @Autowired
+    private ArchivedPartitionRepository archivedPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.archive.dir:${app.storage.root:./storage}/archive}")
+    private String dir;
+
+    @Value("${app.archive.retention-months:24}")
+    private int retentionMonths;
+
+    private Path archiveDir;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() throws IOException {
+        archiveDir = Files.createDirectories(Paths.get(dir).toAbsolutePath().normalize());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public ArchivedPartition archiveMonth(String table, YearMonth month) {
+        Group group = group(table);
+        if (!month.isBefore(YearMonth.now())) {
+            throw new IllegalArgumentException("Only a month that is over can be archived");
+        }
+        Object[] range = range(group, month);
+        String fileName = table + "/" + month + ".jsonl.gz";
+
+        Path temp = null;
+        try {
+            Files.createDirectories(archiveDir.resolve(table));
+            // Same file system as the archive, so finishing is a rename
+            Path tempFile = Files.createTempFile(archiveDir, "archive-", ".part");
+            temp = tempFile;
+            ArchivedPartition partition = transactionTemplate.execute(status -> {
+                ArchivedPartition existing = archivedPartitionRepository
+                        .findByTableNameAndMonthStart(table, month.atDay(1)).orElse(null);
+                if (existing != null && "ARCHIVED".equals(existing.getStatus())) {
+                    throw new IllegalStateException(table + " for " + month + " is already archived");
+                }
+                Section parent = group.sections().get(0);
+                List<Long> locked = jdbcTemplate.queryForList("SELECT id FROM " + parent.table()
+                        + " WHERE " + parent.where() + " FOR UPDATE", Long.class, range);
+                if (locked.isEmpty()) {
+                    throw new IllegalStateException("No closed " + table + " to archive for " + month);
+                }
+
+                MessageDigest digest = sha256();
+                List<Long> written = write(tempFile, group, range, digest);
+                // Clients syncing through GET /sync drop archived rows as they do deleted ones
+                jdbcTemplate.update("INSERT INTO sync_tombstones (entityType, entityId, deletedAt) SELECT '" + table
+                        + "', id, ? FROM " + parent.table() + " WHERE " + parent.where(),
+                        Timestamp.valueOf(LocalDateTime.now()), range[0], range[1]);
+                List<Section> reversed = new ArrayList<>(group.sections());
+                Collections.reverse(reversed);
+                for (Section section : reversed) {
+                    int deleted = jdbcTemplate.update("DELETE FROM " + section.table() + " WHERE " + section.where(),
+                            range);
+                    if (deleted != written.get(group.sections().indexOf(section))) {
+                        throw new IllegalStateException(section.table() + " for " + month + " changed while archiving");
+                    }
+                }
+                move(tempFile, archiveDir.resolve(fileName));
+
+                ArchivedPartition archived = existing != null ? existing : new ArchivedPartition();
+                archived.setTableName(table);
+                archived.setMonthStart(month.atDay(1));
+                archived.setStatus("ARCHIVED");
+                archived.setRowCount(written.stream().mapToLong(Long::longValue).sum());
+                archived.setFileName(fileName);
+                archived.setFileSize(size(archiveDir.resolve(fileName)));
+                archived.setSha256(HexFormat.of().formatHex(digest.digest()));
+                archived.setArchivedAt(LocalDateTime.now());
+                archived.setRestoredAt(null);
+                return archivedPartitionRepository.save(archived);
+            });
+            logger.info("Archived {} rows of {} for {} to {}", partition.getRowCount(), table, month, fileName);
+            return partition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    @Override
+    public Optional<ArchivedPartition> restoreMonth(String table, YearMonth month) {
+        group(table);
+        Optional<ArchivedPartition> found = archivedPartitionRepository.findByTableNameAndMonthStart(table,
+                month.atDay(1));
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            ArchivedPartition partition = transactionTemplate.execute(status -> {
+                ArchivedPartition archived = archivedPartitionRepository.findById(found.get().getId()).orElseThrow();
+                if (!"ARCHIVED".equals(archived.getStatus())) {
+                    throw new IllegalStateException(table + " for " + month + " is " + archived.getStatus());
+                }
+                Path file = archiveDir.resolve(archived.getFileName());
+                if (!HexFormat.of().formatHex(digest(file)).equals(archived.getSha256())) {
+                    throw new IllegalStateException("Archive file " + archived.getFileName() + " is damaged");
+                }
+                long rows = load(file);
+                if (rows != archived.getRowCount()) {
+                    throw new IllegalStateException("Archive file " + archived.getFileName() + " holds " + rows
+                            + " rows, expected " + archived.getRowCount());
+                }
+                archived.setStatus("RESTORED");
+                archived.setRestoredAt(LocalDateTime.now());
+                return archived;
+            });
+            logger.info("Restored {} rows of {} for {}", partition.getRowCount(), table, month);
+            return Optional.of(partition);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("Rows of " + table + " for " + month + " are already live", e);
+        }
+    }
+
+    @Override
+    public List<ArchivedPartition> getPartitions() {
+        return archivedPartitionRepository.findAllByOrderByTableNameAscMonthStartAsc();
+    }
+
+    @Override
+    @Scheduled(cron = "${app.archive.cron:0 30 1 * * *}")
+    public int applyRetention() {
+        if (retentionMonths <= 0) {
+            return 0;
+        }
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        int archived = 0;
+        for (String table : List.of("appointments", "billings")) {
+            Group group = GROUPS.get(table);
+            Date oldest = jdbcTemplate.queryForObject("SELECT MIN(" + group.dateColumn() + ") FROM " + table,
+                    (rs, rowNum) -> rs.getDate(1));
+            if (oldest == null) {
+                continue;
+            }
+            for (YearMonth month = YearMonth.from(oldest.toLocalDate()); month.isBefore(cutoff);
+                 month = month.plusMonths(1)) {
+                // Restored months stay live until archived again by hand
+                if (archivedPartitionRepository.findByTableNameAndMonthStart(table, month.atDay(1)).isPresent()) {
+                    continue;
+                }
+                try {
+                    archiveMonth(table, month);
+                    archived++;
+                } catch (IllegalStateException e) {
+                    logger.debug("Retention skipped {} for {}: {}", table, month, e.getMessage());
+                } catch (RuntimeException e) {
+                    logger.error("Retention failed to archive {} for {}", table, month, e);
+                }
+            }
+        }
+        return archived;
+    }
+
+    // Returns the row count of each section
+    private List<Long> write(Path file, Group group, Object[] range, MessageDigest digest) {
+        List<Long> counts = new ArrayList<>();
+        try (OutputStream out = new GZIPOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)), digest), 64 * 1024);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.setRootValueSeparator(new SerializedString("\n"));
+            for (Section section : group.sections()) {
+                counts.add(jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + section.table()
+                            + " WHERE " + section.where() + " ORDER BY id");
+                    statement.setFetchSize(RESTORE_BATCH_SIZE);
+                    for (int i = 0; i < range.length; i++) {
+                        statement.setObject(i + 1, range[i]);
+                    }
+                    return statement;
+                }, (ResultSetExtractor<Long>) rs -> writeSection(json, section.table(), rs)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // On disk before the rows are deleted
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counts;
+    }
+
+    private long writeSection(JsonGenerator json, String table, ResultSet rs) throws SQLException {
+        try {
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            int[] types = new int[columns];
+            json.writeStartObject();
+            json.writeStringField("table", table);
+            json.writeArrayFieldStart("columns");
+            for (int i = 1; i <= columns; i++) {
+                json.writeString(meta.getColumnName(i).toLowerCase());
+                types[i - 1] = meta.getColumnType(i);
+            }
+            json.writeEndArray();
+            json.writeFieldName("types");
+            json.writeArray(types, 0, columns);
+            json.writeEndObject();
+
+            long rows = 0;
+            while (rs.next()) {
+                json.writeStartArray();
+                for (int i = 1; i <= columns; i++) {
+                    writeValue(json, rs, i, types[i - 1]);
+                }
+                json.writeEndArray();
+                rows++;
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeValue(JsonGenerator json, ResultSet rs, int column, int type) throws SQLException, IOException {
+        Object value = switch (type) {
+            case Types.DATE -> rs.getDate(column);
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> rs.getTimestamp(column);
+            default -> rs.getObject(column);
+        };
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof Date date) {
+            json.writeString(date.toLocalDate().toString());
+        } else if (value instanceof Timestamp timestamp) {
+            json.writeString(timestamp.toLocalDateTime().toString());
+        } else if (value instanceof BigDecimal decimal) {
+            // As text, so no digits are lost to a double on the way back
+            json.writeString(decimal.toPlainString());
+        } else if (value instanceof Double || value instanceof Float) {
+            json.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Number number) {
+            json.writeNumber(number.longValue());
+        } else if (value instanceof Boolean bool) {
+            json.writeBoolean(bool);
+        } else {
+            json.writeString(value.toString());
+        }
+    }
+
+    // Inserts every row in the file; returns the number of rows
+    private long load(Path file) {
+        long rows = 0;
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)), 64 * 1024);
+             MappingIterator<JsonNode> lines = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+            String insert = null;
+            int[] types = null;
+            List<Object[]> batch = new ArrayList<>();
+            while (lines.hasNext()) {
+                JsonNode line = lines.next();
+                if (line.isObject()) {
+                    flush(insert, types, batch);
+                    List<String> columns = new ArrayList<>();
+                    line.get("columns").forEach(column -> columns.add(column.asText()));
+                    types = new int[columns.size()];
+                    for (int i = 0; i < types.length; i++) {
+                        types[i] = line.get("types").get(i).asInt();
+                    }
+                    insert = "INSERT INTO " + line.get("table").asText() + " (" + String.join(", ", columns)
+                            + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+                } else {
+                    Object[] values = new Object[types.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = toJdbc(line.get(i), types[i]);
+                    }
+                    batch.add(values);
+                    rows++;
+                    if (batch.size() == RESTORE_BATCH_SIZE) {
+                        flush(insert, types, batch);
+                    }
+                }
+            }
+            flush(insert, types, batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private void flush(String insert, int[] types, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, batch, types);
+            batch.clear();
+        }
+    }
+
+    private Object toJdbc(JsonNode value, int type) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        return switch (type) {
+            case Types.DATE -> Date.valueOf(LocalDate.parse(value.asText()));
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+                    Timestamp.valueOf(LocalDateTime.parse(value.asText()));
+            case Types.NUMERIC, Types.DECIMAL -> new BigDecimal(value.asText());
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> value.asLong();
+            case Types.DOUBLE, Types.FLOAT, Types.REAL -> value.asDouble();
+            case Types.BOOLEAN, Types.BIT -> value.asBoolean();
+            default -> value.asText();
+        };
+    }
+
+    private Group group(String table) {
+        Group group = GROUPS.get(table);
+        if (group == null) {
+            throw new IllegalArgumentException("Table must be one of " + TABLES);
+        }
+        return group;
+    }
+
+    // One start/end pair per section where clause
+    private Object[] range(Group group, YearMonth month) {
+        if (group.timestamp()) {
+            return new Object[]{Timestamp.valueOf(month.atDay(1).atStartOfDay()),
+                    Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay())};
+        }
+        return new Object[]{Date.valueOf(month.atDay(1)), Date.valueOf(month.plusMonths(1).atDay(1))};
+    }
+
+    private byte[] digest(Path file) {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return digest.digest();
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void move(Path from, Path to) {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.EmailOutbox;
+import com.hospital.pharmacy.repository.EmailOutboxRepository;
+import com.hospital.pharmacy.service.EmailOutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxServiceImpl.class);
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired(required = false)
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.mail.from:${spring.mail.username}}")
+    private String fromAddress;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.initial-backoff-ms:5000}")
+    private long initialBackoffMs;
+
+    @Value("${app.mail.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${app.mail.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter deadCounter;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        sentCounter = meterRegistry.counter("clinixpro.mail.outbox.sent");
+        retriedCounter = meterRegistry.counter("clinixpro.mail.outbox.retried");
+        deadCounter = meterRegistry.counter("clinixpro.mail.outbox.dead");
+        batchTimer = meterRegistry.timer("clinixpro.mail.outbox.batch");
+    }
+
+    @Override
+    @Transactional
+    public EmailOutbox enqueue(String mailType, String recipient, String subject, String body) {
+        EmailOutbox mail = new EmailOutbox();
+        mail.setMailType(mailType);
+        mail.setRecipient(recipient);
+        mail.setSubject(subject);
+        mail.setBody(body);
+        EmailOutbox saved = outboxRepository.save(mail);
+        logger.debug("Queued {} mail {} for {}", mailType, saved.getId(), recipient);
+        return saved;
+    }
+
+    @Override
+    public int dispatchBatch() {
+        if (mailSender == null) {
+            return 0;
+        }
+
+        List<EmailOutbox> batch = claimBatch();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<SimpleMailMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        for (EmailOutbox mail : batch) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(fromAddress);
+            message.setTo(mail.getRecipient());
+            message.setSubject(mail.getSubject());
+            message.setText(mail.getBody());
+            byMessage.put(message, mail);
+        }
+
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // JavaMailSenderImpl sends the whole array over one SMTP connection
+            mailSender.send(byMessage.keySet().toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            failures.putAll(e.getFailedMessages());
+            if (failures.isEmpty()) {
+                byMessage.keySet().forEach(message -> failures.put(message, e));
+            }
+        } catch (MailException e) {
+            byMessage.keySet().forEach(message -> failures.put(message, e));
+        } finally {
+            sample.stop(batchTimer);
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        List<EmailOutbox> failed = new ArrayList<>();
+        byMessage.forEach((message, mail) -> {
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                sentIds.add(mail.getId());
+            } else {
+                scheduleRetry(mail, failure);
+                failed.add(mail);
+            }
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sentIds.isEmpty()) {
+                outboxRepository.markSent(sentIds, LocalDateTime.now());
+            }
+            outboxRepository.saveAll(failed);
+        });
+        sentCounter.increment(sentIds.size());
+
+        return batch.size();
+    }
+
+    private List<EmailOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> due = outboxRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+            for (EmailOutbox mail : due) {
+                // Lease: if this node dies mid-send the rows become due again
+                mail.setStatus(EmailOutbox.SENDING);
+                mail.setNextAttemptAt(now.plusNanos(leaseMs * 1_000_000));
+            }
+            return due;
+        });
+    }
+
+    private void scheduleRetry(EmailOutbox mail, Exception failure) {
+        mail.setAttempts(mail.getAttempts() + 1);
+        String error = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getName();
+        mail.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        if (mail.getAttempts() >= maxAttempts) {
+            mail.setStatus(EmailOutbox.DEAD);
+            deadCounter.increment();
+            logger.error("Mail {} to {} moved to dead letter after {} attempts: {}",
+                    mail.getId(), mail.getRecipient(), mail.getAttempts(), error);
+            return;
+        }
+
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(mail.getAttempts() - 1, 30));
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+        mail.setStatus(EmailOutbox.PENDING);
+        mail.setNextAttemptAt(LocalDateTime.now().plusNanos((backoff + jitter) * 1_000_000));
+        retriedCounter.increment();
+        logger.warn("Mail {} to {} failed (attempt {}), retrying in {} ms: {}",
+                mail.getId(), mail.getRecipient(), mail.getAttempts(), backoff + jitter, error);
+    }
+}
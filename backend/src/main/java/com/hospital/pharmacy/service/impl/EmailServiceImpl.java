@@ -1,114 +1,58 @@
 package com.hospital.pharmacy.service.impl;
 
+import com.hospital.pharmacy.service.EmailOutboxService;
 import com.hospital.pharmacy.service.EmailService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+/**
+ * Builds the application's mails and queues them in the email outbox.
+ * Nothing here talks to SMTP: delivery happens in EmailOutboxDispatcher,
+ * so a slow or failing mail server never blocks the calling request.
+ */
 @Service
 public class EmailServiceImpl implements EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailServiceImpl.class);
 
-    @Autowired(required = false)
-    private JavaMailSender emailSender;
-    
-    @Value("${spring.mail.enabled:false}")
-    private boolean mailEnabled;
+    @Autowired
+    private EmailOutboxService outboxService;
 
     @Override
     public void sendPasswordResetEmail(String toEmail, String resetLink) {
-        if (!mailEnabled || emailSender == null) {
-            logger.warn("Email service is disabled or not configured. Would send reset link to {}: {}", toEmail, resetLink);
-            return;
-        }
-        
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(toEmail);
-            message.setSubject("Hospital Pharmacy - Password Reset");
-            message.setText("To reset your password, click the link below:\n\n" 
-                    + resetLink 
-                    + "\n\nThis link will expire in 30 minutes. If you did not request a password reset, please ignore this email.");
-
-            emailSender.send(message);
-            logger.info("Password reset email sent to: {}", toEmail);
-        } catch (Exception e) {
-            logger.error("Failed to send password reset email to: {}", toEmail, e);
-            throw new RuntimeException("Failed to send password reset email", e);
-        }
+        outboxService.enqueue("PASSWORD_RESET", toEmail, "Hospital Pharmacy - Password Reset",
+                "To reset your password, click the link below:\n\n"
+                        + resetLink
+                        + "\n\nThis link will expire in 1 hour. If you did not request a password reset, please ignore this email.");
+        logger.info("Password reset email queued for: {}", toEmail);
     }
 
     @Override
     public void sendWelcomeEmail(String toEmail, String userName, String role) {
-        if (!mailEnabled || emailSender == null) {
-            logger.warn("Email service is disabled or not configured. Would send welcome email to {} for user: {}", toEmail, userName);
-            return;
-        }
-        
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(toEmail);
-            message.setSubject("Welcome to Hospital Pharmacy System");
-            message.setText("Welcome " + userName + "!\n\n" +
-                    "Your account has been created successfully with role: " + role + "\n\n" +
-                    "You can now log in to the system and start using your account.");
-
-            emailSender.send(message);
-            logger.info("Welcome email sent to: {}", toEmail);
-        } catch (Exception e) {
-            logger.error("Failed to send welcome email to: {}", toEmail, e);
-            throw new RuntimeException("Failed to send welcome email", e);
-        }
+        outboxService.enqueue("WELCOME", toEmail, "Welcome to Hospital Pharmacy System",
+                "Welcome " + userName + "!\n\n" +
+                        "Your account has been created successfully with role: " + role + "\n\n" +
+                        "You can now log in to the system and start using your account.");
+        logger.info("Welcome email queued for: {}", toEmail);
     }
 
     @Override
     public void sendAppointmentConfirmation(String toEmail, String patientName, String appointmentDate, String doctorName) {
-        if (!mailEnabled || emailSender == null) {
-            logger.warn("Email service is disabled or not configured. Would send appointment confirmation to {} for patient: {}", toEmail, patientName);
-            return;
-        }
-        
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(toEmail);
-            message.setSubject("Appointment Confirmation");
-            message.setText("Dear " + patientName + ",\n\n" +
-                    "Your appointment has been confirmed for " + appointmentDate + " with Dr. " + doctorName + ".\n\n" +
-                    "Please arrive 15 minutes before your scheduled time.");
-
-            emailSender.send(message);
-            logger.info("Appointment confirmation email sent to: {}", toEmail);
-        } catch (Exception e) {
-            logger.error("Failed to send appointment confirmation email to: {}", toEmail, e);
-            throw new RuntimeException("Failed to send appointment confirmation email", e);
-        }
+        outboxService.enqueue("APPOINTMENT_CONFIRMATION", toEmail, "Appointment Confirmation",
+                "Dear " + patientName + ",\n\n" +
+                        "Your appointment has been confirmed for " + appointmentDate + " with Dr. " + doctorName + ".\n\n" +
+                        "Please arrive 15 minutes before your scheduled time.");
+        logger.info("Appointment confirmation email queued for: {}", toEmail);
     }
 
     @Override
     public void sendPrescriptionReadyNotification(String toEmail, String patientName, String prescriptionId) {
-        if (!mailEnabled || emailSender == null) {
-            logger.warn("Email service is disabled or not configured. Would send prescription notification to {} for patient: {}", toEmail, patientName);
-            return;
-        }
-        
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(toEmail);
-            message.setSubject("Prescription Ready for Pickup");
-            message.setText("Dear " + patientName + ",\n\n" +
-                    "Your prescription (ID: " + prescriptionId + ") is ready for pickup at the pharmacy.\n\n" +
-                    "Please bring your ID when collecting your medication.");
-
-            emailSender.send(message);
-            logger.info("Prescription ready notification sent to: {}", toEmail);
-        } catch (Exception e) {
-            logger.error("Failed to send prescription notification to: {}", toEmail, e);
-            throw new RuntimeException("Failed to send prescription notification", e);
-        }
+        outboxService.enqueue("PRESCRIPTION_READY", toEmail, "Prescription Ready for Pickup",
+                "Dear " + patientName + ",\n\n" +
+                        "Your prescription (ID: " + prescriptionId + ") is ready for pickup at the pharmacy.\n\n" +
+                        "Please bring your ID when collecting your medication.");
+        logger.info("Prescription ready notification queued for: {}", toEmail);
     }
-}
\ No newline at end of file
+}
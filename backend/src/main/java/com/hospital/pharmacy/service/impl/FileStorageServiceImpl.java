@@ -0,0 +1,322 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.StoredFile;
+import com.hospital.pharmacy.repository.StoredFileRepository;
+import com.hospital.pharmacy.service.FileStorageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of FileStorageService interface.
+ *
+ * Uploads are streamed through a SHA-256 digest into a temporary file
+ * under the storage root and then renamed to objects/ab/cd/abcd..., so
+ * only a small copy buffer is ever held in memory. The content type is
+ * sniffed from the first bytes. Thumbnails are PNGs under
+ * thumbnails/size/ab/abcd..., made on a small background pool; large
+ * images are subsampled while decoding so the full-size bitmap is never
+ * loaded.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class FileStorageServiceImpl implements FileStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageServiceImpl.class);
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Value("${app.storage.root:./storage}")
+    private String root;
+
+    @Value("${app.storage.thumbnail-sizes:64,128,256}")
+    private List<Integer> thumbnailSizes;
+
+    @Value("${app.storage.thumbnail-threads:2}")
+    private int thumbnailThreads;
+
+    private Path objectsDir;
+    private Path thumbnailsDir;
+    private Path tempDir;
+    private ThreadPoolExecutor thumbnailExecutor;
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path base = Paths.get(root).toAbsolutePath().normalize();
+        objectsDir = Files.createDirectories(base.resolve("objects"));
+        thumbnailsDir = Files.createDirectories(base.resolve("thumbnails"));
+        // Same file system as objects/, so finishing an upload is a rename
+        tempDir = Files.createDirectories(base.resolve("tmp"));
+        thumbnailSizes = thumbnailSizes.stream().sorted().toList();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        thumbnailExecutor = new ThreadPoolExecutor(thumbnailThreads, thumbnailThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        thumbnailExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailExecutor.shutdownNow();
+    }
+
+    @Override
+    public StoredFile store(InputStream content, Set<String> allowedTypes, long maxBytes) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            byte[] head = new byte[16];
+            int headLength = 0;
+            long size = 0;
+            try (InputStream in = content; OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[COPY_BUFFER_BYTES];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("File is larger than the " + describe(maxBytes) + " limit");
+                    }
+                    if (headLength < head.length) {
+                        int copied = Math.min(read, head.length - headLength);
+                        System.arraycopy(buffer, 0, head, headLength, copied);
+                        headLength += copied;
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("Cannot store an empty file");
+            }
+            String contentType = sniffContentType(head, headLength);
+            if (!allowedTypes.contains(contentType)) {
+                throw new IllegalArgumentException("Unsupported file type: " + contentType);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = objectPath(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                // An identical upload finishing at the same time writes the same bytes, so either rename may win
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            long storedSize = size;
+            StoredFile file = storedFileRepository.findByHash(hash)
+                    .orElseGet(() -> insert(hash, storedSize, contentType));
+            if (IMAGE_TYPES.contains(file.getContentType())) {
+                queueThumbnails(file);
+            }
+            return file;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Optional<StoredFile> find(String hash) {
+        return storedFileRepository.findByHash(hash);
+    }
+
+    @Override
+    public Path getPath(StoredFile file) {
+        return objectPath(file.getHash());
+    }
+
+    @Override
+    public Optional<Path> getThumbnail(StoredFile file, int size) {
+        Path thumbnail = thumbnailPath(file.getHash(), size);
+        if (Files.exists(thumbnail)) {
+            return Optional.of(thumbnail);
+        }
+        // Lost or never made, e.g. the node restarted with thumbnails still queued
+        if (IMAGE_TYPES.contains(file.getContentType())) {
+            queueThumbnails(file);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Integer> getThumbnailSizes() {
+        return thumbnailSizes;
+    }
+
+    private StoredFile insert(String hash, long size, String contentType) {
+        StoredFile file = new StoredFile();
+        file.setHash(hash);
+        file.setSize(size);
+        file.setContentType(contentType);
+        try {
+            return storedFileRepository.save(file);
+        } catch (DataIntegrityViolationException e) {
+            // Same content registered concurrently
+            return storedFileRepository.findByHash(hash).orElseThrow(() -> e);
+        }
+    }
+
+    private void queueThumbnails(StoredFile file) {
+        String hash = file.getHash();
+        boolean missing = thumbnailSizes.stream().anyMatch(size -> !Files.exists(thumbnailPath(hash, size)));
+        if (missing && pendingThumbnails.add(hash)) {
+            thumbnailExecutor.execute(() -> {
+                try {
+                    generateThumbnails(hash);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Thumbnails for {} could not be generated: {}", hash, e.getMessage());
+                } finally {
+                    pendingThumbnails.remove(hash);
+                }
+            });
+        }
+    }
+
+    private void generateThumbnails(String hash) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(objectPath(hash).toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                // No decoder for this format in the JDK (e.g. WebP); originals are still served
+                logger.debug("No image reader for {}, skipping thumbnails", hash);
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int largest = thumbnailSizes.get(thumbnailSizes.size() - 1);
+                int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                for (int size : thumbnailSizes) {
+                    writeThumbnail(scale(source, size), thumbnailPath(hash, size));
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Fit within size x size, keeping the aspect ratio and never enlarging
+    private BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1.0, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeThumbnail(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tempDir, "thumbnail-", ".png");
+        try {
+            ImageIO.write(image, "png", temp.toFile());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Path thumbnailPath(String hash, int size) {
+        return thumbnailsDir.resolve(String.valueOf(size)).resolve(hash.substring(0, 2)).resolve(hash + ".png");
+    }
+
+    private static String sniffContentType(byte[] head, int length) {
+        if (startsWith(head, length, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (length >= 12 && startsWith(head, length, 'R', 'I', 'F', 'F')
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        if (startsWith(head, length, '%', 'P', 'D', 'F')) {
+            return "application/pdf";
+        }
+        return "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(long bytes) {
+        return bytes % (1024 * 1024) == 0 ? bytes / (1024 * 1024) + " MB" : bytes + " byte";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -113,7 +113,7 @@ public class MedicineServiceImpl implements MedicineService {
     }
 
     // Helper methods to convert between entity and DTO
-    private MedicineDTO convertToDTO(Medicine medicine) {
+    MedicineDTO convertToDTO(Medicine medicine) {
         MedicineDTO dto = new MedicineDTO();
         dto.setId(medicine.getId());
         dto.setMedicineId(medicine.getMedicineId());
@@ -0,0 +1,333 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.LengthOfStayDTO;
+import com.hospital.pharmacy.dto.OccupancyForecastDTO;
+import com.hospital.pharmacy.dto.OccupancyPointDTO;
+import com.hospital.pharmacy.model.Admission;
+import com.hospital.pharmacy.model.WardOccupancyHourly;
+import com.hospital.pharmacy.repository.AdmissionRepository;
+import com.hospital.pharmacy.repository.WardOccupancyHourlyRepository;
+import com.hospital.pharmacy.service.OccupancyAnalyticsService;
+import com.hospital.pharmacy.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of OccupancyAnalyticsService interface.
+ *
+ * The rollup replays admissions hour by hour into ward_occupancy_hourly:
+ * occupied patient-minutes, peak concurrent patients, admissions,
+ * discharges and the length of the stays that ended. Each run rewrites the
+ * hours from the newest stored hour up to the current one, so it is safe to
+ * repeat and the current hour fills in as it goes. Admissions recorded or
+ * closed in hours already rolled up, such as stays backfilled from occupied
+ * beds, are marked through markChanged; the next run on the node that wrote
+ * them starts from the earliest marked hour instead. Marks are kept in
+ * memory, so a node stopped before its next run leaves those hours as they
+ * were until they are rolled up again. Reads are read-only transactions and
+ * go to the replica when one is configured.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class OccupancyAnalyticsServiceImpl implements OccupancyAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OccupancyAnalyticsServiceImpl.class);
+
+    private static final long ROLLUP_CHUNK_HOURS = 24 * 7;
+    private static final int HOURS_PER_WEEK = 24 * 7;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    @Autowired
+    private WardOccupancyHourlyRepository occupancyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Earliest hour changed since the last rollup took the mark, null if none
+    private final AtomicReference<LocalDateTime> dirtyFrom = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OccupancyPointDTO> getOccupancyTrend(String ward, long from, long to) {
+        List<WardOccupancyHourly> rows = findRows(ward, from, to);
+        if (ward != null) {
+            return rows.stream().map(this::toPoint).toList();
+        }
+
+        // All wards: add the wards up hour by hour
+        Map<LocalDateTime, OccupancyPointDTO> byHour = new TreeMap<>();
+        for (WardOccupancyHourly row : rows) {
+            OccupancyPointDTO point = byHour.computeIfAbsent(row.getHourStart(),
+                    hour -> new OccupancyPointDTO(toMillis(hour), null, 0, 0, 0, 0));
+            point.setAverageOccupancy(point.getAverageOccupancy() + row.getOccupiedMinutes() / 60.0);
+            // Ward peaks need not coincide, so this is an upper bound for the hospital
+            point.setPeakOccupancy(point.getPeakOccupancy() + row.getPeakOccupancy());
+            point.setAdmissions(point.getAdmissions() + row.getAdmissions());
+            point.setDischarges(point.getDischarges() + row.getDischarges());
+        }
+        return new ArrayList<>(byHour.values());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public LengthOfStayDTO getLengthOfStay(String ward, long from, long to) {
+        long discharges = 0;
+        long stayMinutes = 0;
+        for (WardOccupancyHourly row : findRows(ward, from, to)) {
+            discharges += row.getDischarges();
+            stayMinutes += row.getDischargedStayMinutes();
+        }
+        double averageHours = discharges > 0 ? stayMinutes / 60.0 / discharges : 0;
+        return new LengthOfStayDTO(ward, discharges, averageHours);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OccupancyForecastDTO> forecastOccupancy(String ward, long from, long to, int horizonHours) {
+        LocalDateTime start = toHour(from);
+        LocalDateTime end = toHour(to);
+
+        // How often each hour of the week occurs in the history, so empty hours count as zero
+        int[] occurrences = new int[HOURS_PER_WEEK];
+        for (LocalDateTime hour = start; hour.isBefore(end); hour = hour.plusHours(1)) {
+            occurrences[hourOfWeek(hour)]++;
+        }
+
+        double[] occupancySums = new double[HOURS_PER_WEEK];
+        double[] peakSums = new double[HOURS_PER_WEEK];
+        for (OccupancyPointDTO point : getOccupancyTrend(ward, from, to)) {
+            int index = hourOfWeek(toLocal(point.getHourStart()));
+            occupancySums[index] += point.getAverageOccupancy();
+            peakSums[index] += point.getPeakOccupancy();
+        }
+
+        List<OccupancyForecastDTO> forecast = new ArrayList<>(horizonHours);
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        for (int i = 0; i < horizonHours; i++, hour = hour.plusHours(1)) {
+            int index = hourOfWeek(hour);
+            int seen = occurrences[index];
+            forecast.add(new OccupancyForecastDTO(toMillis(hour),
+                    seen > 0 ? occupancySums[index] / seen : 0,
+                    seen > 0 ? peakSums[index] / seen : 0));
+        }
+        return forecast;
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.occupancy.rollup-interval-ms:300000}",
+            initialDelayString = "${app.analytics.occupancy.rollup-interval-ms:300000}")
+    public void scheduledRollup() {
+        try {
+            rollup();
+        } catch (DataAccessException e) {
+            // Another node rolled up the same hours first; the next run catches up
+            logger.warn("Occupancy rollup failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public int rollup() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime dirty = dirtyFrom.getAndSet(null);
+        try {
+            LocalDateTime start = transactionTemplate.execute(status -> {
+                LocalDateTime latest = occupancyRepository.findLatestHour();
+                if (latest != null) {
+                    return earlier(latest, dirty);
+                }
+                LocalDateTime earliest = admissionRepository.findEarliestAdmission();
+                return earliest != null ? earliest.truncatedTo(ChronoUnit.HOURS) : null;
+            });
+            if (start == null) {
+                return 0;
+            }
+
+            LocalDateTime end = now.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            int written = 0;
+            for (LocalDateTime from = start; from.isBefore(end); from = from.plusHours(ROLLUP_CHUNK_HOURS)) {
+                LocalDateTime to = from.plusHours(ROLLUP_CHUNK_HOURS).isBefore(end)
+                        ? from.plusHours(ROLLUP_CHUNK_HOURS) : end;
+                written += rollupRange(from, to, now);
+            }
+            logger.debug("Occupancy rollup wrote {} hourly rows from {}", written, start);
+            return written;
+        } catch (RuntimeException e) {
+            // Put the mark back for the next run
+            markDirty(dirty);
+            throw e;
+        }
+    }
+
+    @Override
+    public void markChanged(LocalDateTime changedFrom) {
+        if (changedFrom == null) {
+            return;
+        }
+        LocalDateTime hour = changedFrom.truncatedTo(ChronoUnit.HOURS);
+        // Once committed, so the run that takes the mark also reads the change
+        AfterCommit.run(() -> markDirty(hour));
+    }
+
+    private void markDirty(LocalDateTime hour) {
+        if (hour != null) {
+            dirtyFrom.accumulateAndGet(hour, OccupancyAnalyticsServiceImpl::earlier);
+        }
+    }
+
+    private static LocalDateTime earlier(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return a.isBefore(b) ? a : b;
+    }
+
+    private int rollupRange(LocalDateTime from, LocalDateTime to, LocalDateTime now) {
+        Integer written = transactionTemplate.execute(status -> {
+            List<Admission> admissions = admissionRepository.findOverlapping(from, to);
+            List<WardOccupancyHourly> rows = aggregate(admissions, from, to, now);
+            occupancyRepository.deleteHours(from, to);
+            occupancyRepository.saveAll(rows);
+            return rows.size();
+        });
+        return written != null ? written : 0;
+    }
+
+    private List<WardOccupancyHourly> aggregate(List<Admission> admissions, LocalDateTime from,
+                                                LocalDateTime to, LocalDateTime now) {
+        Map<String, List<Admission>> byWard = new HashMap<>();
+        for (Admission admission : admissions) {
+            byWard.computeIfAbsent(admission.getWardName(), ward -> new ArrayList<>()).add(admission);
+        }
+
+        List<WardOccupancyHourly> rows = new ArrayList<>();
+        byWard.forEach((ward, stays) -> {
+            Map<LocalDateTime, WardOccupancyHourly> buckets = new TreeMap<>();
+            Map<LocalDateTime, Long> occupiedSeconds = new HashMap<>();
+            List<long[]> events = new ArrayList<>();
+
+            for (Admission stay : stays) {
+                LocalDateTime admitted = stay.getAdmittedAt();
+                LocalDateTime discharged = stay.getDischargedAt();
+                LocalDateTime stayEnd = discharged != null && discharged.isBefore(now) ? discharged : now;
+                LocalDateTime clippedStart = admitted.isBefore(from) ? from : admitted;
+                LocalDateTime clippedEnd = stayEnd.isAfter(to) ? to : stayEnd;
+
+                for (LocalDateTime hour = clippedStart.truncatedTo(ChronoUnit.HOURS);
+                     hour.isBefore(clippedEnd); hour = hour.plusHours(1)) {
+                    LocalDateTime overlapStart = clippedStart.isAfter(hour) ? clippedStart : hour;
+                    LocalDateTime overlapEnd = clippedEnd.isBefore(hour.plusHours(1)) ? clippedEnd : hour.plusHours(1);
+                    occupiedSeconds.merge(hour, Duration.between(overlapStart, overlapEnd).getSeconds(), Long::sum);
+                    bucket(buckets, ward, hour);
+                }
+                if (!admitted.isBefore(from) && admitted.isBefore(to)) {
+                    WardOccupancyHourly row = bucket(buckets, ward, admitted.truncatedTo(ChronoUnit.HOURS));
+                    row.setAdmissions(row.getAdmissions() + 1);
+                }
+                if (discharged != null && !discharged.isBefore(from) && discharged.isBefore(to)) {
+                    WardOccupancyHourly row = bucket(buckets, ward, discharged.truncatedTo(ChronoUnit.HOURS));
+                    row.setDischarges(row.getDischarges() + 1);
+                    row.setDischargedStayMinutes(row.getDischargedStayMinutes()
+                            + (stay.getStayMinutes() != null ? stay.getStayMinutes() : 0));
+                }
+                if (clippedStart.isBefore(clippedEnd)) {
+                    events.add(new long[] { toMillis(clippedStart), 1 });
+                    if (clippedEnd.isBefore(to)) {
+                        events.add(new long[] { toMillis(clippedEnd), -1 });
+                    }
+                }
+            }
+
+            // Sweep arrivals and departures in time order for each hour's peak; at the same
+            // instant departures go first, since a bed freed and refilled is not two patients
+            events.sort(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+            int current = 0;
+            int next = 0;
+            for (WardOccupancyHourly row : buckets.values()) {
+                long hourStart = toMillis(row.getHourStart());
+                long hourEnd = toMillis(row.getHourStart().plusHours(1));
+                while (next < events.size() && events.get(next)[0] <= hourStart) {
+                    current += events.get(next++)[1];
+                }
+                int peak = current;
+                while (next < events.size() && events.get(next)[0] < hourEnd) {
+                    current += events.get(next++)[1];
+                    peak = Math.max(peak, current);
+                }
+                row.setPeakOccupancy(peak);
+                row.setOccupiedMinutes(Math.round(occupiedSeconds.getOrDefault(row.getHourStart(), 0L) / 60.0));
+            }
+            rows.addAll(buckets.values());
+        });
+        return rows;
+    }
+
+    private WardOccupancyHourly bucket(Map<LocalDateTime, WardOccupancyHourly> buckets, String ward, LocalDateTime hour) {
+        return buckets.computeIfAbsent(hour, h -> {
+            WardOccupancyHourly row = new WardOccupancyHourly();
+            row.setWardName(ward);
+            row.setHourStart(h);
+            return row;
+        });
+    }
+
+    private List<WardOccupancyHourly> findRows(String ward, long from, long to) {
+        LocalDateTime start = toHour(from);
+        LocalDateTime end = toLocal(to);
+        return ward != null
+                ? occupancyRepository.findByWardNameAndHourStartGreaterThanEqualAndHourStartLessThanOrderByHourStart(ward, start, end)
+                : occupancyRepository.findByHourStartGreaterThanEqualAndHourStartLessThanOrderByHourStart(start, end);
+    }
+
+    private OccupancyPointDTO toPoint(WardOccupancyHourly row) {
+        return new OccupancyPointDTO(toMillis(row.getHourStart()), row.getWardName(),
+                row.getOccupiedMinutes() / 60.0, row.getPeakOccupancy(), row.getAdmissions(), row.getDischarges());
+    }
+
+    private int hourOfWeek(LocalDateTime hour) {
+        return (hour.getDayOfWeek().getValue() - 1) * 24 + hour.getHour();
+    }
+
+    private LocalDateTime toHour(long millis) {
+        return toLocal(millis).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,169 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.PasswordHashingService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of PasswordHashingService interface.
+ *
+ * The pool has one thread per CPU by default (app.passwords.threads): more
+ * would only make every hash slower. Beyond app.passwords.queue-capacity
+ * waiting hashes a new one is refused at once, which callers turn into 503,
+ * rather than letting a login burst queue for longer than clients wait.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class PasswordHashingServiceImpl implements PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingServiceImpl.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.passwords.threads:0}")
+    private int threads;
+
+    @Value("${app.passwords.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Timer encodeTimer;
+
+    private Timer matchesTimer;
+
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // A full queue refuses the hash rather than running it on the request thread
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        encodeTimer = timer("encode");
+        matchesTimer = timer("matches");
+        Gauge.builder("clinixpro.passwords.queued", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.passwords.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes running")
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.passwords.rejected", rejected, LongAdder::sum)
+                .description("Password hashes refused because the queue was full")
+                .register(meterRegistry);
+        logger.info("Password hashing on {} threads, queue of {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public String encode(String rawPassword) {
+        try {
+            return encodeAsync(rawPassword).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void rehashAsync(Long userId, String rawPassword, String encodedPassword) {
+        encodeAsync(rawPassword).thenAccept(newHash -> {
+            Integer updated = transactionTemplate.execute(status ->
+                    userRepository.replacePasswordHash(userId, encodedPassword, newHash));
+            if (updated != null && updated > 0) {
+                logger.info("Upgraded the password hash of user {}", userId);
+            }
+        }).exceptionally(e -> {
+            // Tried again at the next login
+            logger.debug("Could not upgrade the password hash of user {}: {}", userId, e.getMessage());
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> hashing) {
+        try {
+            return CompletableFuture.supplyAsync(() -> timer.record(hashing), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Too many password checks in progress, try again shortly"));
+        }
+    }
+
+    private Timer timer(String operation) {
+        return Timer.builder("clinixpro.passwords.hash.time")
+                .description("Time to hash or check a password, excluding the wait for a thread")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,290 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.config.ExecutionThreads;
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.config.RequestPriority;
+import com.hospital.pharmacy.dto.TimelineEventDTO;
+import com.hospital.pharmacy.dto.TimelinePageDTO;
+import com.hospital.pharmacy.repository.AdmissionRepository;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.MedicalRecordRepository;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.service.PatientTimelineService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of PatientTimelineService interface.
+ *
+ * Every source is read with its own keyset query on (patient_id, date, id),
+ * newest first and limited to one page, and the queries run in parallel.
+ * The sorted results are then merged k-way on (time desc, type, id desc).
+ * The cursor is the sort key of the last event returned, so a page never
+ * needs an offset and costs the same however far back the patient's
+ * history goes. Date-only sources (prescriptions, records, bills) sort at
+ * the start of their day.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class PatientTimelineServiceImpl implements PatientTimelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientTimelineServiceImpl.class);
+
+    // Tie-break order of events at the same time, also encoded in the cursor
+    private static final List<String> TYPE_ORDER =
+            List.of("APPOINTMENT", "ADMISSION", "PRESCRIPTION", "MEDICAL_RECORD", "BILL");
+
+    private static final LocalDateTime NEWEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private static final Comparator<TimelineEventDTO> TIMELINE_ORDER = Comparator
+            .comparing(TimelineEventDTO::getOccurredAt, Comparator.reverseOrder())
+            .thenComparing(event -> TYPE_ORDER.indexOf(event.getType()))
+            .thenComparing(TimelineEventDTO::getId, Comparator.reverseOrder());
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private ExecutionThreads executionThreads;
+
+    @Value("${app.timeline.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${app.timeline.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${app.timeline.query-threads:8}")
+    private int queryThreads;
+
+    @Value("${app.timeline.query-timeout-ms:5000}")
+    private long queryTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        // When the queue is full the request thread runs the query itself
+        executor = new ThreadPoolExecutor(queryThreads, queryThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queryThreads * 16),
+                executionThreads.threadFactory("timeline-query-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public TimelinePageDTO getTimeline(Long patientId, String cursor, int limit, Set<String> types) {
+        int pageSize = limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+        Cursor after = cursor == null || cursor.isBlank() ? new Cursor(NEWEST, -1, 0L) : Cursor.decode(cursor);
+        // One extra row per source tells whether anything is left after this page
+        Pageable page = PageRequest.of(0, pageSize + 1);
+
+        Map<String, CompletableFuture<List<TimelineEventDTO>>> queries = new LinkedHashMap<>();
+        for (String type : TYPE_ORDER) {
+            if (types != null && !types.contains(type)) {
+                continue;
+            }
+            long beforeId = after.idBoundFor(TYPE_ORDER.indexOf(type));
+            queries.put(type, runQuery(switch (type) {
+                case "APPOINTMENT" -> () -> appointmentRepository.findTimelinePage(
+                        patientId, after.occurredAt, beforeId, page);
+                case "ADMISSION" -> () -> admissionRepository.findTimelinePage(
+                        patientId, after.occurredAt, beforeId, page);
+                case "PRESCRIPTION" -> () -> prescriptionRepository.findTimelinePage(
+                        patientId, after.dateBound(), after.dateIdBound(beforeId), page);
+                case "MEDICAL_RECORD" -> () -> medicalRecordRepository.findTimelinePage(
+                        patientId, after.dateBound(), after.dateIdBound(beforeId), page);
+                default -> () -> billingRepository.findTimelinePage(
+                        patientId, after.dateBound(), after.dateIdBound(beforeId), page);
+            }));
+        }
+
+        // k-way merge of the per-source pages, each already newest first
+        PriorityQueue<Source> heads = new PriorityQueue<>(
+                Comparator.comparing((Source source) -> source.head, TIMELINE_ORDER));
+        for (Map.Entry<String, CompletableFuture<List<TimelineEventDTO>>> query : queries.entrySet()) {
+            Iterator<TimelineEventDTO> events = await(query.getKey(), query.getValue()).iterator();
+            if (events.hasNext()) {
+                heads.add(new Source(events.next(), events));
+            }
+        }
+
+        List<TimelineEventDTO> events = new ArrayList<>(pageSize);
+        while (events.size() < pageSize && !heads.isEmpty()) {
+            Source source = heads.poll();
+            events.add(source.head);
+            if (source.rest.hasNext()) {
+                source.head = source.rest.next();
+                heads.add(source);
+            }
+        }
+
+        String nextCursor = null;
+        if (!heads.isEmpty()) {
+            TimelineEventDTO last = events.get(events.size() - 1);
+            nextCursor = new Cursor(last.getOccurredAt(), TYPE_ORDER.indexOf(last.getType()), last.getId()).encode();
+        }
+        return new TimelinePageDTO(events, nextCursor);
+    }
+
+    private CompletableFuture<List<TimelineEventDTO>> runQuery(Supplier<List<TimelineEventDTO>> query) {
+        // Worker threads keep the request's route, so a session pinned to the primary still reads its own writes
+        ReadWriteRoutingDataSource.Route route = ReadWriteRoutingDataSource.requestRoute();
+        // and its priority class, so their connections count against the request's quota
+        RequestPriority priority = RequestPriority.current();
+        return CompletableFuture.supplyAsync(() -> {
+            // Put back afterwards rather than cleared: a full queue runs the query on the request thread itself
+            ReadWriteRoutingDataSource.Route previousRoute = ReadWriteRoutingDataSource.requestRoute();
+            RequestPriority previousPriority = RequestPriority.current();
+            if (route != null) {
+                ReadWriteRoutingDataSource.setRequestRoute(route);
+            }
+            if (priority != null) {
+                RequestPriority.set(priority);
+            }
+            try {
+                return query.get();
+            } finally {
+                restore(previousRoute, previousPriority);
+            }
+        }, executor);
+    }
+
+    private static void restore(ReadWriteRoutingDataSource.Route route, RequestPriority priority) {
+        if (route != null) {
+            ReadWriteRoutingDataSource.setRequestRoute(route);
+        } else {
+            ReadWriteRoutingDataSource.clearRequestRoute();
+        }
+        if (priority != null) {
+            RequestPriority.set(priority);
+        } else {
+            RequestPriority.clear();
+        }
+    }
+
+    private List<TimelineEventDTO> await(String type, CompletableFuture<List<TimelineEventDTO>> query) {
+        try {
+            return query.get(queryTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Timeline query interrupted");
+        } catch (TimeoutException e) {
+            query.cancel(true);
+            logger.warn("Timeline {} query timed out after {} ms", type, queryTimeoutMs);
+            throw new RuntimeException("Timeline query timed out");
+        } catch (ExecutionException e) {
+            logger.error("Timeline {} query failed", type, e.getCause());
+            throw new RuntimeException("Timeline query failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private static class Source {
+        private TimelineEventDTO head;
+        private final Iterator<TimelineEventDTO> rest;
+
+        private Source(TimelineEventDTO head, Iterator<TimelineEventDTO> rest) {
+            this.head = head;
+            this.rest = rest;
+        }
+    }
+
+    /**
+     * Sort key of the last event of a page; the next page starts strictly after it
+     */
+    private static class Cursor {
+        private final LocalDateTime occurredAt;
+        private final int typeRank;
+        private final long id;
+
+        private Cursor(LocalDateTime occurredAt, int typeRank, long id) {
+            this.occurredAt = occurredAt;
+            this.typeRank = typeRank;
+            this.id = id;
+        }
+
+        // At the cursor time, types sorted before the cursor's are done and types after it start over
+        private long idBoundFor(int rank) {
+            if (rank < typeRank) {
+                return 0L;
+            }
+            return rank == typeRank ? id : Long.MAX_VALUE;
+        }
+
+        private LocalDate dateBound() {
+            return occurredAt.toLocalDate();
+        }
+
+        // A cursor later in the day than midnight still has all of that day's date-only events ahead of it
+        private long dateIdBound(long idBound) {
+            return occurredAt.toLocalTime().equals(LocalTime.MIDNIGHT) ? idBound : Long.MAX_VALUE;
+        }
+
+        private String encode() {
+            String key = occurredAt + "|" + typeRank + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor) {
+            try {
+                String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = key.split("\\|");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid timeline cursor");
+                }
+                return new Cursor(LocalDateTime.parse(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid timeline cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.Payer;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PayerRepository;
+import com.hospital.pharmacy.service.PayerService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+public class PayerServiceImpl implements PayerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayerServiceImpl.class);
+
+    private static final Set<String> COMPANY_SUFFIXES = Set.of("INC", "LLC", "LTD", "CORP", "CO");
+
+    @Autowired
+    private PayerRepository payerRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        // Own transaction, so a lost insert race can be retried as a lookup
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public String toCode(String name) {
+        if (name == null) {
+            return "";
+        }
+        List<String> words = new ArrayList<>(Arrays.asList(
+                name.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", " ").trim().split(" ")));
+        if (words.size() > 1 && COMPANY_SUFFIXES.contains(words.get(words.size() - 1))) {
+            words.remove(words.size() - 1);
+        }
+        String code = String.join("", words);
+        return code.length() > 100 ? code.substring(0, 100) : code;
+    }
+
+    @Override
+    public Optional<Payer> resolve(String name) {
+        String code = toCode(name);
+        if (code.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<Payer> existing = payerRepository.findByCode(code);
+        if (existing.isPresent()) {
+            return existing;
+        }
+        try {
+            return Optional.of(transactionTemplate.execute(status -> {
+                Payer payer = new Payer();
+                payer.setCode(code);
+                payer.setName(name.trim());
+                return payerRepository.save(payer);
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // Same payer registered concurrently
+            return Optional.of(payerRepository.findByCode(code).orElseThrow(() -> e));
+        }
+    }
+
+    @Override
+    public Optional<Payer> findByCode(String code) {
+        return payerRepository.findByCode(code);
+    }
+
+    @Override
+    public List<Payer> getPayers() {
+        return payerRepository.findAllByOrderByCodeAsc();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.claims.payer-link-interval-ms:600000}",
+            initialDelayString = "${app.claims.payer-link-interval-ms:600000}")
+    public int linkPatients() {
+        int linked = 0;
+        for (String provider : patientRepository.findUnlinkedInsuranceProviders()) {
+            Optional<Payer> payer = resolve(provider);
+            if (payer.isPresent()) {
+                linked += transactionTemplate.execute(status -> patientRepository.linkPayer(payer.get(), provider));
+            }
+        }
+        if (linked > 0) {
+            logger.info("Linked {} patients to insurance payers", linked);
+        }
+        return linked;
+    }
+}
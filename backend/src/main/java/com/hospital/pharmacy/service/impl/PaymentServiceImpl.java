@@ -0,0 +1,213 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hospital.pharmacy.dto.PaymentRequestDTO;
+import com.hospital.pharmacy.dto.PaymentResultDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Payment;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PaymentRepository;
+import com.hospital.pharmacy.service.AccountsReceivableService;
+import com.hospital.pharmacy.service.PaymentService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of PaymentService interface.
+ *
+ * A bounded window of recently used idempotency keys answers most
+ * retries without touching the database. Keys that have left the window,
+ * or that race in from two nodes, are caught by the unique constraint on
+ * payments.idempotencyKey. A new payment locks its bill row, so
+ * concurrent cashiers are applied one after another and the paid amount
+ * is always the sum of the bill's payments.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class PaymentServiceImpl implements PaymentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentServiceImpl.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
+    @Value("${app.billing.payments.dedupe-window-size:10000}")
+    private long dedupeWindowSize;
+
+    @Value("${app.billing.payments.dedupe-window-minutes:15}")
+    private long dedupeWindowMinutes;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Idempotency key -> what it recorded
+    private Cache<String, RecordedPayment> recentKeys;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        recentKeys = Caffeine.newBuilder()
+                .maximumSize(dedupeWindowSize)
+                .expireAfterWrite(Duration.ofMinutes(dedupeWindowMinutes))
+                .build();
+    }
+
+    @Override
+    public Optional<PaymentResultDTO> recordPayment(Long billingId, PaymentRequestDTO request, User receivedBy) {
+        return record(request, receivedBy,
+                () -> billingRepository.findByIdForUpdate(billingId),
+                billing -> billing.getId().equals(billingId));
+    }
+
+    @Override
+    public Optional<PaymentResultDTO> recordPaymentByBillNumber(String billNumber, PaymentRequestDTO request,
+                                                                User receivedBy) {
+        return record(request, receivedBy,
+                () -> billingRepository.findByBillNumberForUpdate(billNumber),
+                billing -> billing.getBillNumber().equals(billNumber));
+    }
+
+    private Optional<PaymentResultDTO> record(PaymentRequestDTO request, User receivedBy,
+                                              Supplier<Optional<Billing>> lockBill, Predicate<Billing> sameBill) {
+        BigDecimal amount = validate(request);
+        // A key made up here would differ on every retry, so the client has to send one
+        if (request.getIdempotencyKey() == null || request.getIdempotencyKey().isBlank()) {
+            throw new IllegalArgumentException("An Idempotency-Key is required");
+        }
+        String key = request.getIdempotencyKey().trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        RecordedPayment recent = recentKeys.getIfPresent(key);
+        if (recent != null) {
+            return Optional.of(replay(recent, amount, sameBill));
+        }
+
+        try {
+            Optional<PaymentResultDTO> result = transactionTemplate.execute(status ->
+                    lockBill.get().map(billing -> paymentRepository.findByIdempotencyKey(key)
+                            // A retry that queued behind the original on the bill lock
+                            .map(payment -> replayed(payment.getBilling(), payment.getId(), payment.getAmount(),
+                                    amount, sameBill))
+                            .orElseGet(() -> apply(billing, request, amount, key, receivedBy))));
+            result.ifPresent(recorded -> recentKeys.put(key, new RecordedPayment(recorded.getPayment())));
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            // The key was committed concurrently, on another bill or by another node
+            Payment payment = transactionTemplate.execute(status -> paymentRepository.findByIdempotencyKey(key))
+                    .orElseThrow(() -> e);
+            RecordedPayment recorded = new RecordedPayment(payment);
+            recentKeys.put(key, recorded);
+            return Optional.of(replay(recorded, amount, sameBill));
+        }
+    }
+
+    // Runs with the bill row locked
+    private PaymentResultDTO apply(Billing billing, PaymentRequestDTO request, BigDecimal amount, String key,
+                                   User receivedBy) {
+        if ("CANCELLED".equals(billing.getStatus())) {
+            throw new IllegalArgumentException("Cannot take a payment on a cancelled bill");
+        }
+        BigDecimal paid = paymentRepository.sumAmountByBillingId(billing.getId());
+        BigDecimal due = billing.getTotalAmount().subtract(paid);
+        if (amount.compareTo(due) > 0) {
+            throw new IllegalArgumentException("Payment of " + amount + " exceeds the balance due of " + due);
+        }
+
+        Payment payment = new Payment();
+        payment.setBilling(billing);
+        payment.setIdempotencyKey(key);
+        payment.setPaymentDate(LocalDateTime.now());
+        payment.setAmount(amount);
+        payment.setPaymentMethod(request.getPaymentMethod().trim().toUpperCase());
+        payment.setReferenceNumber(request.getReferenceNumber());
+        payment.setNotes(request.getNotes());
+        payment.setReceivedBy(receivedBy);
+        // Flushed here so a duplicate key fails inside this transaction
+        paymentRepository.saveAndFlush(payment);
+        billing.getPayments().add(payment);
+
+        billing.setPaidAmount(paid.add(amount));
+        billing.setStatus(billing.getPaidAmount().compareTo(billing.getTotalAmount()) >= 0 ? "PAID" : "PARTIALLY_PAID");
+        billingRepository.save(billing);
+        accountsReceivableService.publish(billing);
+        logger.debug("Recorded payment {} of {} on bill {}", payment.getId(), amount, billing.getBillNumber());
+        return new PaymentResultDTO(billing, payment, false);
+    }
+
+    // Read in a read-write transaction so it sees the primary, not a lagging replica
+    private PaymentResultDTO replay(RecordedPayment recorded, BigDecimal amount, Predicate<Billing> sameBill) {
+        return transactionTemplate.execute(status -> {
+            Billing billing = billingRepository.findById(recorded.billingId)
+                    .orElseThrow(() -> new IllegalStateException("Bill of an earlier payment no longer exists"));
+            return replayed(billing, recorded.paymentId, recorded.amount, amount, sameBill);
+        });
+    }
+
+    private PaymentResultDTO replayed(Billing billing, Long paymentId, BigDecimal recordedAmount, BigDecimal amount,
+                                      Predicate<Billing> sameBill) {
+        if (!sameBill.test(billing) || recordedAmount.compareTo(amount) != 0) {
+            throw new IllegalStateException("Idempotency key was already used for a different payment");
+        }
+        Payment payment = billing.getPayments().stream()
+                .filter(p -> p.getId().equals(paymentId))
+                .findFirst().orElseThrow();
+        return new PaymentResultDTO(billing, payment, true);
+    }
+
+    private BigDecimal validate(PaymentRequestDTO request) {
+        BigDecimal amount = request.getAmount();
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Payment amount must be positive");
+        }
+        if (amount.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Payment amount must have at most 2 decimal places");
+        }
+        if (request.getPaymentMethod() == null || request.getPaymentMethod().isBlank()) {
+            throw new IllegalArgumentException("Payment method is required");
+        }
+        return amount.setScale(2);
+    }
+
+    private static class RecordedPayment {
+        private final Long paymentId;
+        private final Long billingId;
+        private final BigDecimal amount;
+
+        private RecordedPayment(Payment payment) {
+            this.paymentId = payment.getId();
+            this.billingId = payment.getBilling().getId();
+            this.amount = payment.getAmount();
+        }
+    }
+}
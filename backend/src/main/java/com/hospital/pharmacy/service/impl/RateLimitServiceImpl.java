@@ -0,0 +1,274 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.hospital.pharmacy.model.RateLimitHit;
+import com.hospital.pharmacy.repository.RateLimitHitRepository;
+import com.hospital.pharmacy.service.RateLimitService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of RateLimitService interface.
+ *
+ * A bucket is a single long, the time at which it will be full again: taking
+ * a token moves it one refill interval later, and the token is refused when
+ * that would put it more than the policy's capacity ahead of now. Taking is
+ * one compare-and-set, so requests never lock each other out. Buckets live in
+ * a Caffeine cache bounded by app.ratelimit.max-buckets; one not used for
+ * longer than any bucket takes to refill is full anyway and is dropped, and
+ * beyond the bound the least recently used go first.
+ *
+ * With app.ratelimit.shared.enabled the nodes share their counts through the
+ * rate_limit_hits table: every sync interval each node writes the tokens it
+ * took per bucket and charges its own buckets with those the other nodes
+ * wrote. Between syncs a client spreading requests over n nodes may get up
+ * to n times its allowance.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitServiceImpl.class);
+
+    private static final Set<String> KEY_TYPES = Set.of(KEY_IP, KEY_USER, KEY_ACCOUNT);
+
+    private static final int SYNC_PAGE_SIZE = 1000;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RateLimitHitRepository rateLimitHitRepository;
+
+    @Value("${app.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ratelimit.policies:}")
+    private List<String> policyNames;
+
+    @Value("${app.ratelimit.max-buckets:100000}")
+    private long maxBuckets;
+
+    @Value("${app.ratelimit.shared.enabled:false}")
+    private boolean shared;
+
+    @Value("${app.ratelimit.shared.retention-minutes:10}")
+    private long retentionMinutes;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+
+    // Nanos are counted from here, so a new bucket (0) is full
+    private final long origin = System.nanoTime();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder evicted = new LongAdder();
+
+    // Buckets with tokens not yet written to rate_limit_hits
+    private final Map<String, Bucket> unsynced = new ConcurrentHashMap<>();
+
+    private Cache<String, Bucket> buckets;
+
+    private volatile long lastSeenHitId = -1;
+
+    private record Policy(String name, List<String> paths, String keyType, long intervalNanos, long burstNanos,
+                          LongAdder rejected) {
+    }
+
+    @PostConstruct
+    public void init() {
+        long longestRefill = 0;
+        for (String name : policyNames) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            String prefix = "app.ratelimit." + name + ".";
+            String keyType = environment.getProperty(prefix + "key", KEY_IP);
+            int capacity = environment.getProperty(prefix + "capacity", Integer.class, 0);
+            double refillPerMinute = environment.getProperty(prefix + "refill-per-minute", Double.class, 0.0);
+            if (!KEY_TYPES.contains(keyType) || capacity <= 0 || refillPerMinute <= 0) {
+                throw new IllegalStateException("Rate limit policy " + name
+                        + " needs a key of " + KEY_TYPES + ", a capacity and a refill-per-minute above 0");
+            }
+            long intervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / refillPerMinute);
+            Policy policy = new Policy(name,
+                    Arrays.stream(environment.getProperty(prefix + "paths", "/**").split(","))
+                            .map(String::trim).toList(),
+                    keyType, intervalNanos, intervalNanos * capacity, new LongAdder());
+            policies.put(name, policy);
+            longestRefill = Math.max(longestRefill, policy.burstNanos());
+            FunctionCounter.builder("clinixpro.ratelimit.rejected", policy.rejected(), LongAdder::sum)
+                    .description("Requests refused because the policy's bucket was empty")
+                    .tag("policy", name)
+                    .register(meterRegistry);
+        }
+
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofNanos(Math.max(longestRefill, TimeUnit.SECONDS.toNanos(1))))
+                .removalListener((String key, Bucket bucket, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        evicted.increment();
+                    }
+                })
+                .build();
+        Gauge.builder("clinixpro.ratelimit.buckets", buckets, Cache::estimatedSize)
+                .description("Rate limit buckets in memory")
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.ratelimit.evicted", evicted, LongAdder::sum)
+                .description("Buckets dropped to stay under app.ratelimit.max-buckets before they were full")
+                .register(meterRegistry);
+        logger.info("Rate limiting {} with policies {}", enabled ? "enabled" : "disabled", policies.keySet());
+    }
+
+    @Override
+    public long tryAcquire(String path, String keyType, String key) {
+        if (!enabled || key == null || key.isBlank()) {
+            return 0;
+        }
+        long now = System.nanoTime() - origin;
+        long waitNanos = 0;
+        for (Policy policy : policies.values()) {
+            if (!policy.keyType().equals(keyType) || !covers(policy, path)) {
+                continue;
+            }
+            String bucketKey = policy.name() + "|" + key;
+            Bucket bucket = buckets.get(bucketKey, k -> new Bucket(policy));
+            long wait = bucket.tryTake(now);
+            if (wait > 0) {
+                policy.rejected().increment();
+                waitNanos = Math.max(waitNanos, wait);
+            } else if (shared && bucket.unsynced.getAndIncrement() == 0) {
+                unsynced.put(bucketKey, bucket);
+            }
+        }
+        return waitNanos == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${app.ratelimit.shared.sync-interval-ms:1000}",
+            initialDelayString = "${app.ratelimit.shared.sync-interval-ms:1000}")
+    public void syncShared() {
+        if (!shared) {
+            return;
+        }
+        if (lastSeenHitId < 0) {
+            // Only what happens from now on; older hits have mostly refilled
+            lastSeenHitId = rateLimitHitRepository.findMaxId();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<RateLimitHit> mine = new ArrayList<>();
+        for (String bucketKey : unsynced.keySet()) {
+            Bucket bucket = unsynced.remove(bucketKey);
+            int tokens = bucket != null ? bucket.unsynced.getAndSet(0) : 0;
+            if (tokens > 0) {
+                mine.add(new RateLimitHit(null, nodeId, bucketKey, tokens, now));
+            }
+        }
+        rateLimitHitRepository.saveAll(mine);
+
+        long nowNanos = System.nanoTime() - origin;
+        List<RateLimitHit> theirs;
+        do {
+            theirs = rateLimitHitRepository.findByIdGreaterThanAndNodeIdNotOrderByIdAsc(lastSeenHitId, nodeId,
+                    PageRequest.of(0, SYNC_PAGE_SIZE));
+            for (RateLimitHit hit : theirs) {
+                Policy policy = policies.get(hit.getBucketKey().substring(0, hit.getBucketKey().indexOf('|')));
+                if (policy != null) {
+                    buckets.get(hit.getBucketKey(), k -> new Bucket(policy)).charge(nowNanos, hit.getTokens());
+                }
+                lastSeenHitId = hit.getId();
+            }
+        } while (theirs.size() == SYNC_PAGE_SIZE);
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${app.ratelimit.shared.purge-interval-ms:60000}",
+            initialDelayString = "${app.ratelimit.shared.purge-interval-ms:60000}")
+    public void purgeShared() {
+        if (!shared) {
+            return;
+        }
+        int purged = rateLimitHitRepository.deleteOlderThan(LocalDateTime.now().minusMinutes(retentionMinutes));
+        if (purged > 0) {
+            logger.debug("Purged {} shared rate limit hits", purged);
+        }
+    }
+
+    private boolean covers(Policy policy, String path) {
+        return policy.paths().stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    private static final class Bucket {
+        private final Policy policy;
+        // Nanos since origin at which the bucket is full again
+        private final AtomicLong fullAt = new AtomicLong();
+        private final AtomicInteger unsynced = new AtomicInteger();
+
+        private Bucket(Policy policy) {
+            this.policy = policy;
+        }
+
+        // 0 if a token was taken, otherwise nanos until one is available
+        private long tryTake(long now) {
+            while (true) {
+                long full = fullAt.get();
+                long next = Math.max(full, now) + policy.intervalNanos();
+                long excess = next - now - policy.burstNanos();
+                if (excess > 0) {
+                    return excess;
+                }
+                if (fullAt.compareAndSet(full, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        // Tokens taken on another node; may empty the bucket but never push it further
+        private void charge(long now, int tokens) {
+            fullAt.updateAndGet(full -> Math.min(Math.max(full, now) + tokens * policy.intervalNanos(),
+                    now + policy.burstNanos()));
+        }
+    }
+}
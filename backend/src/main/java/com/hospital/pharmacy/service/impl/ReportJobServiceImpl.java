@@ -0,0 +1,482 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.dto.AgingSummaryDTO;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.ReportJob;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.repository.ReportJobRepository;
+import com.hospital.pharmacy.service.AccountsReceivableService;
+import com.hospital.pharmacy.service.MedicineService;
+import com.hospital.pharmacy.service.ReportJobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of ReportJobService interface.
+ *
+ * Jobs run on their own small pool (app.reports.threads), so at most that
+ * many request threads' worth of work and database connections go to
+ * reports, however many are asked for. Prescriptions are read a page at a
+ * time and written straight to the file, so a report of any size is built in
+ * constant memory. The file is written under a temporary name and renamed
+ * when complete.
+ *
+ * The data watermark of a job is the row count and latest updatedAt of each
+ * table the report reads (or the receivables summary for DUNNING), plus the
+ * day for reports that depend on it. It is taken on the primary when the
+ * report is submitted, and jobs also read the primary, so a result is never
+ * older than the watermark it is found by.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobServiceImpl.class);
+
+    private static final Set<String> REUSABLE = Set.of("QUEUED", "RUNNING", "COMPLETED");
+
+    private static final Set<String> PENDING = Set.of("QUEUED", "RUNNING");
+
+    private static final Set<String> FINISHED = Set.of("COMPLETED", "FAILED");
+
+    private static final Map<String, List<String>> SOURCE_TABLES = Map.of(
+            "INVENTORY", List.of("medicines"),
+            "PRESCRIPTIONS", List.of("prescriptions"),
+            "ALL", List.of("medicines", "prescriptions"));
+
+    // Expiry and days overdue move with the calendar even when no row changes
+    private static final Set<String> DATED = Set.of("INVENTORY", "ALL", "DUNNING");
+
+    private static final Map<String, Set<String>> PARAMETERS = Map.of(
+            "DUNNING", Set.of("minDaysOverdue", "minAmount"));
+
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.reports.dir:${app.storage.root:./storage}/reports}")
+    private String dir;
+
+    @Value("${app.reports.threads:2}")
+    private int threads;
+
+    @Value("${app.reports.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${app.reports.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.reports.retention-hours:24}")
+    private long retentionHours;
+
+    private Path reportDir;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTemplate;
+    private ThreadPoolExecutor executor;
+
+    // Serializes the lookup and insert of a job, so identical submissions share it. A lock rather
+    // than synchronized, which would pin a virtual thread to its carrier while the queries run
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() throws IOException {
+        reportDir = Files.createDirectories(Paths.get(dir).toAbsolutePath().normalize());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // When the queue is full a submission is refused rather than run on the request thread
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        meterRegistry.gauge("clinixpro.reports.queued", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("clinixpro.reports.running", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Runs jobs that were queued or running when the application stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        List<ReportJob> jobs;
+        try {
+            jobs = reportJobRepository.findByStatusIn(PENDING);
+        } catch (RuntimeException e) {
+            logger.error("Failed to restart report jobs", e);
+            return;
+        }
+        for (ReportJob job : jobs) {
+            logger.info("Restarting report job {} ({})", job.getId(), job.getReportType());
+            try {
+                job.setStatus("QUEUED");
+                reportJobRepository.save(job);
+                enqueue(job);
+            } catch (RuntimeException e) {
+                // A job the full queue turned away is already marked failed; the rest still get their turn
+                logger.error("Failed to restart report job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public ReportJob submit(String reportType, Map<String, String> parameters, String requestedBy) {
+        String type = reportType == null ? "" : reportType.trim().toUpperCase();
+        if (!REPORT_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Report type must be one of " + REPORT_TYPES);
+        }
+        String normalized = normalize(type, parameters);
+
+        submitLock.lock();
+        try {
+            String watermark = watermark(type);
+            Optional<ReportJob> existing = reportJobRepository
+                    .findFirstByReportTypeAndParametersAndDataWatermarkAndStatusInOrderByIdDesc(
+                            type, normalized, watermark, REUSABLE);
+            if (existing.isPresent()
+                    && (!"COMPLETED".equals(existing.get().getStatus()) || fileOf(existing.get()).isPresent())) {
+                logger.debug("Report {} [{}] reuses job {}", type, normalized, existing.get().getId());
+                return existing.get();
+            }
+
+            ReportJob job = new ReportJob();
+            job.setReportType(type);
+            job.setParameters(normalized);
+            job.setDataWatermark(watermark);
+            job.setStatus("QUEUED");
+            job.setRequestedBy(requestedBy);
+            job.setContentType("DUNNING".equals(type) ? "text/csv" : "application/json");
+            ReportJob saved = reportJobRepository.save(job);
+            saved.setFileName("report-" + saved.getId() + ("DUNNING".equals(type) ? ".csv" : ".json"));
+            saved = reportJobRepository.save(saved);
+            enqueue(saved);
+            logger.info("Queued report job {} ({} [{}])", saved.getId(), type, normalized);
+            return saved;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<ReportJob> getJob(Long jobId) {
+        return reportJobRepository.findById(jobId);
+    }
+
+    @Override
+    public List<ReportJob> getJobs(String requestedBy, int limit) {
+        return reportJobRepository.findRecent(requestedBy, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public Optional<Path> getJobFile(Long jobId) {
+        return reportJobRepository.findById(jobId).map(job -> {
+            if (!"COMPLETED".equals(job.getStatus())) {
+                throw new IllegalStateException("Report job " + job.getId() + " is " + job.getStatus());
+            }
+            return fileOf(job).orElseThrow(() ->
+                    new IllegalStateException("Report job " + job.getId() + " has expired; submit it again"));
+        });
+    }
+
+    @Override
+    @Scheduled(cron = "${app.reports.purge-cron:0 15 2 * * *}")
+    public int purgeExpired() {
+        List<ReportJob> expired = reportJobRepository.findByCreatedAtBeforeAndStatusIn(
+                LocalDateTime.now().minusHours(retentionHours), FINISHED);
+        for (ReportJob job : expired) {
+            try {
+                if (job.getFileName() != null) {
+                    Files.deleteIfExists(reportDir.resolve(job.getFileName()));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not delete report file {}: {}", job.getFileName(), e.getMessage());
+            }
+        }
+        reportJobRepository.deleteAll(expired);
+        if (!expired.isEmpty()) {
+            logger.info("Purged {} report jobs older than {} hours", expired.size(), retentionHours);
+        }
+        return expired.size();
+    }
+
+    private void enqueue(ReportJob job) {
+        try {
+            executor.execute(() -> run(job.getId()));
+        } catch (RejectedExecutionException e) {
+            fail(job.getId(), "Report queue is full");
+            throw new IllegalStateException("Report queue is full, try again later");
+        }
+    }
+
+    private void run(Long jobId) {
+        ReportJob job = transactionTemplate.execute(status -> reportJobRepository.findById(jobId)
+                .filter(found -> "QUEUED".equals(found.getStatus()))
+                .map(found -> {
+                    found.setStatus("RUNNING");
+                    found.setStartedAt(LocalDateTime.now());
+                    return found;
+                })
+                .orElse(null));
+        if (job == null) {
+            return;
+        }
+
+        Path file = reportDir.resolve(job.getFileName());
+        Path part = reportDir.resolve(job.getFileName() + ".part");
+        // The primary, not a replica: the result must be at least as new as the job's watermark
+        ReadWriteRoutingDataSource.setRequestRoute(ReadWriteRoutingDataSource.Route.PRIMARY);
+        try {
+            try (OutputStream out = Files.newOutputStream(part)) {
+                readOnlyTemplate.executeWithoutResult(status -> write(job, out));
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long length = Files.size(file);
+            transactionTemplate.executeWithoutResult(status -> reportJobRepository.findById(jobId)
+                    .ifPresent(done -> {
+                        done.setStatus("COMPLETED");
+                        done.setFileLength(length);
+                        done.setCompletedAt(LocalDateTime.now());
+                    }));
+            logger.info("Report job {} completed, {} bytes", jobId, length);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(part);
+            if (executor.isShutdown()) {
+                // Left RUNNING; the next start runs it again
+                logger.info("Report job {} interrupted by shutdown", jobId);
+                return;
+            }
+            logger.error("Report job {} failed", jobId, e);
+            fail(jobId, String.valueOf(e.getMessage()));
+        } finally {
+            ReadWriteRoutingDataSource.clearRequestRoute();
+        }
+    }
+
+    private void write(ReportJob job, OutputStream out) {
+        try {
+            if ("DUNNING".equals(job.getReportType())) {
+                Map<String, String> parameters = parse(job.getParameters());
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                accountsReceivableService.writeDunningExport(Integer.parseInt(parameters.get("minDaysOverdue")),
+                        new BigDecimal(parameters.get("minAmount")), writer);
+                writer.flush();
+                return;
+            }
+            // Same shape as GET /pharmacist/reports
+            JsonGenerator json = objectMapper.createGenerator(out);
+            json.writeStartObject();
+            switch (job.getReportType()) {
+                case "INVENTORY" -> writeInventory(json);
+                case "PRESCRIPTIONS" -> writePrescriptions(json);
+                default -> {
+                    json.writeObjectFieldStart("inventory");
+                    writeInventory(json);
+                    json.writeEndObject();
+                    json.writeObjectFieldStart("prescriptions");
+                    writePrescriptions(json);
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndObject();
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInventory(JsonGenerator json) throws IOException {
+        json.writeObjectField("lowStock", medicineService.getLowStatusMedicines());
+        json.writeObjectField("expired", medicineService.getExpiredMedicines());
+    }
+
+    private void writePrescriptions(JsonGenerator json) throws IOException {
+        writePrescriptions(json, "active", "ACTIVE");
+        writePrescriptions(json, "completed", "COMPLETED");
+    }
+
+    private void writePrescriptions(JsonGenerator json, String field, String status) throws IOException {
+        json.writeArrayFieldStart(field);
+        long afterId = 0;
+        List<Prescription> page;
+        do {
+            page = prescriptionRepository.findByStatusAndIdGreaterThanOrderByIdAsc(status, afterId,
+                    PageRequest.of(0, pageSize));
+            for (Prescription prescription : page) {
+                json.writeObject(prescription);
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+            json.flush();
+            // Written pages are not needed again; keeps the session from growing with the report
+            entityManager.clear();
+        } while (page.size() == pageSize);
+        json.writeEndArray();
+    }
+
+    private String normalize(String type, Map<String, String> parameters) {
+        Set<String> allowed = PARAMETERS.getOrDefault(type, Set.of());
+        SortedMap<String, String> normalized = new TreeMap<>();
+        if (parameters != null) {
+            parameters.forEach((name, value) -> {
+                if (value == null || value.isBlank()) {
+                    return;
+                }
+                if (!allowed.contains(name)) {
+                    throw new IllegalArgumentException("Report " + type + " has no parameter " + name);
+                }
+                normalized.put(name, value.trim());
+            });
+        }
+        if ("DUNNING".equals(type)) {
+            try {
+                int minDaysOverdue = Integer.parseInt(normalized.getOrDefault("minDaysOverdue", "30"));
+                BigDecimal minAmount = new BigDecimal(normalized.getOrDefault("minAmount", "0"));
+                if (minDaysOverdue < 1) {
+                    throw new IllegalArgumentException("minDaysOverdue must be at least 1");
+                }
+                if (minAmount.signum() < 0) {
+                    throw new IllegalArgumentException("minAmount must not be negative");
+                }
+                normalized.put("minDaysOverdue", String.valueOf(minDaysOverdue));
+                normalized.put("minAmount", minAmount.stripTrailingZeros().toPlainString());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("minDaysOverdue and minAmount must be numbers");
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        normalized.forEach((name, value) -> text.append(text.length() == 0 ? "" : "&")
+                .append(name).append('=').append(value));
+        return text.toString();
+    }
+
+    private Map<String, String> parse(String parameters) {
+        Map<String, String> parsed = new TreeMap<>();
+        for (String pair : parameters.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parsed.put(pair.substring(0, separator), pair.substring(separator + 1));
+            }
+        }
+        return parsed;
+    }
+
+    private String watermark(String type) {
+        List<String> parts = new ArrayList<>();
+        if ("DUNNING".equals(type)) {
+            // The export reads the in-memory balances, which follow the bills a few seconds behind
+            AgingSummaryDTO summary = accountsReceivableService.getAgingSummary();
+            parts.add("receivables:" + summary.getTotalOutstanding().stripTrailingZeros().toPlainString()
+                    + "/" + summary.getPatientsWithBalance() + "/" + summary.getBills());
+        } else {
+            for (String table : SOURCE_TABLES.get(type)) {
+                parts.add(jdbcTemplate.queryForObject("SELECT COUNT(*), MAX(updatedAt) FROM " + table,
+                        (rs, rowNum) -> table + ":" + rs.getLong(1) + "@" + rs.getTimestamp(2)));
+            }
+        }
+        if (DATED.contains(type)) {
+            parts.add("date:" + LocalDate.now());
+        }
+        return String.join(";", parts);
+    }
+
+    private Optional<Path> fileOf(ReportJob job) {
+        Path file = reportDir.resolve(job.getFileName());
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private void fail(Long jobId, String message) {
+        transactionTemplate.executeWithoutResult(status -> reportJobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus("FAILED");
+            job.setErrorMessage(message.length() > 1000 ? message.substring(0, 1000) : message);
+            job.setCompletedAt(LocalDateTime.now());
+        }));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.service.RequestCoalescingService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of RequestCoalescingService interface.
+ *
+ * The first request for a key registers a future and computes the result on
+ * its own thread; requests for the same key that arrive meanwhile wait on
+ * that future. The result is shared as serialized JSON, so entities loaded
+ * in the first request's session are never touched by other threads. A
+ * finished result may be kept for a short TTL (app.coalescing.result-ttl-ms)
+ * to also absorb requests that arrive just after it. A request routed to
+ * the primary, such as one from a session that just wrote, always computes
+ * its own result, so it never reads a replica's or an older one.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class RequestCoalescingServiceImpl implements RequestCoalescingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescingServiceImpl.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.coalescing.result-ttl-ms:1000}")
+    private long resultTtlMs;
+
+    @Value("${app.coalescing.max-results:1000}")
+    private long maxResults;
+
+    @Value("${app.coalescing.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    private record Key(String endpoint, String scope, SortedMap<String, String> params) {
+    }
+
+    private final Map<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    // Null when finished results are not kept
+    private Cache<Key, byte[]> results;
+
+    @PostConstruct
+    public void init() {
+        if (resultTtlMs > 0) {
+            results = Caffeine.newBuilder()
+                    .expireAfterWrite(Duration.ofMillis(resultTtlMs))
+                    .maximumSize(maxResults)
+                    .build();
+        }
+    }
+
+    @Override
+    public byte[] getJson(String endpoint, Map<String, String> params, String scope, Supplier<?> computation) {
+        SortedMap<String, String> normalized = new TreeMap<>();
+        params.forEach((name, value) -> {
+            if (value != null && !value.isBlank()) {
+                normalized.put(name, value.trim());
+            }
+        });
+        Key key = new Key(endpoint, scope, normalized);
+        Stats endpointStats = stats(endpoint);
+
+        if (ReadWriteRoutingDataSource.requestRoute() == ReadWriteRoutingDataSource.Route.PRIMARY) {
+            endpointStats.computed.increment();
+            return serialize(computation.get());
+        }
+
+        if (results != null) {
+            byte[] cached = results.getIfPresent(key);
+            if (cached != null) {
+                endpointStats.cached.increment();
+                return cached;
+            }
+        }
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            endpointStats.joined.increment();
+            return await(key, running, computation);
+        }
+
+        endpointStats.computed.increment();
+        try {
+            byte[] json = serialize(computation.get());
+            // Cached before the key leaves inFlight, so no request in between computes again
+            if (results != null) {
+                results.put(key, json);
+            }
+            mine.complete(json);
+            return json;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private byte[] await(Key key, CompletableFuture<byte[]> running, Supplier<?> computation) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A stuck computation should not hold every later caller; this one computes its own
+            logger.warn("Shared computation of {} still running after {} ms", key.endpoint(), waitTimeoutMs);
+            return serialize(computation.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Shared computation of " + key.endpoint() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + key.endpoint());
+        }
+    }
+
+    private byte[] serialize(Object result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize result: " + e.getMessage(), e);
+        }
+    }
+
+    private Stats stats(String endpoint) {
+        return stats.computeIfAbsent(endpoint, name -> {
+            Stats endpointStats = new Stats();
+            counter(name, "computed", endpointStats.computed);
+            counter(name, "joined", endpointStats.joined);
+            counter(name, "cached", endpointStats.cached);
+            Gauge.builder("clinixpro.coalescing.collapse.ratio", endpointStats, Stats::collapseRatio)
+                    .description("Share of requests answered without running the computation")
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            return endpointStats;
+        });
+    }
+
+    private void counter(String endpoint, String outcome, LongAdder count) {
+        FunctionCounter.builder("clinixpro.coalescing.requests", count, LongAdder::sum)
+                .description("Coalesced reads by outcome: computed, joined an in-flight computation, or cached")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static class Stats {
+        private final LongAdder computed = new LongAdder();
+        private final LongAdder joined = new LongAdder();
+        private final LongAdder cached = new LongAdder();
+
+        private double collapseRatio() {
+            double shared = joined.sum() + cached.sum();
+            double total = shared + computed.sum();
+            return total == 0 ? 0 : shared / total;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.WardSummaryDTO;
+import com.hospital.pharmacy.model.Room;
+import com.hospital.pharmacy.repository.BedRepository;
+import com.hospital.pharmacy.repository.RoomRepository;
+import com.hospital.pharmacy.service.RoomDirectoryService;
+import com.hospital.pharmacy.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of RoomDirectoryService interface.
+ * Rooms are looked up through the roomId and number indexes and cached as
+ * detached copies; each caller gets a copy of its own, and writes load the
+ * managed row afresh, so an edit is never seen half-applied and a failed one
+ * leaves the cache as it was. Every write evicts the room caches so readers
+ * never see a stale room.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class RoomDirectoryServiceImpl implements RoomDirectoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomDirectoryServiceImpl.class);
+
+    private static final String ROOM_ID_PREFIX = "RM-";
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BedRepository bedRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public Optional<Room> findRoom(String roomIdOrNumber) {
+        // A hit takes no transaction; a miss copies the row, features included, before its session closes
+        Room cached = cache("rooms").get(roomIdOrNumber, () -> readOnlyTransaction.execute(status ->
+                lookup(roomIdOrNumber).map(this::copyOf).orElse(null)));
+        return Optional.ofNullable(cached).map(this::copyOf);
+    }
+
+    @Override
+    public List<Room> findByWard(String ward) {
+        List<Room> cached = cache("roomsByWard").get(ward, () -> readOnlyTransaction.execute(status -> {
+            logger.debug("Finding rooms in ward: {}", ward);
+            return roomRepository.findByWard(ward).stream().map(this::copyOf).toList();
+        }));
+        return cached.stream().map(this::copyOf).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public Room create(Room room) {
+        room.setOccupancy((int) bedRepository.countByRoomNumberAndStatus(room.getNumber(), "Occupied"));
+        Room saved = roomRepository.save(room);
+        evictRoomCaches();
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Room> update(String roomIdOrNumber, Room changes) {
+        return lookup(roomIdOrNumber).map(room -> {
+            if (changes.getName() != null)
+                room.setName(changes.getName());
+            if (changes.getWard() != null)
+                room.setWard(changes.getWard());
+            if (changes.getType() != null)
+                room.setType(changes.getType());
+            if (changes.getCapacity() > 0)
+                room.setCapacity(changes.getCapacity());
+            if (changes.getNotes() != null)
+                room.setNotes(changes.getNotes());
+            if (changes.getFeatures() != null)
+                room.setFeatures(new ArrayList<>(changes.getFeatures()));
+            return saveAndEvict(room);
+        });
+    }
+
+    @Override
+    @Transactional
+    public Optional<Room> updateStatus(String roomIdOrNumber, String status) {
+        return lookup(roomIdOrNumber).map(room -> {
+            room.setStatus(status);
+            return saveAndEvict(room);
+        });
+    }
+
+    @Override
+    @Transactional
+    public void delete(Room room) {
+        roomRepository.delete(room);
+        evictRoomCaches();
+    }
+
+    @Override
+    @Transactional
+    public void adjustOccupancy(String ward, String roomNumber, int delta) {
+        if (ward == null || roomNumber == null || delta == 0) {
+            return;
+        }
+        int updated = roomRepository.adjustOccupancy(ward, roomNumber, delta, LocalDateTime.now());
+        logger.debug("Adjusted occupancy of room {} in {} by {} ({} rows)", roomNumber, ward, delta, updated);
+        evictRoomCaches();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<WardSummaryDTO> getWardSummaries() {
+        return roomRepository.summarizeWards();
+    }
+
+    // A managed row read in the caller's transaction, never the cached copy
+    private Optional<Room> lookup(String roomIdOrNumber) {
+        logger.debug("Looking up room: {}", roomIdOrNumber);
+        if (roomIdOrNumber.startsWith(ROOM_ID_PREFIX)) {
+            return roomRepository.findByRoomId(roomIdOrNumber);
+        }
+        // The UI passes room numbers, which are normally the roomId suffix
+        Optional<Room> room = roomRepository.findByRoomId(ROOM_ID_PREFIX + roomIdOrNumber);
+        return room.isPresent() ? room : roomRepository.findFirstByNumber(roomIdOrNumber);
+    }
+
+    private Room saveAndEvict(Room room) {
+        // Flushed so updatedAt is set; occupancy is not updatable, so a concurrent adjustment survives
+        Room saved = roomRepository.saveAndFlush(room);
+        evictRoomCaches();
+        return copyOf(saved);
+    }
+
+    // Detached and with its own features list, so neither the cache nor the session is shared
+    private Room copyOf(Room room) {
+        return new Room(room.getId(), room.getRoomId(), room.getNumber(), room.getName(), room.getWard(),
+                room.getType(), room.getCapacity(), room.getOccupancy(), room.getStatus(),
+                room.getFeatures() != null ? new ArrayList<>(room.getFeatures()) : null, room.getNotes(),
+                room.getCreatedAt(), room.getUpdatedAt());
+    }
+
+    private Cache cache(String name) {
+        return Objects.requireNonNull(cacheManager.getCache(name), name);
+    }
+
+    private void evictRoomCaches() {
+        // Cleared again on commit so a reader between now and then cannot re-cache the old row
+        AfterCommit.runNowAndAgain(this::clearRoomCaches);
+    }
+
+    private void clearRoomCaches() {
+        for (String name : new String[] { "rooms", "roomsByWard" }) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+}
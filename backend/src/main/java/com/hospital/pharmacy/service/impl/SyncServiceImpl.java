@@ -0,0 +1,214 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.dto.SyncPageDTO;
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.Room;
+import com.hospital.pharmacy.model.SyncTombstone;
+import com.hospital.pharmacy.repository.SyncTombstoneRepository;
+import com.hospital.pharmacy.service.SyncService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keyset-paged change feed over the updatedAt columns and sync_tombstones.
+ * Once a type is drained its cursor is moved back to a few seconds before
+ * now, so rows committed late with an earlier updatedAt are still picked up
+ * on the next call; clients may see such recent rows twice and upsert them.
+ */
+@Service
+public class SyncServiceImpl implements SyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncServiceImpl.class);
+
+    private static final long SYNC_OVERLAP_SECONDS = 10;
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String KEYSET = " WHERE (e.updatedAt > :at OR (e.updatedAt = :at AND e.id > :id)) "
+            + "ORDER BY e.updatedAt, e.id";
+
+    // To-one associations fetched with the page; the keyset order matches each table's (updatedAt, id) index
+    private static final Map<String, String> PAGE_QUERIES = Map.of(
+            "appointments", "SELECT e FROM Appointment e JOIN FETCH e.patient JOIN FETCH e.doctor "
+                    + "LEFT JOIN FETCH e.createdBy",
+            "billings", "SELECT e FROM Billing e JOIN FETCH e.patient LEFT JOIN FETCH e.createdBy",
+            "prescriptions", "SELECT e FROM Prescription e JOIN FETCH e.patient JOIN FETCH e.doctor "
+                    + "LEFT JOIN FETCH e.appointment",
+            "beds", "SELECT e FROM Bed e LEFT JOIN FETCH e.patient LEFT JOIN FETCH e.doctor",
+            "rooms", "SELECT e FROM Room e");
+
+    // Collections, one query each so a page never multiplies into a cartesian product
+    private static final Map<String, List<String>> COLLECTION_QUERIES = Map.of(
+            "billings", List.of(
+                    "SELECT DISTINCT e FROM Billing e LEFT JOIN FETCH e.billingItems WHERE e IN :rows",
+                    "SELECT DISTINCT e FROM Billing e LEFT JOIN FETCH e.payments WHERE e IN :rows"),
+            "prescriptions", List.of("SELECT DISTINCT e FROM Prescription e LEFT JOIN FETCH e.prescriptionItems i "
+                    + "LEFT JOIN FETCH i.medicine WHERE e IN :rows"),
+            "rooms", List.of("SELECT DISTINCT e FROM Room e LEFT JOIN FETCH e.features WHERE e IN :rows"));
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private SyncTombstoneRepository tombstoneRepository;
+
+    @Value("${app.sync.tombstone-retention-days:30}")
+    private int tombstoneRetentionDays;
+
+    private record Position(LocalDateTime at, long id) {
+
+        // A drained cursor goes back to the settled time so late commits are not skipped
+        private Position settle(LocalDateTime settled) {
+            return at.isAfter(settled) ? new Position(settled, 0) : this;
+        }
+    }
+
+    @Override
+    // Primary, not a replica: a lagging replica could let the watermark pass rows it has not replayed yet
+    @Transactional
+    public SyncPageDTO getChanges(String watermark, Set<String> types, int limit) {
+        for (String type : types) {
+            if (!TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown sync type: " + type);
+            }
+        }
+        LocalDateTime settled = LocalDateTime.now().minusSeconds(SYNC_OVERLAP_SECONDS);
+        LocalDateTime horizon = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+        Map<String, Position[]> cursors = decode(watermark);
+
+        Map<String, List<?>> changes = new LinkedHashMap<>();
+        Map<String, List<Long>> deleted = new LinkedHashMap<>();
+        boolean hasMore = false;
+        for (String type : TYPES) {
+            if (!types.contains(type)) {
+                continue;
+            }
+            Position[] cursor = cursors.get(type);
+            Position rowsAfter = cursor != null ? cursor[0] : new Position(BEGINNING, 0);
+            // A client starting from scratch has nothing to delete
+            Position deletesAfter = cursor != null ? cursor[1] : new Position(settled, 0);
+            if (deletesAfter.at().isBefore(horizon)) {
+                throw new IllegalStateException("Watermark is older than the " + tombstoneRetentionDays
+                        + " days of deletes kept; sync again from the start");
+            }
+
+            List<Object> rows = new ArrayList<>(entityManager
+                    .createQuery(PAGE_QUERIES.get(type) + KEYSET, Object.class)
+                    .setParameter("at", rowsAfter.at())
+                    .setParameter("id", rowsAfter.id())
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .setMaxResults(limit + 1)
+                    .getResultList());
+            boolean moreRows = rows.size() > limit;
+            if (moreRows) {
+                rows = new ArrayList<>(rows.subList(0, limit));
+            }
+            if (!rows.isEmpty()) {
+                for (String query : COLLECTION_QUERIES.getOrDefault(type, List.of())) {
+                    entityManager.createQuery(query, Object.class)
+                            .setParameter("rows", rows)
+                            .setHint(HibernateHints.HINT_READ_ONLY, true)
+                            .getResultList();
+                }
+            }
+            Position lastRow = rows.isEmpty() ? rowsAfter : position(rows.get(rows.size() - 1));
+
+            List<SyncTombstone> tombstones = tombstoneRepository.findPage(type, deletesAfter.at(),
+                    deletesAfter.id(), PageRequest.of(0, limit + 1));
+            boolean moreDeletes = tombstones.size() > limit;
+            if (moreDeletes) {
+                tombstones = tombstones.subList(0, limit);
+            }
+            Position lastDelete = tombstones.isEmpty() ? deletesAfter
+                    : new Position(tombstones.get(tombstones.size() - 1).getDeletedAt(),
+                    tombstones.get(tombstones.size() - 1).getId());
+
+            changes.put(type, rows);
+            deleted.put(type, tombstones.stream().map(SyncTombstone::getEntityId).toList());
+            cursors.put(type, new Position[]{
+                    moreRows ? lastRow : lastRow.settle(settled),
+                    moreDeletes ? lastDelete : lastDelete.settle(settled)});
+            hasMore |= moreRows || moreDeletes;
+        }
+        return new SyncPageDTO(changes, deleted, encode(cursors), hasMore);
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(cron = "${app.sync.tombstone-purge-cron:0 45 1 * * *}")
+    public int purgeTombstones() {
+        int purged = tombstoneRepository.deleteOlderThan(LocalDateTime.now().minusDays(tombstoneRetentionDays));
+        if (purged > 0) {
+            logger.info("Purged {} sync tombstones", purged);
+        }
+        return purged;
+    }
+
+    private Position position(Object row) {
+        if (row instanceof Appointment appointment) {
+            return new Position(appointment.getUpdatedAt(), appointment.getId());
+        } else if (row instanceof Billing billing) {
+            return new Position(billing.getUpdatedAt(), billing.getId());
+        } else if (row instanceof Prescription prescription) {
+            return new Position(prescription.getUpdatedAt(), prescription.getId());
+        } else if (row instanceof Bed bed) {
+            return new Position(bed.getUpdatedAt(), bed.getId());
+        }
+        Room room = (Room) row;
+        return new Position(room.getUpdatedAt(), room.getId());
+    }
+
+    // type|rowsAt|rowsId|deletesAt|deletesId, one per type, joined with ';'
+    private String encode(Map<String, Position[]> cursors) {
+        List<String> entries = new ArrayList<>();
+        cursors.forEach((type, cursor) -> entries.add(type + "|" + cursor[0].at() + "|" + cursor[0].id() + "|"
+                + cursor[1].at() + "|" + cursor[1].id()));
+        String key = String.join(";", entries);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Position[]> decode(String watermark) {
+        Map<String, Position[]> cursors = new HashMap<>();
+        if (watermark == null || watermark.isBlank()) {
+            return cursors;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.UTF_8);
+            for (String entry : key.split(";")) {
+                String[] parts = entry.split("\\|");
+                if (parts.length != 5 || !TYPES.contains(parts[0])) {
+                    throw new IllegalArgumentException("Invalid sync watermark");
+                }
+                cursors.put(parts[0], new Position[]{
+                        new Position(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2])),
+                        new Position(LocalDateTime.parse(parts[3]), Long.parseLong(parts[4]))});
+            }
+            return cursors;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid sync watermark");
+        }
+    }
+}
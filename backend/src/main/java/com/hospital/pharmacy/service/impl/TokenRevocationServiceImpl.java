@@ -0,0 +1,309 @@
+package com.hospital.pharmacy.service.impl;
+
+import com.hospital.pharmacy.model.TokenRevocation;
+import com.hospital.pharmacy.repository.TokenRevocationRepository;
+import com.hospital.pharmacy.service.TokenRevocationService;
+import com.hospital.pharmacy.util.AfterCommit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of TokenRevocationService interface.
+ *
+ * Each node holds a map of subject to the millisecond up to which the
+ * subject's tokens are revoked, and the ids of revoked tokens behind a Bloom filter.
+ * Almost every request carries a token that was never revoked, which the
+ * filter answers from a few bits; only when it says maybe is the exact set
+ * consulted, so a false positive costs one more lookup, never a wrong 401.
+ *
+ * Watermarks are compared with the token's millisecond issue time, so a
+ * login right after a password reset or reactivation is not caught by it;
+ * tokens issued before that claim existed only carry iat's whole second and
+ * are revoked with the rest of theirs. Revoking within a transaction, e.g.
+ * along with the password change, sets the watermark again once it commits,
+ * so a login with the old password in between is revoked as well.
+ *
+ * Revocations made on this node apply at once; those made on other nodes
+ * are read from the token_revocations table every sync interval. A rebuild
+ * deletes the expired ones and reloads the rest, which lets the Bloom filter,
+ * that cannot forget, start empty again, and heals any row a sync missed
+ * because it committed after later ids.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Service
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationServiceImpl.class);
+
+    private static final int SYNC_PAGE_SIZE = 1000;
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.expiration:86400000}")
+    private long tokenLifetimeMs;
+
+    @Value("${app.tokens.revocation.expected-tokens:100000}")
+    private int expectedTokens;
+
+    @Value("${app.tokens.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Held while revocations are applied, so none lands in a set a rebuild is about to replace
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private volatile Revocations revocations;
+
+    private long lastSeenId;
+
+    @PostConstruct
+    public void init() {
+        // Committed before it is applied, so a rebuild either reads the row or runs before it is applied
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        revocations = new Revocations(expectedTokens, falsePositiveRate);
+        rebuild();
+
+        Gauge.builder("clinixpro.tokens.revoked", this, service -> service.revocations.tokenIds.size())
+                .description("Revoked tokens not yet expired")
+                .tag("kind", "token")
+                .register(meterRegistry);
+        Gauge.builder("clinixpro.tokens.revoked", this, service -> service.revocations.issuedUpTo.size())
+                .description("Users whose tokens up to a point in time are revoked")
+                .tag("kind", "user")
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.tokens.revoked.rejected", rejected, LongAdder::sum)
+                .description("Requests refused because their token was revoked")
+                .register(meterRegistry);
+        FunctionCounter.builder("clinixpro.tokens.revoked.bloom.false-positives", falsePositives, LongAdder::sum)
+                .description("Tokens the Bloom filter could not rule out that were not revoked")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isRevoked(String subject, String tokenId, Date issuedAt) {
+        Revocations current = revocations;
+        if (subject != null && !current.issuedUpTo.isEmpty()) {
+            Long upTo = current.issuedUpTo.get(subject);
+            if (upTo != null && (issuedAt == null || issuedAt.getTime() <= upTo)) {
+                rejected.increment();
+                return true;
+            }
+        }
+        if (tokenId != null && current.bloom.mightContain(tokenId)) {
+            if (current.tokenIds.contains(tokenId)) {
+                rejected.increment();
+                return true;
+            }
+            falsePositives.increment();
+        }
+        return false;
+    }
+
+    @Override
+    public void revokeToken(String subject, String tokenId, Date expiresAt) {
+        if (subject == null || tokenId == null) {
+            throw new IllegalArgumentException("A token is revoked by its subject and id");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expires = expiresAt != null
+                ? LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault())
+                : now.plus(tokenLifetimeMs, ChronoUnit.MILLIS);
+        revoke(new TokenRevocation(null, subject, tokenId, null, expires, now));
+    }
+
+    @Override
+    public void revokeAllTokens(String subject) {
+        if (subject == null) {
+            throw new IllegalArgumentException("Tokens are revoked by their subject");
+        }
+        AfterCommit.runNowAndAgain(() -> revokeUpToNow(subject));
+        logger.info("Revoked all tokens issued to {}", subject);
+    }
+
+    private void revokeUpToNow(String subject) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        // Any token issued up to the watermark has expired a lifetime after it
+        revoke(new TokenRevocation(null, subject, null, now, now.plus(tokenLifetimeMs, ChronoUnit.MILLIS), now));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.tokens.revocation.sync-interval-ms:2000}",
+            initialDelayString = "${app.tokens.revocation.sync-interval-ms:2000}")
+    public void syncRevocations() {
+        boolean overfull;
+        lock.lock();
+        try {
+            lastSeenId = load(revocations, lastSeenId);
+            overfull = revocations.tokenIds.size() > revocations.bloom.capacity;
+        } finally {
+            lock.unlock();
+        }
+        if (overfull) {
+            // More revoked tokens than the filter was sized for; resize before false positives pile up
+            rebuild();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.tokens.revocation.rebuild-interval-ms:300000}",
+            initialDelayString = "${app.tokens.revocation.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        Integer purged = transactionTemplate.execute(status ->
+                tokenRevocationRepository.deleteExpired(LocalDateTime.now()));
+        lock.lock();
+        try {
+            Revocations fresh = new Revocations(Math.max(expectedTokens, 2 * revocations.tokenIds.size()),
+                    falsePositiveRate);
+            lastSeenId = load(fresh, 0L);
+            revocations = fresh;
+            logger.debug("Loaded {} revoked tokens and {} user watermarks, purged {} expired",
+                    fresh.tokenIds.size(), fresh.issuedUpTo.size(), purged);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void revoke(TokenRevocation revocation) {
+        transactionTemplate.executeWithoutResult(status -> tokenRevocationRepository.save(revocation));
+        lock.lock();
+        try {
+            apply(revocations, revocation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies the unexpired revocations after afterId and returns the last id read
+    private long load(Revocations target, long afterId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<TokenRevocation> page;
+        do {
+            page = tokenRevocationRepository.findByIdGreaterThanAndExpiresAtAfterOrderByIdAsc(afterId, now,
+                    PageRequest.of(0, SYNC_PAGE_SIZE));
+            for (TokenRevocation revocation : page) {
+                apply(target, revocation);
+                afterId = revocation.getId();
+            }
+        } while (page.size() == SYNC_PAGE_SIZE);
+        return afterId;
+    }
+
+    private void apply(Revocations target, TokenRevocation revocation) {
+        if (revocation.getTokenId() != null) {
+            // Exact set first: whoever sees the filter's bits also sees the id
+            target.tokenIds.add(revocation.getTokenId());
+            target.bloom.put(revocation.getTokenId());
+        }
+        if (revocation.getIssuedUpTo() != null) {
+            long upTo = revocation.getIssuedUpTo().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            target.issuedUpTo.merge(revocation.getSubject(), upTo, Math::max);
+        }
+    }
+
+    private static final class Revocations {
+        // Epoch millisecond up to which each subject's tokens are revoked
+        private final Map<String, Long> issuedUpTo = new ConcurrentHashMap<>();
+        private final Set<String> tokenIds = ConcurrentHashMap.newKeySet();
+        private final BloomFilter bloom;
+
+        private Revocations(int expectedTokens, double falsePositiveRate) {
+            bloom = new BloomFilter(expectedTokens, falsePositiveRate);
+        }
+    }
+
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+        private final int capacity;
+
+        private BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = Math.max(1, capacity);
+            double ln2 = Math.log(2);
+            long optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            words = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+            bits = words.length() * 64L;
+            hashes = Math.max(1, (int) Math.round((double) bits / this.capacity * ln2));
+        }
+
+        private void put(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(hash, i);
+                words.getAndAccumulate((int) (bit >>> 6), 1L << bit, (word, mask) -> word | mask);
+            }
+        }
+
+        private boolean mightContain(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // The i-th probe, derived from the two halves of one hash
+        private long index(long hash, int i) {
+            long combined = (int) hash + (long) i * ((int) (hash >>> 32) | 1);
+            return (combined & Long.MAX_VALUE) % bits;
+        }
+
+        // FNV-1a, then the MurmurHash3 finalizer to spread the bits
+        private static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.hospital.pharmacy.service.impl;
 
 import com.hospital.pharmacy.model.User;
 import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.EmailService;
+import com.hospital.pharmacy.service.PasswordHashingService;
+import com.hospital.pharmacy.service.TokenRevocationService;
 import com.hospital.pharmacy.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -21,6 +25,14 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private EmailService emailService;
 
     @Override
     public List<User> findByFilters(String role, Boolean isActive, String search) {
@@ -38,6 +50,42 @@ public class UserServiceImpl implements UserService {
         return userRepository.save(user);
     }
 
+    @Override
+    @Transactional
+    public User register(User user) {
+        if (userRepository.existsByEmail(user.getEmail())) {
+            throw new IllegalArgumentException("Email already in use");
+        }
+
+        String prefix;
+        switch (user.getRole().toUpperCase()) {
+            case "DOCTOR":
+                prefix = "DOC-";
+                break;
+            case "PHARMACIST":
+                prefix = "PHM-";
+                break;
+            case "RECEPTIONIST":
+                prefix = "RCP-";
+                break;
+            case "ADMIN":
+                prefix = "ADM-";
+                break;
+            default:
+                prefix = "USR-";
+        }
+        user.setUserId(prefix + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        user.setActive(true);
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+
+        User savedUser = userRepository.save(user);
+        // Queued in this transaction, so it is only sent if the account is created
+        emailService.sendWelcomeEmail(savedUser.getEmail(), savedUser.getFirstName(), savedUser.getRole());
+        return savedUser;
+    }
+
     @Override
     @Transactional
     public User update(Long id, User updatedUser) {
@@ -47,6 +95,7 @@ public class UserServiceImpl implements UserService {
                 .map(user -> {
                     // Keep track of original values for required fields
                     String originalPassword = user.getPassword();
+                    String originalEmail = user.getEmail();
 
                     // Update fields if provided, otherwise keep original values
                     if (updatedUser.getFirstName() != null && !updatedUser.getFirstName().isEmpty()) {
@@ -84,6 +133,10 @@ public class UserServiceImpl implements UserService {
 
                     // Handle isActive separately to avoid null
                     if (updatedUser.getIsActive() != null) {
+                        if (!updatedUser.getIsActive() && !Boolean.FALSE.equals(user.getIsActive())) {
+                            // Tokens carry the email they were issued to
+                            tokenRevocationService.revokeAllTokens(originalEmail);
+                        }
                         user.setIsActive(updatedUser.getIsActive());
                     }
 
@@ -0,0 +1,53 @@
+package com.hospital.pharmacy.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers work that must only see committed data, such as updating an
+ * in-memory index or notifying subscribers, until the surrounding
+ * transaction commits.
+ *
+ * The work is dropped if the transaction rolls back, and runs at once when
+ * there is no transaction. It runs on the committing thread with the
+ * transaction's resources still bound, so anything it writes to the
+ * database needs a new transaction (PROPAGATION_REQUIRES_NEW).
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Run an action once the current transaction commits, or now outside of one
+     * @param action Work to run
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Run an action now and, within a transaction, again once it commits, so whatever
+     * happened in between is covered too
+     * @param action Work to run, safe to repeat
+     */
+    public static void runNowAndAgain(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            run(action);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.hospital.pharmacy.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns clinical free text into index terms: lower case alphanumeric
+ * tokens, stop words dropped, a light suffix-stripping stemmer, and
+ * synonym groups (including multi-word phrases and abbreviations) folded
+ * into one canonical term. Documents and queries go through the same
+ * analysis, so "high blood pressure" finds records that say "HTN".
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+@Component
+public class ClinicalTextAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClinicalTextAnalyzer.class);
+
+    // Bump when the tokenizer or stemmer changes so persisted indexes are rebuilt
+    private static final int ANALYZER_VERSION = 1;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it",
+            "of", "on", "or", "per", "the", "to", "was", "were", "with", "patient", "pt");
+
+    // Synonym phrases keyed by their first term, longest first
+    private final Map<String, List<Phrase>> phrases = new HashMap<>();
+    private final String fingerprint;
+
+    public ClinicalTextAnalyzer(
+            @Value("${app.search.clinical.synonyms:classpath:search/clinical-synonyms.txt}") Resource synonyms) {
+        String content = "";
+        try {
+            content = synonyms.getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Clinical synonyms not loaded from {}: {}", synonyms, e.getMessage());
+        }
+        int groups = 0;
+        for (String line : content.split("\\R")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String canonical = null;
+            for (String entry : line.split(",")) {
+                List<String> terms = stemAll(entry);
+                if (terms.isEmpty()) {
+                    continue;
+                }
+                if (canonical == null) {
+                    canonical = String.join("_", terms);
+                }
+                phrases.computeIfAbsent(terms.get(0), k -> new ArrayList<>())
+                        .add(new Phrase(terms.toArray(new String[0]), canonical));
+            }
+            groups++;
+        }
+        phrases.values().forEach(list -> list.sort(Comparator.comparingInt((Phrase p) -> p.terms.length).reversed()));
+        fingerprint = ANALYZER_VERSION + ":" + Integer.toHexString(content.hashCode());
+        logger.info("Clinical text analyzer loaded {} synonym groups", groups);
+    }
+
+    /**
+     * Analyze text into index terms, in order, with repeats
+     * @param text Free text, may be null
+     * @return Terms after stemming and synonym folding
+     */
+    public List<String> analyze(String text) {
+        List<String> stems = stemAll(text);
+        List<String> terms = new ArrayList<>(stems.size());
+        int i = 0;
+        while (i < stems.size()) {
+            Phrase match = null;
+            for (Phrase phrase : phrases.getOrDefault(stems.get(i), List.of())) {
+                if (phrase.matches(stems, i)) {
+                    match = phrase;
+                    break;
+                }
+            }
+            if (match != null) {
+                terms.add(match.canonical);
+                i += match.terms.length;
+            } else {
+                terms.add(stems.get(i));
+                i++;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Identifies the analysis rules and synonym list, so an index built with other rules is not reused
+     * @return Opaque fingerprint
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    private List<String> stemAll(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        List<String> stems = new ArrayList<>();
+        for (String token : text.toLowerCase().split("[^a-z0-9]+")) {
+            if (token.isEmpty() || STOP_WORDS.contains(token)) {
+                continue;
+            }
+            if (token.length() == 1 && !Character.isDigit(token.charAt(0))) {
+                continue;
+            }
+            stems.add(stem(token));
+        }
+        return stems;
+    }
+
+    // Light English suffix stripping; only has to be consistent between documents and queries
+    static String stem(String token) {
+        if (token.length() <= 3 || Character.isDigit(token.charAt(token.length() - 1))) {
+            return token;
+        }
+        String stem = singular(token);
+        if (stem.endsWith("ing") && stem.length() > 5 && hasVowel(stem, stem.length() - 3)) {
+            return undouble(stem.substring(0, stem.length() - 3));
+        }
+        if (stem.endsWith("ed") && stem.length() > 4 && hasVowel(stem, stem.length() - 2)) {
+            return undouble(stem.substring(0, stem.length() - 2));
+        }
+        if (stem.endsWith("ly") && stem.length() > 5) {
+            return stem.substring(0, stem.length() - 2);
+        }
+        return stem;
+    }
+
+    private static String singular(String token) {
+        if (token.endsWith("ies") && token.length() > 4 && !endsWithAny(token, "aies", "eies")) {
+            return token.substring(0, token.length() - 3) + "y";
+        }
+        if (token.endsWith("sses")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.endsWith("s") && !endsWithAny(token, "ss", "us", "is")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    private static boolean hasVowel(String token, int end) {
+        for (int i = 0; i < end; i++) {
+            if ("aeiouy".indexOf(token.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String undouble(String stem) {
+        int n = stem.length();
+        if (n > 3 && stem.charAt(n - 1) == stem.charAt(n - 2) && "lsz".indexOf(stem.charAt(n - 1)) < 0) {
+            return stem.substring(0, n - 1);
+        }
+        return stem;
+    }
+
+    private static boolean endsWithAny(String token, String... suffixes) {
+        return Arrays.stream(suffixes).anyMatch(token::endsWith);
+    }
+
+    private static class Phrase {
+        private final String[] terms;
+        private final String canonical;
+
+        private Phrase(String[] terms, String canonical) {
+            this.terms = terms;
+            this.canonical = canonical;
+        }
+
+        private boolean matches(List<String> stems, int start) {
+            if (start + terms.length > stems.size()) {
+                return false;
+            }
+            for (int i = 0; i < terms.length; i++) {
+                if (!terms[i].equals(stems.get(start + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -16,12 +16,16 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
+    // iat is in whole seconds; revocation watermarks need the millisecond
+    public static final String ISSUED_AT_MS_CLAIM = "iatMs";
+
     @Value("${jwt.secret:pharmacy-management-system-jwt-secret-key}")
     private String secret;
 
@@ -38,18 +42,20 @@ public class JwtUtil {
 
     private String createToken(Map<String, Object> claims, String subject) {
         SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        long now = System.currentTimeMillis();
+        claims.put(ISSUED_AT_MS_CLAIM, now);
 
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .setId(UUID.randomUUID().toString()) // jti, so the token can be revoked on its own
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean validateToken(String token, User user) {
-        logger.info("Validating token: " + token);
         final String username = extractUsername(token);
         return (username.equals(user.getEmail()) && !isTokenExpired(token));
     }
@@ -68,6 +74,20 @@ public class JwtUtil {
         return claims.get("role", String.class);
     }
 
+    public String extractTokenId(String token) {
+        return extractClaim(token, Claims::getId);
+    }
+
+    public Date extractIssuedAt(String token) {
+        return extractClaim(token, JwtUtil::issuedAt);
+    }
+
+    // To the millisecond; tokens issued before the claim was added only have iat's second
+    public static Date issuedAt(Claims claims) {
+        Long issuedAtMs = claims.get(ISSUED_AT_MS_CLAIM, Long.class);
+        return issuedAtMs != null ? new Date(issuedAtMs) : claims.getIssuedAt();
+    }
+
     public Date extractExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
@@ -77,7 +97,7 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
+    public Claims extractAllClaims(String token) {
         SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         return Jwts.parserBuilder()
                 .setSigningKey(key)
@@ -0,0 +1,57 @@
+package com.hospital.pharmacy.util;
+
+/**
+ * Per-thread counters for the SQL statements executed while serving a request.
+ *
+ * Hibernate reports each JDBC execution through QueryCountingSessionListener;
+ * RequestMetricsFilter resets the counters when a request starts and reads
+ * them once the response is complete. Statements run outside of a request
+ * (startup, scheduled jobs) are counted too but never read.
+ *
+ * @author Leandre
+ * @version 1.0.0
+ * @since 2024
+ */
+public final class RequestQueryStats {
+
+    private static final ThreadLocal<RequestQueryStats> current = ThreadLocal.withInitial(RequestQueryStats::new);
+
+    private int statementCount;
+    private long statementNanos;
+
+    private RequestQueryStats() {
+    }
+
+    /**
+     * Reset the counters of the current thread at the start of a request
+     */
+    public static void reset() {
+        RequestQueryStats stats = current.get();
+        stats.statementCount = 0;
+        stats.statementNanos = 0;
+    }
+
+    /**
+     * Record one executed statement (or batch) on the current thread
+     * @param nanos Time spent executing it
+     */
+    public static void recordStatement(long nanos) {
+        RequestQueryStats stats = current.get();
+        stats.statementCount++;
+        stats.statementNanos += nanos;
+    }
+
+    /**
+     * @return Statements executed on the current thread since the last reset
+     */
+    public static int statementCount() {
+        return current.get().statementCount;
+    }
+
+    /**
+     * @return Nanoseconds spent executing statements since the last reset
+     */
+    public static long statementNanos() {
+        return current.get().statementNanos;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hospital.pharmacy.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExecutionThreadsTest {
+
+    @Autowired
+    private ExecutionThreads executionThreads;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void testPlatformThreadsByDefault() {
+        assertFalse(executionThreads.isVirtual());
+        assertNull(executionThreads.newPerTaskExecutor("http-"));
+        Thread thread = executionThreads.threadFactory("timeline-query-").newThread(() -> { });
+        assertEquals("timeline-query-1", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    void testVirtualModeFallsBackWithoutJvmSupport() {
+        ExecutionThreads requested = new ExecutionThreads();
+        ReflectionTestUtils.setField(requested, "virtualRequested", true);
+        requested.init();
+
+        assertEquals(ExecutionThreads.isVirtualSupported(), requested.isVirtual());
+        assertEquals(Runtime.version().feature() >= 21, requested.isVirtual());
+        ThreadFactory threadFactory = requested.threadFactory("batch-request-");
+        Thread thread = threadFactory.newThread(() -> { });
+        assertEquals("batch-request-1", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    void testAdmissionQueuesCallersBeyondThePool() throws Exception {
+        DataSource pool = ((BulkheadDataSource) dataSource).getTargetDataSource();
+        BulkheadDataSource admitted = new BulkheadDataSource(pool, null, 2, 300);
+        assertTrue(admitted.isAdmissionEnabled());
+
+        Connection first = admitted.getConnection();
+        Connection second = admitted.getConnection();
+        try {
+            assertEquals(0, admitted.getAdmissionAvailable());
+            assertThrows(SQLTransientConnectionException.class, admitted::getConnection);
+
+            // A waiting caller gets the next connection returned
+            CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return admitted.getConnection();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            while (admitted.getAdmissionWaiting() == 0) {
+                Thread.sleep(5);
+            }
+            first.close();
+            first.close();
+            waiting.get(5, TimeUnit.SECONDS).close();
+        } finally {
+            first.close();
+            second.close();
+        }
+        assertEquals(2, admitted.getAdmissionAvailable());
+    }
+}
@@ -0,0 +1,144 @@
+package com.hospital.pharmacy.config;
+
+import com.hospital.pharmacy.filter.BulkheadFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PriorityBulkheadsTest {
+
+    // app.bulkhead.administrative.max-concurrent and db-connections
+    private static final int ADMINISTRATIVE_REQUESTS = 10;
+    private static final int ADMINISTRATIVE_CONNECTIONS = 4;
+
+    @Autowired
+    private PriorityBulkheads bulkheads;
+
+    @Autowired
+    private BulkheadFilter bulkheadFilter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        RequestPriority.clear();
+    }
+
+    @Test
+    void testRequestsAreClassifiedByPathThenRole() {
+        assertEquals(RequestPriority.CLINICAL, bulkheads.classify("/doctor/beds/4/assign", "DOCTOR"));
+        assertEquals(RequestPriority.CLINICAL, bulkheads.classify("/pharmacist/prescriptions/9/fill", "PHARMACIST"));
+        assertEquals(RequestPriority.ADMINISTRATIVE, bulkheads.classify("/data/appointments", "RECEPTIONIST"));
+        assertEquals(RequestPriority.ADMINISTRATIVE, bulkheads.classify("/appointments", "DOCTOR"));
+        assertEquals(RequestPriority.ADMINISTRATIVE, bulkheads.classify("/files/abc", "ADMIN"));
+        assertEquals(RequestPriority.STANDARD, bulkheads.classify("/files/abc", "RECEPTIONIST"));
+        assertEquals(RequestPriority.STANDARD, bulkheads.classify("/auth/login", null));
+    }
+
+    @Test
+    void testFullClassIsTurnedAwayWithRetryAfter() throws Exception {
+        int entered = 0;
+        try {
+            while (entered < ADMINISTRATIVE_REQUESTS) {
+                assertTrue(bulkheads.enter(RequestPriority.ADMINISTRATIVE));
+                entered++;
+            }
+            assertEquals(1.0, gauge("clinixpro.bulkhead.saturation", RequestPriority.ADMINISTRATIVE));
+            double rejected = rejected(RequestPriority.ADMINISTRATIVE, "request");
+
+            // Waits its turn in the queue, then gives up
+            assertFalse(bulkheads.enter(RequestPriority.ADMINISTRATIVE));
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/admin/users");
+            request.setServletPath("/admin/users");
+            request.setAttribute("role", "ADMIN");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            bulkheadFilter.doFilter(request, response, chain);
+            assertEquals(429, response.getStatus());
+            assertEquals("2", response.getHeader("Retry-After"));
+            assertNull(chain.getRequest());
+            assertEquals(rejected + 2, rejected(RequestPriority.ADMINISTRATIVE, "request"));
+
+            // Clinical work is not held up
+            request = new MockHttpServletRequest("PUT", "/doctor/beds/4/assign");
+            request.setServletPath("/doctor/beds/4/assign");
+            request.setAttribute("role", "DOCTOR");
+            response = new MockHttpServletResponse();
+            chain = new MockFilterChain();
+            bulkheadFilter.doFilter(request, response, chain);
+            assertEquals(200, response.getStatus());
+            assertEquals(request, chain.getRequest());
+        } finally {
+            for (int i = 0; i < entered; i++) {
+                bulkheads.exit(RequestPriority.ADMINISTRATIVE);
+            }
+        }
+        assertEquals(0.0, gauge("clinixpro.bulkhead.active", RequestPriority.ADMINISTRATIVE));
+    }
+
+    @Test
+    void testConnectionsCountAgainstTheClassQuota() throws Exception {
+        assertTrue(dataSource instanceof BulkheadDataSource);
+        // Pool metrics still reach the pool behind the wrapper
+        assertTrue(meterRegistry.find("hikaricp.connections.max").gauge() != null);
+        List<Connection> connections = new ArrayList<>();
+        try {
+            RequestPriority.set(RequestPriority.ADMINISTRATIVE);
+            for (int i = 0; i < ADMINISTRATIVE_CONNECTIONS; i++) {
+                connections.add(dataSource.getConnection());
+            }
+            assertEquals(ADMINISTRATIVE_CONNECTIONS, gauge("clinixpro.bulkhead.db.active",
+                    RequestPriority.ADMINISTRATIVE));
+            assertThrows(ConnectionQuotaExceededException.class, () -> dataSource.getConnection());
+
+            // A returned connection frees its share, once
+            connections.get(0).close();
+            connections.get(0).close();
+            connections.set(0, dataSource.getConnection());
+            assertThrows(ConnectionQuotaExceededException.class, () -> dataSource.getConnection());
+
+            // Other classes draw on the rest of the pool
+            RequestPriority.set(RequestPriority.CLINICAL);
+            connections.add(dataSource.getConnection());
+            RequestPriority.clear();
+            connections.add(dataSource.getConnection());
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        assertEquals(0.0, gauge("clinixpro.bulkhead.db.active", RequestPriority.ADMINISTRATIVE));
+    }
+
+    private double gauge(String name, RequestPriority priority) {
+        return meterRegistry.get(name).tag("class", priority.name()).gauge().value();
+    }
+
+    private double rejected(RequestPriority priority, String resource) {
+        return meterRegistry.get("clinixpro.bulkhead.rejected").tag("class", priority.name())
+                .tag("resource", resource).functionCounter().count();
+    }
+}
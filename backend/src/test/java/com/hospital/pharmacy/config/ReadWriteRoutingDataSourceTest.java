@@ -0,0 +1,84 @@
+package com.hospital.pharmacy.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=jdbc:h2:mem:routing_replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.driverClassName=org.h2.Driver",
+        "app.datasource.replica.username=sa",
+        "app.datasource.replica.password=",
+        "app.datasource.replica.hikari.maximum-pool-size=4",
+        "app.datasource.replica.sticky-window-ms=60000"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingDataSourceTest {
+
+    private static final String DATABASE_NAME = "SELECT DATABASE()";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaSessionTracker sessionTracker;
+
+    @AfterEach
+    void tearDown() {
+        ReadWriteRoutingDataSource.clearRequestRoute();
+    }
+
+    @Test
+    void testReadOnlyTransactionUsesReplica() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+
+        String database = template.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME, String.class));
+
+        assertEquals("routing_replica", database.toLowerCase());
+    }
+
+    @Test
+    void testReadWriteTransactionUsesPrimary() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        String database = template.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME, String.class));
+
+        assertEquals("routing_primary", database.toLowerCase());
+    }
+
+    @Test
+    void testRequestRouteOverridesTransaction() {
+        ReadWriteRoutingDataSource.setRequestRoute(ReadWriteRoutingDataSource.Route.PRIMARY);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+
+        String database = template.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME, String.class));
+
+        assertEquals("routing_primary", database.toLowerCase());
+    }
+
+    @Test
+    void testSessionPinnedToPrimaryAfterWrite() {
+        String sessionKey = "Bearer routing-test-token";
+        assertFalse(sessionTracker.isPinnedToPrimary(sessionKey));
+
+        sessionTracker.recordWrite(sessionKey);
+
+        assertTrue(sessionTracker.isPinnedToPrimary(sessionKey));
+    }
+}
@@ -10,9 +10,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -21,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -31,6 +34,11 @@ import com.hospital.pharmacy.repository.MedicineRepository;
 import com.hospital.pharmacy.repository.CompanyRepository;
 import com.hospital.pharmacy.repository.PatientRepository;
 import com.hospital.pharmacy.repository.PasswordResetTokenRepository;
+import com.hospital.pharmacy.repository.EmailOutboxRepository;
+import com.hospital.pharmacy.repository.TokenRevocationRepository;
+import com.hospital.pharmacy.model.EmailOutbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 @AutoConfigureWebMvc
@@ -70,6 +78,12 @@ class AuthControllerTest {
     @Autowired
     private PasswordResetTokenRepository passwordResetTokenRepository;
 
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
     private MockMvc mockMvc;
     private ObjectMapper objectMapper;
 
@@ -87,6 +101,8 @@ class AuthControllerTest {
         companyRepository.deleteAll();
         patientRepository.deleteAll();
         passwordResetTokenRepository.deleteAll();
+        emailOutboxRepository.deleteAll();
+        tokenRevocationRepository.deleteAll();
         // Clear users last
         userRepository.deleteAll();
     }
@@ -102,9 +118,13 @@ class AuthControllerTest {
         credentials.put("email", "test@example.com");
         credentials.put("password", "password123");
 
-        mockMvc.perform(post("/auth/login")
+        // Checked on the password hashing pool, so the response comes from an async dispatch
+        MvcResult login = mockMvc.perform(post("/auth/login")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(login))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").exists())
                 .andExpect(jsonPath("$.user.email").value("test@example.com"))
@@ -117,13 +137,54 @@ class AuthControllerTest {
         credentials.put("email", "nonexistent@example.com");
         credentials.put("password", "wrongpassword");
 
-        mockMvc.perform(post("/auth/login")
+        MvcResult login = mockMvc.perform(post("/auth/login")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(login))
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.message").value("Invalid email or password"));
     }
 
+    @Test
+    void testFailedLoginsElsewhereDoNotLockTheAccountOut() throws Exception {
+        User user = createTestUser("lockout@example.com", "password123", "ADMIN");
+        userRepository.save(user);
+
+        // app.ratelimit.login-account.capacity attempts, then refused from that address
+        for (int i = 0; i < 10; i++) {
+            assertEquals(401, login("lockout@example.com", "wrongpassword", "10.20.30.40").getStatus());
+        }
+        assertEquals(429, login("lockout@example.com", "wrongpassword", "10.20.30.40").getStatus());
+
+        assertEquals(200, login("lockout@example.com", "password123", "10.20.30.41").getStatus());
+    }
+
+    @Test
+    void testRegisterQueuesOneWelcomeEmail() throws Exception {
+        Map<String, String> registration = new HashMap<>();
+        registration.put("firstName", "New");
+        registration.put("lastName", "Doctor");
+        registration.put("email", "new.doctor@example.com");
+        registration.put("password", "password123");
+        registration.put("role", "DOCTOR");
+
+        mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registration)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registration)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Email already in use"));
+
+        User registered = userRepository.findByEmail("new.doctor@example.com").orElseThrow();
+        assertEquals("DOC-", registered.getUserId().substring(0, 4));
+        assertEquals(1, emailOutboxRepository.countByStatus(EmailOutbox.PENDING));
+    }
+
     @Test
     void testVerifyTokenSuccess() throws Exception {
         // Create test user
@@ -147,6 +208,25 @@ class AuthControllerTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    @Test
+    void testLogoutRevokesOnlyThatToken() throws Exception {
+        User user = createTestUser("test@example.com", "password123", "ADMIN");
+        userRepository.save(user);
+        String token = jwtUtil.generateToken(user);
+        String otherSession = jwtUtil.generateToken(user);
+
+        mockMvc.perform(post("/auth/logout")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/auth/verify")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/auth/verify")
+                .header("Authorization", "Bearer " + otherSession))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void testForgotPassword() throws Exception {
         // Create test user
@@ -159,8 +239,23 @@ class AuthControllerTest {
         mockMvc.perform(post("/auth/forgot-password")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
-                .andExpect(status().isBadRequest()) // Email service will fail in test environment
+                .andExpect(status().isOk()) // Mail is queued in the outbox, not sent inline
                 .andExpect(jsonPath("$.message").exists());
+
+        assertEquals(1, emailOutboxRepository.countByStatus(EmailOutbox.PENDING));
+    }
+
+    private MockHttpServletResponse login(String email, String password, String remoteAddr) throws Exception {
+        MvcResult login = mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", email, "password", password)))
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddr);
+                    return request;
+                }))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(login)).andReturn().getResponse();
     }
 
     private User createTestUser(String email, String password, String role) {
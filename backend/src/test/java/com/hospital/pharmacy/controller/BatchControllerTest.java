@@ -0,0 +1,153 @@
+package com.hospital.pharmacy.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.filter.RequestMetricsFilter;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A real server: sub-requests go through the container's DispatcherServlet, which MockMvc does not use
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:clinixpro-batch;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.search.clinical.index-dir=",
+        "app.ratelimit.api-user.capacity=6",
+        "app.ratelimit.api-user.refill-per-minute=1"})
+@ActiveProfiles("test")
+class BatchControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private User receptionist;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        receptionist = new User();
+        receptionist.setUserId("REC-BT1");
+        receptionist.setFirstName("Batch");
+        receptionist.setLastName("Receptionist");
+        receptionist.setEmail("batch.receptionist@clinixpro.test");
+        receptionist.setPassword("password");
+        receptionist.setRole("RECEPTIONIST");
+        receptionist = userRepository.save(receptionist);
+        token = jwtUtil.generateToken(receptionist);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.delete(receptionist);
+    }
+
+    @Test
+    void testResultsAreStreamedAsNdjson() {
+        ResponseEntity<String> response = batch(token, List.of(
+                Map.of("id", "doctors", "path", "/receptionist/doctors")));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_NDJSON));
+        // Streamed as written: the metrics filter does not buffer it even with the header on
+        assertFalse(response.getHeaders().containsKey(RequestMetricsFilter.QUERY_COUNT_HEADER));
+    }
+
+    @Test
+    void testSubRequestsRunAsTheCallerWithTheirOwnStatus() throws Exception {
+        ResponseEntity<String> response = batch(token, List.of(
+                Map.of("id", "doctors", "path", "/receptionist/doctors"),
+                Map.of("id", "patients", "method", "GET", "path", "/api/receptionist/patients?search=Nobody%20Here"),
+                Map.of("id", "users", "path", "/admin/users"),
+                Map.of("id", "missing", "path", "/receptionist/no-such-page")));
+
+        Map<String, JsonNode> results = results(response);
+        assertEquals(4, results.size(), response.getBody());
+        assertEquals(200, results.get("doctors").get("status").asInt());
+        assertTrue(results.get("doctors").get("body").isArray());
+        // Query parameters reach the handler
+        assertEquals(200, results.get("patients").get("status").asInt());
+        assertEquals(0, results.get("patients").get("body").size());
+        // Authorized per sub-request, as the batch caller
+        assertEquals(403, results.get("users").get("status").asInt());
+        assertEquals(404, results.get("missing").get("status").asInt());
+    }
+
+    @Test
+    void testEverySubRequestIsRateLimited() throws Exception {
+        List<Map<String, String>> requests = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            requests.add(Map.of("id", "doctors-" + i, "path", "/receptionist/doctors"));
+        }
+
+        Map<String, JsonNode> results = results(batch(token, requests));
+
+        // The batch takes one token of six and its sub-requests the other five
+        assertEquals(6, results.size());
+        assertEquals(1, results.values().stream().filter(result -> result.get("status").asInt() == 429).count());
+    }
+
+    @Test
+    void testWritesNestedBatchesAndDuplicateIdsAreRejected() {
+        assertEquals(HttpStatus.BAD_REQUEST, batch(token, List.of(
+                Map.of("id", "create", "method", "POST", "path", "/receptionist/patients"))).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, batch(token, List.of(
+                Map.of("id", "nested", "path", "/batch"))).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, batch(token, List.of(
+                Map.of("id", "same", "path", "/receptionist/doctors"),
+                Map.of("id", "same", "path", "/receptionist/patients"))).getStatusCode());
+    }
+
+    @Test
+    void testBatchRequiresAToken() {
+        assertEquals(HttpStatus.FORBIDDEN, batch(null, List.of(
+                Map.of("id", "doctors", "path", "/receptionist/doctors"))).getStatusCode());
+    }
+
+    private Map<String, JsonNode> results(ResponseEntity<String> response) throws Exception {
+        Map<String, JsonNode> results = new HashMap<>();
+        for (String line : response.getBody().split("\n")) {
+            JsonNode result = objectMapper.readTree(line);
+            results.put(result.get("id").asText(), result);
+        }
+        return results;
+    }
+
+    private ResponseEntity<String> batch(String token, List<Map<String, String>> requests) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (token != null) {
+            headers.setBearerAuth(token);
+        }
+        return restTemplate.exchange("/batch", HttpMethod.POST,
+                new HttpEntity<>(Map.of("requests", requests), headers), String.class);
+    }
+}
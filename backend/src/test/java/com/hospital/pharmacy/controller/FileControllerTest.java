@@ -0,0 +1,208 @@
+package com.hospital.pharmacy.controller;
+
+import com.hospital.pharmacy.filter.RequestMetricsFilter;
+import com.hospital.pharmacy.model.StoredFile;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.StoredFileRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.FileStorageService;
+import com.hospital.pharmacy.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// A real server as well: only Tomcat shows what reaches the wire, with sendfile and security in place
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:clinixpro-files;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.search.clinical.index-dir="})
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+class FileControllerTest {
+
+    private static final String EMAIL = "files.doctor@clinixpro.test";
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.findByEmail(EMAIL).ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void testUploadDeduplicatesAndServesRangesAndThumbnails() throws Exception {
+        byte[] png = samplePng(600, 400);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png));
+        MockMultipartFile upload = new MockMultipartFile("file", "scan.png", "application/octet-stream", png);
+
+        mockMvc.perform(multipart("/files").file(upload))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.hash").value(hash))
+                .andExpect(jsonPath("$.contentType").value("image/png"))
+                .andExpect(jsonPath("$.size").value(png.length));
+        // The same bytes under another name are the same stored file
+        mockMvc.perform(multipart("/files").file(new MockMultipartFile("file", "copy.png", "image/png", png)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.hash").value(hash));
+        assertEquals(1, storedFileRepository.findAll().stream().filter(f -> f.getHash().equals(hash)).count());
+
+        String etag = "\"" + hash + "\"";
+        MvcResult full = mockMvc.perform(get("/files/" + hash))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable"))
+                .andExpect(content().contentType("image/png"))
+                .andReturn();
+        assertArrayEquals(png, full.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/files/" + hash).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        MvcResult range = mockMvc.perform(get("/files/" + hash).header(HttpHeaders.RANGE, "bytes=8-23"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 8-23/" + png.length))
+                .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(png, 8, 24), range.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/files/" + hash).header(HttpHeaders.RANGE, "bytes=" + png.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+
+        // Thumbnails are made in the background
+        MvcResult thumbnail = null;
+        for (int attempt = 0; attempt < 50 && thumbnail == null; attempt++) {
+            MvcResult result = mockMvc.perform(get("/files/" + hash + "/thumbnails/128")).andReturn();
+            if (result.getResponse().getStatus() == 200) {
+                thumbnail = result;
+            } else {
+                Thread.sleep(100);
+            }
+        }
+        BufferedImage scaled = ImageIO.read(new ByteArrayInputStream(thumbnail.getResponse().getContentAsByteArray()));
+        assertEquals(128, scaled.getWidth());
+        assertEquals(85, scaled.getHeight());
+
+        mockMvc.perform(multipart("/files").file(new MockMultipartFile("file", "notes.txt", "text/plain",
+                        "plain text".getBytes())))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/files/not-a-hash")).andExpect(status().isNotFound());
+
+        StoredFile stored = storedFileRepository.findByHash(hash).orElseThrow();
+        storedFileRepository.delete(stored);
+    }
+
+    @Test
+    void testRangedDownloadOverARealServer() throws Exception {
+        byte[] png = samplePng(1200, 900);
+        StoredFile stored = fileStorageService.store(new ByteArrayInputStream(png), FileStorageService.DOCUMENT_TYPES,
+                png.length);
+        try {
+            String url = "/files/" + stored.getHash();
+            // Patient documents are not served to anonymous callers
+            assertEquals(HttpStatus.FORBIDDEN,
+                    restTemplate.exchange(url, HttpMethod.GET, null, byte[].class).getStatusCode());
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setBearerAuth(jwtUtil.generateToken(createTestUser()));
+            ResponseEntity<byte[]> full = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers),
+                    byte[].class);
+            assertEquals(HttpStatus.OK, full.getStatusCode());
+            assertEquals(png.length, full.getHeaders().getContentLength());
+            assertEquals("private, max-age=31536000, immutable", full.getHeaders().getCacheControl());
+            assertArrayEquals(png, full.getBody());
+
+            headers.set(HttpHeaders.RANGE, "bytes=1000-4999");
+            ResponseEntity<byte[]> range = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers),
+                    byte[].class);
+            assertEquals(HttpStatus.PARTIAL_CONTENT, range.getStatusCode());
+            assertEquals(4000, range.getHeaders().getContentLength());
+            assertEquals("bytes 1000-4999/" + png.length, range.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+            assertArrayEquals(Arrays.copyOfRange(png, 1000, 5000), range.getBody());
+            // Sent straight from the file, not through the metrics filter's buffer
+            assertFalse(range.getHeaders().containsKey(RequestMetricsFilter.QUERY_COUNT_HEADER));
+        } finally {
+            storedFileRepository.delete(stored);
+        }
+    }
+
+    private User createTestUser() {
+        User user = new User();
+        user.setUserId("DOC-FILES");
+        user.setFirstName("Files");
+        user.setLastName("Doctor");
+        user.setEmail(EMAIL);
+        user.setPassword("password");
+        user.setRole("DOCTOR");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        user.setActive(true);
+        return userRepository.save(user);
+    }
+
+    private byte[] samplePng(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
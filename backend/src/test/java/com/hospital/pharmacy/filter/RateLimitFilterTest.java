@@ -0,0 +1,125 @@
+package com.hospital.pharmacy.filter;
+
+import com.hospital.pharmacy.model.RateLimitHit;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.RateLimitHitRepository;
+import com.hospital.pharmacy.service.RateLimitService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RateLimitFilterTest {
+
+    // app.ratelimit.login-ip.capacity and login-account.capacity
+    private static final int LOGINS_PER_IP = 60;
+    private static final int LOGINS_PER_ACCOUNT = 10;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private RateLimitHitRepository rateLimitHitRepository;
+
+    @Test
+    void testLoginsFromOneAddressAreShedOnceTheBucketIsEmpty() throws Exception {
+        for (int i = 0; i < LOGINS_PER_IP; i++) {
+            assertEquals(200, login("10.9.8.7").getStatus());
+        }
+        MockHttpServletResponse refused = login("10.9.8.7");
+        assertEquals(429, refused.getStatus());
+        assertTrue(Long.parseLong(refused.getHeader("Retry-After")) >= 1);
+        assertTrue(refused.getContentAsString().contains("Too many requests"));
+
+        // Other addresses, and other endpoints from the same address, are not held up
+        assertEquals(200, login("10.9.8.8").getStatus());
+        MockHttpServletRequest request = request("/doctor/beds", "10.9.8.7");
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request, response, chain);
+        assertEquals(request, chain.getRequest());
+    }
+
+    @Test
+    void testAuthenticatedCallersAreCountedPerUser() throws Exception {
+        User user = new User();
+        user.setId(987654L);
+        int allowed = 0;
+        MockHttpServletResponse response;
+        do {
+            // A new address each time: only the user's bucket empties
+            MockHttpServletRequest request = request("/pharmacist/inventory", "10.7." + (allowed / 250) + "." + (allowed % 250));
+            request.setAttribute("user", user);
+            response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            rateLimitFilter.doFilter(request, response, chain);
+            if (response.getStatus() == 200) {
+                assertEquals(request, chain.getRequest());
+                allowed++;
+            } else {
+                assertNull(chain.getRequest());
+            }
+        } while (response.getStatus() == 200 && allowed < 1000);
+        assertEquals(429, response.getStatus());
+        // app.ratelimit.api-user.capacity, plus what refilled meanwhile
+        assertTrue(allowed >= 300 && allowed < 400, "allowed " + allowed);
+    }
+
+    @Test
+    void testAccountLimitIsSharedBetweenNodes() {
+        String account = "rate-limit-" + System.nanoTime() + "@clinixpro.com";
+        RateLimitService target = AopTestUtils.getTargetObject(rateLimitService);
+        ReflectionTestUtils.setField(target, "shared", true);
+        try {
+            rateLimitService.syncShared();
+            assertEquals(0, rateLimitService.tryAcquire("/auth/login", RateLimitService.KEY_ACCOUNT, account));
+            rateLimitService.syncShared();
+            List<RateLimitHit> mine = rateLimitHitRepository.findAll().stream()
+                    .filter(h -> h.getBucketKey().equals("login-account|" + account)).toList();
+            assertEquals(1, mine.size());
+            assertEquals(1, mine.get(0).getTokens());
+
+            // Another node used up the rest of the account's attempts
+            rateLimitHitRepository.save(new RateLimitHit(null, "other-node", "login-account|" + account,
+                    LOGINS_PER_ACCOUNT - 1, LocalDateTime.now()));
+            rateLimitService.syncShared();
+            assertTrue(rateLimitService.tryAcquire("/auth/login", RateLimitService.KEY_ACCOUNT, account) > 0);
+            assertEquals(0, rateLimitService.tryAcquire("/auth/login", RateLimitService.KEY_ACCOUNT,
+                    "other-" + account));
+        } finally {
+            ReflectionTestUtils.setField(target, "shared", false);
+            rateLimitHitRepository.deleteAll(rateLimitHitRepository.findAll().stream()
+                    .filter(h -> h.getBucketKey().endsWith(account)).toList());
+        }
+    }
+
+    private MockHttpServletResponse login(String remoteAddr) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request("/auth/login", remoteAddr), response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletRequest request(String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
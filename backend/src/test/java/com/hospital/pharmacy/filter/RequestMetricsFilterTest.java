@@ -0,0 +1,112 @@
+package com.hospital.pharmacy.filter;
+
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.util.JwtUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestMetricsFilterTest {
+
+    private static final String EMAIL = "metrics-filter@clinixpro.com";
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private RequestMetricsFilter requestMetricsFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                .addFilters(requestMetricsFilter)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.findByEmail(EMAIL).ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void testQueryCountHeaderAndMetrics() throws Exception {
+        String token = jwtUtil.generateToken(userRepository.save(createTestUser()));
+
+        MvcResult result = mockMvc.perform(get("/auth/verify")
+                .header("Authorization", "Bearer " + token))
+                .andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+
+        String queryCount = result.getResponse().getHeader(RequestMetricsFilter.QUERY_COUNT_HEADER);
+        assertNotNull(queryCount);
+        assertTrue(Integer.parseInt(queryCount) >= 1);
+
+        DistributionSummary statements = meterRegistry.find("clinixpro.http.sql.statements")
+                .tag("uri", "/auth/verify")
+                .summary();
+        assertNotNull(statements);
+        assertTrue(statements.count() >= 1);
+    }
+
+    @Test
+    void testAsyncResponsesAreNotBuffered() throws Exception {
+        MvcResult login = mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"nobody@clinixpro.com\",\"password\":\"secret\"}"))
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(login)).andReturn();
+
+        assertEquals(401, result.getResponse().getStatus());
+        assertNull(result.getResponse().getHeader(RequestMetricsFilter.QUERY_COUNT_HEADER));
+        // Still measured, up to the point it went async
+        assertNotNull(meterRegistry.find("clinixpro.http.sql.statements").tag("uri", "/auth/login").summary());
+    }
+
+    private User createTestUser() {
+        User user = new User();
+        user.setUserId("TEST-METRICS");
+        user.setFirstName("Metrics");
+        user.setLastName("User");
+        user.setEmail(EMAIL);
+        user.setPassword("not-a-hash");
+        user.setRole("ADMIN");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        user.setActive(true);
+        return user;
+    }
+}
@@ -0,0 +1,159 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.AgingSummaryDTO;
+import com.hospital.pharmacy.dto.PatientBalanceDTO;
+import com.hospital.pharmacy.dto.PaymentRequestDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AccountsReceivableServiceTest {
+
+    @Autowired
+    private AccountsReceivableService accountsReceivableService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    private AgingSummaryDTO before;
+    private Patient slow;
+    private Patient late;
+    private final List<Billing> bills = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        accountsReceivableService.reload();
+        before = accountsReceivableService.getAgingSummary();
+
+        slow = patientRepository.save(patient("PAT-AR1", "Slow"));
+        late = patientRepository.save(patient("PAT-AR2", "Late, Very"));
+        LocalDate today = LocalDate.now();
+        bills.add(bill("BILL-AR1", slow, today.minusDays(45), "100.00"));
+        bills.add(bill("BILL-AR2", slow, today.plusDays(10), "50.00"));
+        bills.add(bill("BILL-AR3", late, today.minusDays(100), "200.00"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Billing bill : bills) {
+            billingRepository.deleteById(bill.getId());
+            accountsReceivableService.remove(bill.getId());
+        }
+        bills.clear();
+        patientRepository.delete(slow);
+        patientRepository.delete(late);
+    }
+
+    @Test
+    void testAgingSummaryBucketsByDaysOverdue() {
+        AgingSummaryDTO after = accountsReceivableService.getAgingSummary();
+
+        assertEquals(new BigDecimal("350.00"), after.getTotalOutstanding().subtract(before.getTotalOutstanding()));
+        assertEquals(new BigDecimal("100.00"), after.getBuckets().get("31-60").subtract(before.getBuckets().get("31-60")));
+        assertEquals(new BigDecimal("200.00"), after.getBuckets().get("90+").subtract(before.getBuckets().get("90+")));
+    }
+
+    @Test
+    void testPatientBalanceSumsOpenBills() {
+        PatientBalanceDTO slowBalance = accountsReceivableService.getPatientBalance(slow.getId()).orElseThrow();
+
+        assertEquals(new BigDecimal("150.00"), slowBalance.getOutstanding());
+        assertEquals(new BigDecimal("100.00"), slowBalance.getOverdue());
+        assertEquals(2, slowBalance.getOpenBills());
+        assertEquals(45, slowBalance.getDaysOverdue());
+        assertEquals("PAT-AR1", slowBalance.getPatientId());
+    }
+
+    @Test
+    void testTopOverdueRanksTheOldestFirst() {
+        List<Long> top = accountsReceivableService.getTopOverdue(500).stream().map(PatientBalanceDTO::getId).toList();
+
+        assertTrue(top.indexOf(late.getId()) >= 0 && top.indexOf(late.getId()) < top.indexOf(slow.getId()));
+    }
+
+    @Test
+    void testDunningExportListsLongOverdueAccounts() throws Exception {
+        StringWriter csv = new StringWriter();
+        accountsReceivableService.writeDunningExport(61, BigDecimal.ZERO, csv);
+
+        assertTrue(csv.toString().contains("PAT-AR2,\"Late, Very\",Patient,"));
+        assertFalse(csv.toString().contains("PAT-AR1"));
+    }
+
+    @Test
+    void testPaidOffPatientLeavesTheOverdueRanking() {
+        paymentService.recordPayment(bills.get(2).getId(),
+                new PaymentRequestDTO(new BigDecimal("200.00"), "CASH", null, null, "KEY-AR1"), null);
+
+        assertTrue(accountsReceivableService.getPatientBalance(late.getId()).isEmpty());
+        assertFalse(accountsReceivableService.getTopOverdue(500).stream()
+                .anyMatch(balance -> balance.getId().equals(late.getId())));
+    }
+
+    @Test
+    void testReloadAgreesWithIncrementalUpdates() {
+        paymentService.recordPayment(bills.get(0).getId(),
+                new PaymentRequestDTO(new BigDecimal("40.00"), "CASH", null, null, "KEY-AR2"), null);
+        BigDecimal incremental = accountsReceivableService.getAgingSummary().getTotalOutstanding();
+
+        accountsReceivableService.reload();
+
+        assertEquals(incremental, accountsReceivableService.getAgingSummary().getTotalOutstanding());
+    }
+
+    @Test
+    void testRemovedBillsLeaveTheSummary() {
+        for (Billing bill : bills) {
+            accountsReceivableService.remove(bill.getId());
+        }
+
+        assertEquals(before.getTotalOutstanding(), accountsReceivableService.getAgingSummary().getTotalOutstanding());
+    }
+
+    private Patient patient(String patientId, String firstName) {
+        Patient patient = new Patient();
+        patient.setPatientId(patientId);
+        patient.setFirstName(firstName);
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        return patient;
+    }
+
+    private Billing bill(String billNumber, Patient patient, LocalDate dueDate, String amount) {
+        Billing billing = new Billing();
+        billing.setBillNumber(billNumber);
+        billing.setPatient(patient);
+        billing.setBillDate(dueDate.minusDays(30));
+        billing.setDueDate(dueDate);
+        billing.setTotalAmount(new BigDecimal(amount));
+        billing.setStatus("PENDING");
+        billing = billingRepository.save(billing);
+        accountsReceivableService.publish(billing);
+        return billing;
+    }
+}
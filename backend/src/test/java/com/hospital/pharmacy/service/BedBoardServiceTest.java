@@ -0,0 +1,169 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Room;
+import com.hospital.pharmacy.repository.BedRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.RoomRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BedBoardServiceTest {
+
+    @Autowired
+    private BedBoardService bedBoardService;
+
+    @Autowired
+    private BedService bedService;
+
+    @Autowired
+    private RoomDirectoryService roomDirectoryService;
+
+    @Autowired
+    private BedRepository bedRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Test
+    void testOnlyOneAdmissionWinsTheLastBed() throws Exception {
+        Room room = new Room();
+        room.setRoomId("RM-ICU1");
+        room.setNumber("ICU1");
+        room.setName("ICU One");
+        room.setWard("Board ICU");
+        room.setType("ICU");
+        room.setCapacity(1);
+        room.setStatus("Available");
+        room.setFeatures(new ArrayList<>());
+        roomDirectoryService.create(room);
+
+        Bed bed = new Bed();
+        bed.setBedId("BED-ICU1-1");
+        bed.setWardName("Board ICU");
+        bed.setRoomNumber("ICU1");
+        bed.setBedNumber("1");
+        bed.setStatus("Available");
+        bedService.save(bed);
+
+        assertEquals("BED-ICU1-1", bedBoardService.findFirstFree("Board ICU", "ICU").orElseThrow().getBedId());
+        assertTrue(bedBoardService.findFirstFree("Board ICU", "General").isEmpty());
+
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Patient patient = new Patient();
+            patient.setPatientId("PAT-ICU" + i);
+            patient.setFirstName("Race");
+            patient.setLastName("Patient");
+            patient.setGender("Male");
+            patients.add(patientRepository.save(patient));
+        }
+
+        // Admissions start together and all target the same bed
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(patients.size());
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Patient patient : patients) {
+            Callable<Boolean> admit = () -> {
+                start.await();
+                try {
+                    bedService.assignPatient("BED-ICU1-1", patient.getId(), null, "Race");
+                    return true;
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            };
+            results.add(executor.submit(admit));
+        }
+        start.countDown();
+        int admitted = 0;
+        for (Future<Boolean> result : results) {
+            admitted += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(1, admitted);
+        assertEquals(1, roomRepository.findByRoomId("RM-ICU1").orElseThrow().getOccupancy());
+        assertTrue(bedBoardService.findFirstFree("Board ICU", "ICU").isEmpty());
+        assertEquals(1, bedBoardService.getCounts().get("Board ICU").get("Occupied"));
+        assertEquals("Occupied", bedBoardService.getBeds("Board ICU", null).get(0).getStatus());
+
+        bedService.dischargePatient("BED-ICU1-1");
+        assertEquals("BED-ICU1-1", bedBoardService.findFirstFree("Board ICU", null).orElseThrow().getBedId());
+
+        bedService.delete(bedRepository.findByBedId("BED-ICU1-1").getId());
+        assertTrue(bedBoardService.getBeds("Board ICU", null).isEmpty());
+        patientRepository.deleteAll(patients);
+        roomDirectoryService.delete(roomRepository.findByRoomId("RM-ICU1").orElseThrow());
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotHoldUpBedChanges() throws Exception {
+        Bed bed = new Bed();
+        bed.setBedId("BED-SSE-1");
+        bed.setWardName("Board Stream Ward");
+        bed.setRoomNumber("SSE1");
+        bed.setBedNumber("1");
+        bed.setStatus("Available");
+
+        SseEmitter emitter = bedBoardService.subscribe();
+        try {
+            // A send holds the emitter's lock, as one stuck writing to a slow client does
+            synchronized (emitter) {
+                CompletableFuture.runAsync(() -> bedBoardService.publish(bed)).get(5, TimeUnit.SECONDS);
+            }
+            assertEquals("BED-SSE-1", bedBoardService.findFirstFree("Board Stream Ward", null).orElseThrow()
+                    .getBedId());
+        } finally {
+            emitter.complete();
+            bedBoardService.remove("BED-SSE-1");
+        }
+        assertTrue(bedBoardService.getBeds("Board Stream Ward", null).isEmpty());
+    }
+
+    @Test
+    void testFreeBedIsFoundBeforeTheBoardHasLoaded() {
+        Bed bed = new Bed();
+        bed.setBedId("BED-UNLOADED-1");
+        bed.setWardName("Board Unloaded Ward");
+        bed.setRoomNumber("UNL1");
+        bed.setBedNumber("1");
+        bed.setStatus("Available");
+        bed = bedRepository.save(bed);
+
+        BedBoardService target = AopTestUtils.getTargetObject(bedBoardService);
+        ReflectionTestUtils.setField(target, "loaded", false);
+        try {
+            assertEquals("BED-UNLOADED-1", bedBoardService.findFirstFree("Board Unloaded Ward", null).orElseThrow()
+                    .getBedId());
+            assertTrue(bedBoardService.findFirstFree("Board Unloaded Ward", "ICU").isEmpty());
+        } finally {
+            ReflectionTestUtils.setField(target, "loaded", true);
+            bedRepository.delete(bed);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.BillingRequestDTO;
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BillingServiceTest {
+
+    @Autowired
+    private BillingService billingService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User receptionist;
+    private Patient patient;
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        receptionist = new User();
+        receptionist.setUserId("REC-BL1");
+        receptionist.setFirstName("Bill");
+        receptionist.setLastName("Desk");
+        receptionist.setEmail("billing.desk@clinixpro.test");
+        receptionist.setPassword("password");
+        receptionist.setRole("RECEPTIONIST");
+        receptionist = userRepository.save(receptionist);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-BL1");
+        patient.setFirstName("Billing");
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        patient = patientRepository.save(patient);
+
+        appointment = new Appointment();
+        appointment.setAppointmentId("APT-BL1");
+        appointment.setPatient(patient);
+        appointment.setDoctor(receptionist);
+        appointment.setAppointmentDateTime(LocalDateTime.now().minusHours(2));
+        appointment.setStatus("COMPLETED");
+        appointment.setType("REGULAR");
+        appointment = appointmentRepository.save(appointment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        setTaxRatePercent(BigDecimal.ZERO);
+        billingRepository.deleteAll(billingRepository.findByPatientId(patient.getId()));
+        appointmentRepository.delete(appointment);
+        patientRepository.delete(patient);
+        userRepository.delete(receptionist);
+    }
+
+    @Test
+    void testTotalsAreComputedServerSide() {
+        setTaxRatePercent(new BigDecimal("7.5"));
+        BillingRequestDTO request = request(
+                new BillingRequestDTO.Item("MEDICINE", "Amoxicillin", 2, new BigDecimal("12.50"), null,
+                        new BigDecimal("5.00"), null),
+                // Legacy line with only an amount
+                new BillingRequestDTO.Item(null, "Consultation", null, null, new BigDecimal("100"), null, null));
+        request.setDiscount(new BigDecimal("10"));
+
+        Billing billing = billingService.createBilling(request, receptionist);
+
+        // (2 x 12.50 - 5 + 100 - 10) = 110.00, plus 7.5% tax of 8.25
+        assertEquals(new BigDecimal("8.25"), billing.getTax());
+        assertEquals(new BigDecimal("118.25"), billing.getTotalAmount());
+        assertEquals("PENDING", billing.getStatus());
+        Billing stored = billingRepository.findById(billing.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("118.25").compareTo(stored.getTotalAmount()));
+        assertEquals(List.of("CONSULTATION:100.00", "MEDICINE:20.00"), jdbcTemplate.queryForList(
+                "SELECT itemType || ':' || CAST(totalPrice AS DECIMAL(12, 2)) FROM billing_items "
+                        + "WHERE bill_id = ? ORDER BY itemType", String.class, billing.getId()));
+    }
+
+    @Test
+    void testCompletedAppointmentIsMarkedBilled() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setAppointmentId(appointment.getId());
+
+        billingService.createBilling(request, receptionist);
+
+        assertEquals("BILLED", appointmentRepository.findById(appointment.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testAppointmentIsBilledOnce() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setAppointmentId(appointment.getId());
+        billingService.createBilling(request, receptionist);
+
+        assertRejected(request);
+    }
+
+    @Test
+    void testUnknownAppointmentIsRejected() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setAppointmentId(-1L);
+        assertRejected(request);
+    }
+
+    @Test
+    void testAmountsWithMoreThanTwoDecimalsAreRejected() {
+        assertRejected(request(dressing("3.333")));
+    }
+
+    @Test
+    void testDiscountMustBeLessThanTheSubtotal() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setDiscount(new BigDecimal("10"));
+        assertRejected(request);
+    }
+
+    @Test
+    void testNewBillCannotStartPaid() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setStatus("PAID");
+        assertRejected(request);
+    }
+
+    @Test
+    void testAmountsTooLargeForExactArithmeticAreRejected() {
+        assertRejected(request(new BillingRequestDTO.Item(null, "Dressing", 2,
+                new BigDecimal("90000000000000000.00"), null, null, null)));
+    }
+
+    @Test
+    void testUnknownPatientIsRejected() {
+        BillingRequestDTO request = request(dressing("5"));
+        request.setPatientId(-1L);
+        assertRejected(request);
+    }
+
+    // Nothing is written when the bill is rejected
+    private void assertRejected(BillingRequestDTO request) {
+        long bills = billingRepository.count();
+        assertThrows(IllegalArgumentException.class, () -> billingService.createBilling(request, receptionist));
+        assertEquals(bills, billingRepository.count());
+    }
+
+    private BillingRequestDTO request(BillingRequestDTO.Item... items) {
+        BillingRequestDTO request = new BillingRequestDTO();
+        request.setPatientId(patient.getId());
+        request.setPaymentMethod("CASH");
+        request.setItems(List.of(items));
+        return request;
+    }
+
+    private BillingRequestDTO.Item dressing(String price) {
+        return new BillingRequestDTO.Item(null, "Dressing", 1, new BigDecimal(price), null, null, null);
+    }
+
+    private void setTaxRatePercent(BigDecimal taxRatePercent) {
+        BillingService target = AopTestUtils.getTargetObject(billingService);
+        ReflectionTestUtils.setField(target, "taxRatePercent", taxRatePercent);
+    }
+}
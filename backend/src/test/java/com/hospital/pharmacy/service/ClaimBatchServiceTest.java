@@ -0,0 +1,226 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.BillingItem;
+import com.hospital.pharmacy.model.ClaimBatch;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.ClaimBatchRepository;
+import com.hospital.pharmacy.repository.InsuranceClaimRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PayerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ClaimBatchServiceTest {
+
+    @Autowired
+    private ClaimBatchService claimBatchService;
+
+    @Autowired
+    private PayerService payerService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private PayerRepository payerRepository;
+
+    @Autowired
+    private ClaimBatchRepository claimBatchRepository;
+
+    @Autowired
+    private InsuranceClaimRepository insuranceClaimRepository;
+
+    private static final LocalDate FROM = LocalDate.of(2024, 3, 1);
+
+    private final List<Patient> patients = new ArrayList<>();
+    private final List<Billing> bills = new ArrayList<>();
+    private final List<ClaimBatch> batches = new ArrayList<>();
+    private ClaimBatchService target;
+    private Path batchDir;
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(claimBatchService);
+        ReflectionTestUtils.setField(target, "pageSize", 2);
+        batchDir = (Path) ReflectionTestUtils.getField((Object) target, "batchDir");
+
+        Patient second = patient("PAT-CL1", "Zenith Health, Inc.", "POL-200");
+        Patient first = patient("PAT-CL2", "ZENITH HEALTH", "POL-100");
+        Patient other = patient("PAT-CL3", "Other Mutual", "POL-300");
+        bills.add(bill("BILL-CL1", second, FROM.plusDays(2), "40.00", "PAID"));
+        bills.add(bill("BILL-CL2", first, FROM.plusDays(5), "25.50", "PENDING"));
+        bills.add(bill("BILL-CL3", first, FROM.plusDays(1), "10.00", "PENDING"));
+        bills.add(bill("BILL-CL4", second, FROM.plusDays(3), "5.00", "CANCELLED"));
+        bills.add(bill("BILL-CL5", second, FROM.minusDays(1), "7.00", "PENDING"));
+        bills.add(bill("BILL-CL6", other, FROM.plusDays(2), "9.00", "PENDING"));
+        payerService.linkPatients();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReflectionTestUtils.setField(target, "pageSize", 500);
+        for (ClaimBatch batch : batches) {
+            insuranceClaimRepository.deleteAll(insuranceClaimRepository.findByBatchId(batch.getId()));
+            Files.deleteIfExists(batchDir.resolve(batch.getFileName()));
+            claimBatchRepository.deleteById(batch.getId());
+        }
+        batches.clear();
+        billingRepository.deleteAll(bills);
+        bills.clear();
+        patientRepository.deleteAll(patients);
+        patients.clear();
+        payerRepository.findByCode("ZENITHHEALTH").ifPresent(payerRepository::delete);
+        payerRepository.findByCode("OTHERMUTUAL").ifPresent(payerRepository::delete);
+    }
+
+    @Test
+    void testProviderSpellingsResolveToOnePayer() {
+        assertEquals("ZENITHHEALTH", payerService.toCode("Zenith Health, Inc."));
+        assertEquals("ZENITHHEALTH", payerService.toCode(" zenith-health "));
+        assertTrue(payerService.findByCode("ZENITHHEALTH").isPresent());
+        assertEquals(2, patientRepository.findByPayerCode("ZENITHHEALTH").size());
+    }
+
+    @Test
+    void testResumeDiscardsBytesPastTheCommittedLength() throws Exception {
+        // A build that died part way
+        ClaimBatch failed = new ClaimBatch();
+        failed.setBatchNumber("CLB-ZENITHHEALTH-TEST");
+        failed.setPayer(payerService.findByCode("ZENITHHEALTH").orElseThrow());
+        failed.setFromDate(FROM);
+        failed.setToDate(FROM.plusDays(30));
+        failed.setStatus("FAILED");
+        failed.setFileName("CLB-ZENITHHEALTH-TEST.txt");
+        failed = track(claimBatchRepository.save(failed));
+        Files.writeString(batchDir.resolve(failed.getFileName()), "CLM|partial page that never committed\n");
+
+        claimBatchService.resume(failed.getId());
+        ClaimBatch built = await(failed.getId());
+
+        assertEquals("COMPLETED", built.getStatus());
+        assertEquals(3, built.getClaimCount());
+        assertEquals(3, built.getLineCount());
+        assertEquals(0, new BigDecimal("75.50").compareTo(built.getTotalAmount()));
+        List<String> lines = Files.readAllLines(claimBatchService.getBatchFile(built.getId()).orElseThrow());
+        assertTrue(lines.get(0).startsWith("HDR|CLB-ZENITHHEALTH-TEST|ZENITHHEALTH|"));
+        assertEquals(built.getFileLength(), Files.size(claimBatchService.getBatchFile(built.getId()).orElseThrow()));
+    }
+
+    @Test
+    void testClaimsAreOrderedByPolicyThenBill() throws Exception {
+        ClaimBatch built = build();
+
+        List<String> lines = Files.readAllLines(claimBatchService.getBatchFile(built.getId()).orElseThrow());
+        assertEquals(List.of(
+                "CLM|BILL-CL2|2024-03-06|POL-100|PAT-CL2|Patient|Claim|1980-01-01|25.50",
+                "LIN|BILL-CL2|1|CONSULTATION|Visit for BILL-CL2|1|25.50|25.50",
+                "CLM|BILL-CL3|2024-03-02|POL-100|PAT-CL2|Patient|Claim|1980-01-01|10.00",
+                "LIN|BILL-CL3|1|CONSULTATION|Visit for BILL-CL3|1|10.00|10.00",
+                "CLM|BILL-CL1|2024-03-03|POL-200|PAT-CL1|Patient|Claim|1980-01-01|40.00",
+                "LIN|BILL-CL1|1|CONSULTATION|Visit for BILL-CL1|1|40.00|40.00",
+                "TRL|3|3|75.50"), lines.subList(1, lines.size()));
+    }
+
+    @Test
+    void testClaimedBillsAreNotPickedUpAgain() throws Exception {
+        build();
+
+        assertEquals(0, build().getClaimCount());
+    }
+
+    @Test
+    void testClaimStatusFollowsSubmission() throws Exception {
+        ClaimBatch built = build();
+        Long billId = bills.get(0).getId();
+
+        assertEquals("QUEUED", claimBatchService.getClaimForBill(billId).orElseThrow().getStatus());
+        assertThrows(IllegalStateException.class, () -> claimBatchService.updateClaimStatus(billId, "ACCEPTED", null));
+        claimBatchService.markSubmitted(built.getId());
+        assertEquals("REJECTED",
+                claimBatchService.updateClaimStatus(billId, "REJECTED", "Policy lapsed").orElseThrow().getStatus());
+        assertThrows(IllegalArgumentException.class, () -> claimBatchService.updateClaimStatus(billId, "LOST", null));
+    }
+
+    @Test
+    void testUnknownPayerIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> claimBatchService.startBuild("NOSUCHPAYER", FROM, FROM.plusDays(1)));
+    }
+
+    private ClaimBatch build() throws InterruptedException {
+        ClaimBatch batch = track(claimBatchService.startBuild("ZENITHHEALTH", FROM, FROM.plusDays(30)));
+        return await(batch.getId());
+    }
+
+    private ClaimBatch track(ClaimBatch batch) {
+        batches.add(batch);
+        return batch;
+    }
+
+    private ClaimBatch await(Long batchId) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            ClaimBatch batch = claimBatchService.getBatch(batchId).orElseThrow();
+            if (!"BUILDING".equals(batch.getStatus())) {
+                return batch;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Claim batch " + batchId + " did not finish");
+    }
+
+    private Patient patient(String patientId, String provider, String policyNumber) {
+        Patient patient = new Patient();
+        patient.setPatientId(patientId);
+        patient.setFirstName("Claim");
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        patient.setDateOfBirth(LocalDate.of(1980, 1, 1));
+        patient.setInsuranceProvider(provider);
+        patient.setInsurancePolicyNumber(policyNumber);
+        patient = patientRepository.save(patient);
+        patients.add(patient);
+        return patient;
+    }
+
+    private Billing bill(String billNumber, Patient patient, LocalDate billDate, String amount, String status) {
+        BillingItem item = new BillingItem();
+        item.setItemType("CONSULTATION");
+        item.setDescription("Visit for " + billNumber);
+        item.setQuantity(1);
+        item.setUnitPrice(new BigDecimal(amount));
+        item.setTotalPrice(new BigDecimal(amount));
+
+        Billing billing = new Billing();
+        billing.setBillNumber(billNumber);
+        billing.setPatient(patient);
+        billing.setBillDate(billDate);
+        billing.setTotalAmount(new BigDecimal(amount));
+        billing.setStatus(status);
+        billing.getBillingItems().add(item);
+        return billingRepository.save(billing);
+    }
+}
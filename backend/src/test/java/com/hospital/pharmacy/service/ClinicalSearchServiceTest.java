@@ -0,0 +1,165 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.ClinicalSearchHitDTO;
+import com.hospital.pharmacy.model.MedicalRecord;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.MedicalRecordRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import com.hospital.pharmacy.service.impl.ClinicalSearchServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ClinicalSearchServiceTest {
+
+    @Autowired
+    private ClinicalSearchService clinicalSearchService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    private User doctor;
+    private Patient patient;
+    private MedicalRecord hypertension;
+    private MedicalRecord diabetes;
+    private Prescription prescription;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new User();
+        doctor.setUserId("DOC-CS1");
+        doctor.setFirstName("Search");
+        doctor.setLastName("Doctor");
+        doctor.setEmail("search.doctor@clinixpro.test");
+        doctor.setPassword("password");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-CS1");
+        patient.setFirstName("Search");
+        patient.setLastName("Patient");
+        patient.setGender("Male");
+        patient = patientRepository.save(patient);
+
+        today = LocalDate.now();
+        hypertension = medicalRecordRepository.save(
+                record("MR-CS1", today, "Headaches in the mornings", "Hypertension, stage 1"));
+        diabetes = medicalRecordRepository.save(
+                record("MR-CS2", today.minusDays(40), "Frequent urination", "Type 2 diabetes"));
+
+        prescription = new Prescription();
+        prescription.setPrescriptionId("PRS-CS1");
+        prescription.setPatient(patient);
+        prescription.setDoctor(doctor);
+        prescription.setPrescriptionDate(today);
+        prescription.setExpiryDate(today.plusDays(30));
+        prescription.setMedication("Amlodipine");
+        prescription.setDiagnosis("HTN");
+        prescription.setInstructions("Take once daily with water");
+        prescription = prescriptionRepository.save(prescription);
+    }
+
+    @AfterEach
+    void tearDown() {
+        prescriptionRepository.findById(prescription.getId()).ifPresent(prescriptionRepository::delete);
+        medicalRecordRepository.deleteAll(List.of(hypertension, diabetes));
+        patientRepository.delete(patient);
+        userRepository.delete(doctor);
+    }
+
+    @Test
+    void testSynonymsFoldIntoOneGroup() {
+        // Phrase, abbreviation and full term all fold into one synonym group
+        assertEquals(List.of("MR-CS1", "PRS-CS1"), search("high blood pressure").stream().sorted().toList());
+        assertEquals(List.of("PRS-CS1"),
+                references(clinicalSearchService.search("htn", "PRESCRIPTION", doctor.getId(), null, null, 10)));
+        assertEquals(List.of("MR-CS2"), search("diabetes mellitus"));
+        assertEquals(List.of("MR-CS1"), search("headache"));
+    }
+
+    @Test
+    void testFiltersNarrowTheHits() {
+        Long doctorId = doctor.getId();
+
+        assertTrue(clinicalSearchService.search("hypertension", null, doctorId, null, today.minusDays(1), 10).isEmpty());
+        assertTrue(clinicalSearchService.search("hypertension", null, doctorId + 1000, null, null, 10).isEmpty());
+        assertTrue(search("hypertension diabetes").isEmpty());
+    }
+
+    @Test
+    void testSearchFollowsUpdatesAndDeletes() {
+        hypertension.setDiagnosis("Tension headache");
+        hypertension = medicalRecordRepository.save(hypertension);
+        assertEquals(List.of("PRS-CS1"), search("hypertension"));
+
+        prescriptionRepository.delete(prescription);
+        assertTrue(search("hypertension").isEmpty());
+    }
+
+    @Test
+    void testSnapshotAndRebuildMatchTheIncrementalIndex() {
+        hypertension.setDiagnosis("Tension headache");
+        hypertension = medicalRecordRepository.save(hypertension);
+
+        ((ClinicalSearchServiceImpl) clinicalSearchService).snapshot();
+        assertTrue(Files.exists(Paths.get("target/clinical-search/clinical-search.idx")));
+        clinicalSearchService.rebuild();
+
+        assertEquals(List.of("MR-CS1"), search("tension headaches"));
+    }
+
+    @Test
+    void testDeletedPatientRecordsLeaveTheIndex() {
+        prescriptionRepository.delete(prescription);
+        medicalRecordRepository.deleteAll(List.of(hypertension, diabetes));
+
+        assertTrue(search("diabetes").isEmpty());
+    }
+
+    private MedicalRecord record(String recordId, LocalDate date, String complaint, String diagnosis) {
+        MedicalRecord record = new MedicalRecord();
+        record.setRecordId(recordId);
+        record.setPatient(patient);
+        record.setDoctor(doctor);
+        record.setRecordDate(date);
+        record.setChiefComplaint(complaint);
+        record.setDiagnosis(diagnosis);
+        return record;
+    }
+
+    private List<String> search(String query) {
+        return references(clinicalSearchService.search(query, null, doctor.getId(), null, null, 10));
+    }
+
+    private List<String> references(List<ClinicalSearchHitDTO> hits) {
+        return hits.stream().map(ClinicalSearchHitDTO::getReference).toList();
+    }
+}
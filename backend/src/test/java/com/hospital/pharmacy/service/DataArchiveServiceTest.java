@@ -0,0 +1,233 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.ArchivedPartition;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.BillingItem;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Payment;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.ArchivedPartitionRepository;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DataArchiveServiceTest {
+
+    @Autowired
+    private DataArchiveService dataArchiveService;
+
+    @Autowired
+    private ArchivedPartitionRepository archivedPartitionRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final YearMonth MONTH = YearMonth.of(2011, 1);
+    private static final LocalDate DAY = MONTH.atDay(10);
+
+    private Path archiveDir;
+    private User doctor;
+    private Patient patient;
+    private Billing paid;
+    private Billing open;
+    private Appointment completed;
+    private Appointment scheduled;
+
+    @BeforeEach
+    void setUp() {
+        archiveDir = (Path) ReflectionTestUtils.getField(
+                (Object) AopTestUtils.getTargetObject(dataArchiveService), "archiveDir");
+
+        doctor = new User();
+        doctor.setUserId("DOC-AV1");
+        doctor.setFirstName("Archive");
+        doctor.setLastName("Doctor");
+        doctor.setEmail("archive.doctor@clinixpro.test");
+        doctor.setPassword("password");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-AV1");
+        patient.setFirstName("Archive");
+        patient.setLastName("Patient");
+        patient.setGender("Male");
+        patient = patientRepository.save(patient);
+
+        paid = bill("BILL-AV1", DAY, "PAID");
+        Payment payment = new Payment();
+        payment.setBilling(paid);
+        payment.setAmount(new BigDecimal("80.25"));
+        payment.setPaymentMethod("CASH");
+        payment.setPaymentDate(DAY.atTime(9, 30));
+        payment.setIdempotencyKey("KEY-AV1");
+        paid.getPayments().add(payment);
+        paid.setPaidAmount(new BigDecimal("80.25"));
+        paid = billingRepository.save(paid);
+        open = bill("BILL-AV2", DAY, "PENDING");
+        completed = appointment("APT-AV1", DAY.atTime(9, 0), "COMPLETED");
+        scheduled = appointment("APT-AV2", DAY.atTime(11, 0), "SCHEDULED");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String table : List.of("billings", "appointments")) {
+            archivedPartitionRepository.findByTableNameAndMonthStart(table, MONTH.atDay(1)).ifPresent(partition -> {
+                archivedPartitionRepository.delete(partition);
+                archiveDir.resolve(partition.getFileName()).toFile().delete();
+            });
+        }
+        jdbcTemplate.update("DELETE FROM insurance_claims WHERE bill_id = ?", paid.getId());
+        billingRepository.findById(paid.getId()).ifPresent(billingRepository::delete);
+        billingRepository.delete(open);
+        appointmentRepository.findById(completed.getId()).ifPresent(appointmentRepository::delete);
+        appointmentRepository.delete(scheduled);
+        patientRepository.delete(patient);
+        userRepository.delete(doctor);
+    }
+
+    @Test
+    void testPaidBillsAreArchivedWithTheirItemsAndPayments() throws Exception {
+        ArchivedPartition bills = dataArchiveService.archiveMonth("billings", MONTH);
+
+        // The paid bill with its item and payment; the unpaid bill stays live
+        assertEquals(3, bills.getRowCount());
+        assertEquals("ARCHIVED", bills.getStatus());
+        assertTrue(Files.size(archiveDir.resolve(bills.getFileName())) > 0);
+        assertFalse(billingRepository.existsById(paid.getId()));
+        assertTrue(billingRepository.existsById(open.getId()));
+        assertEquals(0, count("payments", "bill_id", paid.getId()));
+    }
+
+    @Test
+    void testClaimedBillsStayLive() {
+        jdbcTemplate.update("INSERT INTO insurance_claims (bill_id, batch_id, payer_id, patient_id, amount, status) "
+                + "VALUES (?, 0, 0, ?, 80.25, 'PAID')", paid.getId(), patient.getId());
+
+        assertThrows(IllegalStateException.class, () -> dataArchiveService.archiveMonth("billings", MONTH));
+        assertTrue(billingRepository.existsById(paid.getId()));
+    }
+
+    @Test
+    void testMonthIsArchivedOnce() {
+        dataArchiveService.archiveMonth("billings", MONTH);
+
+        assertThrows(IllegalStateException.class, () -> dataArchiveService.archiveMonth("billings", MONTH));
+    }
+
+    @Test
+    void testOnlyCompletedAppointmentsAreArchived() {
+        ArchivedPartition appointments = dataArchiveService.archiveMonth("appointments", MONTH);
+
+        assertEquals(1, appointments.getRowCount());
+        assertFalse(appointmentRepository.existsById(completed.getId()));
+        assertTrue(appointmentRepository.existsById(scheduled.getId()));
+    }
+
+    @Test
+    void testRestoredBillsKeepTheirKeysAndValues() {
+        dataArchiveService.archiveMonth("billings", MONTH);
+
+        assertEquals("RESTORED", dataArchiveService.restoreMonth("billings", MONTH).orElseThrow().getStatus());
+        Billing restored = billingRepository.findById(paid.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("80.25").compareTo(restored.getTotalAmount()));
+        assertEquals(DAY, restored.getBillDate());
+        assertEquals(List.of("Archived consultation"), jdbcTemplate.queryForList(
+                "SELECT description FROM billing_items WHERE bill_id = ?", String.class, paid.getId()));
+        assertEquals("KEY-AV1", jdbcTemplate.queryForObject(
+                "SELECT idempotencyKey FROM payments WHERE bill_id = ?", String.class, paid.getId()));
+        assertThrows(IllegalStateException.class, () -> dataArchiveService.restoreMonth("billings", MONTH));
+    }
+
+    @Test
+    void testRestoredAppointmentsKeepTheirTimeAndStatus() {
+        dataArchiveService.archiveMonth("appointments", MONTH);
+
+        dataArchiveService.restoreMonth("appointments", MONTH);
+
+        Appointment back = appointmentRepository.findById(completed.getId()).orElseThrow();
+        assertEquals(DAY.atTime(9, 0), back.getAppointmentDateTime());
+        assertEquals("COMPLETED", back.getStatus());
+    }
+
+    @Test
+    void testOpenMonthsAndOtherTablesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> dataArchiveService.archiveMonth("billings", YearMonth.now()));
+        assertThrows(IllegalArgumentException.class, () -> dataArchiveService.archiveMonth("patients", MONTH));
+        assertTrue(dataArchiveService.restoreMonth("billings", MONTH.minusMonths(1)).isEmpty());
+    }
+
+    private int count(String table, String column, Long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + column + " = ?",
+                Integer.class, id);
+    }
+
+    private Billing bill(String billNumber, LocalDate billDate, String status) {
+        BillingItem item = new BillingItem();
+        item.setItemType("CONSULTATION");
+        item.setDescription("Archived consultation");
+        item.setQuantity(1);
+        item.setUnitPrice(new BigDecimal("80.25"));
+        item.setTotalPrice(new BigDecimal("80.25"));
+
+        Billing billing = new Billing();
+        billing.setBillNumber(billNumber);
+        billing.setPatient(patient);
+        billing.setBillDate(billDate);
+        billing.setDueDate(billDate.plusDays(30));
+        billing.setTotalAmount(new BigDecimal("80.25"));
+        billing.setStatus(status);
+        billing.getBillingItems().add(item);
+        return billingRepository.save(billing);
+    }
+
+    private Appointment appointment(String appointmentId, LocalDateTime time, String status) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(appointmentId);
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDateTime(time);
+        appointment.setStatus(status);
+        appointment.setType("REGULAR");
+        return appointmentRepository.save(appointment);
+    }
+}
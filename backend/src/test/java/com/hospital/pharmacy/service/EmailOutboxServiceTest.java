@@ -0,0 +1,86 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.EmailOutbox;
+import com.hospital.pharmacy.repository.EmailOutboxRepository;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=outbox@clinixpro.test",
+        "spring.mail.password=secret",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "app.mail.outbox.max-attempts=2",
+        "app.mail.outbox.initial-backoff-ms=60000"
+})
+@ActiveProfiles("test")
+class EmailOutboxServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("outbox@clinixpro.test", "secret"));
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void testQueuedMailIsDelivered() throws Exception {
+        EmailOutbox mail = outboxService.enqueue("WELCOME", "patient@example.com", "Welcome", "Hello");
+
+        assertEquals(1, outboxService.dispatchBatch());
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("Welcome", received[0].getSubject());
+
+        EmailOutbox sent = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertEquals(EmailOutbox.SENT, sent.getStatus());
+        assertNotNull(sent.getSentAt());
+        assertEquals(0, outboxService.dispatchBatch());
+    }
+
+    @Test
+    void testFailedMailIsRetriedThenDeadLettered() {
+        greenMail.stop();
+        EmailOutbox mail = outboxService.enqueue("WELCOME", "patient@example.com", "Welcome", "Hello");
+
+        assertEquals(1, outboxService.dispatchBatch());
+        EmailOutbox retry = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertEquals(EmailOutbox.PENDING, retry.getStatus());
+        assertEquals(1, retry.getAttempts());
+        assertNotNull(retry.getLastError());
+
+        // Not due again until the backoff has passed
+        assertEquals(0, outboxService.dispatchBatch());
+
+        retry.setNextAttemptAt(LocalDateTime.now());
+        outboxRepository.save(retry);
+        assertEquals(1, outboxService.dispatchBatch());
+
+        EmailOutbox dead = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertEquals(EmailOutbox.DEAD, dead.getStatus());
+        assertEquals(2, dead.getAttempts());
+    }
+}
@@ -0,0 +1,149 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.LengthOfStayDTO;
+import com.hospital.pharmacy.dto.OccupancyForecastDTO;
+import com.hospital.pharmacy.dto.OccupancyPointDTO;
+import com.hospital.pharmacy.model.Admission;
+import com.hospital.pharmacy.repository.AdmissionRepository;
+import com.hospital.pharmacy.repository.WardOccupancyHourlyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OccupancyAnalyticsServiceTest {
+
+    private static final String WARD = "Analytics Ward";
+
+    @Autowired
+    private OccupancyAnalyticsService analyticsService;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    @Autowired
+    private WardOccupancyHourlyRepository occupancyRepository;
+
+    private final List<Admission> admissions = new ArrayList<>();
+
+    // Five hours ago, on the hour
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        base = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(5);
+        occupancyRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        admissionRepository.deleteAll(admissions);
+        admissions.clear();
+        occupancyRepository.deleteAll();
+    }
+
+    @Test
+    void testRollupServesHourlyTrend() {
+        admitTwoOverlappingStays();
+        analyticsService.rollup();
+
+        List<OccupancyPointDTO> trend = analyticsService.getOccupancyTrend(WARD, millis(base), millis(base.plusHours(4)));
+
+        assertEquals(3, trend.size());
+        assertEquals(millis(base), trend.get(0).getHourStart());
+        assertEquals(1.5, trend.get(0).getAverageOccupancy(), 0.01);
+        assertEquals(2, trend.get(0).getPeakOccupancy());
+        assertEquals(2, trend.get(0).getAdmissions());
+        assertEquals(1.5, trend.get(1).getAverageOccupancy(), 0.01);
+        assertEquals(1, trend.get(1).getDischarges());
+        assertEquals(0, trend.get(2).getPeakOccupancy());
+        assertEquals(1, trend.get(2).getDischarges());
+    }
+
+    @Test
+    void testRollingUpAgainRewritesTheSameHours() {
+        admitTwoOverlappingStays();
+        analyticsService.rollup();
+        analyticsService.rollup();
+
+        List<OccupancyPointDTO> trend = analyticsService.getOccupancyTrend(WARD, millis(base), millis(base.plusHours(4)));
+
+        assertEquals(3, trend.size());
+        assertEquals(2, trend.get(0).getAdmissions());
+        assertEquals(1.5, trend.get(0).getAverageOccupancy(), 0.01);
+    }
+
+    @Test
+    void testLengthOfStayAveragesTheStaysThatEnded() {
+        admitTwoOverlappingStays();
+        analyticsService.rollup();
+
+        LengthOfStayDTO lengthOfStay = analyticsService.getLengthOfStay(WARD, millis(base), millis(base.plusHours(4)));
+
+        assertEquals(2, lengthOfStay.getDischarges());
+        assertEquals(1.5, lengthOfStay.getAverageHours(), 0.01);
+    }
+
+    @Test
+    void testForecastCoversTheHorizon() {
+        admitTwoOverlappingStays();
+        analyticsService.rollup();
+
+        List<OccupancyForecastDTO> forecast = analyticsService.forecastOccupancy(WARD, millis(base),
+                millis(base.plusHours(4)), 12);
+
+        assertEquals(12, forecast.size());
+    }
+
+    @Test
+    void testBackfilledAdmissionsAreRolledUpAgain() {
+        LocalDateTime earlier = base.minusHours(5);
+        admit("BED-AN-3", earlier.plusHours(8), earlier.plusHours(9));
+        analyticsService.rollup();
+
+        // Recorded after hours before it were rolled up
+        Admission backfilled = admit("BED-AN-4", earlier, earlier.plusHours(1));
+        analyticsService.markChanged(backfilled.getAdmittedAt());
+        analyticsService.rollup();
+
+        List<OccupancyPointDTO> trend = analyticsService.getOccupancyTrend(WARD, millis(earlier),
+                millis(earlier.plusHours(1)));
+        assertEquals(1, trend.size());
+        assertEquals(1, trend.get(0).getAdmissions());
+        assertEquals(1.0, trend.get(0).getAverageOccupancy(), 0.01);
+    }
+
+    // Two hours from the base, and an hour from half past it
+    private void admitTwoOverlappingStays() {
+        admit("BED-AN-1", base, base.plusHours(2));
+        admit("BED-AN-2", base.plusMinutes(30), base.plusMinutes(90));
+    }
+
+    private Admission admit(String bedId, LocalDateTime admittedAt, LocalDateTime dischargedAt) {
+        Admission admission = new Admission();
+        admission.setBedId(bedId);
+        admission.setWardName(WARD);
+        admission.setAdmittedAt(admittedAt);
+        admission.setDischargedAt(dischargedAt);
+        admission.setStayMinutes(ChronoUnit.MINUTES.between(admittedAt, dischargedAt));
+        admission = admissionRepository.save(admission);
+        admissions.add(admission);
+        return admission;
+    }
+
+    private long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
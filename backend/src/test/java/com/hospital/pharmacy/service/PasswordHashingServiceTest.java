@@ -0,0 +1,108 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PasswordHashingServiceTest {
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testHashesRunOffTheCallingThread() {
+        String hash = passwordHashingService.encode("s3cret-Passw0rd");
+        assertTrue(hash.startsWith("$2a$10$"));
+        assertTrue(passwordHashingService.matchesAsync("s3cret-Passw0rd", hash).join());
+        assertFalse(passwordHashingService.matchesAsync("wrong", hash).join());
+        assertFalse(passwordHashingService.needsRehash(hash));
+        assertTrue(meterRegistry.get("clinixpro.passwords.hash.time").tag("operation", "matches").timer().count() >= 2);
+    }
+
+    @Test
+    void testWeakHashIsReplacedAfterLogin() throws Exception {
+        String weakHash = new BCryptPasswordEncoder(4).encode("s3cret-Passw0rd");
+        User user = userRepository.save(user(weakHash));
+        try {
+            assertTrue(passwordHashingService.needsRehash(weakHash));
+            passwordHashingService.rehashAsync(user.getId(), "s3cret-Passw0rd", weakHash);
+
+            String stored = weakHash;
+            for (int i = 0; i < 100 && stored.equals(weakHash); i++) {
+                Thread.sleep(50);
+                stored = userRepository.findById(user.getId()).orElseThrow().getPassword();
+            }
+            assertTrue(stored.startsWith("$2a$10$"), stored);
+            assertTrue(passwordHashingService.matchesAsync("s3cret-Passw0rd", stored).join());
+
+            // A hash changed meanwhile is not overwritten
+            passwordHashingService.rehashAsync(user.getId(), "s3cret-Passw0rd", weakHash);
+            Thread.sleep(500);
+            assertEquals(stored, userRepository.findById(user.getId()).orElseThrow().getPassword());
+        } finally {
+            userRepository.deleteById(user.getId());
+        }
+    }
+
+    @Test
+    void testBurstBeyondTheQueueIsRefused() {
+        double rejectedBefore = meterRegistry.get("clinixpro.passwords.rejected").functionCounter().count();
+        String hash = new BCryptPasswordEncoder(10).encode("s3cret-Passw0rd");
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        // More than the threads plus app.passwords.queue-capacity
+        int burst = Runtime.getRuntime().availableProcessors() + 64 + 50;
+        for (int i = 0; i < burst; i++) {
+            checks.add(passwordHashingService.matchesAsync("s3cret-Passw0rd", hash));
+        }
+        int refused = 0;
+        for (CompletableFuture<Boolean> check : checks) {
+            try {
+                assertTrue(check.join());
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                refused++;
+            }
+        }
+        assertTrue(refused >= 50, "refused " + refused);
+        assertEquals(rejectedBefore + refused,
+                meterRegistry.get("clinixpro.passwords.rejected").functionCounter().count());
+    }
+
+    private User user(String passwordHash) {
+        User user = new User();
+        user.setUserId("TEST-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        user.setFirstName("Hash");
+        user.setLastName("Test");
+        user.setEmail("hash-" + UUID.randomUUID() + "@clinixpro.com");
+        user.setPassword(passwordHash);
+        user.setRole("PHARMACIST");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        user.setActive(true);
+        return user;
+    }
+}
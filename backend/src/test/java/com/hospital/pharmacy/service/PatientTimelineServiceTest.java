@@ -0,0 +1,246 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import com.hospital.pharmacy.config.RequestPriority;
+import com.hospital.pharmacy.dto.TimelineEventDTO;
+import com.hospital.pharmacy.dto.TimelinePageDTO;
+import com.hospital.pharmacy.model.Admission;
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.MedicalRecord;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.AdmissionRepository;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.MedicalRecordRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientTimelineServiceTest {
+
+    @Autowired
+    private PatientTimelineService timelineService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    private User doctor;
+    private Patient patient;
+    private final List<Appointment> appointments = new ArrayList<>();
+    private Prescription prescription;
+    private MedicalRecord record;
+    private Billing bill;
+    private Admission admission;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new User();
+        doctor.setUserId("DOC-TL1");
+        doctor.setFirstName("Tim");
+        doctor.setLastName("Line");
+        doctor.setEmail("timeline.doctor@clinixpro.test");
+        doctor.setPassword("password");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-TL1");
+        patient.setFirstName("Timeline");
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        patient = patientRepository.save(patient);
+
+        LocalDate today = LocalDate.now();
+        appointments.add(appointmentRepository.save(appointment("APT-TL1", today.minusDays(1))));
+        appointments.add(appointmentRepository.save(appointment("APT-TL2", today.minusDays(3))));
+
+        prescription = new Prescription();
+        prescription.setPrescriptionId("PRS-TL1");
+        prescription.setPatient(patient);
+        prescription.setDoctor(doctor);
+        prescription.setPrescriptionDate(today.minusDays(1));
+        prescription.setExpiryDate(today.plusDays(30));
+        prescription.setStatus("ACTIVE");
+        prescription.setMedication("Amoxicillin");
+        prescription = prescriptionRepository.save(prescription);
+
+        record = new MedicalRecord();
+        record.setRecordId("MR-TL1");
+        record.setPatient(patient);
+        record.setDoctor(doctor);
+        record.setRecordDate(today.minusDays(1));
+        record.setChiefComplaint("Cough");
+        record.setDiagnosis("Bronchitis");
+        record = medicalRecordRepository.save(record);
+
+        bill = new Billing();
+        bill.setBillNumber("BILL-TL1");
+        bill.setPatient(patient);
+        bill.setBillDate(today.minusDays(2));
+        bill.setTotalAmount(new BigDecimal("120.00"));
+        bill.setStatus("PENDING");
+        bill = billingRepository.save(bill);
+
+        admission = new Admission();
+        admission.setBedId("BED-TL1");
+        admission.setWardName("Timeline Ward");
+        admission.setPatient(patient);
+        admission.setDoctor(doctor);
+        admission.setAdmittedAt(today.minusDays(2).atTime(15, 0));
+        admission = admissionRepository.save(admission);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admissionRepository.delete(admission);
+        billingRepository.delete(bill);
+        medicalRecordRepository.delete(record);
+        prescriptionRepository.delete(prescription);
+        appointmentRepository.deleteAll(appointments);
+        appointments.clear();
+        patientRepository.delete(patient);
+        userRepository.delete(doctor);
+    }
+
+    @Test
+    void testPagesMergeAllSourcesNewestFirst() {
+        // Date-only events sort at the start of their day, ties by type
+        List<String> expected = List.of("APT-TL1", "PRS-TL1", "MR-TL1", "BED-TL1", "BILL-TL1", "APT-TL2");
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TimelinePageDTO page = timelineService.getTimeline(patient.getId(), cursor, 2, null);
+            page.getEvents().forEach(event -> seen.add(event.getReference()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testEventsCarryTheirDetails() {
+        TimelinePageDTO first = timelineService.getTimeline(patient.getId(), null, 10, null);
+
+        TimelineEventDTO visit = first.getEvents().get(0);
+        assertEquals("APPOINTMENT", visit.getType());
+        assertEquals("Tim Line", visit.getDoctorName());
+        assertEquals(new BigDecimal("120.00"), first.getEvents().get(4).getAmount());
+        assertNull(first.getNextCursor());
+    }
+
+    @Test
+    void testTypesSelectTheSources() {
+        TimelinePageDTO bills = timelineService.getTimeline(patient.getId(), null, 10, Set.of("BILL", "ADMISSION"));
+
+        assertEquals(List.of("ADMISSION", "BILL"), bills.getEvents().stream().map(TimelineEventDTO::getType).toList());
+    }
+
+    @Test
+    void testShortPageHasACursor() {
+        assertNotNull(timelineService.getTimeline(patient.getId(), null, 1, null).getNextCursor());
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> timelineService.getTimeline(patient.getId(), "not-a-cursor", 10, null));
+    }
+
+    @Test
+    void testQueriesRunByTheRequestThreadKeepItsRouteAndPriority() throws Exception {
+        PatientTimelineService target = AopTestUtils.getTargetObject(timelineService);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(target, "executor");
+        CountDownLatch release = new CountDownLatch(1);
+        ReadWriteRoutingDataSource.setRequestRoute(ReadWriteRoutingDataSource.Route.PRIMARY);
+        RequestPriority.set(RequestPriority.CLINICAL);
+        try {
+            // Every worker busy and the queue full, so the request thread runs the queries itself
+            CountDownLatch busy = new CountDownLatch(executor.getMaximumPoolSize());
+            for (int i = 0; i < executor.getMaximumPoolSize(); i++) {
+                executor.execute(() -> {
+                    busy.countDown();
+                    awaitQuietly(release);
+                });
+            }
+            busy.await();
+            while (executor.getQueue().offer(() -> awaitQuietly(release))) {
+                // fill the queue
+            }
+            assertTrue(timelineService.getTimeline(-1L, null, 10, null).getEvents().isEmpty());
+
+            assertEquals(ReadWriteRoutingDataSource.Route.PRIMARY, ReadWriteRoutingDataSource.requestRoute());
+            assertEquals(RequestPriority.CLINICAL, RequestPriority.current());
+        } finally {
+            release.countDown();
+            ReadWriteRoutingDataSource.clearRequestRoute();
+            RequestPriority.clear();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Appointment appointment(String appointmentId, LocalDate day) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(appointmentId);
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDateTime(day.atTime(10, 0));
+        appointment.setStatus("COMPLETED");
+        appointment.setType("REGULAR");
+        return appointment;
+    }
+}
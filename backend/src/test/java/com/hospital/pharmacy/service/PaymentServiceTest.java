@@ -0,0 +1,174 @@
+package com.hospital.pharmacy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hospital.pharmacy.dto.BillingRequestDTO;
+import com.hospital.pharmacy.dto.PaymentRequestDTO;
+import com.hospital.pharmacy.dto.PaymentResultDTO;
+import com.hospital.pharmacy.model.Billing;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Payment;
+import com.hospital.pharmacy.repository.BillingRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentServiceTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private BillingService billingService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private Patient patient;
+    private Long billingId;
+
+    @BeforeEach
+    void setUp() {
+        patient = new Patient();
+        patient.setPatientId("PAT-PY1");
+        patient.setFirstName("Payment");
+        patient.setLastName("Patient");
+        patient.setGender("Male");
+        patient = patientRepository.save(patient);
+
+        // A bill of 100.00
+        BillingRequestDTO bill = new BillingRequestDTO();
+        bill.setPatientId(patient.getId());
+        bill.setItems(List.of(new BillingRequestDTO.Item("PROCEDURE", "Suture", 1, new BigDecimal("100.00"),
+                null, null, null)));
+        billingId = billingService.createBilling(bill, null).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        billingRepository.deleteById(billingId);
+        patientRepository.delete(patient);
+    }
+
+    @Test
+    void testPartialPaymentLeavesBillPartiallyPaid() {
+        PaymentResultDTO first = record("40", "KEY-PY-PARTIAL");
+
+        assertFalse(first.isReplayed());
+        assertEquals("PARTIALLY_PAID", first.getBilling().getStatus());
+        assertEquals(0, new BigDecimal("40").compareTo(paidAmount()));
+    }
+
+    @Test
+    void testRetryReturnsTheRecordedPayment() {
+        PaymentResultDTO first = record("40", "KEY-PY-RETRY");
+
+        // Retried from the window, then again after the window forgot the key
+        PaymentResultDTO retry = record("40", "KEY-PY-RETRY");
+        assertTrue(retry.isReplayed());
+        assertEquals(first.getPayment().getId(), retry.getPayment().getId());
+        Cache<?, ?> recentKeys = (Cache<?, ?>) ReflectionTestUtils.getField(
+                (Object) AopTestUtils.getTargetObject(paymentService), "recentKeys");
+        recentKeys.invalidateAll();
+        assertTrue(record("40", "KEY-PY-RETRY").isReplayed());
+
+        assertEquals(0, new BigDecimal("40").compareTo(paidAmount()));
+    }
+
+    @Test
+    void testKeyReusedForAnotherAmountIsRefused() {
+        record("40", "KEY-PY-REUSED");
+
+        assertThrows(IllegalStateException.class,
+                () -> paymentService.recordPayment(billingId, payment("45", "KEY-PY-REUSED"), null));
+        assertEquals(0, new BigDecimal("40").compareTo(paidAmount()));
+    }
+
+    @Test
+    void testConcurrentCashiersAndRetriesNeverDoubleCount() throws Exception {
+        // Six cashiers with their own keys, and four retries of one request, all at once
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<PaymentResultDTO>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String key = "KEY-PY-C" + i;
+                results.add(pool.submit(() -> record("5", key)));
+            }
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> record("70", "KEY-PY-R")));
+            }
+            for (Future<PaymentResultDTO> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, new BigDecimal("100").compareTo(paidAmount()));
+        assertEquals("PAID", billingRepository.findById(billingId).orElseThrow().getStatus());
+        assertEquals(0, new BigDecimal("100").compareTo(paymentRepository.sumAmountByBillingId(billingId)));
+        assertEquals(7, paymentRepository.findAll().stream()
+                .map(Payment::getIdempotencyKey)
+                .filter(key -> key.startsWith("KEY-PY-C") || key.equals("KEY-PY-R"))
+                .count());
+    }
+
+    @Test
+    void testInvalidPaymentsAreRejected() {
+        record("100", "KEY-PY-FULL");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.recordPayment(billingId, payment("0.01", "KEY-PY-OVER"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.recordPayment(billingId, payment("-5", "KEY-PY-NEGATIVE"), null));
+        assertTrue(paymentService.recordPayment(-1L, payment("5", "KEY-PY-NO-BILL"), null).isEmpty());
+    }
+
+    @Test
+    void testPaymentWithoutAKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.recordPayment(billingId, payment("40", null), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.recordPayment(billingId, payment("40", " "), null));
+        assertEquals(0, BigDecimal.ZERO.compareTo(paidAmount()));
+    }
+
+    private PaymentResultDTO record(String amount, String key) {
+        return paymentService.recordPayment(billingId, payment(amount, key), null).orElseThrow();
+    }
+
+    private BigDecimal paidAmount() {
+        Billing billing = billingRepository.findById(billingId).orElseThrow();
+        return billing.getPaidAmount();
+    }
+
+    private PaymentRequestDTO payment(String amount, String key) {
+        return new PaymentRequestDTO(new BigDecimal(amount), "cash", null, null, key);
+    }
+}
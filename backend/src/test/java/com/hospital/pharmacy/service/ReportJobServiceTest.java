@@ -0,0 +1,266 @@
+package com.hospital.pharmacy.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.pharmacy.model.Medicine;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Prescription;
+import com.hospital.pharmacy.model.ReportJob;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.MedicineRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.PrescriptionRepository;
+import com.hospital.pharmacy.repository.ReportJobRepository;
+import com.hospital.pharmacy.repository.SyncTombstoneRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReportJobServiceTest {
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SyncTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String REQUESTER = "pharmacist@clinixpro.test";
+
+    private ReportJobService target;
+    private User doctor;
+    private Patient patient;
+    private Medicine medicine;
+    private final List<Prescription> prescriptions = new ArrayList<>();
+    private final List<ReportJob> jobs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(reportJobService);
+        ReflectionTestUtils.setField(target, "pageSize", 2);
+
+        doctor = new User();
+        doctor.setUserId("DOC-RJ1");
+        doctor.setFirstName("Report");
+        doctor.setLastName("Doctor");
+        doctor.setEmail("report.doctor@clinixpro.test");
+        doctor.setPassword("password");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-RJ1");
+        patient.setFirstName("Report");
+        patient.setLastName("Patient");
+        patient.setGender("Male");
+        patient = patientRepository.save(patient);
+
+        medicine = new Medicine();
+        medicine.setMedicineId("MED-RJ1");
+        medicine.setName("Reportamol");
+        medicine.setCategory("Analgesic");
+        medicine.setExpiryDate(LocalDate.now().plusYears(1));
+        medicine.setStock(3);
+        medicine.setStockStatus("Low");
+        medicine.setPrice(new BigDecimal("2.50"));
+        medicine = medicineRepository.save(medicine);
+
+        for (int i = 1; i <= 3; i++) {
+            prescription("PRS-RJ" + i);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(target, "pageSize", 500);
+        for (ReportJob job : jobs) {
+            reportJobService.getJob(job.getId()).ifPresent(found -> {
+                reportJobService.getJobFile(found.getId()).ifPresent(path -> path.toFile().delete());
+                reportJobRepository.delete(found);
+            });
+        }
+        jobs.clear();
+        prescriptionRepository.deleteAll(prescriptions);
+        tombstoneRepository.deleteAll(tombstoneRepository.findAll().stream()
+                .filter(t -> prescriptions.stream().anyMatch(p -> p.getId().equals(t.getEntityId())))
+                .toList());
+        prescriptions.clear();
+        medicineRepository.delete(medicine);
+        patientRepository.delete(patient);
+        userRepository.delete(doctor);
+    }
+
+    @Test
+    void testReportIsWrittenInTheBackground() throws Exception {
+        ReportJob done = run("all");
+
+        assertEquals("COMPLETED", done.getStatus(), done.getErrorMessage());
+        Path file = reportJobService.getJobFile(done.getId()).orElseThrow();
+        assertEquals(done.getFileLength(), Files.size(file));
+        List<String> lowStock = new ArrayList<>();
+        report(done).get("inventory").get("lowStock").forEach(row -> lowStock.add(row.get("medicineId").asText()));
+        assertTrue(lowStock.contains("MED-RJ1"));
+    }
+
+    @Test
+    void testRowsAreReadAPageAtATimeInIdOrder() throws Exception {
+        JsonNode report = report(run("ALL"));
+
+        List<String> active = new ArrayList<>();
+        report.get("prescriptions").get("active").forEach(row -> {
+            if (row.get("prescriptionId").asText().startsWith("PRS-RJ")) {
+                active.add(row.get("prescriptionId").asText());
+            }
+        });
+        assertEquals(List.of("PRS-RJ1", "PRS-RJ2", "PRS-RJ3"), active);
+    }
+
+    @Test
+    void testSameReportOverTheSameDataIsReused() throws Exception {
+        ReportJob job = run("all");
+
+        assertEquals(job.getId(), reportJobService.submit("ALL", Map.of(" ", ""), "other@clinixpro.test").getId());
+    }
+
+    @Test
+    void testChangeToTheDataItReadsGetsANewRun() throws Exception {
+        ReportJob job = run("ALL");
+        medicine.setStock(2);
+        medicine = medicineRepository.save(medicine);
+
+        ReportJob rerun = run("ALL");
+
+        assertNotEquals(job.getId(), rerun.getId());
+        assertEquals("COMPLETED", rerun.getStatus());
+    }
+
+    @Test
+    void testChangeToDataItDoesNotReadKeepsTheRun() throws Exception {
+        ReportJob inventory = run("INVENTORY");
+        prescription("PRS-RJ4");
+
+        assertEquals(inventory.getId(), reportJobService.submit("INVENTORY", Map.of(), REQUESTER).getId());
+    }
+
+    @Test
+    void testRecentJobsAreListedForTheRequester() throws Exception {
+        ReportJob job = run("INVENTORY");
+
+        assertTrue(reportJobService.getJobs(REQUESTER, 10).stream()
+                .anyMatch(recent -> recent.getId().equals(job.getId())));
+    }
+
+    @Test
+    void testJobsTheFullQueueTurnsAwayOnRestartAreFailed() {
+        Object executor = ReflectionTestUtils.getField(target, "executor");
+        ThreadPoolExecutor full = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        full.shutdown();
+        List<ReportJob> restarted = List.of(pendingJob("RUNNING"), pendingJob("QUEUED"));
+        ReflectionTestUtils.setField(target, "executor", full);
+        try {
+            ReflectionTestUtils.invokeMethod(target, "onApplicationReady");
+
+            for (ReportJob job : restarted) {
+                assertEquals("FAILED", reportJobService.getJob(job.getId()).orElseThrow().getStatus());
+            }
+        } finally {
+            ReflectionTestUtils.setField(target, "executor", executor);
+            reportJobRepository.deleteAll(restarted);
+        }
+    }
+
+    @Test
+    void testUnknownReportsAndParametersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> reportJobService.submit("payroll", Map.of(), REQUESTER));
+        assertThrows(IllegalArgumentException.class,
+                () -> reportJobService.submit("INVENTORY", Map.of("minAmount", "5"), "admin@clinixpro.test"));
+        assertThrows(IllegalArgumentException.class, () -> reportJobService.submit("DUNNING",
+                Map.of("minDaysOverdue", "0"), "admin@clinixpro.test"));
+    }
+
+    private ReportJob run(String reportType) throws InterruptedException {
+        ReportJob job = reportJobService.submit(reportType, Map.of(), REQUESTER);
+        jobs.add(job);
+        return await(job.getId());
+    }
+
+    // As left behind by a stop while it was waiting or running
+    private ReportJob pendingJob(String status) {
+        ReportJob job = new ReportJob();
+        job.setReportType("INVENTORY");
+        job.setDataWatermark("restart");
+        job.setStatus(status);
+        job.setRequestedBy(REQUESTER);
+        return reportJobRepository.save(job);
+    }
+
+    private JsonNode report(ReportJob job) throws Exception {
+        return objectMapper.readTree(reportJobService.getJobFile(job.getId()).orElseThrow().toFile());
+    }
+
+    private Prescription prescription(String prescriptionId) {
+        Prescription prescription = new Prescription();
+        prescription.setPrescriptionId(prescriptionId);
+        prescription.setPatient(patient);
+        prescription.setDoctor(doctor);
+        prescription.setPrescriptionDate(LocalDate.now());
+        prescription.setExpiryDate(LocalDate.now().plusMonths(1));
+        prescription.setMedication("Reportamol");
+        prescription = prescriptionRepository.save(prescription);
+        prescriptions.add(prescription);
+        return prescription;
+    }
+
+    private ReportJob await(Long jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            ReportJob job = reportJobService.getJob(jobId).orElseThrow();
+            if (!"QUEUED".equals(job.getStatus()) && !"RUNNING".equals(job.getStatus())) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Report job " + jobId + " did not finish");
+    }
+}
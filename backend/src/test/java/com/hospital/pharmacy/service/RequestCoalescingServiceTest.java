@@ -0,0 +1,140 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.config.ReadWriteRoutingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestCoalescingServiceTest {
+
+    private static final int CALLERS = 6;
+
+    @Autowired
+    private RequestCoalescingService requestCoalescingService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testConcurrentIdenticalRequestsShareOneComputation() throws Exception {
+        String endpoint = "/test/coalesced";
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                // Parameter order and blank values do not make a different key
+                Map<String, String> params = i % 2 == 0
+                        ? Map.of("type", "inventory", "startDate", "")
+                        : Map.of("type", " inventory ");
+                results.add(callers.submit(() -> requestCoalescingService.getJson(endpoint, params, null, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return Map.of("total", 42);
+                })));
+            }
+            // Hold the first computation until every other caller has joined it
+            long deadline = System.currentTimeMillis() + 10000;
+            while (requests(endpoint, "joined") < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            byte[] first = results.get(0).get(10, TimeUnit.SECONDS);
+            assertEquals("{\"total\":42}", new String(first, StandardCharsets.UTF_8));
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+            assertEquals(CALLERS - 1, requests(endpoint, "joined"));
+
+            // Finished results are reused for a moment
+            requestCoalescingService.getJson(endpoint, Map.of("type", "inventory"), null, () -> {
+                runs.incrementAndGet();
+                return Map.of("total", 0);
+            });
+            assertEquals(1, runs.get());
+            assertEquals(1, requests(endpoint, "cached"));
+
+            // A different scope is a different result
+            byte[] scoped = requestCoalescingService.getJson(endpoint, Map.of("type", "inventory"), "ADMIN",
+                    () -> {
+                        runs.incrementAndGet();
+                        return Map.of("total", 7);
+                    });
+            assertEquals("{\"total\":7}", new String(scoped, StandardCharsets.UTF_8));
+            assertEquals(2, runs.get());
+
+            double ratio = meterRegistry.get("clinixpro.coalescing.collapse.ratio")
+                    .tag("endpoint", endpoint).gauge().value();
+            assertEquals((double) CALLERS / (CALLERS + 2), ratio, 0.0001);
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRequestsRoutedToThePrimaryComputeTheirOwn() {
+        String endpoint = "/test/coalesced-primary";
+        requestCoalescingService.getJson(endpoint, Map.of(), null, () -> List.of("replica"));
+
+        ReadWriteRoutingDataSource.setRequestRoute(ReadWriteRoutingDataSource.Route.PRIMARY);
+        try {
+            byte[] primary = requestCoalescingService.getJson(endpoint, Map.of(), null, () -> List.of("primary"));
+            assertEquals("[\"primary\"]", new String(primary, StandardCharsets.UTF_8));
+        } finally {
+            ReadWriteRoutingDataSource.clearRequestRoute();
+        }
+        assertEquals(0, requests(endpoint, "cached"));
+        assertEquals(2, requests(endpoint, "computed"));
+    }
+
+    @Test
+    void testFailureReachesTheCallerAndIsNotKept() {
+        String endpoint = "/test/coalesced-failure";
+        assertThrows(IllegalStateException.class, () -> requestCoalescingService.getJson(endpoint, Map.of(), null,
+                () -> {
+                    throw new IllegalStateException("database unavailable");
+                }));
+
+        byte[] retried = requestCoalescingService.getJson(endpoint, Map.of(), null, () -> List.of("ok"));
+        assertEquals("[\"ok\"]", new String(retried, StandardCharsets.UTF_8));
+        assertEquals(2, requests(endpoint, "computed"));
+    }
+
+    private long requests(String endpoint, String outcome) {
+        return (long) meterRegistry.get("clinixpro.coalescing.requests")
+                .tag("endpoint", endpoint).tag("outcome", outcome).functionCounter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
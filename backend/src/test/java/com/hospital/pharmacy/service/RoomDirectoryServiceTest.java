@@ -0,0 +1,156 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.WardSummaryDTO;
+import com.hospital.pharmacy.model.Bed;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.Room;
+import com.hospital.pharmacy.repository.BedRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.RoomRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RoomDirectoryServiceTest {
+
+    @Autowired
+    private RoomDirectoryService roomDirectoryService;
+
+    @Autowired
+    private BedService bedService;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BedRepository bedRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void testOccupancyFollowsAdmissionsAndDischarges() {
+        Room room = new Room();
+        room.setRoomId("RM-T901");
+        room.setNumber("T901");
+        room.setName("Test Room");
+        room.setWard("Test Ward");
+        room.setType("General");
+        room.setCapacity(2);
+        room.setStatus("Available");
+        room.setFeatures(new ArrayList<>());
+        roomDirectoryService.create(room);
+
+        Bed bed = new Bed();
+        bed.setBedId("BED-T901-1");
+        bed.setWardName("Test Ward");
+        bed.setRoomNumber("T901");
+        bed.setBedNumber("1");
+        bed.setStatus("Available");
+        bedService.save(bed);
+
+        Patient patient = new Patient();
+        patient.setPatientId("PAT-T901");
+        patient.setFirstName("Test");
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        patient = patientRepository.save(patient);
+
+        // Looked up by number, then served from the cache, a copy to each caller
+        Room cached = roomDirectoryService.findRoom("T901").orElseThrow();
+        assertEquals(0, cached.getOccupancy());
+        assertNotNull(cacheManager.getCache("rooms").get("T901"));
+        cached.setNotes("Scribbled on");
+        Room again = roomDirectoryService.findRoom("T901").orElseThrow();
+        assertNotSame(cached, again);
+        assertNull(again.getNotes());
+
+        bedService.assignPatient("BED-T901-1", patient.getId(), null, "Observation");
+        assertEquals(1, roomDirectoryService.findRoom("T901").orElseThrow().getOccupancy());
+
+        WardSummaryDTO summary = roomDirectoryService.getWardSummaries().stream()
+                .filter(s -> "Test Ward".equals(s.getWard()))
+                .findFirst().orElseThrow();
+        assertEquals(2, summary.getCapacity());
+        assertEquals(1, summary.getOccupancy());
+        assertEquals(1, summary.getFreeBeds());
+
+        // Edits load the row afresh and never touch the maintained count
+        Room changes = new Room();
+        changes.setNotes("Renovated");
+        assertEquals("Renovated", roomDirectoryService.update("T901", changes).orElseThrow().getNotes());
+        assertEquals("Cleaning", roomDirectoryService.updateStatus("RM-T901", "Cleaning").orElseThrow().getStatus());
+        Room stored = roomRepository.findByRoomId("RM-T901").orElseThrow();
+        assertEquals(1, stored.getOccupancy());
+        assertEquals("Renovated", stored.getNotes());
+        assertEquals("Renovated", roomDirectoryService.findRoom("T901").orElseThrow().getNotes());
+        assertTrue(roomDirectoryService.update("T999", changes).isEmpty());
+
+        bedService.dischargePatient("BED-T901-1");
+        assertEquals(0, roomDirectoryService.findRoom("RM-T901").orElseThrow().getOccupancy());
+        assertTrue(roomDirectoryService.findRoom("T999").isEmpty());
+
+        bedRepository.delete(bedRepository.findByBedId("BED-T901-1"));
+        patientRepository.delete(patient);
+        roomDirectoryService.delete(roomRepository.findByRoomId("RM-T901").orElseThrow());
+    }
+
+    @Test
+    void testAdmissionOnlyFillsTheRoomInItsOwnWard() {
+        Room east = room("RM-T902E", "T902", "Test East Ward");
+        Room west = room("RM-T902W", "T902", "Test West Ward");
+        Patient patient = new Patient();
+        patient.setPatientId("PAT-T902");
+        patient.setFirstName("Test");
+        patient.setLastName("Patient");
+        patient.setGender("Male");
+        patient = patientRepository.save(patient);
+
+        Bed bed = new Bed();
+        bed.setBedId("BED-T902E-1");
+        bed.setWardName("Test East Ward");
+        bed.setRoomNumber("T902");
+        bed.setBedNumber("1");
+        bed.setStatus("Available");
+        bedService.save(bed);
+        try {
+            bedService.assignPatient("BED-T902E-1", patient.getId(), null, "Observation");
+
+            assertEquals(1, roomRepository.findByRoomId("RM-T902E").orElseThrow().getOccupancy());
+            assertEquals(0, roomRepository.findByRoomId("RM-T902W").orElseThrow().getOccupancy());
+        } finally {
+            bedRepository.delete(bedRepository.findByBedId("BED-T902E-1"));
+            patientRepository.delete(patient);
+            roomDirectoryService.delete(east);
+            roomDirectoryService.delete(west);
+        }
+    }
+
+    private Room room(String roomId, String number, String ward) {
+        Room room = new Room();
+        room.setRoomId(roomId);
+        room.setNumber(number);
+        room.setName("Test Room");
+        room.setWard(ward);
+        room.setType("General");
+        room.setCapacity(2);
+        room.setStatus("Available");
+        room.setFeatures(new ArrayList<>());
+        return roomDirectoryService.create(room);
+    }
+}
@@ -0,0 +1,183 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.dto.SyncPageDTO;
+import com.hospital.pharmacy.model.Appointment;
+import com.hospital.pharmacy.model.Patient;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.AppointmentRepository;
+import com.hospital.pharmacy.repository.PatientRepository;
+import com.hospital.pharmacy.repository.SyncTombstoneRepository;
+import com.hospital.pharmacy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SyncServiceTest {
+
+    private static final Set<String> APPOINTMENTS = Set.of("appointments");
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SyncTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User doctor;
+    private Patient patient;
+    private final List<Appointment> appointments = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doctor = new User();
+        doctor.setUserId("DOC-SY1");
+        doctor.setFirstName("Sync");
+        doctor.setLastName("Doctor");
+        doctor.setEmail("sync.doctor@clinixpro.test");
+        doctor.setPassword("password");
+        doctor.setRole("DOCTOR");
+        doctor = userRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPatientId("PAT-SY1");
+        patient.setFirstName("Sync");
+        patient.setLastName("Patient");
+        patient.setGender("Female");
+        patient = patientRepository.save(patient);
+
+        for (int i = 1; i <= 3; i++) {
+            appointments.add(appointment("APT-SY" + i));
+        }
+        // Settled an hour ago, so the overlap window does not send them again
+        jdbcTemplate.update("UPDATE appointments SET updatedAt = ? WHERE appointmentId LIKE 'APT-SY%'",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Appointment appointment : appointments) {
+            appointmentRepository.findById(appointment.getId()).ifPresent(appointmentRepository::delete);
+        }
+        tombstoneRepository.deleteAll(tombstoneRepository.findAll().stream()
+                .filter(t -> appointments.stream().anyMatch(a -> a.getId().equals(t.getEntityId())))
+                .toList());
+        appointments.clear();
+        patientRepository.delete(patient);
+        userRepository.delete(doctor);
+    }
+
+    @Test
+    void testFirstSyncPagesThroughEverything() {
+        List<Long> seen = new ArrayList<>();
+        String watermark = null;
+        SyncPageDTO page;
+        do {
+            page = syncService.getChanges(watermark, APPOINTMENTS, 2);
+            assertTrue(page.getChanges().get("appointments").size() <= 2);
+            seen.addAll(ids(page));
+            watermark = page.getWatermark();
+        } while (page.isHasMore());
+
+        assertTrue(seen.containsAll(appointments.stream().map(Appointment::getId).toList()));
+    }
+
+    @Test
+    void testNothingIsSentAgainOnceCaughtUp() {
+        SyncPageDTO page = syncService.getChanges(catchUp(), APPOINTMENTS, 100);
+
+        assertTrue(ids(page).stream().noneMatch(id -> appointments.stream().anyMatch(a -> a.getId().equals(id))));
+        assertFalse(page.isHasMore());
+    }
+
+    @Test
+    void testEditsAndDeletesSinceTheWatermarkAreReturned() {
+        String watermark = catchUp();
+        Appointment edited = appointmentRepository.findById(appointments.get(0).getId()).orElseThrow();
+        edited.setStatus("COMPLETED");
+        appointmentRepository.save(edited);
+        Long deletedId = appointments.get(1).getId();
+        appointmentRepository.deleteById(deletedId);
+
+        SyncPageDTO page = syncService.getChanges(watermark, APPOINTMENTS, 100);
+
+        assertTrue(ids(page).contains(edited.getId()));
+        assertFalse(ids(page).contains(deletedId));
+        assertTrue(page.getDeleted().get("appointments").contains(deletedId));
+        assertFalse(page.getDeleted().get("appointments").contains(edited.getId()));
+        assertEquals("COMPLETED", page.getChanges().get("appointments").stream()
+                .map(row -> (Appointment) row)
+                .filter(row -> row.getId().equals(edited.getId()))
+                .findFirst().orElseThrow().getStatus());
+    }
+
+    @Test
+    void testWatermarkOlderThanTheTombstonesIsRefused() {
+        String stale = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "appointments|2020-01-01T00:00|0|2020-01-01T00:00|0".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalStateException.class, () -> syncService.getChanges(stale, APPOINTMENTS, 10));
+    }
+
+    @Test
+    void testMalformedRequestsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> syncService.getChanges("not-a-watermark", APPOINTMENTS, 10));
+        assertThrows(IllegalArgumentException.class, () -> syncService.getChanges(null, Set.of("users"), 10));
+    }
+
+    // Pages through every change so far and returns where to carry on from
+    private String catchUp() {
+        String watermark = null;
+        SyncPageDTO page;
+        do {
+            page = syncService.getChanges(watermark, APPOINTMENTS, 100);
+            watermark = page.getWatermark();
+        } while (page.isHasMore());
+        return watermark;
+    }
+
+    private List<Long> ids(SyncPageDTO page) {
+        return page.getChanges().get("appointments").stream().map(row -> ((Appointment) row).getId()).toList();
+    }
+
+    private Appointment appointment(String appointmentId) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(appointmentId);
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
+        appointment.setStatus("SCHEDULED");
+        appointment.setType("REGULAR");
+        return appointmentRepository.save(appointment);
+    }
+}
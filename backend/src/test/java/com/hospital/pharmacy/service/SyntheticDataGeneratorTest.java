@@ -0,0 +1,60 @@
+package com.hospital.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:synthetic;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.seed.synthetic.enabled=true",
+        "app.seed.synthetic.scale=0.0005",
+        "app.seed.synthetic.threads=4",
+        "app.loadtest.enabled=true",
+        "app.loadtest.concurrency=4",
+        "app.loadtest.warmup-seconds=0",
+        "app.loadtest.duration-seconds=2",
+        "app.loadtest.report-file=target/synthetic-loadtest-report.csv"
+})
+@ActiveProfiles("test")
+class SyntheticDataGeneratorTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    @Test
+    void testDatasetGeneratedAndLoadReported() throws Exception {
+        assertEquals(500, count("SELECT COUNT(*) FROM patients WHERE patientid LIKE 'SYN-%'"));
+        assertEquals(5000, count("SELECT COUNT(*) FROM appointments WHERE appointmentId LIKE 'SYN-%'"));
+        assertEquals(2500, count("SELECT COUNT(*) FROM billings WHERE billNumber LIKE 'SYN-%'"));
+        assertEquals(100, count("SELECT COUNT(*) FROM medicines WHERE medicineId LIKE 'SYN-%'"));
+
+        // Bill totals match their items
+        assertEquals(0, count("SELECT COUNT(*) FROM billings b WHERE b.billNumber LIKE 'SYN-%' AND b.totalAmount <> "
+                + "(SELECT SUM(i.totalPrice) FROM billing_items i WHERE i.bill_id = b.id)"));
+        // Paid amounts match their payments
+        assertEquals(0, count("SELECT COUNT(*) FROM billings b WHERE b.billNumber LIKE 'SYN-%' AND b.paidAmount <> "
+                + "(SELECT COALESCE(SUM(p.amount), 0) FROM payments p WHERE p.bill_id = b.id)"));
+        assertTrue(count("SELECT COUNT(*) FROM billings WHERE billNumber LIKE 'SYN-%' AND status = 'PAID'") > 0);
+
+        // Doctor load is skewed: the busiest doctor sees far more than an even share
+        long busiest = count("SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM appointments "
+                + "WHERE appointmentId LIKE 'SYN-%' GROUP BY doctor_id) t");
+        assertTrue(busiest > 5000 / 10 * 2);
+
+        List<String> report = Files.readAllLines(Path.of("target/synthetic-loadtest-report.csv"));
+        assertTrue(report.size() > 1);
+    }
+}
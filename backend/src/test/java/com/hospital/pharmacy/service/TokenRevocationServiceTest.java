@@ -0,0 +1,145 @@
+package com.hospital.pharmacy.service;
+
+import com.hospital.pharmacy.model.TokenRevocation;
+import com.hospital.pharmacy.model.User;
+import com.hospital.pharmacy.repository.TokenRevocationRepository;
+import com.hospital.pharmacy.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TokenRevocationServiceTest {
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        tokenRevocationRepository.deleteAll();
+        tokenRevocationService.rebuild();
+    }
+
+    @Test
+    void testLoggedOutTokenIsRevokedAndNoOther() {
+        String email = uniqueEmail();
+        String token = jwtUtil.generateToken(user(email));
+        String other = jwtUtil.generateToken(user(email));
+        String tokenId = jwtUtil.extractTokenId(token);
+        assertNotNull(tokenId);
+        assertFalse(isRevoked(token));
+
+        tokenRevocationService.revokeToken(email, tokenId, jwtUtil.extractExpiration(token));
+        assertTrue(isRevoked(token));
+        assertFalse(isRevoked(other));
+
+        // The Bloom filter may say maybe, but the answer is exact
+        for (int i = 0; i < 1000; i++) {
+            tokenRevocationService.revokeToken(email, UUID.randomUUID().toString(), null);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(tokenRevocationService.isRevoked(email, UUID.randomUUID().toString(), new Date()));
+        }
+    }
+
+    @Test
+    void testDeactivationRevokesTokensIssuedUpToThen() {
+        String email = uniqueEmail();
+        String token = jwtUtil.generateToken(user(email));
+
+        tokenRevocationService.revokeAllTokens(email);
+        assertTrue(isRevoked(token));
+        assertFalse(tokenRevocationService.isRevoked(uniqueEmail(), null, new Date(0)));
+        assertEquals(1, tokenRevocationRepository.count());
+    }
+
+    @Test
+    void testLoginRightAfterRevocationIsNotRevoked() throws Exception {
+        String email = uniqueEmail();
+        tokenRevocationService.revokeAllTokens(email);
+        Thread.sleep(2);
+
+        // Most likely within the same second as the watermark, but after it
+        assertFalse(isRevoked(jwtUtil.generateToken(user(email))));
+    }
+
+    @Test
+    void testRevokingInATransactionAlsoRevokesTokensIssuedBeforeItCommits() {
+        String email = uniqueEmail();
+        String[] issuedMeanwhile = new String[1];
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            tokenRevocationService.revokeAllTokens(email);
+            issuedMeanwhile[0] = jwtUtil.generateToken(user(email));
+        });
+
+        assertTrue(isRevoked(issuedMeanwhile[0]));
+        assertEquals(2, tokenRevocationRepository.count());
+    }
+
+    @Test
+    void testRevocationsFromOtherNodesArriveBySync() {
+        String email = uniqueEmail();
+        String token = jwtUtil.generateToken(user(email));
+        LocalDateTime now = LocalDateTime.now();
+        // Written by another node: this one only learns of it from the table
+        tokenRevocationRepository.save(new TokenRevocation(null, email, jwtUtil.extractTokenId(token), null,
+                now.plusDays(1), now));
+
+        tokenRevocationService.syncRevocations();
+        assertTrue(isRevoked(token));
+    }
+
+    @Test
+    void testRebuildPurgesExpiredRevocations() {
+        String email = uniqueEmail();
+        LocalDateTime now = LocalDateTime.now();
+        tokenRevocationRepository.save(new TokenRevocation(null, email, "expired-token", null,
+                now.minusMinutes(1), now.minusDays(1)));
+        tokenRevocationService.revokeToken(email, "live-token", null);
+
+        tokenRevocationService.rebuild();
+        assertEquals(1, tokenRevocationRepository.count());
+        assertFalse(tokenRevocationService.isRevoked(email, "expired-token", new Date()));
+        assertTrue(tokenRevocationService.isRevoked(email, "live-token", new Date()));
+    }
+
+    private boolean isRevoked(String token) {
+        return tokenRevocationService.isRevoked(jwtUtil.extractUsername(token), jwtUtil.extractTokenId(token),
+                jwtUtil.extractIssuedAt(token));
+    }
+
+    private User user(String email) {
+        User user = new User();
+        user.setUserId("TEST-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        user.setEmail(email);
+        user.setRole("DOCTOR");
+        return user;
+    }
+
+    private String uniqueEmail() {
+        return "revocation-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+    }
+}
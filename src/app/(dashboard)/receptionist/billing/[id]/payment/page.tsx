@@ -15,6 +15,8 @@ export default function ProcessPaymentPage() {
   const [error, setError] = useState("");
   const [successMessage, setSuccessMessage] = useState("");
   const [billing, setBilling] = useState(null);
+  // One key per payment attempt, so a resubmitted form cannot charge twice
+  const [idempotencyKey] = useState(() => crypto.randomUUID());
   
   const [paymentData, setPaymentData] = useState({
     amount: "",
@@ -79,7 +81,7 @@ export default function ProcessPaymentPage() {
       setError("");
       
       // Process payment
-      await ReceptionistService.processBillingPayment(id, paymentData);
+      await ReceptionistService.processBillingPayment(id, { ...paymentData, idempotencyKey });
       
       setSuccessMessage("Payment processed successfully");
       
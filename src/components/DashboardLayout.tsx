@@ -22,6 +22,7 @@ export default function DashboardLayout({
   const [isProfileOpen, setIsProfileOpen] = useState(false);
   const [showLogoutConfirm, setShowLogoutConfirm] = useState(false);
   const [user, setUser] = useState<any>(null);
+  const [profileImageSrc, setProfileImageSrc] = useState<string | null>(null);
   const router = useRouter();
 
   useEffect(() => {
@@ -42,6 +43,34 @@ export default function DashboardLayout({
     setUser(currentUser);
   }, [userType, router]);
 
+  useEffect(() => {
+    if (!user?.profileImage) {
+      setProfileImageSrc(null);
+      return;
+    }
+    let objectUrl: string | null = null;
+    let cancelled = false;
+    AuthService.fetchFileObjectUrl(user.profileImage)
+      .then((url: string) => {
+        if (cancelled) {
+          URL.revokeObjectURL(url);
+          return;
+        }
+        objectUrl = url;
+        setProfileImageSrc(url);
+      })
+      .catch((error: unknown) => {
+        console.error('Error loading profile image:', error);
+        setProfileImageSrc(null);
+      });
+    return () => {
+      cancelled = true;
+      if (objectUrl) {
+        URL.revokeObjectURL(objectUrl);
+      }
+    };
+  }, [user?.profileImage]);
+
   const handleImageUpload = async (event: React.ChangeEvent<HTMLInputElement>) => {
     const file = event.target.files?.[0];
     if (file && user) {
@@ -136,9 +165,10 @@ export default function DashboardLayout({
                     className="flex items-center space-x-3 group focus:outline-none p-2 rounded-lg hover:bg-gray-100 transition-colors"
                   >
                     <div className="relative">
-                      {user.profileImage ? (
+                      {profileImageSrc ? (
                         <Image 
-                          src={user.profileImage} 
+                          src={profileImageSrc} 
+                          unoptimized
                           alt="Profile" 
                           width={48} 
                           height={48} 
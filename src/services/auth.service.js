@@ -82,6 +82,14 @@ const AuthService = {
   },
 
   // New method to upload profile image
+  // Stored files need the bearer token, which an <img> request cannot send; returns an object URL to revoke when done
+  async fetchFileObjectUrl(fileUrl) {
+    const response = await api.get(fileUrl.replace(/^\/api(?=\/)/, ""), {
+      responseType: "blob",
+    });
+    return URL.createObjectURL(response.data);
+  },
+
   async uploadProfileImage(userId, imageFile) {
     try {
       const formData = new FormData();